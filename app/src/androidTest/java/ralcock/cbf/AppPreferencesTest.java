@@ -239,36 +239,45 @@ public class AppPreferencesTest {
     }
 
     @Test
-    public void getLastUpdateMD5_returnsEmptyStringWhenNotSet() {
-        String md5 = fAppPreferences.getLastUpdateMD5();
+    public void getSourceDigest_returnsEmptyStringWhenNotSet() {
+        String md5 = fAppPreferences.getSourceDigest("beer.json");
         assertThat(md5, equalTo(""));
     }
 
     @Test
-    public void setLastUpdateMD5_storesMD5() {
+    public void setSourceDigest_storesDigest() {
         String testMD5 = "5d41402abc4b2a76b9719d911017c592";
-        fAppPreferences.setLastUpdateMD5(testMD5);
+        fAppPreferences.setSourceDigest("beer.json", testMD5);
 
-        String retrieved = fAppPreferences.getLastUpdateMD5();
+        String retrieved = fAppPreferences.getSourceDigest("beer.json");
         assertThat(retrieved, equalTo(testMD5));
     }
 
     @Test
-    public void setLastUpdateMD5_persistsAcrossInstances() {
+    public void setSourceDigest_isPerSource() {
+        fAppPreferences.setSourceDigest("beer.json", "5d41402abc4b2a76b9719d911017c592");
+        fAppPreferences.setSourceDigest("low-no.json", "098f6bcd4621d373cade4e832627b4f6");
+
+        assertThat(fAppPreferences.getSourceDigest("beer.json"), equalTo("5d41402abc4b2a76b9719d911017c592"));
+        assertThat(fAppPreferences.getSourceDigest("low-no.json"), equalTo("098f6bcd4621d373cade4e832627b4f6"));
+    }
+
+    @Test
+    public void setSourceDigest_persistsAcrossInstances() {
         String testMD5 = "098f6bcd4621d373cade4e832627b4f6";
-        fAppPreferences.setLastUpdateMD5(testMD5);
+        fAppPreferences.setSourceDigest("beer.json", testMD5);
 
         AppPreferences newInstance = new AppPreferences(fContext);
-        String retrieved = newInstance.getLastUpdateMD5();
+        String retrieved = newInstance.getSourceDigest("beer.json");
         assertThat(retrieved, equalTo(testMD5));
     }
 
     @Test
-    public void setLastUpdateMD5_handlesEmptyString() {
-        fAppPreferences.setLastUpdateMD5("test");
-        fAppPreferences.setLastUpdateMD5("");
+    public void setCatalogDigest_handlesEmptyString() {
+        fAppPreferences.setCatalogDigest("test");
+        fAppPreferences.setCatalogDigest("");
 
-        String retrieved = fAppPreferences.getLastUpdateMD5();
+        String retrieved = fAppPreferences.getCatalogDigest();
         assertThat(retrieved, equalTo(""));
     }
 
@@ -348,7 +357,7 @@ public class AppPreferencesTest {
         fAppPreferences.setStylesToHide(styles);
         Date testDate = new Date(123456789L);
         fAppPreferences.setNextUpdateTime(testDate);
-        fAppPreferences.setLastUpdateMD5("test-md5");
+        fAppPreferences.setCatalogDigest("test-md5");
 
         // Verify all are stored correctly
         assertThat(fAppPreferences.getSortOrder(), equalTo(SortOrder.BEER_RATING_DESC));
@@ -356,7 +365,7 @@ public class AppPreferencesTest {
         assertThat(fAppPreferences.getHideUnavailableBeers(), is(true));
         assertThat(fAppPreferences.getStylesToHide(), equalTo(styles));
         assertThat(fAppPreferences.getNextUpdateTime().getTime(), equalTo(123456789L));
-        assertThat(fAppPreferences.getLastUpdateMD5(), equalTo("test-md5"));
+        assertThat(fAppPreferences.getCatalogDigest(), equalTo("test-md5"));
     }
 
     @Test
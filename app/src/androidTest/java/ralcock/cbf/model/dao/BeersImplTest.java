@@ -60,13 +60,13 @@ public class BeersImplTest {
         fBreweries.create(brewery2);
 
         fBeer1 = new Beer("1", "A Mild", 1f, "description1", fStyle1, "status1", "cask", "gluten", "beer", brewery);
-        fBeers.create(fBeer1);
+        fBeers.updateFromFestivalOrCreate(fBeer1);
 
         fBeer2 = new Beer("2", "A Best Bitter", 2f, "description2", fStyle2, "status2", "cask", "", "beer", brewery);
-        fBeers.create(fBeer2);
+        fBeers.updateFromFestivalOrCreate(fBeer2);
 
         fBeer3 = new Beer("3", "A Stout", 3f, "description3", fStyle2, "status3", "cask", "sulphites", "beer", brewery2);
-        fBeers.create(fBeer3);
+        fBeers.updateFromFestivalOrCreate(fBeer3);
 
         assertEquals(3, fBeers.getNumberOfBeers());
     }
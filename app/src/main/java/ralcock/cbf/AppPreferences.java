@@ -9,8 +9,10 @@ import ralcock.cbf.model.BeerList;
 import ralcock.cbf.model.SortOrder;
 import ralcock.cbf.model.StatusToShow;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 public final class AppPreferences {
@@ -28,7 +30,10 @@ public final class AppPreferences {
     private static final String HIDE_UNAVAILABLE_KEY = "hideUnavailable";
     private static final String STYLES_TO_HIDE_KEY = "stylesToHide";
     private static final String ALLERGENS_TO_HIDE_KEY = "allergensToHide";
-    private static final String LAST_UPDATE_MD5_KEY = "lastUpdateMD5";
+    private static final String SOURCE_DIGEST_KEY_PREFIX = "sourceDigest.";
+    private static final String SOURCE_DIGEST_WITHOUT_STATUSES_KEY_PREFIX = "sourceDigestWithoutStatuses.";
+    private static final String CATALOG_DIGEST_KEY = "catalogDigest";
+    private static final String RECENT_FESTIVALS_KEY = "recentFestivals";
 
     private final Context fContext;
 
@@ -149,12 +154,63 @@ public final class AppPreferences {
         return getPreference(HIDE_UNAVAILABLE_KEY, DEFAULT_HIDE_UNAVAILABLE);
     }
 
-    public void setLastUpdateMD5(final String md5) {
-        setPreference(LAST_UPDATE_MD5_KEY, md5);
+    /**
+     * Records the digest of a feed as last ingested, so it is only ingested again when it changes.
+     */
+    public void setSourceDigest(final String source, final String digest) {
+        setPreference(SOURCE_DIGEST_KEY_PREFIX + source, digest);
     }
 
-    public String getLastUpdateMD5() {
-        return getPreference(LAST_UPDATE_MD5_KEY, "");
+    public String getSourceDigest(final String source) {
+        return getPreference(SOURCE_DIGEST_KEY_PREFIX + source, "");
+    }
+
+    /**
+     * Records the digest of a feed as last ingested leaving out its beers' statuses, so that a feed
+     * in which only the statuses have changed can be refreshed without ingesting it again.
+     */
+    public void setSourceDigestWithoutStatuses(final String source, final String digest) {
+        setPreference(SOURCE_DIGEST_WITHOUT_STATUSES_KEY_PREFIX + source, digest);
+    }
+
+    public String getSourceDigestWithoutStatuses(final String source) {
+        return getPreference(SOURCE_DIGEST_WITHOUT_STATUSES_KEY_PREFIX + source, "");
+    }
+
+    /**
+     * Records which version of the whole catalog is in the database, as reported by the update.
+     */
+    public void setCatalogDigest(final String digest) {
+        setPreference(CATALOG_DIGEST_KEY, digest);
+    }
+
+    public String getCatalogDigest() {
+        return getPreference(CATALOG_DIGEST_KEY, "");
+    }
+
+    /**
+     * Records that the catalog of {@code festival} has been used, and returns the festivals used
+     * before it, most recent first.
+     */
+    public List<String> useFestival(final String festival) {
+        List<String> previous = new ArrayList<String>();
+        try {
+            JSONArray json = new JSONArray(getPreference(RECENT_FESTIVALS_KEY, "[]"));
+            for (int i = 0; i < json.length(); i++) {
+                if (!festival.equals(json.getString(i))) {
+                    previous.add(json.getString(i));
+                }
+            }
+        } catch (JSONException e) {
+            Log.e(TAG, "Failed to parse JSON", e);
+        }
+        JSONArray recent = new JSONArray();
+        recent.put(festival);
+        for (String other : previous) {
+            recent.put(other);
+        }
+        setPreference(RECENT_FESTIVALS_KEY, recent.toString());
+        return previous;
     }
 
     public StatusToShow getStatusToShow() {
@@ -1,18 +1,23 @@
 package ralcock.cbf;
 
+import android.app.SearchManager;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
+import android.database.Cursor;
+import android.database.MatrixCursor;
 import android.net.Uri;
 import android.os.Bundle;
+import android.provider.BaseColumns;
 import android.view.View;
 import androidx.activity.EdgeToEdge;
 import androidx.core.graphics.Insets;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
+import androidx.cursoradapter.widget.SimpleCursorAdapter;
 import com.google.android.material.tabs.TabLayout;
 import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 import androidx.viewpager.widget.ViewPager;
@@ -31,9 +36,14 @@ import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
+import ralcock.cbf.actions.BeerExporter;
 import ralcock.cbf.model.BeerDatabaseHelper;
 import ralcock.cbf.model.SortOrder;
 import ralcock.cbf.model.dao.Beers;
+import ralcock.cbf.model.export.CsvExportFormat;
+import ralcock.cbf.model.export.ExportFormat;
+import ralcock.cbf.model.export.JsonExportFormat;
+import ralcock.cbf.model.search.SuggestionIndex;
 import ralcock.cbf.service.UpdateService;
 import ralcock.cbf.service.UpdateTask;
 import ralcock.cbf.util.ExceptionReporter;
@@ -49,6 +59,10 @@ public class CamBeerFestApplication extends AppCompatActivity {
 
     private static final int HOURS_UNTIL_NEXT_UPDATE = 4;
 
+    private static final int MAX_SUGGESTIONS = 8;
+
+    private static final String[] SUGGESTION_COLUMNS = {BaseColumns._ID, SearchManager.SUGGEST_COLUMN_TEXT_1};
+
     private final ExceptionReporter fExceptionReporter;
 
     private final AppPreferences fAppPreferences;
@@ -134,9 +148,7 @@ public class CamBeerFestApplication extends AppCompatActivity {
     private void doReceivedUpdateServiceResult(final UpdateTask.Result result) {
         if (result.success()) {
             // Updated
-            fAppPreferences.setLastUpdateMD5(result.getDigest());
             fAppPreferences.setNextUpdateTime(calcNextUpdateTime());
-            notifyBeersChanged();
         } else {
             // Failed - notify of failure.
             Toast.makeText(this,
@@ -233,6 +245,27 @@ public class CamBeerFestApplication extends AppCompatActivity {
             }
         });
 
+        final SimpleCursorAdapter suggestionsAdapter = new SimpleCursorAdapter(this,
+                android.R.layout.simple_list_item_1,
+                null,
+                new String[]{SearchManager.SUGGEST_COLUMN_TEXT_1},
+                new int[]{android.R.id.text1},
+                0);
+        searchView.setSuggestionsAdapter(suggestionsAdapter);
+        searchView.setOnSuggestionListener(new SearchView.OnSuggestionListener() {
+            public boolean onSuggestionSelect(final int position) {
+                return false;
+            }
+
+            public boolean onSuggestionClick(final int position) {
+                Cursor cursor = suggestionsAdapter.getCursor();
+                if (cursor != null && cursor.moveToPosition(position)) {
+                    searchView.setQuery(cursor.getString(1), true);
+                }
+                return true;
+            }
+        });
+
         searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
             public boolean onQueryTextSubmit(final String query) {
                 filterBy(query.toString());
@@ -242,12 +275,23 @@ public class CamBeerFestApplication extends AppCompatActivity {
 
             public boolean onQueryTextChange(final String newText) {
                 filterBy(newText.toString());
+                suggestionsAdapter.changeCursor(suggestionsFor(newText));
                 return true;
             }
         });
         return true;
     }
 
+    // Suggestions come from an in-memory index, so this is cheap enough to run on every keystroke.
+    private Cursor suggestionsFor(final String prefix) {
+        MatrixCursor cursor = new MatrixCursor(SUGGESTION_COLUMNS);
+        int id = 0;
+        for (SuggestionIndex.Suggestion suggestion : getBeerDao().suggest(prefix, MAX_SUGGESTIONS)) {
+            cursor.addRow(new Object[]{id++, suggestion.getText()});
+        }
+        return cursor;
+    }
+
     void filterBy(String filterText) {
         fireFilterTextChanged(filterText);
         fAppPreferences.setFilterText(filterText);
@@ -274,12 +318,17 @@ public class CamBeerFestApplication extends AppCompatActivity {
         } else if (itemId == R.id.aboutApplication) {
             showAboutDialog();
             return true;
-        } else if (itemId == R.id.export) {
-            // doExport();
+        } else if (itemId == R.id.exportCsv) {
+            doExport(new CsvExportFormat());
+            return true;
+        } else if (itemId == R.id.exportJson) {
+            doExport(new JsonExportFormat());
             return true;
         } else if (itemId == R.id.refreshDatabase) {
             // Start the update service
-            startService(new Intent(this, UpdateService.class));
+            final Intent intent = new Intent(this, UpdateService.class);
+            intent.putExtra(UpdateService.USER_REQUESTED, true);
+            startService(intent);
             return true;
         } else if (itemId == R.id.reloadDatabase) {
             // Start the update service with the CLEAN_UPDATE flag
@@ -292,6 +341,10 @@ public class CamBeerFestApplication extends AppCompatActivity {
         }
     }
 
+    private void doExport(final ExportFormat format) {
+        new BeerExporter(this).export(getBeerDao(), format);
+    }
+
     private void showAboutDialog() {
         String versionName = "UNKNOWN";
         String appName = getString(R.string.app_name);
@@ -324,10 +377,6 @@ public class CamBeerFestApplication extends AppCompatActivity {
         newFragment.show(getSupportFragmentManager(), "filterByAllergen");
     }
 
-    public void notifyBeersChanged() {
-        fireBeerListChanged();
-    }
-
     private void visitFestivalWebsite() {
         Uri festivalUri = Uri.parse(getString(R.string.festival_website_url));
         Intent launchBrowser = new Intent(Intent.ACTION_VIEW, festivalUri);
@@ -393,10 +442,4 @@ public class CamBeerFestApplication extends AppCompatActivity {
             l.allergensToHideChanged(allergensToHide);
         }
     }
-
-    private void fireBeerListChanged() {
-        for (ListChangedListener l : fListChangedListeners) {
-            l.beersChanged();
-        }
-    }
 }
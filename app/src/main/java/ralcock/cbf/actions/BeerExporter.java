@@ -2,42 +2,116 @@ package ralcock.cbf.actions;
 
 import android.content.Context;
 import android.content.Intent;
+import android.net.Uri;
+import android.os.AsyncTask;
+import android.util.Log;
+import androidx.core.content.FileProvider;
 import ralcock.cbf.R;
-import ralcock.cbf.model.Beer;
+import ralcock.cbf.model.dao.BeerAccessException;
+import ralcock.cbf.model.dao.Beers;
+import ralcock.cbf.model.export.ExportFormat;
+import ralcock.cbf.model.export.RatingsExport;
+import ralcock.cbf.util.ExceptionReporter;
 
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.List;
-import java.util.Locale;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 
+/**
+ * Exports the rated and bookmarked beers to a file in the cache directory and offers to share
+ * it. The file is streamed a page at a time and shared by content URI, so the size of the
+ * tasting log is limited by neither memory nor the Binder transaction limit.
+ */
 public final class BeerExporter {
+    private static final String TAG = BeerExporter.class.getName();
+
+    // Must match the cache-path in res/xml/file_paths.xml
+    private static final String EXPORT_DIRECTORY = "exports";
+
     private final Context fContext;
 
     public BeerExporter(final Context context) {
         fContext = context;
     }
 
-    public void export(final List<Beer> ratedBeers) throws IOException {
-        Intent intent = makeExportIntent(ratedBeers);
-        fContext.startActivity(Intent.createChooser(intent, "Send beer ratings as CSV"));
+    @SuppressWarnings("deprecation")
+    public void export(final Beers beers, final ExportFormat format) {
+        new ExportTask(beers, format).execute();
     }
 
-    public Intent makeExportIntent(final List<Beer> ratedBeers) {
-        StringBuilder builder = new StringBuilder();
-
-        builder.append(String.format(Locale.US, "%s, %s, %s, %s\n", "Beer", "Brewery", "Style", "Rating"));
+    public File exportFile(final ExportFormat format) {
+        File directory = new File(fContext.getCacheDir(), EXPORT_DIRECTORY);
+        return new File(directory, "beer-ratings." + format.getFileExtension());
+    }
 
-        for (Beer b : ratedBeers) {
-            builder.append(String.format("\"%s\", \"%s\", \"%s\", %d\n", b.getName(), b.getBrewery().getName(), b.getStyle(), b.getRating()));
+    public int writeExport(final Beers beers, final ExportFormat format, final File file) throws IOException {
+        File directory = file.getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Failed to create " + directory);
         }
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+        try {
+            return RatingsExport.of(beers).writeTo(format, writer);
+        } finally {
+            writer.close();
+        }
+    }
+
+    public Uri getContentUri(final File file) {
+        return FileProvider.getUriForFile(fContext, fContext.getPackageName() + ".fileprovider", file);
+    }
 
+    public Intent makeExportIntent(final Uri contentUri, final ExportFormat format) {
         Intent intent = new Intent(Intent.ACTION_SEND);
-        intent.setType("text/plain");
+        intent.setType(format.getMimeType());
 
         String festivalName = fContext.getResources().getString(R.string.festival_name);
         String subject = String.format("Beers from %s", festivalName);
         intent.putExtra(Intent.EXTRA_SUBJECT, subject);
-        intent.putExtra(Intent.EXTRA_TEXT, builder.toString());
+        intent.putExtra(Intent.EXTRA_STREAM, contentUri);
+        intent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
 
         return intent;
     }
+
+    @SuppressWarnings("deprecation")
+    private final class ExportTask extends AsyncTask<Void, Void, Uri> {
+        private final Beers fBeers;
+        private final ExportFormat fFormat;
+        private Exception fFailure;
+
+        ExportTask(final Beers beers, final ExportFormat format) {
+            fBeers = beers;
+            fFormat = format;
+        }
+
+        @Override
+        protected Uri doInBackground(final Void... params) {
+            File file = exportFile(fFormat);
+            try {
+                int count = writeExport(fBeers, fFormat, file);
+                Log.i(TAG, "Exported " + count + " beers to " + file);
+                return getContentUri(file);
+            } catch (IOException e) {
+                fFailure = e;
+                return null;
+            } catch (BeerAccessException e) {
+                fFailure = e;
+                return null;
+            }
+        }
+
+        @Override
+        protected void onPostExecute(final Uri contentUri) {
+            if (contentUri == null) {
+                new ExceptionReporter(fContext).report(TAG, "Failed to export beers: " + fFailure.getMessage(), fFailure);
+                return;
+            }
+            Intent intent = makeExportIntent(contentUri, fFormat);
+            fContext.startActivity(Intent.createChooser(intent, "Send beer ratings"));
+        }
+    }
 }
@@ -2,51 +2,196 @@ package ralcock.cbf.model;
 
 import android.content.Context;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.os.AsyncTask;
+import android.util.Log;
 import com.j256.ormlite.android.apptools.OrmLiteSqliteOpenHelper;
+import com.j256.ormlite.dao.Dao;
 import com.j256.ormlite.dao.DaoManager;
 import com.j256.ormlite.support.ConnectionSource;
 import com.j256.ormlite.table.TableUtils;
+import ralcock.cbf.model.dao.BeerAccessException;
 import ralcock.cbf.model.dao.Beers;
 import ralcock.cbf.model.dao.BeersImpl;
 import ralcock.cbf.model.dao.Breweries;
+import ralcock.cbf.model.dao.CatalogSchema;
+import ralcock.cbf.model.dao.Staging;
+import ralcock.cbf.model.dao.StagingImpl;
 import ralcock.cbf.R;
 
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.sql.SQLException;
+import java.util.List;
 
 public final class BeerDatabaseHelper extends OrmLiteSqliteOpenHelper {
+    private static final String TAG = BeerDatabaseHelper.class.getName();
+
     public static final String DATABASE_NAME = "BEERS";
+    private static final String PREBUILT_CATALOG_ASSET = "catalog.db";
+    private static final String SNAPSHOT_PREFIX = "catalog-";
+    private static final String SNAPSHOT_SUFFIX = ".snapshot";
+
+    /**
+     * How many festivals' catalogs are kept, the current one included. See
+     * {@link #evictFestivals}.
+     */
+    public static final int MAX_FESTIVALS = 3;
 
-    private static final int DB_VERSION = 34; // category support for winter festival
+    private static final int DB_VERSION = 39; // feeds staged while they are ingested
 
+    private final Context fContext;
+    private final String fFestival;
+    private boolean fPrebuiltCatalogChecked;
     private Breweries fBreweries;
     private Beers fBeers;
+    private Staging fStaging;
 
     public BeerDatabaseHelper(final Context context) {
         super(context, DATABASE_NAME, null, DB_VERSION,  R.raw.ormlite_config);
+        fContext = context;
+        fFestival = getFestival(context);
+        // Writes then go through one primary connection and reads through a pool of others, so
+        // the list can be read while an update's transaction is open, as it was last committed.
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    /**
+     * The key the catalog of the festival this build is for is stored under. Catalogs of other
+     * festivals stay in the database, up to {@link #MAX_FESTIVALS}, so switching back to one
+     * needs no download.
+     */
+    public static String getFestival(final Context context) {
+        return context.getString(R.string.festival_hashtag);
+    }
+
+    /**
+     * Where the catalog snapshot written after each update is kept. See
+     * {@link ralcock.cbf.model.snapshot.CatalogSnapshot}.
+     */
+    public static File getSnapshotFile(final Context context) {
+        return getSnapshotFile(context, getFestival(context));
+    }
+
+    private static File getSnapshotFile(final Context context, final String festival) {
+        return new File(context.getFilesDir(), SNAPSHOT_PREFIX + festival + SNAPSHOT_SUFFIX);
+    }
+
+    @Override
+    public synchronized SQLiteDatabase getWritableDatabase() {
+        installPrebuiltCatalog();
+        return super.getWritableDatabase();
+    }
+
+    @Override
+    public synchronized SQLiteDatabase getReadableDatabase() {
+        installPrebuiltCatalog();
+        return super.getReadableDatabase();
+    }
+
+    /**
+     * On first run, copies the catalog database built into the app into place, so the list can
+     * be shown before the first update has downloaded anything. The update that follows then
+     * only changes what differs from it. Done when the database is first opened rather than in
+     * the constructor, so the copy happens on whichever background thread gets there first.
+     */
+    private void installPrebuiltCatalog() {
+        if (fPrebuiltCatalogChecked) {
+            return;
+        }
+        fPrebuiltCatalogChecked = true;
+        final File database = fContext.getDatabasePath(DATABASE_NAME);
+        if (database.exists()) {
+            return;
+        }
+        final File copy = new File(database.getPath() + ".prebuilt");
+        try {
+            copyAsset(PREBUILT_CATALOG_ASSET, copy);
+            // The asset is built without a schema version; without one onCreate would run.
+            SQLiteDatabase db = SQLiteDatabase.openDatabase(copy.getPath(), null, SQLiteDatabase.OPEN_READWRITE);
+            try {
+                db.setVersion(DB_VERSION);
+            } finally {
+                db.close();
+            }
+            if (!copy.renameTo(database)) {
+                throw new IOException("Failed to rename " + copy + " to " + database);
+            }
+            Log.i(TAG, "Installed prebuilt catalog.");
+        } catch (FileNotFoundException e) {
+            Log.i(TAG, "No prebuilt catalog in this build.");
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to install prebuilt catalog.", e);
+        } catch (SQLiteException e) {
+            Log.w(TAG, "Failed to install prebuilt catalog.", e);
+        } finally {
+            copy.delete();
+        }
+    }
+
+    private void copyAsset(final String name, final File destination) throws IOException {
+        destination.getParentFile().mkdirs();
+        InputStream in = fContext.getAssets().open(name);
+        try {
+            OutputStream out = new FileOutputStream(destination);
+            try {
+                final byte[] buffer = new byte[0x10000];
+                int read;
+                while ((read = in.read(buffer)) > 0) {
+                    out.write(buffer, 0, read);
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
     }
 
     @Override
     public void onCreate(final SQLiteDatabase sqLiteDatabase,
                          final ConnectionSource connectionSource) {
         try {
-            TableUtils.createTable(connectionSource, Beer.class);
-            TableUtils.createTable(connectionSource, Brewery.class);
+            CatalogSchema.createTables(connectionSource);
         } catch (SQLException sqlx) {
             throw new RuntimeException(sqlx);
         }
     }
 
+    /**
+     * Upgrades a step at a time from the version catalogs were first kept per festival, keeping
+     * the ratings, bookmarks and comments. Databases older than that are rebuilt.
+     */
     @Override
     public void onUpgrade(final SQLiteDatabase sqLiteDatabase,
                           final ConnectionSource connectionSource,
                           int old_version, int new_version) {
+        // Snapshots are only a cache of the catalog, so are never upgraded.
+        deleteSnapshots();
         try {
-            TableUtils.dropTable(connectionSource, Beer.class, true);
-            TableUtils.dropTable(connectionSource, Brewery.class, true);
+            if (old_version < 36) {
+                CatalogSchema.dropTables(connectionSource);
+                // Written by versions before catalogs were kept per festival.
+                new File(fContext.getFilesDir(), "catalog.snapshot").delete();
+                onCreate(sqLiteDatabase, connectionSource);
+                return;
+            }
+            if (old_version < 37) {
+                CatalogSchema.addBreweryNames(connectionSource);
+            }
+            if (old_version < 38) {
+                CatalogSchema.recreateIndexes(connectionSource);
+            }
+            if (old_version < 39) {
+                CatalogSchema.createStagingTables(connectionSource);
+            }
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
-        onCreate(sqLiteDatabase, connectionSource);
     }
 
     public Beers getBeers() {
@@ -54,7 +199,9 @@ public final class BeerDatabaseHelper extends OrmLiteSqliteOpenHelper {
             if (fBeers == null) {
                 BeersImpl beers = DaoManager.createDao(getConnectionSource(), Beer.class);
                 beers.setBreweries(getBreweries());
+                beers.setFestival(fFestival);
                 fBeers = beers;
+                buildSearchIndexes(beers);
             }
             return fBeers;
         } catch (SQLException e) {
@@ -62,10 +209,29 @@ public final class BeerDatabaseHelper extends OrmLiteSqliteOpenHelper {
         }
     }
 
+    /**
+     * Builds the in-memory search structures off the main thread, so that the first keystrokes
+     * of a search never wait for the catalog to be read. Until they are built there are no
+     * suggestions.
+     */
+    private static void buildSearchIndexes(final Beers beers) {
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            public void run() {
+                try {
+                    beers.rebuildSearchIndex();
+                } catch (BeerAccessException e) {
+                    Log.w(TAG, "Failed to build search indexes.", e);
+                }
+            }
+        });
+    }
+
     public Breweries getBreweries() {
         try {
             if (fBreweries == null) {
-                fBreweries = DaoManager.createDao(getConnectionSource(), Brewery.class);
+                Breweries breweries = DaoManager.createDao(getConnectionSource(), Brewery.class);
+                breweries.setFestival(fFestival);
+                fBreweries = breweries;
             }
             return fBreweries;
         } catch (SQLException e) {
@@ -73,12 +239,67 @@ public final class BeerDatabaseHelper extends OrmLiteSqliteOpenHelper {
         }
     }
 
+    public Staging getStaging() {
+        try {
+            if (fStaging == null) {
+                StagingImpl staging = DaoManager.createDao(getConnectionSource(), StagedProducer.class);
+                Dao<IngestCheckpoint, Long> checkpoints = DaoManager.createDao(getConnectionSource(), IngestCheckpoint.class);
+                staging.setCheckpoints(checkpoints);
+                staging.setFestival(fFestival);
+                fStaging = staging;
+            }
+            return fStaging;
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Deletes the catalogs of every festival.
+     */
     public void deleteAll() {
         try {
             TableUtils.clearTable(getConnectionSource(), Beer.class);
             TableUtils.clearTable(getConnectionSource(), Brewery.class);
+            TableUtils.clearTable(getConnectionSource(), StagedProducer.class);
+            TableUtils.clearTable(getConnectionSource(), IngestCheckpoint.class);
+            deleteSnapshots();
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
     }
+
+    /**
+     * Deletes the current festival's catalog, leaving the others.
+     */
+    public void deleteFestival() {
+        getBeers().deleteFestival(fFestival);
+        getSnapshotFile(fContext, fFestival).delete();
+    }
+
+    /**
+     * Deletes the catalogs of the festivals used least recently, keeping {@link #MAX_FESTIVALS}.
+     *
+     * @param mostRecentFirst the festivals used before the current one, most recent first
+     */
+    public void evictFestivals(final List<String> mostRecentFirst) {
+        for (String festival : getBeers().evictFestivals(mostRecentFirst, MAX_FESTIVALS)) {
+            Log.i(TAG, "Evicted catalog of " + festival);
+            getStaging().deleteFestival(festival);
+            getSnapshotFile(fContext, festival).delete();
+        }
+    }
+
+    private void deleteSnapshots() {
+        File[] files = fContext.getFilesDir().listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (name.startsWith(SNAPSHOT_PREFIX) && name.endsWith(SNAPSHOT_SUFFIX)) {
+                file.delete();
+            }
+        }
+    }
 }
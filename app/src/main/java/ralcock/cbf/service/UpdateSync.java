@@ -0,0 +1,200 @@
+package ralcock.cbf.service;
+
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.TaskStackBuilder;
+import androidx.localbroadcastmanager.content.LocalBroadcastManager;
+import com.j256.ormlite.android.apptools.OpenHelperManager;
+import ralcock.cbf.AppPreferences;
+import ralcock.cbf.CamBeerFestApplication;
+import ralcock.cbf.R;
+import ralcock.cbf.model.BeerDatabaseHelper;
+import ralcock.cbf.model.dao.BeerAccessException;
+import ralcock.cbf.model.sync.SyncScheduler;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Date;
+
+/**
+ * One run of {@link UpdateTask}, reporting progress and the result through the notification and
+ * local broadcasts as the service always has. Runs on the scheduler's thread.
+ */
+final class UpdateSync implements SyncScheduler.Sync {
+    private static final String TAG = UpdateSync.class.getName();
+
+    private static final int NOTIFICATION_ID = 0;
+
+    private final Context fContext;
+    private final AppPreferences fAppPreferences;
+    private final String fFestival;
+
+    // TODO: Migrate from deprecated LocalBroadcastManager to LiveData or other alternatives
+    // LocalBroadcastManager was deprecated in AndroidX 1.1.0
+    @SuppressWarnings("deprecation")
+    private final LocalBroadcastManager fLocalBroadcastManager;
+
+    private final NotificationManager fNotifyManager;
+
+    @SuppressWarnings("deprecation")
+    UpdateSync(final Context context) {
+        fContext = context;
+        fAppPreferences = new AppPreferences(context);
+        fFestival = BeerDatabaseHelper.getFestival(context);
+        fLocalBroadcastManager = LocalBroadcastManager.getInstance(context);
+        fNotifyManager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public boolean run(final boolean cleanUpdate) {
+        Log.d(TAG, "run: cleanUpdate=" + cleanUpdate);
+        final NotificationCompat.Builder builder = newNotificationBuilder();
+        final BeerDatabaseHelper helper = OpenHelperManager.getHelper(fContext, BeerDatabaseHelper.class);
+        try {
+            UpdateTask task = new UpdateTask(new UpdateTask.ProgressListener() {
+                private int fLastPercent = -1;
+
+                public void onProgress(final UpdateTask.Progress progress) {
+                    // Only report whole percentages; the ingest is much faster than the UI needs.
+                    final int percent = progress.getProgress() * 100 / Math.max(1, progress.getTotal());
+                    if (percent == fLastPercent) {
+                        return;
+                    }
+                    fLastPercent = percent;
+
+                    Intent broadcastIntent = new Intent(UpdateService.UPDATE_SERVICE_PROGRESS);
+                    broadcastIntent.putExtra(UpdateService.PROGRESS_EXTRA, progress);
+                    fLocalBroadcastManager.sendBroadcast(broadcastIntent);
+
+                    builder.setProgress(progress.getTotal(), progress.getProgress(), false);
+                    fNotifyManager.notify(NOTIFICATION_ID, builder.build());
+                }
+            });
+            UpdateTask.Result result = task.update(newParams(helper, cleanUpdate));
+            if (result.success() && result.getCount() > 0) {
+                fAppPreferences.setCatalogDigest(result.getDigest());
+                try {
+                    helper.evictFestivals(fAppPreferences.useFestival(fFestival));
+                } catch (BeerAccessException e) {
+                    Log.w(TAG, "Failed to evict old festivals.", e);
+                }
+            }
+
+            Intent broadcastIntent = new Intent(UpdateService.UPDATE_SERVICE_RESULT);
+            broadcastIntent.putExtra(UpdateService.RESULT_EXTRA, result);
+            fLocalBroadcastManager.sendBroadcast(broadcastIntent);
+
+            if (result.getCount() == 0) {
+                fNotifyManager.cancel(NOTIFICATION_ID);
+            } else {
+                builder.setProgress(0, 0, false);
+                builder.setContentText(fContext.getString(R.string.update_complete_notification_text, result.getCount()));
+                fNotifyManager.notify(NOTIFICATION_ID, builder.build());
+            }
+            return result.success();
+        } finally {
+            OpenHelperManager.releaseHelper();
+        }
+    }
+
+    private NotificationCompat.Builder newNotificationBuilder() {
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(fContext)
+                .setAutoCancel(true)
+                .setSmallIcon(R.drawable.ic_caskman)
+                .setContentTitle(fContext.getString(R.string.update_notification_title))
+                .setContentText(fContext.getString(R.string.update_in_progress_notification_text));
+
+        // See
+        // http://developer.android.com/guide/topics/ui/notifiers/notifications.html#SimpleNotification
+        Intent resultIntent = new Intent(fContext, CamBeerFestApplication.class);
+        TaskStackBuilder stackBuilder = TaskStackBuilder.create(fContext);
+        stackBuilder.addParentStack(CamBeerFestApplication.class);
+        stackBuilder.addNextIntent(resultIntent);
+        PendingIntent pendingIntent = stackBuilder.getPendingIntent(0,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+        builder.setContentIntent(pendingIntent);
+        return builder;
+    }
+
+    private UpdateTask.Params newParams(final BeerDatabaseHelper helper, final boolean cleanUpdate) {
+        return new UpdateTask.Params() {
+            @Override
+            MessageDigest getDigest() throws NoSuchAlgorithmException {
+                return MessageDigest.getInstance("MD5");
+            }
+
+            @Override
+            String[] getSources() {
+                return fContext.getResources().getStringArray(R.array.beer_list_urls);
+            }
+
+            @Override
+            InputStream openSource(final String url) throws IOException {
+                Log.i(TAG, "Fetching from: " + url);
+                return new URL(url).openStream();
+            }
+
+            @Override
+            String getSourceDigest(final String source) {
+                // Festivals name their feeds alike, so the digests are kept per festival.
+                return fAppPreferences.getSourceDigest(fFestival + "/" + source);
+            }
+
+            @Override
+            void setSourceDigest(final String source, final String digest) {
+                fAppPreferences.setSourceDigest(fFestival + "/" + source, digest);
+            }
+
+            @Override
+            String getSourceDigestWithoutStatuses(final String source) {
+                return fAppPreferences.getSourceDigestWithoutStatuses(fFestival + "/" + source);
+            }
+
+            @Override
+            void setSourceDigestWithoutStatuses(final String source, final String digest) {
+                fAppPreferences.setSourceDigestWithoutStatuses(fFestival + "/" + source, digest);
+            }
+
+            @Override
+            BeerDatabaseHelper getDatabaseHelper() {
+                return helper;
+            }
+
+            @Override
+            File getSnapshotFile() {
+                return BeerDatabaseHelper.getSnapshotFile(fContext);
+            }
+
+            @Override
+            boolean cleanUpdate() {
+                return cleanUpdate;
+            }
+
+            @Override
+            boolean updateDue() {
+                Date nextUpdate = fAppPreferences.getNextUpdateTime();
+                Log.i(TAG, "Beer update due after " + nextUpdate);
+                Date currentTime = new Date();
+                if (currentTime.after(nextUpdate)) {
+                    return true;
+                } else {
+                    try {
+                        return (helper.getBeers().getNumberOfBeers() == 0);
+                    } catch (Throwable t) {
+                        Log.e(TAG, "Failed to get beer count - assuming we need to update", t);
+                        return true;
+                    }
+                }
+            }
+        };
+    }
+}
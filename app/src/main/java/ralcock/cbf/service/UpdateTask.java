@@ -1,141 +1,360 @@
 package ralcock.cbf.service;
 
-import android.os.AsyncTask;
 import android.util.Log;
 import com.j256.ormlite.misc.TransactionManager;
-import org.json.JSONException;
-import ralcock.cbf.model.Beer;
 import ralcock.cbf.model.BeerDatabaseHelper;
-import ralcock.cbf.model.JsonBeerList;
+import ralcock.cbf.model.dao.BeerAccessException;
 import ralcock.cbf.model.dao.Beers;
-
+import ralcock.cbf.model.ingest.IngestPipeline;
+import ralcock.cbf.model.ingest.StagingWriter;
+import ralcock.cbf.model.ingest.StatusScanningInputStream;
+import ralcock.cbf.model.snapshot.CatalogSnapshotWriter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.Reader;
 import java.io.Serializable;
 import java.math.BigInteger;
 import java.security.DigestInputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 
-// TODO: Migrate from deprecated AsyncTask to WorkManager or Kotlin Coroutines
-// AsyncTask was deprecated in API 30 (Android 11)
-// Recommended alternatives:
-//   - WorkManager for deferrable background work
-//   - Kotlin Coroutines for asynchronous operations
-//   - ExecutorService with Handler for simple background tasks
-@SuppressWarnings("deprecation")
-public class UpdateTask extends AsyncTask<UpdateTask.Params, UpdateTask.Progress, UpdateTask.Result> {
+/**
+ * Downloads the festival beer list and ingests it if it has changed. Runs synchronously on the
+ * caller's thread; {@link UpdateService} runs it through a {@link ralcock.cbf.model.sync.SyncScheduler}
+ * so only one update is ever in progress. The download and parse run alongside, on the threads of
+ * an {@link IngestPipeline}, while this thread stages what they read. Once every source has been
+ * staged, or has failed, those staged to their end are applied to the catalog, each in a
+ * transaction of its own.
+ * <p>
+ * For most of a festival only the beers' statuses change between updates, so each source is first
+ * read for its statuses alone, and if nothing else in any source has changed since it was last
+ * ingested only the statuses are written. Otherwise the sources already downloaded are ingested
+ * from what was read, so none is downloaded twice.
+ */
+public class UpdateTask {
 
     private static final String TAG = UpdateTask.class.getName();
 
-    @Override
-    protected Result doInBackground(final Params... params) {
-        final Params param0 = params[0];
+    public interface ProgressListener {
+        void onProgress(Progress progress);
+    }
+
+    private final ProgressListener fProgressListener;
+
+    public UpdateTask(final ProgressListener progressListener) {
+        fProgressListener = progressListener;
+    }
 
+    public Result update(final Params param0) {
         if (!param0.cleanUpdate() && !param0.updateDue()) {
             return new NoUpdateRequiredResult();
         }
 
-        byte[] digest;
-        String jsonString;
+        final BeerDatabaseHelper helper = param0.getDatabaseHelper();
+        final String[] urls = param0.getSources();
+        final Map<String, byte[]> downloaded = new HashMap<>();
+        if (!param0.cleanUpdate()) {
+            Result refreshed = refreshStatuses(param0, urls, downloaded);
+            if (refreshed != null) {
+                return refreshed;
+            }
+        }
+
+        final List<SourceFeed> feeds = new ArrayList<>();
+        try {
+            for (String url : urls) {
+                feeds.add(new SourceFeed(param0, url, downloaded.remove(url)));
+            }
+        } catch (NoSuchAlgorithmException e) {
+            return new FailedUpdateResult(e);
+        }
+
+        final Map<String, String> digests = new HashMap<>();
+        for (String url : urls) {
+            digests.put(sourceName(url), param0.getSourceDigest(sourceName(url)));
+        }
+        final StagingWriter staging = new StagingWriter(helper.getStaging(), helper.getBeers(),
+                param0.cleanUpdate(), digests);
+        try {
+            IngestPipeline.Metrics metrics = new IngestPipeline().run(feeds, staging);
+            Log.d(TAG, "Ingest " + metrics + "; " + staging.getUnchanged() + " producers already staged.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new FailedUpdateResult(e);
+        } catch (BeerAccessException e) {
+            return new FailedUpdateResult(e);
+        }
+
+        // A clean update replaces everything, so it needs every source. What was staged is kept
+        // for the next attempt.
+        final Exception failure = staging.getFailure();
+        if (failure != null && param0.cleanUpdate()) {
+            return new FailedUpdateResult(failure);
+        }
 
+        final StagingWriter.ProgressListener progressListener = new StagingWriter.ProgressListener() {
+            public void onProgress(final int count, final int total) {
+                fProgressListener.onProgress(new Progress(count, total));
+            }
+        };
+        final Map<String, String> published;
         try {
-            InputStream inputStream = param0.openStream();
-            MessageDigest msgDigest = param0.getDigest();
-            DigestInputStream digestInputStream = new DigestInputStream(inputStream, msgDigest);
-            jsonString = readEntireStream(digestInputStream);
-            digest = msgDigest.digest();
-        } catch (IOException iox) {
-            return new FailedUpdateResult(iox);
-        } catch (NoSuchAlgorithmException nsax) {
-            return new FailedUpdateResult(nsax);
-        }
-
-        if (param0.cleanUpdate() || param0.needsUpdate(digest)) {
-            Log.d(TAG, "Beer list has changed, updating.");
-            // Update from JSON
-            try {
-                final JsonBeerList beerList = new JsonBeerList(jsonString);
-                final BeerDatabaseHelper helper = param0.getDatabaseHelper();
-                int count = TransactionManager.callInTransaction(helper.getConnectionSource(),
-                        new Callable<Integer>() {
-                            public Integer call() throws Exception {
-                                if (param0.cleanUpdate()) {
-                                    helper.deleteAll();
+            if (param0.cleanUpdate()) {
+                // The old catalog goes only if the new one replaces it, so all in one transaction.
+                published = TransactionManager.callInTransaction(helper.getConnectionSource(),
+                        new Callable<Map<String, String>>() {
+                            public Map<String, String> call() throws SQLException {
+                                helper.deleteFestival();
+                                Map<String, String> applied = staging.publish(progressListener);
+                                if (staging.getFailure() != null) {
+                                    throw new SQLException("Failed to publish every source", staging.getFailure());
                                 }
-                                return initializeDatabase(beerList, helper.getBeers());
+                                return applied;
                             }
                         });
-                Log.d(TAG, "Updated " + count + " beers.");
-                return new UpdateResult(count, toMD5String(digest));
-            } catch (JSONException e) {
-                return new FailedUpdateResult(e);
-            } catch (SQLException e) {
-                return new FailedUpdateResult(e);
+            } else {
+                published = staging.publish(progressListener);
+            }
+        } catch (SQLException e) {
+            return new FailedUpdateResult(e);
+        } catch (BeerAccessException e) {
+            return new FailedUpdateResult(e);
+        }
+        for (Map.Entry<String, String> source : published.entrySet()) {
+            param0.setSourceDigest(source.getKey(), source.getValue());
+        }
+        recordDigestsWithoutStatuses(param0, feeds, published);
+        if (published.isEmpty()) {
+            if (staging.getFailure() != null) {
+                return new FailedUpdateResult(staging.getFailure());
             }
-        } else {
-            // Nothing has changed.
             Log.d(TAG, "Beer list has not changed, not updating.");
             return new NoUpdateRequiredResult();
         }
+
+        final String catalogDigest = catalogDigest(param0, urls);
+        helper.getBeers().rebuildSearchIndex();
+        writeSnapshot(param0.getSnapshotFile(), catalogDigest, helper.getBeers());
+        Log.d(TAG, "Updated " + staging.getPublished() + " beers from " + published.size() + " of " + urls.length + " sources.");
+        return new UpdateResult(staging.getPublished(), catalogDigest);
     }
 
-    private static String toMD5String(final byte[] digest) {
-        BigInteger bigInt = new BigInteger(1, digest);
-        return bigInt.toString(16);
+    /**
+     * Refreshes just the beers' statuses, if they are all that has changed in any source since it
+     * was last ingested. Returns null if the catalog needs a full update instead: if a source has
+     * not been ingested with its digest without statuses, has changed in more than its statuses,
+     * or could not be read. Each source read to its end is kept in {@code downloaded}, by URL, for
+     * the full update to ingest.
+     */
+    private static Result refreshStatuses(final Params param0,
+                                          final String[] urls,
+                                          final Map<String, byte[]> downloaded) {
+        final Beers beers = param0.getDatabaseHelper().getBeers();
+        final Map<String, String> statuses = new HashMap<>();
+        final Map<String, String> changed = new HashMap<>();
+        try {
+            for (String url : urls) {
+                final String source = sourceName(url);
+                final String digestWithoutStatuses = param0.getSourceDigestWithoutStatuses(source);
+                if (digestWithoutStatuses.isEmpty() || beers.getNumberOfBeersFrom(source) == 0) {
+                    return null;
+                }
+                final MessageDigest digest = param0.getDigest();
+                final StatusScanningInputStream in = new StatusScanningInputStream(
+                        new DigestInputStream(param0.openSource(url), digest), param0.getDigest());
+                final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try {
+                    byte[] buffer = new byte[0x4000];
+                    int count;
+                    while ((count = in.read(buffer)) >= 0) {
+                        bytes.write(buffer, 0, count);
+                    }
+                } finally {
+                    in.close();
+                }
+                downloaded.put(url, bytes.toByteArray());
+
+                final String sourceDigest = toMD5String(digest.digest());
+                if (sourceDigest.equals(param0.getSourceDigest(source))) {
+                    continue;
+                }
+                if (!toMD5String(in.getMessageDigest().digest()).equals(digestWithoutStatuses)) {
+                    Log.d(TAG, source + " has changed in more than its statuses.");
+                    return null;
+                }
+                statuses.putAll(in.getStatuses());
+                changed.put(source, sourceDigest);
+            }
+        } catch (NoSuchAlgorithmException e) {
+            return new FailedUpdateResult(e);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to read statuses, updating in full.", e);
+            return null;
+        } catch (BeerAccessException e) {
+            return new FailedUpdateResult(e);
+        }
+        if (changed.isEmpty()) {
+            Log.d(TAG, "Beer list has not changed, not updating.");
+            return new NoUpdateRequiredResult();
+        }
+
+        final int count;
+        try {
+            count = beers.updateStatuses(statuses);
+        } catch (BeerAccessException e) {
+            return new FailedUpdateResult(e);
+        }
+        for (Map.Entry<String, String> source : changed.entrySet()) {
+            param0.setSourceDigest(source.getKey(), source.getValue());
+        }
+        if (count == 0) {
+            return new NoUpdateRequiredResult();
+        }
+        final String catalogDigest = catalogDigest(param0, urls);
+        writeSnapshot(param0.getSnapshotFile(), catalogDigest, beers);
+        Log.d(TAG, "Updated the status of " + count + " beers from " + changed.size() + " of " + urls.length + " sources.");
+        return new UpdateResult(count, catalogDigest);
     }
 
-    private static String readEntireStream(final InputStream inputStream) throws IOException {
-        Log.i(TAG, "Loading beer list from input stream.");
-        Reader reader = new InputStreamReader(inputStream);
-        StringBuilder builder = new StringBuilder();
-        final char[] buffer = new char[0x10000];
-        int read;
-        do {
-            read = reader.read(buffer);
-            if (read > 0) {
-                builder.append(buffer, 0, read);
+    /**
+     * Keeps each source's digest without statuses in step with its digest: recorded for the feeds
+     * read to their end that are now as ingested, and forgotten for those published from what an
+     * earlier update staged, which this one did not read.
+     */
+    private static void recordDigestsWithoutStatuses(final Params param0,
+                                                     final List<SourceFeed> feeds,
+                                                     final Map<String, String> published) {
+        for (SourceFeed feed : feeds) {
+            final String source = feed.getName();
+            if (feed.fSourceDigest != null && feed.fSourceDigest.equals(param0.getSourceDigest(source))) {
+                param0.setSourceDigestWithoutStatuses(source, feed.fSourceDigestWithoutStatuses);
+            } else if (published.containsKey(source)) {
+                param0.setSourceDigestWithoutStatuses(source, "");
             }
-        } while (read >= 0);
+        }
+    }
 
-        return builder.toString();
+    /**
+     * One of the festival's feeds, digested as it is downloaded, both whole and without its
+     * statuses. A feed already downloaded is read from its bytes instead.
+     */
+    private static final class SourceFeed implements IngestPipeline.Feed {
+        private final Params fParams;
+        private final String fUrl;
+        private final byte[] fDownloaded;
+        private final MessageDigest fDigest;
+        private final MessageDigest fDigestWithoutStatuses;
+
+        // Known once the feed has been read to its end.
+        private volatile String fSourceDigest;
+        private volatile String fSourceDigestWithoutStatuses;
+
+        SourceFeed(final Params params, final String url, final byte[] downloaded)
+                throws NoSuchAlgorithmException {
+            fParams = params;
+            fUrl = url;
+            fDownloaded = downloaded;
+            fDigest = params.getDigest();
+            fDigestWithoutStatuses = params.getDigest();
+        }
+
+        public String getName() {
+            return sourceName(fUrl);
+        }
+
+        public InputStream open() throws IOException {
+            final InputStream in = fDownloaded != null
+                    ? new ByteArrayInputStream(fDownloaded)
+                    : fParams.openSource(fUrl);
+            return new StatusScanningInputStream(new DigestInputStream(in, fDigest), fDigestWithoutStatuses);
+        }
+
+        public String getDigest() {
+            fSourceDigestWithoutStatuses = toMD5String(fDigestWithoutStatuses.digest());
+            fSourceDigest = toMD5String(fDigest.digest());
+            return fSourceDigest;
+        }
     }
 
-    private int initializeDatabase(JsonBeerList newBeers, Beers beers) {
-        final int size = newBeers.size();
-        int count = 0;
-        for (Beer beer : newBeers) {
-            beers.updateFromFestivalOrCreate(beer);
-            count++;
-            Progress p = new Progress(count, size);
-            publishProgress(p);
+    /**
+     * The name a source's beers are recorded under: the last segment of its URL, which is also
+     * the name of its file in the prebuilt catalog's feed.
+     */
+    static String sourceName(final String url) {
+        return url.substring(url.lastIndexOf('/') + 1);
+    }
 
-            // Makes the progress bar update
-            if ((count % 10) == 0) {
-                try {
-                    Thread.sleep(0, 1);
-                } catch (InterruptedException ix) {
-                    Thread.currentThread().interrupt();
-                }
+    /**
+     * Identifies the whole catalog as ingested: the digest of each source, in order.
+     */
+    private static String catalogDigest(final Params param0, final String[] urls) {
+        StringBuilder builder = new StringBuilder();
+        for (String url : urls) {
+            if (builder.length() > 0) {
+                builder.append(',');
             }
+            builder.append(param0.getSourceDigest(sourceName(url)));
+        }
+        return builder.toString();
+    }
+
+    private static String toMD5String(final byte[] digest) {
+        BigInteger bigInt = new BigInteger(1, digest);
+        return bigInt.toString(16);
+    }
+
+    private static void writeSnapshot(final File file, final String digest, final Beers beers) {
+        // Without a usable snapshot the list is read from the database, so this never fails the update.
+        try {
+            CatalogSnapshotWriter.write(file, digest, beers.getFestivalBeers());
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write catalog snapshot.", e);
+            file.delete();
+        } catch (BeerAccessException e) {
+            Log.w(TAG, "Failed to write catalog snapshot.", e);
+            file.delete();
         }
-        return count;
     }
 
     public static abstract class Params {
         abstract MessageDigest getDigest() throws NoSuchAlgorithmException;
 
-        abstract InputStream openStream() throws IOException;
+        /**
+         * The URLs of the festival's feeds.
+         */
+        abstract String[] getSources();
+
+        abstract InputStream openSource(final String url) throws IOException;
+
+        /**
+         * The digest of the named source when it was last ingested, or "" if it never was.
+         */
+        abstract String getSourceDigest(final String source);
+
+        abstract void setSourceDigest(final String source, final String digest);
+
+        /**
+         * The digest of the named source, leaving out its statuses, when it was last ingested, or
+         * "" if it is not known.
+         */
+        abstract String getSourceDigestWithoutStatuses(final String source);
+
+        abstract void setSourceDigestWithoutStatuses(final String source, final String digest);
 
         abstract BeerDatabaseHelper getDatabaseHelper();
 
-        abstract boolean cleanUpdate();
+        abstract File getSnapshotFile();
 
-        abstract boolean needsUpdate(final byte[] digest);
+        abstract boolean cleanUpdate();
 
         abstract boolean updateDue();
     }
@@ -159,7 +378,7 @@ public class UpdateTask extends AsyncTask<UpdateTask.Params, UpdateTask.Progress
         }
     }
 
-    public abstract class Result implements Serializable {
+    public static abstract class Result implements Serializable {
         private static final long serialVersionUID = 1L;
 
         public boolean success() {
@@ -179,11 +398,11 @@ public class UpdateTask extends AsyncTask<UpdateTask.Params, UpdateTask.Progress
         }
     }
 
-    public class NoUpdateRequiredResult extends Result {
+    public static class NoUpdateRequiredResult extends Result {
         private static final long serialVersionUID = 1L;
     }
 
-    public class UpdateResult extends Result {
+    public static class UpdateResult extends Result {
         private static final long serialVersionUID = 1L;
         private final int fCount;
         private final String fDigest;
@@ -204,7 +423,7 @@ public class UpdateTask extends AsyncTask<UpdateTask.Params, UpdateTask.Progress
         }
     }
 
-    private class FailedUpdateResult extends Result {
+    private static class FailedUpdateResult extends Result {
         private static final long serialVersionUID = 1L;
         private Throwable fThrowable;
 
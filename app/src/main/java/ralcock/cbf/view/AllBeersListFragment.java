@@ -1,8 +1,6 @@
 package ralcock.cbf.view;
 
-import ralcock.cbf.AppPreferences;
 import ralcock.cbf.model.BeerList;
-import ralcock.cbf.model.dao.Beers;
 
 public class AllBeersListFragment extends BeerListFragment {
     public AllBeersListFragment() {
@@ -10,8 +8,7 @@ public class AllBeersListFragment extends BeerListFragment {
     }
 
     @Override
-    BeerList makeBeerList(final Beers beers) {
-        AppPreferences preferences = new AppPreferences(this.getActivity());
-        return BeerList.allBeers(beers, preferences.getBeerListConfig());
+    BeerList.Type getListType() {
+        return BeerList.Type.ALL;
     }
 }
@@ -1,5 +1,7 @@
 package ralcock.cbf.view;
 
+import android.content.Intent;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import androidx.fragment.app.Fragment;
 import android.text.Spannable;
@@ -11,6 +13,7 @@ import android.view.ViewGroup;
 import android.widget.RatingBar;
 import android.widget.TextView;
 import android.widget.ImageView;
+import android.widget.LinearLayout;
 import android.view.View.OnClickListener;
 import com.j256.ormlite.android.apptools.OpenHelperManager;
 import ralcock.cbf.R;
@@ -18,10 +21,14 @@ import ralcock.cbf.actions.BeerSearcher;
 import ralcock.cbf.model.Beer;
 import ralcock.cbf.model.BeerDatabaseHelper;
 import ralcock.cbf.model.StarRating;
+import ralcock.cbf.model.dao.Beers;
+import java.util.List;
 import java.util.Locale;
 import android.view.View;
 
 public class BeerDetailsFragment extends Fragment {
+    private static final int MAX_SIMILAR_BEERS = 10;
+
     private BeerDetailsView fBeerDetailsView;
     private BeerDatabaseHelper fDBHelper;
 
@@ -46,6 +53,49 @@ public class BeerDetailsFragment extends Fragment {
         super.onActivityCreated(savedInstanceState);
         Beer beer = ((BeerDetailsActivity) getActivity()).getBeer();
         displayBeer(beer);
+        loadSimilarBeers(beer.getId());
+    }
+
+    /**
+     * Looks up the similar beers off the main thread, since the first lookup after start-up
+     * builds the in-memory indexes.
+     */
+    @SuppressWarnings("deprecation")
+    private void loadSimilarBeers(final long beerId) {
+        final Beers beers = getHelper().getBeers();
+        new AsyncTask<Void, Void, List<Beer>>() {
+            @Override
+            protected List<Beer> doInBackground(final Void... params) {
+                return beers.similarBeers(beerId, MAX_SIMILAR_BEERS);
+            }
+
+            @Override
+            protected void onPostExecute(final List<Beer> similarBeers) {
+                if (isAdded()) {
+                    displaySimilarBeers(similarBeers);
+                }
+            }
+        }.execute();
+    }
+
+    private void displaySimilarBeers(final List<Beer> similarBeers) {
+        fBeerDetailsView.SimilarBeers.removeAllViews();
+        fBeerDetailsView.SimilarBeersTitle.setVisibility(similarBeers.isEmpty() ? View.GONE : View.VISIBLE);
+        for (final Beer similar : similarBeers) {
+            TextView text = new TextView(getActivity());
+            text.setText(String.format(Locale.US, "%s, %s (%.1f%%)",
+                    similar.getName(), similar.getBrewery().getName(), similar.getAbv()));
+            text.setPadding(15, 10, 15, 10);
+            text.setOnClickListener(new OnClickListener() {
+                @Override
+                public void onClick(final View v) {
+                    Intent intent = new Intent(getActivity(), BeerDetailsActivity.class);
+                    intent.putExtra(BeerDetailsActivity.EXTRA_BEER_ID, similar.getId());
+                    startActivity(intent);
+                }
+            });
+            fBeerDetailsView.SimilarBeers.addView(text);
+        }
     }
 
     public void displayBeer(final Beer beer) {
@@ -125,6 +175,8 @@ public class BeerDetailsFragment extends Fragment {
         final ImageView BookmarkImage;
         final TextView BeerDispense;
         final TextView Allergens;
+        final TextView SimilarBeersTitle;
+        final LinearLayout SimilarBeers;
 
         private BeerDetailsView(final View view) {
             BeerNameAndAbv = (TextView) view.findViewById(R.id.detailsViewBeerNameAndAbv);
@@ -141,6 +193,8 @@ public class BeerDetailsFragment extends Fragment {
             BookmarkImage = (ImageView) view.findViewById(R.id.bookmark_image);
             BeerDispense = (TextView) view.findViewById(R.id.detailsViewBeerDispense);
             Allergens = (TextView) view.findViewById(R.id.detailsViewAllergens);
+            SimilarBeersTitle = (TextView) view.findViewById(R.id.detailsViewSimilarBeersTitle);
+            SimilarBeers = (LinearLayout) view.findViewById(R.id.detailsViewSimilarBeers);
         }
     }
 }
@@ -7,32 +7,44 @@ import android.view.View;
 import android.view.View.OnClickListener;
 import android.view.ViewGroup;
 import android.widget.BaseAdapter;
-import android.widget.Filter;
-import android.widget.Filterable;
 import android.widget.RatingBar;
+import android.widget.SectionIndexer;
 import android.widget.TextView;
 import android.widget.ImageView;
 import ralcock.cbf.R;
-import ralcock.cbf.model.Beer;
-import ralcock.cbf.model.BeerList;
-import ralcock.cbf.model.Brewery;
+import ralcock.cbf.model.SectionIndex;
 
-public final class BeerListAdapter extends BaseAdapter implements Filterable {
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Shows prebuilt {@link BeerListRow}s. Binding allocates nothing: the display strings are already
+ * formatted, each row view has a single click listener, and the bookmark icon and typeface are
+ * only changed when a recycled view switches between bookmarked and not. The fast-scroll sections
+ * come with the rows, already indexed.
+ */
+public final class BeerListAdapter extends BaseAdapter implements SectionIndexer {
 
     private final Context fContext;
-    private final BeerList fBeerList;
-    private final BeerFilter fFilter;
     private final BeerListFragment fBeerListFragment;
+    private List<BeerListRow> fRows = Collections.emptyList();
+    private SectionIndex fSections = SectionIndex.NONE;
 
     public BeerListAdapter(final Context context,
-            final BeerList beerList,
             final BeerListFragment fragment) {
         fContext = context;
-        fBeerList = beerList;
-        fFilter = new BeerFilter(this, fBeerList);
         fBeerListFragment = fragment;
     }
 
+    /**
+     * Replaces the rows shown, and their sections. Must be called on the main thread.
+     */
+    void setRows(final List<BeerListRow> rows, final SectionIndex sections) {
+        fRows = rows;
+        fSections = sections;
+        notifyDataSetChanged();
+    }
+
     @Override
     public boolean hasStableIds() {
         return false;
@@ -46,68 +58,52 @@ public final class BeerListAdapter extends BaseAdapter implements Filterable {
         return view;
     }
 
-    private void bindView(final View view, final Beer beer) {
+    private void bindView(final View view, final BeerListRow row) {
         BeerListItemView beerListItemView = (BeerListItemView) view.getTag();
-
-        Brewery brewery = beer.getBrewery();
-        beerListItemView.BreweryName.setText(brewery == null ? "<NULL_BREWERY>" : brewery.getName());
-
-        beerListItemView.BeerRatingBar.setRating(beer.getRating());
-
-        String beerText = beer.getName() + " (" + beer.getAbv() + "%)";
-        beerListItemView.BeerName.setText(beerText);
-
-        beerListItemView.BeerStatus.setText(beer.getStatus());
-        beerListItemView.BeerStyle.setText(beer.getStyle());
-        beerListItemView.BeerDispense.setText(beer.getDispenseMethod());
-
-        // Allergens display removed - hide the field
-        beerListItemView.BeerAllergens.setVisibility(View.GONE);
-
-        if (beer.isIsOnWishList()) {
-            beerListItemView.BookmarkImage.setImageResource(R.drawable.ic_bookmark_black_48dp);
-            beerListItemView.BeerName.setTypeface(beerListItemView.BeerName.getTypeface(),
-                    Typeface.BOLD_ITALIC);
-        } else {
-            beerListItemView.BookmarkImage.setImageResource(R.drawable.ic_bookmark_border_black_48dp);
-            beerListItemView.BeerName.setTypeface(beerListItemView.BeerName.getTypeface(),
-                    Typeface.BOLD);
-        }
-
-        beerListItemView.BookmarkImage.setClickable(true);
-        beerListItemView.BookmarkImage.setOnClickListener(new OnClickListener() {
-            @Override
-            public void onClick(View v) {
-                fBeerListFragment.toggleBookmark(beer);
-            }
-        });
+        beerListItemView.Row = row;
+
+        beerListItemView.BreweryName.setText(row.getBreweryName());
+        beerListItemView.BeerRatingBar.setRating(row.getRating());
+        beerListItemView.BeerName.setText(row.getBeerText());
+        beerListItemView.BeerStatus.setText(row.getStatus());
+        beerListItemView.BeerStyle.setText(row.getStyle());
+        beerListItemView.BeerDispense.setText(row.getDispenseMethod());
+        beerListItemView.showBookmarked(row.isBookmarked());
     }
 
     public int getCount() {
-        return fBeerList.getCount();
+        return fRows.size();
     }
 
     public Object getItem(final int i) {
-        return fBeerList.getBeerAt(i);
+        return fRows.get(i).getBeer();
     }
 
     public long getItemId(final int i) {
-        return fBeerList.getBeerAt(i).getId();
+        return fRows.get(i).getId();
+    }
+
+    public Object[] getSections() {
+        return fSections.getSections();
+    }
+
+    public int getPositionForSection(final int section) {
+        return fSections.getPositionForSection(section);
+    }
+
+    public int getSectionForPosition(final int position) {
+        return fSections.getSectionForPosition(position);
     }
 
     public View getView(final int i, View view, final ViewGroup viewGroup) {
         if (view == null) {
             view = newView(viewGroup);
         }
-        bindView(view, fBeerList.getBeerAt(i));
+        bindView(view, fRows.get(i));
         return view;
     }
 
-    public Filter getFilter() {
-        return fFilter;
-    }
-
-    private static final class BeerListItemView {
+    private final class BeerListItemView implements OnClickListener {
         TextView BreweryName;
         TextView BeerName;
         TextView BeerStyle;
@@ -117,6 +113,12 @@ public final class BeerListAdapter extends BaseAdapter implements Filterable {
         TextView BeerAllergens;
         ImageView BookmarkImage;
 
+        BeerListRow Row;
+
+        private final Typeface fBookmarkedTypeface;
+        private final Typeface fTypeface;
+        private Boolean fShowingBookmarked;
+
         BeerListItemView(final View view) {
             BreweryName = findTextViewById(view, R.id.breweryName);
             BeerName = findTextViewById(view, R.id.beerName);
@@ -126,6 +128,37 @@ public final class BeerListAdapter extends BaseAdapter implements Filterable {
             BeerDispense = findTextViewById(view, R.id.beerDispense);
             BeerAllergens = findTextViewById(view, R.id.beerAllergens);
             BookmarkImage = (ImageView) view.findViewById(R.id.bookmark_image);
+
+            // Allergens display removed - hide the field
+            BeerAllergens.setVisibility(View.GONE);
+
+            Typeface typeface = BeerName.getTypeface();
+            fBookmarkedTypeface = Typeface.create(typeface, Typeface.BOLD_ITALIC);
+            fTypeface = Typeface.create(typeface, Typeface.BOLD);
+
+            BookmarkImage.setClickable(true);
+            BookmarkImage.setOnClickListener(this);
+        }
+
+        void showBookmarked(final boolean bookmarked) {
+            if (fShowingBookmarked != null && fShowingBookmarked == bookmarked) {
+                return;
+            }
+            fShowingBookmarked = bookmarked;
+            if (bookmarked) {
+                BookmarkImage.setImageResource(R.drawable.ic_bookmark_black_48dp);
+                BeerName.setTypeface(fBookmarkedTypeface);
+            } else {
+                BookmarkImage.setImageResource(R.drawable.ic_bookmark_border_black_48dp);
+                BeerName.setTypeface(fTypeface);
+            }
+        }
+
+        @Override
+        public void onClick(final View v) {
+            if (Row != null) {
+                fBeerListFragment.toggleBookmark(Row.getId());
+            }
         }
 
         private TextView findTextViewById(final View view, final int id) {
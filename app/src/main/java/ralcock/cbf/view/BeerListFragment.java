@@ -1,7 +1,10 @@
 package ralcock.cbf.view;
 
 import android.content.Intent;
+import android.os.AsyncTask;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 import android.view.ContextMenu;
 import android.view.LayoutInflater;
@@ -10,11 +13,10 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.AdapterView;
 
-import androidx.activity.result.ActivityResultLauncher;
-import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.fragment.app.ListFragment;
 
 import com.j256.ormlite.android.apptools.OpenHelperManager;
+import ralcock.cbf.AppPreferences;
 import ralcock.cbf.CamBeerFestApplication;
 import ralcock.cbf.R;
 import ralcock.cbf.actions.BeerSearcher;
@@ -22,31 +24,29 @@ import ralcock.cbf.actions.BeerSharer;
 import ralcock.cbf.model.Beer;
 import ralcock.cbf.model.BeerDatabaseHelper;
 import ralcock.cbf.model.BeerList;
+import ralcock.cbf.model.SectionIndex;
 import ralcock.cbf.model.SortOrder;
 import ralcock.cbf.model.StatusToShow;
 import ralcock.cbf.model.dao.Beers;
+import ralcock.cbf.model.live.LiveBeerList;
+import ralcock.cbf.model.snapshot.CatalogSnapshot;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
 import java.util.Set;
 
 public abstract class BeerListFragment extends ListFragment implements ListChangedListener {
     private static final String TAG = BeerListFragment.class.getName();
 
     private BeerDatabaseHelper fDBHelper;
-    private BeerList fBeerList;
+    private LiveBeerList fLiveList;
     private BeerListAdapter fAdapter;
+    private final Handler fHandler = new Handler(Looper.getMainLooper());
 
     private BeerSharer fBeerSharer;
     private BeerSearcher fBeerSearcher;
 
-    private final ActivityResultLauncher<Intent> fBeerDetailsLauncher = registerForActivityResult(
-            new ActivityResultContracts.StartActivityForResult(),
-            result -> {
-                // Refresh the beer list when returning from details view
-                // (user may have toggled bookmark)
-                getCamBeerFestApplication().notifyBeersChanged();
-            }
-    );
-
     protected BeerListFragment() {
     }
 
@@ -56,7 +56,7 @@ public abstract class BeerListFragment extends ListFragment implements ListChang
         return inflater.inflate(R.layout.beer_listview_fragment, container, false);
     }
 
-    abstract BeerList makeBeerList(final Beers beers);
+    abstract BeerList.Type getListType();
 
     @Override
     public void onActivityCreated(final Bundle savedInstanceState) {
@@ -69,9 +69,15 @@ public abstract class BeerListFragment extends ListFragment implements ListChang
 
         application.addListChangedListener(this);
 
-        fBeerList = makeBeerList(getBeers());
-        fAdapter = new BeerListAdapter(getActivity(), fBeerList, this);
+        fAdapter = new BeerListAdapter(getActivity(), this);
         setListAdapter(fAdapter);
+        getListView().setFastScrollEnabled(true);
+
+        AppPreferences appPreferences = new AppPreferences(application);
+        loadRows(getHelper(),
+                BeerDatabaseHelper.getSnapshotFile(application),
+                appPreferences.getCatalogDigest(),
+                appPreferences.getBeerListConfig());
 
         // Add list click listener.
         getListView().setOnItemClickListener(new AdapterView.OnItemClickListener() {
@@ -79,7 +85,7 @@ public abstract class BeerListFragment extends ListFragment implements ListChang
                 Log.i(TAG, "Starting BeerDetails Activity with ID " + id);
                 Intent intent = new Intent(getActivity(), BeerDetailsActivity.class);
                 intent.putExtra(BeerDetailsActivity.EXTRA_BEER_ID, id);
-                fBeerDetailsLauncher.launch(intent);
+                startActivity(intent);
             }
         });
 
@@ -118,10 +124,14 @@ public abstract class BeerListFragment extends ListFragment implements ListChang
         }
     }
 
-    /* package */ void toggleBookmark(final Beer beer) {
+    /* package */ void toggleBookmark(final long id) {
+        // Rows may have come from the snapshot, so act on the stored beer rather than the row's.
+        toggleBookmark(getBeer(id));
+    }
+
+    private void toggleBookmark(final Beer beer) {
         beer.setIsOnWishList(!beer.isIsOnWishList());
         getBeers().updateBeer(beer);
-        getCamBeerFestApplication().notifyBeersChanged();
     }
 
     private Beer getBeer(final long id) {
@@ -136,43 +146,129 @@ public abstract class BeerListFragment extends ListFragment implements ListChang
     public void onDetach() {
         super.onDetach();
         getCamBeerFestApplication().removeListChangedListener(this);
+        changeList(new Runnable() {
+            public void run() {
+                fLiveList.close();
+            }
+        });
     }
 
     @Override
     public void filterTextChanged(final String filterText) {
-        fBeerList.filterBy(filterText);
-        fAdapter.notifyDataSetChanged();
+        changeList(new Runnable() {
+            public void run() {
+                fLiveList.filterBy(filterText);
+            }
+        });
     }
 
     @Override
     public void sortOrderChanged(final SortOrder sortOrder) {
-        fBeerList.sortBy(sortOrder);
-        fAdapter.notifyDataSetChanged();
+        changeList(new Runnable() {
+            public void run() {
+                fLiveList.sortBy(sortOrder);
+            }
+        });
     }
 
     @Override
     public void stylesToHideChanged(final Set<String> stylesToHide) {
-        fBeerList.stylesToHide(stylesToHide);
-        fAdapter.notifyDataSetChanged();
+        changeList(new Runnable() {
+            public void run() {
+                fLiveList.stylesToHide(stylesToHide);
+            }
+        });
     }
 
     @Override
     public void allergensToHideChanged(final Set<String> allergensToHide) {
-        fBeerList.allergensToHide(allergensToHide);
-        fAdapter.notifyDataSetChanged();
+        changeList(new Runnable() {
+            public void run() {
+                fLiveList.allergensToHide(allergensToHide);
+            }
+        });
     }
 
     @Override
     public void statusToShowChanged(final StatusToShow statusToShow) {
-        fBeerList.setStatusToShow(statusToShow);
-        fAdapter.notifyDataSetChanged();
+        changeList(new Runnable() {
+            public void run() {
+                fLiveList.setStatusToShow(statusToShow);
+            }
+        });
     }
 
-    @Override
-    public void beersChanged() {
-        Log.i(TAG, "beersChanged: notifying ListAdapter of changed DataSet.");
-        fBeerList.updateBeerList();
-        fAdapter.notifyDataSetChanged();
+    /**
+     * Starts observing the beer list. If the catalog snapshot is from the last update, rows
+     * selected from it are shown first, without waiting for the database to open; they are
+     * replaced by the query results, which also pick up ratings and bookmarks made since the
+     * snapshot was written. Runs on the same executor as {@link #changeList} so later changes see
+     * the live list.
+     */
+    @SuppressWarnings("deprecation")
+    private void loadRows(final BeerDatabaseHelper helper,
+                          final File snapshotFile,
+                          final String lastUpdateDigest,
+                          final BeerList.Config config) {
+        final BeerList.Type type = getListType();
+        new AsyncTask<Void, Void, Void>() {
+            @Override
+            protected Void doInBackground(final Void... params) {
+                List<Beer> preview = snapshotBeers(snapshotFile, lastUpdateDigest, type, config);
+                if (preview != null) {
+                    showRows(BeerListRow.of(preview), SectionIndex.of(preview, config.SortOrder));
+                }
+                fLiveList = helper.getBeers().observeBeerList(type, config, AsyncTask.SERIAL_EXECUTOR,
+                        new LiveBeerList.Observer() {
+                            public void beerListChanged(final LiveBeerList.Result result) {
+                                showRows(BeerListRow.of(result.getBeers()), result.getSections());
+                            }
+                        });
+                return null;
+            }
+        }.executeOnExecutor(AsyncTask.SERIAL_EXECUTOR);
+    }
+
+    /**
+     * Hands rows built off the main thread to the adapter, unless the fragment has gone.
+     */
+    private void showRows(final List<BeerListRow> rows, final SectionIndex sections) {
+        fHandler.post(new Runnable() {
+            public void run() {
+                if (isAdded()) {
+                    fAdapter.setRows(rows, sections);
+                }
+            }
+        });
+    }
+
+    private static List<Beer> snapshotBeers(final File snapshotFile,
+                                                  final String lastUpdateDigest,
+                                                  final BeerList.Type type,
+                                                  final BeerList.Config config) {
+        if (!snapshotFile.exists()) {
+            return null;
+        }
+        try {
+            CatalogSnapshot snapshot = CatalogSnapshot.open(snapshotFile);
+            if (!snapshot.getDigest().equals(lastUpdateDigest)) {
+                Log.i(TAG, "Ignoring catalog snapshot from a different update.");
+                return null;
+            }
+            return BeerList.select(snapshot.getBeers(), type, config);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to read catalog snapshot.", e);
+            return null;
+        }
+    }
+
+    /**
+     * Changes the live list's settings on the executor that made it, so the change follows
+     * {@link #loadRows}. The list queries again and delivers the rows to {@link #showRows}.
+     */
+    @SuppressWarnings("deprecation")
+    private void changeList(final Runnable change) {
+        AsyncTask.SERIAL_EXECUTOR.execute(change);
     }
 
     private BeerDatabaseHelper getHelper() {
@@ -0,0 +1,90 @@
+package ralcock.cbf.view;
+
+import ralcock.cbf.model.Beer;
+import ralcock.cbf.model.Brewery;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Everything a row of the beer list displays, formatted once when the list is produced so that
+ * binding a row while scrolling only assigns fields. Built off the main thread.
+ */
+final class BeerListRow {
+    static final String NULL_BREWERY = "<NULL_BREWERY>";
+
+    private final Beer fBeer;
+    private final String fBeerText;
+    private final String fBreweryName;
+    private final String fStyle;
+    private final String fStatus;
+    private final String fDispenseMethod;
+    private final float fRating;
+    private final boolean fBookmarked;
+
+    private BeerListRow(final Beer beer) {
+        fBeer = beer;
+        fBeerText = beer.getName() + " (" + beer.getAbv() + "%)";
+        Brewery brewery = beer.getBrewery();
+        fBreweryName = brewery == null ? NULL_BREWERY : brewery.getName();
+        fStyle = beer.getStyle();
+        fStatus = beer.getStatus();
+        fDispenseMethod = beer.getDispenseMethod();
+        fRating = beer.getRating();
+        fBookmarked = beer.isIsOnWishList();
+    }
+
+    static BeerListRow of(final Beer beer) {
+        return new BeerListRow(beer);
+    }
+
+    static List<BeerListRow> of(final List<Beer> beers) {
+        List<BeerListRow> rows = new ArrayList<>(beers.size());
+        for (Beer beer : beers) {
+            rows.add(of(beer));
+        }
+        return Collections.unmodifiableList(rows);
+    }
+
+    /**
+     * The beer this row was built from, for actions on it. Its display state is as it was when
+     * the row was built, and it may be a summary, without a description or comments; see
+     * {@code Beers.allBeersList}.
+     */
+    Beer getBeer() {
+        return fBeer;
+    }
+
+    long getId() {
+        return fBeer.getId();
+    }
+
+    String getBeerText() {
+        return fBeerText;
+    }
+
+    String getBreweryName() {
+        return fBreweryName;
+    }
+
+    String getStyle() {
+        return fStyle;
+    }
+
+    String getStatus() {
+        return fStatus;
+    }
+
+    String getDispenseMethod() {
+        return fDispenseMethod;
+    }
+
+    float getRating() {
+        return fRating;
+    }
+
+    boolean isBookmarked() {
+        return fBookmarked;
+    }
+}
@@ -15,6 +15,4 @@ public interface ListChangedListener {
     void allergensToHideChanged(final Set<String> allergensToHide);
 
     void statusToShowChanged(final StatusToShow statusToShow);
-
-    void beersChanged();
 }
@@ -1,8 +1,6 @@
 package ralcock.cbf.view;
 
-import ralcock.cbf.AppPreferences;
 import ralcock.cbf.model.BeerList;
-import ralcock.cbf.model.dao.Beers;
 
 public class LowNoAlcoholListFragment extends BeerListFragment {
     public LowNoAlcoholListFragment() {
@@ -10,9 +8,8 @@ public class LowNoAlcoholListFragment extends BeerListFragment {
     }
 
     @Override
-    BeerList makeBeerList(final Beers beers) {
-        AppPreferences preferences = new AppPreferences(this.getActivity());
-        return BeerList.lowNoAlcoholBeers(beers, preferences.getBeerListConfig());
+    BeerList.Type getListType() {
+        return BeerList.Type.LOW_NO;
     }
 
 }
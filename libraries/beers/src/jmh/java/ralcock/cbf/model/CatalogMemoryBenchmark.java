@@ -0,0 +1,140 @@
+package ralcock.cbf.model;
+
+import com.j256.ormlite.dao.DaoManager;
+import com.j256.ormlite.jdbc.JdbcConnectionSource;
+import com.j256.ormlite.misc.TransactionManager;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ralcock.cbf.model.dao.BeersImpl;
+import ralcock.cbf.model.dao.BreweriesImpl;
+import ralcock.cbf.model.dao.CatalogSchema;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The heap a catalog keeps once it has been read: the festival's beers as the database reads them,
+ * and a feed as the parser reads it. Reported as the retainedBytes counter, the growth of the
+ * used heap, after a full collection, while the beers are held. Run as single shots, since each
+ * measurement collects garbage first; JMH prints each iteration's count and sums them in the
+ * summary.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class CatalogMemoryBenchmark {
+
+    @Param({"1000", "10000"})
+    public int fBeerCount;
+
+    private JdbcConnectionSource fConnectionSource;
+    private BeersImpl fBeers;
+    private String fFeed;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Retained {
+        public long retainedBytes;
+    }
+
+    @Setup
+    public void setUp() throws Exception {
+        final List<Beer> beers = SyntheticCatalog.beers(fBeerCount, 42);
+        fFeed = feed(beers);
+
+        fConnectionSource = new JdbcConnectionSource("jdbc:sqlite::memory:");
+        CatalogSchema.createTables(fConnectionSource);
+        fBeers = DaoManager.createDao(fConnectionSource, Beer.class);
+        BreweriesImpl breweries = DaoManager.createDao(fConnectionSource, Brewery.class);
+        fBeers.setBreweries(breweries);
+        fBeers.setFestival("cbf2025");
+        TransactionManager.callInTransaction(fConnectionSource, new Callable<Void>() {
+            public Void call() {
+                for (Beer beer : beers) {
+                    beer.setId(0);
+                    beer.getBrewery().setId(0);
+                    fBeers.updateFromFestivalOrCreate(beer);
+                }
+                return null;
+            }
+        });
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        fConnectionSource.close();
+        DaoManager.clearCache();
+    }
+
+    /**
+     * The beers as a feed, with each value a string of its own, as the parser would find it.
+     */
+    private static String feed(final List<Beer> beers) {
+        Map<String, JSONObject> producers = new LinkedHashMap<>();
+        for (Beer beer : beers) {
+            Brewery brewery = beer.getBrewery();
+            JSONObject producer = producers.get(brewery.getFestivalID());
+            if (producer == null) {
+                producer = new JSONObject()
+                        .put("id", brewery.getFestivalID())
+                        .put("name", brewery.getName())
+                        .put("notes", brewery.getDescription())
+                        .put("products", new JSONArray());
+                producers.put(brewery.getFestivalID(), producer);
+            }
+            producer.getJSONArray("products").put(new JSONObject()
+                    .put("id", beer.getFestivalID())
+                    .put("name", beer.getName())
+                    .put("notes", beer.getDescription())
+                    .put("abv", beer.getAbv())
+                    .put("style", beer.getStyle())
+                    .put("status_text", beer.getStatus())
+                    .put("dispense", beer.getDispenseMethod())
+                    .put("category", beer.getCategory()));
+        }
+        return new JSONObject().put("producers", new JSONArray(producers.values())).toString();
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @Benchmark
+    public Object readCatalog(final Retained retained) {
+        long before = usedHeap();
+        List<Beer> beers = fBeers.getFestivalBeers();
+        retained.retainedBytes = usedHeap() - before;
+        return beers;
+    }
+
+    @Benchmark
+    public Object parseFeed(final Retained retained) throws Exception {
+        long before = usedHeap();
+        JsonBeerList beers = new JsonBeerList(fFeed);
+        retained.retainedBytes = usedHeap() - before;
+        return beers;
+    }
+}
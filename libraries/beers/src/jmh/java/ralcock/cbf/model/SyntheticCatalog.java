@@ -0,0 +1,84 @@
+package ralcock.cbf.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates festival-sized catalogues with realistic name, style and status distributions for the
+ * benchmarks. The same seed always produces the same catalogue.
+ */
+public final class SyntheticCatalog {
+
+    private static final String[] BREWERY_WORDS = {
+        "Adnams", "Oakham", "Thornbridge", "Milton", "Elgood's", "Woodforde's", "Moonshine",
+        "Timothy", "Taylor", "Harvey's", "Fuller's", "Dark", "Star", "Hopback", "Brewster's",
+        "K\u00f6lsch", "Haus", "Castle", "Rock", "Valley", "Old", "Mill", "Station", "Abbey", "Bridge"
+    };
+
+    private static final String[] BEER_WORDS = {
+        "Ghost", "Ship", "Broadside", "Citra", "Jaipur", "Landlord", "Summer", "Lightning",
+        "Golden", "Best", "Bitter", "Porter", "Stout", "Mild", "Green", "Devil", "Session",
+        "Pale", "Amber", "Ruby", "Black", "Oat", "Smoked", "Harvest", "Winter", "Warmer",
+        "Hop", "Head", "Twisted", "Wheel", "Halo", "Nectar", "Fen", "Tiger", "Bishop's", "Finger"
+    };
+
+    private static final String[] STYLES = {
+        "Bitter", "Best Bitter", "Golden Ale", "Pale Ale", "IPA", "Mild", "Porter", "Stout",
+        "Old Ale", "Barley Wine", "Wheat Beer", "K\u00f6lsch", "Lager", "Saison", "Sour", "Speciality"
+    };
+
+    private static final String[] STATUSES = {"Available", "Available", "Available", "Sold Out", "Arrived", "Ordered"};
+
+    private static final String[] DISPENSES = {"cask", "cask", "keg", "bottle", "can"};
+
+    private static final String[] NOTES = {
+        "A well balanced bitter with a long dry finish and plenty of English hop character.",
+        "Pale and refreshing with tropical fruit aromas from generous late additions of Citra hops.",
+        "Dark and roasty with notes of coffee, chocolate and a hint of liquorice on the finish.",
+        "Brewed with locally grown barley and a blend of traditional and new world hop varieties.",
+        "Light, crisp and clean with a delicate floral aroma and a gentle bitterness."
+    };
+
+    private SyntheticCatalog() {
+        // Utility class
+    }
+
+    public static List<Beer> beers(final int count, final long seed) {
+        final Random random = new Random(seed);
+        final int breweryCount = Math.max(1, count / 8);
+        final List<Brewery> breweries = new ArrayList<>(breweryCount);
+        for (int i = 0; i < breweryCount; i++) {
+            String name = pick(random, BREWERY_WORDS) + " " + pick(random, BREWERY_WORDS) + " " + i;
+            breweries.add(new Brewery("brewery-" + i, name, "Founded " + (1800 + random.nextInt(220))));
+        }
+
+        final List<Beer> beers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Brewery brewery = breweries.get(random.nextInt(breweryCount));
+            String name = pick(random, BEER_WORDS) + " " + pick(random, BEER_WORDS);
+            boolean lowNo = random.nextInt(20) == 0;
+            Beer beer = new Beer("beer-" + i,
+                    name,
+                    lowNo ? 0.5f : 3.0f + random.nextInt(60) / 10.0f,
+                    pick(random, NOTES),
+                    pick(random, STYLES),
+                    pick(random, STATUSES),
+                    pick(random, DISPENSES),
+                    random.nextInt(3) == 0 ? "gluten" : "",
+                    lowNo ? "low-no" : "beer",
+                    brewery);
+            beer.setId(i + 1);
+            if (random.nextInt(10) == 0) {
+                beer.setNumberOfStars(new StarRating(1 + random.nextInt(5)));
+            }
+            beer.setIsOnWishList(random.nextInt(15) == 0);
+            beers.add(beer);
+        }
+        return beers;
+    }
+
+    private static String pick(final Random random, final String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+}
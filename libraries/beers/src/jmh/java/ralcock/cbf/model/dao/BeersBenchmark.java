@@ -0,0 +1,129 @@
+package ralcock.cbf.model.dao;
+
+import com.j256.ormlite.dao.DaoManager;
+import com.j256.ormlite.jdbc.JdbcConnectionSource;
+import com.j256.ormlite.misc.TransactionManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ralcock.cbf.model.Beer;
+import ralcock.cbf.model.BeerList;
+import ralcock.cbf.model.Brewery;
+import ralcock.cbf.model.SortOrder;
+import ralcock.cbf.model.StarRating;
+import ralcock.cbf.model.SyntheticCatalog;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The same catalog work on each catalog engine: ORMLite on SQLite, as the app runs it, and the
+ * in-memory engine. Compare them per operation to choose an engine for a class of device.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BeersBenchmark {
+
+    @Param({"1000", "10000"})
+    public int fBeerCount;
+
+    @Param({"ormlite", "memory"})
+    public String fEngine;
+
+    private JdbcConnectionSource fConnectionSource;
+    private Beers fBeers;
+    private Beer fRated;
+    private int fStars;
+    private final BeerList.Config fConfig = new BeerList.Config();
+    private final BeerList.Config fSearchConfig = new BeerList.Config().withSearchText("porter");
+    private final BeerList.Config fByRatingConfig = new BeerList.Config().withSortOrder(SortOrder.BEER_RATING_DESC);
+
+    @Setup
+    public void setUp() throws Exception {
+        if ("memory".equals(fEngine)) {
+            fBeers = new InMemoryBeers();
+        } else {
+            fConnectionSource = new JdbcConnectionSource("jdbc:sqlite::memory:");
+            CatalogSchema.createTables(fConnectionSource);
+            BeersImpl beers = DaoManager.createDao(fConnectionSource, Beer.class);
+            BreweriesImpl breweries = DaoManager.createDao(fConnectionSource, Brewery.class);
+            beers.setBreweries(breweries);
+            fBeers = beers;
+        }
+        fBeers.setFestival("cbf2025");
+        ingest();
+        fBeers.rebuildSearchIndex();
+        fRated = fBeers.getFestivalBeers().get(fBeerCount / 2);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        if (fConnectionSource != null) {
+            fConnectionSource.close();
+            DaoManager.clearCache();
+        }
+    }
+
+    private int ingest() throws Exception {
+        final List<Beer> beers = SyntheticCatalog.beers(fBeerCount, 42);
+        Callable<Integer> ingest = new Callable<Integer>() {
+            public Integer call() {
+                for (Beer beer : beers) {
+                    // Upserted by festival id, as an update does.
+                    beer.setId(0);
+                    beer.getBrewery().setId(0);
+                    fBeers.updateFromFestivalOrCreate(beer);
+                }
+                return beers.size();
+            }
+        };
+        return fConnectionSource == null ? ingest.call() : TransactionManager.callInTransaction(fConnectionSource, ingest);
+    }
+
+    @Benchmark
+    public int reingest() throws Exception {
+        return ingest();
+    }
+
+    @Benchmark
+    public int allBeers() {
+        return BeerList.allBeers(fBeers, fConfig).getCount();
+    }
+
+    @Benchmark
+    public int search() {
+        return BeerList.allBeers(fBeers, fSearchConfig).getCount();
+    }
+
+    @Benchmark
+    public int byRating() {
+        return BeerList.allBeers(fBeers, fByRatingConfig).getCount();
+    }
+
+    @Benchmark
+    public int styles() {
+        return fBeers.getAvailableStyles().size() + fBeers.getAvailableAllergens().size();
+    }
+
+    @Benchmark
+    public long rate() {
+        fStars = fStars % 5 + 1;
+        fRated.setNumberOfStars(new StarRating(fStars));
+        fBeers.updateBeer(fRated);
+        return fRated.getId();
+    }
+}
@@ -0,0 +1,107 @@
+package ralcock.cbf.model.dao;
+
+import com.j256.ormlite.dao.BaseDaoImpl;
+import com.j256.ormlite.dao.DaoManager;
+import com.j256.ormlite.jdbc.JdbcConnectionSource;
+import com.j256.ormlite.misc.TransactionManager;
+import com.j256.ormlite.stmt.SelectArg;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ralcock.cbf.model.Beer;
+import ralcock.cbf.model.Brewery;
+import ralcock.cbf.model.StarRating;
+import ralcock.cbf.model.SyntheticCatalog;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading and writing beers through the generated row mappers, as BeersImpl does, against
+ * ORMLite's reflection, which refreshes each beer's brewery with a query of its own.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RowMapperBenchmark {
+
+    private static final String FESTIVAL = "cbf2025";
+
+    @Param({"1000", "10000"})
+    public int fBeerCount;
+
+    private JdbcConnectionSource fConnectionSource;
+    private BeersImpl fBeers;
+    private BaseDaoImpl<Beer, Long> fReflective;
+    private Beer fRated;
+    private int fStars;
+
+    @Setup
+    public void setUp() throws Exception {
+        fConnectionSource = new JdbcConnectionSource("jdbc:sqlite::memory:");
+        CatalogSchema.createTables(fConnectionSource);
+        fBeers = DaoManager.createDao(fConnectionSource, Beer.class);
+        BreweriesImpl breweries = DaoManager.createDao(fConnectionSource, Brewery.class);
+        fBeers.setBreweries(breweries);
+        fBeers.setFestival(FESTIVAL);
+        fReflective = new BaseDaoImpl<Beer, Long>(fConnectionSource, Beer.class) {
+        };
+
+        final List<Beer> beers = SyntheticCatalog.beers(fBeerCount, 42);
+        TransactionManager.callInTransaction(fConnectionSource, new Callable<Void>() {
+            public Void call() {
+                for (Beer beer : beers) {
+                    beer.setId(0);
+                    beer.getBrewery().setId(0);
+                    fBeers.updateFromFestivalOrCreate(beer);
+                }
+                return null;
+            }
+        });
+        fRated = fBeers.getFestivalBeers().get(fBeerCount / 2);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        fConnectionSource.close();
+        DaoManager.clearCache();
+    }
+
+    @Benchmark
+    public int readGenerated() {
+        return fBeers.getFestivalBeers().size();
+    }
+
+    @Benchmark
+    public int readReflective() throws Exception {
+        return fReflective.queryBuilder().where().eq(Beer.FESTIVAL_FIELD, new SelectArg(FESTIVAL)).query().size();
+    }
+
+    @Benchmark
+    public long updateGenerated() {
+        fStars = fStars % 5 + 1;
+        fRated.setNumberOfStars(new StarRating(fStars));
+        fBeers.updateBeer(fRated);
+        return fRated.getId();
+    }
+
+    @Benchmark
+    public int updateReflective() throws Exception {
+        fStars = fStars % 5 + 1;
+        fRated.setNumberOfStars(new StarRating(fStars));
+        return fReflective.update(fRated);
+    }
+}
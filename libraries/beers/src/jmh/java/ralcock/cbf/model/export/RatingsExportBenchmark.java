@@ -0,0 +1,104 @@
+package ralcock.cbf.model.export;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ralcock.cbf.model.Beer;
+import ralcock.cbf.model.SyntheticCatalog;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Export throughput for a 100k row tasting log, against the previous approach of formatting the
+ * whole CSV into one string. Run with {@code -prof gc} to compare allocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RatingsExportBenchmark {
+
+    @Param({"100000"})
+    public int fRowCount;
+
+    @Param({"csv", "json"})
+    public String fFormat;
+
+    private List<Beer> fBeers;
+    private RatingsExport fExport;
+    private ExportFormat fExportFormat;
+
+    /**
+     * Discards everything written to it, so only the export itself is measured.
+     */
+    private static final class CountingWriter extends Writer {
+        long fCount;
+
+        @Override
+        public void write(final int c) {
+            fCount++;
+        }
+
+        @Override
+        public void write(final String str, final int off, final int len) {
+            fCount += len;
+        }
+
+        @Override
+        public void write(final char[] buf, final int off, final int len) {
+            fCount += len;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        fBeers = SyntheticCatalog.beers(fRowCount, 42);
+        // Beer ids are 1..n, so a page is a sub-list.
+        fExport = new RatingsExport(new RatingsExport.Source() {
+            public List<Beer> page(final long afterId, final int limit) {
+                int from = (int) Math.min(afterId, fBeers.size());
+                return fBeers.subList(from, Math.min(from + limit, fBeers.size()));
+            }
+        }, RatingsExport.DEFAULT_PAGE_SIZE);
+        fExportFormat = "json".equals(fFormat) ? new JsonExportFormat() : new CsvExportFormat();
+    }
+
+    @Benchmark
+    public long streaming() throws IOException {
+        CountingWriter out = new CountingWriter();
+        fExport.writeTo(fExportFormat, out);
+        return out.fCount;
+    }
+
+    @Benchmark
+    public int singleString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("%s, %s, %s, %s\n", "Beer", "Brewery", "Style", "Rating"));
+        for (Beer b : fBeers) {
+            builder.append(String.format("\"%s\", \"%s\", \"%s\", %d\n",
+                    b.getName(), b.getBrewery().getName(), b.getStyle(), b.getRating()));
+        }
+        return builder.toString().length();
+    }
+}
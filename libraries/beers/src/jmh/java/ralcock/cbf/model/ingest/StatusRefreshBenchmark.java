@@ -0,0 +1,144 @@
+package ralcock.cbf.model.ingest;
+
+import com.j256.ormlite.dao.DaoManager;
+import com.j256.ormlite.jdbc.JdbcConnectionSource;
+import com.j256.ormlite.misc.TransactionManager;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ralcock.cbf.model.Beer;
+import ralcock.cbf.model.Brewery;
+import ralcock.cbf.model.JsonBeerList;
+import ralcock.cbf.model.SyntheticCatalog;
+import ralcock.cbf.model.dao.BeersImpl;
+import ralcock.cbf.model.dao.BreweriesImpl;
+import ralcock.cbf.model.dao.CatalogSchema;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A refresh in which one beer in twenty has sold out, or come back, applied by re-ingesting the
+ * whole feed and by reading and writing just the statuses. Each invocation alternates between
+ * the two feeds, so every refresh has statuses to change.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StatusRefreshBenchmark {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Param({"1000", "10000"})
+    public int fBeerCount;
+
+    private JdbcConnectionSource fConnectionSource;
+    private BeersImpl fBeers;
+    private final byte[][] fFeeds = new byte[2][];
+    private int fNext;
+
+    @Setup
+    public void setUp() throws Exception {
+        final List<Beer> beers = SyntheticCatalog.beers(fBeerCount, 42);
+        fFeeds[0] = feed(beers).getBytes(UTF_8);
+        for (int i = 0; i < beers.size(); i += 20) {
+            Beer beer = beers.get(i);
+            beer.setStatus("Sold Out".equals(beer.getStatus()) ? "Available" : "Sold Out");
+        }
+        fFeeds[1] = feed(beers).getBytes(UTF_8);
+
+        fConnectionSource = new JdbcConnectionSource("jdbc:sqlite::memory:");
+        CatalogSchema.createTables(fConnectionSource);
+        fBeers = DaoManager.createDao(fConnectionSource, Beer.class);
+        BreweriesImpl breweries = DaoManager.createDao(fConnectionSource, Brewery.class);
+        fBeers.setBreweries(breweries);
+        fBeers.setFestival("cbf2025");
+        fullRefresh();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        fConnectionSource.close();
+        DaoManager.clearCache();
+    }
+
+    private static String feed(final List<Beer> beers) {
+        Map<String, JSONObject> producers = new LinkedHashMap<>();
+        for (Beer beer : beers) {
+            Brewery brewery = beer.getBrewery();
+            JSONObject producer = producers.get(brewery.getFestivalID());
+            if (producer == null) {
+                producer = new JSONObject()
+                        .put("id", brewery.getFestivalID())
+                        .put("name", brewery.getName())
+                        .put("notes", brewery.getDescription())
+                        .put("products", new JSONArray());
+                producers.put(brewery.getFestivalID(), producer);
+            }
+            producer.getJSONArray("products").put(new JSONObject()
+                    .put("id", beer.getFestivalID())
+                    .put("name", beer.getName())
+                    .put("notes", beer.getDescription())
+                    .put("abv", beer.getAbv())
+                    .put("style", beer.getStyle())
+                    .put("status_text", beer.getStatus())
+                    .put("dispense", beer.getDispenseMethod())
+                    .put("category", beer.getCategory()));
+        }
+        return new JSONObject().put("producers", new JSONArray(producers.values())).toString();
+    }
+
+    private byte[] nextFeed() {
+        fNext ^= 1;
+        return fFeeds[fNext];
+    }
+
+    @Benchmark
+    public int fullRefresh() throws Exception {
+        final JsonBeerList beers = new JsonBeerList(new String(nextFeed(), UTF_8));
+        return TransactionManager.callInTransaction(fConnectionSource, new Callable<Integer>() {
+            public Integer call() {
+                for (Beer beer : beers) {
+                    fBeers.updateFromFestivalOrCreate(beer);
+                }
+                return beers.size();
+            }
+        });
+    }
+
+    @Benchmark
+    public int statusRefresh() throws Exception {
+        StatusScanningInputStream in = new StatusScanningInputStream(
+                new ByteArrayInputStream(nextFeed()), MessageDigest.getInstance("MD5"));
+        // Kept as the app keeps it, in case more than the statuses has changed.
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[0x4000];
+        int count;
+        while ((count = in.read(buffer)) >= 0) {
+            bytes.write(buffer, 0, count);
+        }
+        in.getMessageDigest().digest();
+        return fBeers.updateStatuses(in.getStatuses());
+    }
+}
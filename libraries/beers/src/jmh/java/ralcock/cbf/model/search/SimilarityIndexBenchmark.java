@@ -0,0 +1,56 @@
+package ralcock.cbf.model.search;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ralcock.cbf.model.Beer;
+import ralcock.cbf.model.SyntheticCatalog;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Similar beer lookup latency at festival scale. The target is a few milliseconds for the top 10
+ * at 10k beers. The synthetic catalog has only a handful of descriptions, so every description
+ * term is shared by a fifth of the beers, which is worse than a real festival.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SimilarityIndexBenchmark {
+
+    @Param({"1000", "10000"})
+    public int fBeerCount;
+
+    private List<Beer> fBeers;
+    private SimilarityIndex fIndex;
+    private long fNextId;
+
+    @Setup
+    public void setUp() {
+        fBeers = SyntheticCatalog.beers(fBeerCount, 42);
+        fIndex = SimilarityIndex.forBeers(fBeers);
+    }
+
+    @Benchmark
+    public List<Long> similarTo() {
+        fNextId = fNextId % fBeerCount + 1;
+        return fIndex.similarTo(fNextId, 10);
+    }
+
+    @Benchmark
+    public SimilarityIndex build() {
+        return SimilarityIndex.forBeers(fBeers);
+    }
+}
@@ -0,0 +1,56 @@
+package ralcock.cbf.model.search;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ralcock.cbf.model.Beer;
+import ralcock.cbf.model.SyntheticCatalog;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Completion latency per keystroke. One-letter prefixes are the worst case as they match the
+ * widest range of keys.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SuggestionIndexBenchmark {
+
+    @Param({"1000", "10000"})
+    public int fBeerCount;
+
+    @Param({"a", "ip", "kol", "old mi"})
+    public String fPrefix;
+
+    private List<Beer> fBeers;
+    private SuggestionIndex fIndex;
+
+    @Setup
+    public void setUp() {
+        fBeers = SyntheticCatalog.beers(fBeerCount, 42);
+        fIndex = SuggestionIndex.forBeers(fBeers);
+    }
+
+    @Benchmark
+    public List<SuggestionIndex.Suggestion> suggest() {
+        return fIndex.suggest(fPrefix, 8);
+    }
+
+    @Benchmark
+    public SuggestionIndex build() {
+        return SuggestionIndex.forBeers(fBeers);
+    }
+}
@@ -0,0 +1,55 @@
+package ralcock.cbf.model.search;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ralcock.cbf.model.Beer;
+import ralcock.cbf.model.SyntheticCatalog;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fuzzy lookup latency at festival scale. The target is under 10 ms per query at 10k beers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrigramIndexBenchmark {
+
+    @Param({"1000", "10000"})
+    public int fBeerCount;
+
+    @Param({"adnmas", "thornbrige jaipor", "kolsch", "ghost"})
+    public String fQuery;
+
+    private List<Beer> fBeers;
+    private TrigramIndex fIndex;
+
+    @Setup
+    public void setUp() {
+        fBeers = SyntheticCatalog.beers(fBeerCount, 42);
+        fIndex = TrigramIndex.forBeers(fBeers);
+    }
+
+    @Benchmark
+    public List<TrigramIndex.Match> search() {
+        return fIndex.search(fQuery, 20);
+    }
+
+    @Benchmark
+    public TrigramIndex build() {
+        return TrigramIndex.forBeers(fBeers);
+    }
+}
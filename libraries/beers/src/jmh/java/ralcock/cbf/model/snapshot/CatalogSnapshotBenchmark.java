@@ -0,0 +1,106 @@
+package ralcock.cbf.model.snapshot;
+
+import com.j256.ormlite.dao.DaoManager;
+import com.j256.ormlite.jdbc.JdbcConnectionSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ralcock.cbf.model.Beer;
+import ralcock.cbf.model.BeerList;
+import ralcock.cbf.model.Brewery;
+import ralcock.cbf.model.SyntheticCatalog;
+import ralcock.cbf.model.dao.BeersImpl;
+import ralcock.cbf.model.dao.BreweriesImpl;
+import ralcock.cbf.model.dao.CatalogSchema;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to the first screen of the beer list on a cold start: mapping the snapshot and selecting
+ * from it, against opening a file database, creating the DAOs and running the list query.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CatalogSnapshotBenchmark {
+
+    @Param({"1000", "10000"})
+    public int fBeerCount;
+
+    private File fDirectory;
+    private File fSnapshotFile;
+    private String fDatabaseUrl;
+    private final BeerList.Config fConfig = new BeerList.Config();
+
+    @Setup
+    public void setUp() throws Exception {
+        fDirectory = File.createTempFile("snapshot-benchmark", "");
+        fDirectory.delete();
+        fDirectory.mkdirs();
+
+        List<Beer> beers = SyntheticCatalog.beers(fBeerCount, 42);
+        fDatabaseUrl = "jdbc:h2:" + new File(fDirectory, "beers").getAbsolutePath();
+        JdbcConnectionSource connectionSource = new JdbcConnectionSource(fDatabaseUrl);
+        try {
+            CatalogSchema.createTables(connectionSource);
+            BreweriesImpl breweries = DaoManager.createDao(connectionSource, Brewery.class);
+            BeersImpl beersDao = DaoManager.createDao(connectionSource, Beer.class);
+            Set<Brewery> created = new HashSet<>();
+            for (Beer beer : beers) {
+                if (created.add(beer.getBrewery())) {
+                    breweries.create(beer.getBrewery());
+                }
+                beersDao.create(beer);
+            }
+            fSnapshotFile = new File(fDirectory, "catalog.snapshot");
+            CatalogSnapshotWriter.write(fSnapshotFile, "digest", beersDao.getFestivalBeers());
+        } finally {
+            connectionSource.close();
+        }
+        DaoManager.clearCache();
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (File file : fDirectory.listFiles()) {
+            file.delete();
+        }
+        fDirectory.delete();
+    }
+
+    @Benchmark
+    public int snapshot() throws Exception {
+        CatalogSnapshot snapshot = CatalogSnapshot.open(fSnapshotFile);
+        return BeerList.select(snapshot.getBeers(), BeerList.Type.ALL, fConfig).size();
+    }
+
+    @Benchmark
+    public int database() throws Exception {
+        JdbcConnectionSource connectionSource = new JdbcConnectionSource(fDatabaseUrl);
+        try {
+            BreweriesImpl breweries = DaoManager.createDao(connectionSource, Brewery.class);
+            BeersImpl beers = DaoManager.createDao(connectionSource, Beer.class);
+            beers.setBreweries(breweries);
+            return BeerList.allBeers(beers, fConfig).getCount();
+        } finally {
+            connectionSource.close();
+            DaoManager.clearCache();
+        }
+    }
+}
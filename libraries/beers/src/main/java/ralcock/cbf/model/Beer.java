@@ -2,15 +2,22 @@ package ralcock.cbf.model;
 
 import com.j256.ormlite.field.DatabaseField;
 import com.j256.ormlite.table.DatabaseTable;
+import ralcock.cbf.rowmapper.GenerateRowMapper;
+import ralcock.cbf.rowmapper.Pooled;
 import ralcock.cbf.model.dao.BeersImpl;
 
 import java.io.Serializable;
+import java.util.Locale;
 
+// The mapped fields are package-private for the generated BeerRowMapper, which reads the
+// @Pooled ones through the StringPool.
+@GenerateRowMapper(stringPool = StringPool.class)
 @DatabaseTable(tableName = Beer.TABLE_NAME, daoClass = BeersImpl.class)
 public final class Beer implements Serializable {
 
     public static final String TABLE_NAME = "beers";
 
+    public static final String ID_FIELD = "_id";
     public static final String NAME_FIELD = "name";
     public static final String BREWERY_FIELD = "brewery";
     public static final String ABV_FIELD = "abv";
@@ -25,48 +32,82 @@ public final class Beer implements Serializable {
     public static final String ON_WISH_LIST_FIELD = "on_wish_list";
     public static final String USER_COMMENTS_FIELD = "user_comments";
     public static final String ALLERGENS_FIELD = "allergens";
+    public static final String SOURCE_FIELD = "source";
+    public static final String FESTIVAL_FIELD = "festival";
+    public static final String BREWERY_NAME_FIELD = "brewery_name";
 
-    @DatabaseField(columnName = "_id", generatedId = true)
-    private long fId;
+    /**
+     * The columns of a beer summary, which is how the beer lists read beers: what a row of a list
+     * shows and what the lists filter and sort on, without the description, the user's comments
+     * or where the beer came from, which only the details view needs.
+     */
+    public static final String[] SUMMARY_FIELDS = {
+            ID_FIELD, BREWERY_FIELD, BREWERY_NAME_FIELD, NAME_FIELD, ABV_FIELD, STATUS_FIELD, RATING_FIELD,
+            STYLE_FIELD, DISPENSE_FIELD, CATEGORY_FIELD, ON_WISH_LIST_FIELD, ALLERGENS_FIELD
+    };
+
+    @DatabaseField(columnName = ID_FIELD, generatedId = true)
+    long fId;
 
     @DatabaseField(columnName = BREWERY_FIELD, foreign = true, foreignAutoRefresh = true)
-    private Brewery fBrewery;
+    Brewery fBrewery;
+
+    // The brewery's name, normalized by normalizeName(), so beers can be searched and sorted by it
+    // without a join.
+    @Pooled
+    @DatabaseField(columnName = BREWERY_NAME_FIELD)
+    String fBreweryName;
 
-    @DatabaseField(columnName = NAME_FIELD, index = true)
-    private String fName;
+    @DatabaseField(columnName = NAME_FIELD)
+    String fName;
 
     @DatabaseField(columnName = ABV_FIELD)
-    private float fAbv;
+    float fAbv;
 
     @DatabaseField(columnName = DESCRIPTION_FIELD)
-    private String fDescription;
+    String fDescription;
 
-    @DatabaseField(columnName = STATUS_FIELD, index = true)
-    private String fStatus;
+    @Pooled
+    @DatabaseField(columnName = STATUS_FIELD)
+    String fStatus;
 
     @DatabaseField(columnName = RATING_FIELD)
-    private int fRating;
+    int fRating;
 
-    @DatabaseField(columnName = FESTIVAL_ID_FIELD, index = true, unique = true)
-    private String fFestivalID;
+    // Which festival the beer is listed at; festival ids are only unique within one.
+    @Pooled
+    @DatabaseField(columnName = FESTIVAL_FIELD, uniqueCombo = true)
+    String fFestival;
 
-    @DatabaseField(columnName = STYLE_FIELD, index = true)
-    private String fStyle;
+    @DatabaseField(columnName = FESTIVAL_ID_FIELD, uniqueCombo = true)
+    String fFestivalID;
 
+    @Pooled
+    @DatabaseField(columnName = STYLE_FIELD)
+    String fStyle;
+
+    @Pooled
     @DatabaseField(columnName = DISPENSE_FIELD)
-    private String fDispense;
+    String fDispense;
 
-    @DatabaseField(columnName = CATEGORY_FIELD, index = true)
-    private String fCategory;
+    @Pooled
+    @DatabaseField(columnName = CATEGORY_FIELD)
+    String fCategory;
 
-    @DatabaseField(columnName = ON_WISH_LIST_FIELD, index = true)
-    private boolean fIsOnWishList;
+    @DatabaseField(columnName = ON_WISH_LIST_FIELD)
+    boolean fIsOnWishList;
 
     @DatabaseField(columnName = USER_COMMENTS_FIELD)
-    private String fUserComments;
+    String fUserComments;
 
+    @Pooled
     @DatabaseField(columnName = ALLERGENS_FIELD)
-    private String fAllergens;
+    String fAllergens;
+
+    // Which of the festival's feeds the beer was last ingested from.
+    @Pooled
+    @DatabaseField(columnName = SOURCE_FIELD)
+    String fSource;
 
     @SuppressWarnings("UnusedDeclaration")
         // needed by ormlite
@@ -85,6 +126,7 @@ public final class Beer implements Serializable {
                 final Brewery brewery) {
         fFestivalID = festivalId;
         fBrewery = brewery;
+        fBreweryName = brewery == null ? null : normalizeName(brewery.getName());
         fName = name;
         fAbv = abv;
         fDescription = description;
@@ -107,6 +149,25 @@ public final class Beer implements Serializable {
         return fDescription;
     }
 
+    /**
+     * The brewery's name as stored for searching and sorting. See {@link #normalizeName}.
+     */
+    public String getBreweryName() {
+        return fBreweryName;
+    }
+
+    public void setBreweryName(final String breweryName) {
+        fBreweryName = breweryName;
+    }
+
+    /**
+     * Lower case, independent of the device's language. SQLite's LIKE only ignores the case of
+     * ASCII letters, so both the stored names and the text searched for are normalized.
+     */
+    public static String normalizeName(final String text) {
+        return text == null ? null : text.toLowerCase(Locale.ROOT);
+    }
+
     public Brewery getBrewery() {
         return fBrewery;
     }
@@ -119,6 +180,10 @@ public final class Beer implements Serializable {
         return fStatus;
     }
 
+    public void setStatus(final String status) {
+        fStatus = status;
+    }
+
     public int getRating() {
         return fRating;
     }
@@ -179,6 +244,22 @@ public final class Beer implements Serializable {
         fAllergens = allergens;
     }
 
+    public String getSource() {
+        return fSource;
+    }
+
+    public void setSource(final String source) {
+        fSource = source;
+    }
+
+    public String getFestival() {
+        return fFestival;
+    }
+
+    public void setFestival(final String festival) {
+        fFestival = festival;
+    }
+
     public boolean hasAllergens() {
         return fAllergens != null && !fAllergens.isEmpty();
     }
@@ -2,6 +2,7 @@ package ralcock.cbf.model;
 
 import ralcock.cbf.model.dao.Beers;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
@@ -9,7 +10,7 @@ import java.util.Set;
 
 public class BeerList {
 
-    private static enum Type {
+    public static enum Type {
         ALL,
         BOOKMARKS,
         LOW_NO
@@ -17,6 +18,10 @@ public class BeerList {
 
     private static final String LOW_NO_CATEGORY = "low-no";
 
+    // Shorter texts match too much to be worth a typo-tolerant lookup.
+    private static final int MIN_SIMILAR_MATCH_LENGTH = 3;
+    private static final int MAX_SIMILAR_MATCHES = 50;
+
     public static class Config {
         public Config() {
 
@@ -80,6 +85,7 @@ public class BeerList {
     private SortOrder fSortOrder;
 
     private List<Beer> fBeerList;
+    private boolean fShowingSimilarMatches;
     private Set<String> fFilterStyles;
     private Set<String> fAllergensToHide;
     private Set<String> fStatusToHide;
@@ -116,9 +122,23 @@ public class BeerList {
         updateBeerList();
     }
 
+    /**
+     * Filters the list by the given text.
+     * <p>
+     * When the new text extends the previous one (e.g. "ip" then "ipa") the result can only
+     * shrink, so the current list is refined in memory rather than re-queried; only the
+     * descriptions, which the list's summaries leave out, are looked up. Any other change
+     * of text falls back to a full query. Changes to the other settings always re-query, so the
+     * current list is always consistent with them.
+     */
     public void filterBy(final CharSequence filterText) {
+        final CharSequence previousFilterText = fFilterText;
         fFilterText = filterText;
-        updateBeerList();
+        if (canRefine(previousFilterText, filterText)) {
+            fBeerList = refine(fBeerList, filterText.toString());
+        } else {
+            updateBeerList();
+        }
     }
 
     public void sortBy(final SortOrder sortOrder) {
@@ -131,7 +151,7 @@ public class BeerList {
         updateBeerList();
     }
 
-    private Set<String> statusToHide(final StatusToShow statusToShow) {
+    private static Set<String> statusToHide(final StatusToShow statusToShow) {
         if (statusToShow == StatusToShow.AVAILABLE_ONLY) {
             return UNAVAILABLE_STATUS_SET;
         } else {
@@ -142,6 +162,173 @@ public class BeerList {
 
     public void updateBeerList() {
         fBeerList = buildList(fSortOrder, fFilterText, fFilterStyles, fAllergensToHide, fStatusToHide);
+        fShowingSimilarMatches = false;
+        if (fBeerList.isEmpty() && fFilterText != null && fFilterText.length() >= MIN_SIMILAR_MATCH_LENGTH) {
+            fBeerList = buildSimilarMatchesList();
+            fShowingSimilarMatches = true;
+        }
+    }
+
+    /**
+     * Returns true when nothing contained the filter text and the list instead holds beers whose
+     * name, brewery or style is similar to it, best match first.
+     */
+    public boolean isShowingSimilarMatches() {
+        return fShowingSimilarMatches;
+    }
+
+    private List<Beer> buildSimilarMatchesList() {
+        List<Beer> matches = new ArrayList<>();
+        for (Beer beer : fBeers.fuzzySearch(fFilterText, MAX_SIMILAR_MATCHES)) {
+            if (matchesSettings(beer)) {
+                matches.add(beer);
+            }
+        }
+        return matches;
+    }
+
+    private boolean matchesSettings(final Beer beer) {
+        return matchesSettings(beer, fType, fFilterStyles, fStatusToHide, fAllergensToHide);
+    }
+
+    /**
+     * In-memory equivalent of everything the list queries filter on except the text.
+     */
+    private static boolean matchesSettings(final Beer beer,
+                                           final Type type,
+                                           final Set<String> stylesToHide,
+                                           final Set<String> statusToHide,
+                                           final Set<String> allergensToHide) {
+        switch (type) {
+            case BOOKMARKS:
+                if (!beer.isIsOnWishList()) {
+                    return false;
+                }
+                break;
+            case LOW_NO:
+                if (!LOW_NO_CATEGORY.equals(beer.getCategory())) {
+                    return false;
+                }
+                break;
+            default:
+                if (LOW_NO_CATEGORY.equals(beer.getCategory())) {
+                    return false;
+                }
+                break;
+        }
+        if (stylesToHide != null && stylesToHide.contains(beer.getStyle())) {
+            return false;
+        }
+        if (statusToHide != null && statusToHide.contains(beer.getStatus())) {
+            return false;
+        }
+        if (allergensToHide != null) {
+            for (String allergen : allergensToHide) {
+                if (beer.containsAllergen(allergen)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Builds a list in memory from an already materialised catalogue, such as a catalog snapshot,
+     * applying the same filters and order the database query would. Used to show something
+     * before the database is open; the text match follows SQLite's LIKE except for wildcards.
+     */
+    public static List<Beer> select(final List<Beer> catalogue, final Type type, final Config config) {
+        final String filterText = config.SearchText == null ? "" : config.SearchText.toString();
+        final Set<String> statusToHide = statusToHide(config.StatusToShow);
+        List<Beer> selected = new ArrayList<>();
+        for (Beer beer : catalogue) {
+            if (matchesSettings(beer, type, config.StylesToHide, statusToHide, config.AllergensToHide)
+                    && (filterText.isEmpty() || matchesFilterText(beer, filterText))) {
+                selected.add(beer);
+            }
+        }
+        Collections.sort(selected, config.SortOrder.comparator());
+        return selected;
+    }
+
+    private boolean canRefine(final CharSequence previousFilterText, final CharSequence filterText) {
+        if (fBeerList == null || fShowingSimilarMatches || previousFilterText == null || filterText == null) {
+            return false;
+        }
+        final String text = filterText.toString();
+        // LIKE wildcards can't be reproduced by a plain substring match.
+        if (text.indexOf('%') >= 0 || text.indexOf('_') >= 0) {
+            return false;
+        }
+        final String previous = previousFilterText.toString();
+        return text.length() >= previous.length()
+                && asciiEqualsIgnoreCase(text, 0, previous, previous.length());
+    }
+
+    private List<Beer> refine(final List<Beer> beers, final String filterText) {
+        List<Beer> refined = new ArrayList<>(beers.size());
+        Set<Long> described = null;
+        for (Beer beer : beers) {
+            if (matchesSummaryText(beer, filterText)) {
+                refined.add(beer);
+                continue;
+            }
+            // Asked once, and only if a beer matches on nothing but its description.
+            if (described == null) {
+                described = fBeers.idsWithDescriptionContaining(filterText);
+            }
+            if (described.contains(beer.getId())) {
+                refined.add(beer);
+            }
+        }
+        return refined;
+    }
+
+    /**
+     * In-memory equivalent of the text clause built by {@code BeersImpl.doWhere}: the text must
+     * appear in the beer name, style, description or brewery name. Matching is case-insensitive
+     * for ASCII only, like SQLite's LIKE, except for the brewery name, which is matched in its
+     * normalized form.
+     */
+    static boolean matchesFilterText(final Beer beer, final String filterText) {
+        return matchesSummaryText(beer, filterText)
+                || containsIgnoreAsciiCase(beer.getDescription(), filterText);
+    }
+
+    private static boolean matchesSummaryText(final Beer beer, final String filterText) {
+        return containsIgnoreAsciiCase(beer.getName(), filterText)
+                || containsIgnoreAsciiCase(beer.getStyle(), filterText)
+                || containsIgnoreAsciiCase(beer.getBreweryName(), Beer.normalizeName(filterText));
+    }
+
+    static boolean containsIgnoreAsciiCase(final String haystack, final String needle) {
+        if (haystack == null) {
+            return false;
+        }
+        final int last = haystack.length() - needle.length();
+        for (int i = 0; i <= last; i++) {
+            if (asciiEqualsIgnoreCase(haystack, i, needle, needle.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean asciiEqualsIgnoreCase(final String s, final int offset, final String t, final int length) {
+        for (int i = 0; i < length; i++) {
+            if (toAsciiLowerCase(s.charAt(offset + i)) != toAsciiLowerCase(t.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static char toAsciiLowerCase(final char c) {
+        return (c >= 'A' && c <= 'Z') ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    public SortOrder getSortOrder() {
+        return fSortOrder;
     }
 
     public int getCount() {
@@ -2,30 +2,40 @@ package ralcock.cbf.model;
 
 import com.j256.ormlite.field.DatabaseField;
 import com.j256.ormlite.table.DatabaseTable;
+import ralcock.cbf.rowmapper.GenerateRowMapper;
+import ralcock.cbf.rowmapper.Pooled;
 import ralcock.cbf.model.dao.BreweriesImpl;
 
 import java.io.Serializable;
 
+// The mapped fields are package-private for the generated BreweryRowMapper, which reads the
+// @Pooled ones through the StringPool.
+@GenerateRowMapper(stringPool = StringPool.class)
 @DatabaseTable(tableName = Brewery.TABLE_NAME, daoClass = BreweriesImpl.class)
 public final class Brewery implements Serializable {
 
     public static final String TABLE_NAME = "breweries";
     public static final String ID_FIELD = "_id";
     public static final String FESTIVAL_ID_FIELD = "festival_id";
+    public static final String FESTIVAL_FIELD = "festival";
     public static final String NAME_FIELD = "name";
     public static final String DESCRIPTION_FIELD = "description";
 
     @DatabaseField(generatedId = true, columnName = ID_FIELD)
-    private long fId;
+    long fId;
 
-    @DatabaseField(columnName = FESTIVAL_ID_FIELD, index = true, unique = true)
-    private String fFestivalID;
+    @Pooled
+    @DatabaseField(columnName = FESTIVAL_FIELD, uniqueCombo = true)
+    String fFestival;
 
-    @DatabaseField(columnName = NAME_FIELD, index = true)
-    private String fName;
+    @DatabaseField(columnName = FESTIVAL_ID_FIELD, uniqueCombo = true)
+    String fFestivalID;
+
+    @DatabaseField(columnName = NAME_FIELD)
+    String fName;
 
     @DatabaseField(columnName = DESCRIPTION_FIELD)
-    private String fDescription;
+    String fDescription;
 
     @SuppressWarnings("UnusedDeclaration")
         // needed by ormlite
@@ -50,6 +60,14 @@ public final class Brewery implements Serializable {
         return fFestivalID;
     }
 
+    public String getFestival() {
+        return fFestival;
+    }
+
+    public void setFestival(final String festival) {
+        fFestival = festival;
+    }
+
     public void setId(final long id) {
         fId = id;
     }
@@ -0,0 +1,88 @@
+package ralcock.cbf.model;
+
+import com.j256.ormlite.field.DatabaseField;
+import com.j256.ormlite.table.DatabaseTable;
+
+/**
+ * How far a source has been staged: the last producer staged and, once the source has been
+ * staged to its end, the digest of the feed it came from. Committed with each chunk of staged
+ * producers, so it always describes what is staged.
+ */
+@DatabaseTable(tableName = IngestCheckpoint.TABLE_NAME)
+public final class IngestCheckpoint {
+
+    public static final String TABLE_NAME = "ingest_checkpoints";
+    public static final String ID_FIELD = "_id";
+    public static final String FESTIVAL_FIELD = "festival";
+    public static final String SOURCE_FIELD = "source";
+    public static final String DIGEST_FIELD = "digest";
+    public static final String LAST_PRODUCER_FIELD = "last_producer";
+
+    /**
+     * The digest of a source that is still being staged.
+     */
+    public static final String INCOMPLETE = "";
+
+    @DatabaseField(columnName = ID_FIELD, generatedId = true)
+    private long fId;
+
+    @DatabaseField(columnName = FESTIVAL_FIELD, uniqueCombo = true)
+    private String fFestival;
+
+    @DatabaseField(columnName = SOURCE_FIELD, uniqueCombo = true)
+    private String fSource;
+
+    @DatabaseField(columnName = DIGEST_FIELD)
+    private String fDigest = INCOMPLETE;
+
+    @DatabaseField(columnName = LAST_PRODUCER_FIELD)
+    private int fLastProducer = -1;
+
+    @SuppressWarnings("UnusedDeclaration")
+        // needed by ormlite
+    IngestCheckpoint() {
+    }
+
+    public IngestCheckpoint(final String festival, final String source) {
+        fFestival = festival;
+        fSource = source;
+    }
+
+    public long getId() {
+        return fId;
+    }
+
+    public String getFestival() {
+        return fFestival;
+    }
+
+    public String getSource() {
+        return fSource;
+    }
+
+    public String getDigest() {
+        return fDigest;
+    }
+
+    public void setDigest(final String digest) {
+        fDigest = digest;
+    }
+
+    /**
+     * The position of the last producer staged, or -1 if none has been.
+     */
+    public int getLastProducer() {
+        return fLastProducer;
+    }
+
+    public void setLastProducer(final int lastProducer) {
+        fLastProducer = lastProducer;
+    }
+
+    /**
+     * Whether the source has been staged to its end, and so is ready to apply to the catalog.
+     */
+    public boolean isComplete() {
+        return !INCOMPLETE.equals(fDigest);
+    }
+}
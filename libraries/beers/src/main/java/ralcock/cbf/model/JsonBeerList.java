@@ -3,6 +3,7 @@ package ralcock.cbf.model;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Vector;
@@ -44,32 +45,42 @@ public class JsonBeerList implements Iterable<Beer> {
 
         IterableJSONArray producers = new IterableJSONArray(json.getJSONArray(PRODUCERS));
         for (JSONObject producer : producers) {
-            Brewery brewery = makeBrewery(producer);
-            IterableJSONArray produce = new IterableJSONArray(producer.getJSONArray(PRODUCTS));
-            for (JSONObject product : produce) {
-                Beer beer = makeBeer(brewery, product);
-                beers.add(beer);
-            }
+            beers.addAll(producerBeers(producer));
+        }
+        return beers;
+    }
+
+    /**
+     * The beers of one element of the feed's producers array, for readers that parse the feed a
+     * producer at a time.
+     */
+    public static List<Beer> producerBeers(final JSONObject producer) throws JSONException {
+        List<Beer> beers = new ArrayList<Beer>();
+        Brewery brewery = makeBrewery(producer);
+        IterableJSONArray produce = new IterableJSONArray(producer.getJSONArray(PRODUCTS));
+        for (JSONObject product : produce) {
+            beers.add(makeBeer(brewery, product));
         }
         return beers;
     }
 
-    private Beer makeBeer(final Brewery brewery, final JSONObject product) throws JSONException {
+    // The values most beers share are pooled, so the beers of a feed share one copy of each.
+    private static Beer makeBeer(final Brewery brewery, final JSONObject product) throws JSONException {
         return new BeerBuilder()
             .fromBrewery(brewery)
             .withFestivalId(product.getString(IDENTIFIER))
             .called(product.isNull(NAME) ? "" : product.getString(NAME))
             .withDescription(product.isNull(DESCRIPTION) ? "" : product.getString(DESCRIPTION))
             .withABV(product.isNull(ABV)       ? Float.NaN : (float)product.getDouble(ABV))
-            .withStyle(product.isNull(STYLE)   ? "Unknown" : product.getString(STYLE))
-            .withStatus(product.isNull(STATUS) ? "Unknown" : product.getString(STATUS))
-            .withDispenseMethod(product.isNull(DISPENSE) ? "" : product.getString(DISPENSE))
-            .withAllergens(parseAllergens(product))
-            .withCategory(product.isNull(CATEGORY) ? "beer" : product.getString(CATEGORY))
+            .withStyle(product.isNull(STYLE)   ? "Unknown" : StringPool.canonical(product.getString(STYLE)))
+            .withStatus(product.isNull(STATUS) ? "Unknown" : StringPool.canonical(product.getString(STATUS)))
+            .withDispenseMethod(product.isNull(DISPENSE) ? "" : StringPool.canonical(product.getString(DISPENSE)))
+            .withAllergens(StringPool.canonical(parseAllergens(product)))
+            .withCategory(product.isNull(CATEGORY) ? "beer" : StringPool.canonical(product.getString(CATEGORY)))
             .build();
     }
 
-    private String parseAllergens(final JSONObject product) throws JSONException {
+    private static String parseAllergens(final JSONObject product) throws JSONException {
         if (product.isNull(ALLERGENS)) {
             return "";
         }
@@ -94,7 +105,7 @@ public class JsonBeerList implements Iterable<Beer> {
         return allergensList.toString();
     }
 
-    private boolean isTruthyAllergenValue(final Object value) {
+    private static boolean isTruthyAllergenValue(final Object value) {
         if (value == null) {
             return false;
         }
@@ -111,7 +122,7 @@ public class JsonBeerList implements Iterable<Beer> {
         return true;
     }
 
-    private Brewery makeBrewery(final JSONObject producer) throws JSONException {
+    private static Brewery makeBrewery(final JSONObject producer) throws JSONException {
         return new Brewery(
             producer.getString(IDENTIFIER),
             producer.getString(NAME),
@@ -0,0 +1,167 @@
+package ralcock.cbf.model;
+
+import ralcock.cbf.model.search.SearchText;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The sections of a beer list sorted by brewery or beer name, one for each initial letter, for
+ * fast scrolling. Built in the same pass over the sorted list that materialises it; finding the
+ * section of a position, or the position of a section, is then an array read. Lists in any other
+ * order, or not in an order at all, have no sections.
+ * <p>
+ * Initials ignore case and accents, as the collation the lists are sorted with does, and names
+ * that do not start with a letter are put under "#". Immutable.
+ */
+public final class SectionIndex {
+
+    public static final SectionIndex NONE = new SectionIndex(new String[0], new int[0], new int[0]);
+
+    private static final String OTHER = "#";
+
+    private final String[] fSections;
+    private final int[] fSectionStarts;
+    private final int[] fSectionOfPosition;
+
+    private SectionIndex(final String[] sections, final int[] sectionStarts, final int[] sectionOfPosition) {
+        fSections = sections;
+        fSectionStarts = sectionStarts;
+        fSectionOfPosition = sectionOfPosition;
+    }
+
+    /**
+     * Adds the beers of a list one at a time, in the list's order.
+     */
+    public static final class Builder {
+        private final SortOrder fSortOrder;
+        private final List<String> fSections = new ArrayList<>();
+        private int[] fSectionStarts = new int[16];
+        private int[] fSectionOfPosition;
+        private int fCount;
+
+        /**
+         * @param sortOrder the order of the list, or null if it is in none
+         * @param expectedCount how many beers the list has, to size the index
+         */
+        public Builder(final SortOrder sortOrder, final int expectedCount) {
+            fSortOrder = isSectioned(sortOrder) ? sortOrder : null;
+            fSectionOfPosition = new int[fSortOrder == null ? 0 : expectedCount];
+        }
+
+        public Builder add(final Beer beer) {
+            if (fSortOrder == null) {
+                return this;
+            }
+            final String initial = initial(Beer.BREWERY_NAME_FIELD.equals(fSortOrder.columnName())
+                    ? beer.getBreweryName() : beer.getName());
+            final int last = fSections.size() - 1;
+            if (last < 0 || !fSections.get(last).equals(initial)) {
+                if (fSections.size() == fSectionStarts.length) {
+                    fSectionStarts = Arrays.copyOf(fSectionStarts, fSectionStarts.length * 2);
+                }
+                fSectionStarts[fSections.size()] = fCount;
+                fSections.add(initial);
+            }
+            if (fCount == fSectionOfPosition.length) {
+                fSectionOfPosition = Arrays.copyOf(fSectionOfPosition, Math.max(16, fCount * 2));
+            }
+            fSectionOfPosition[fCount++] = fSections.size() - 1;
+            return this;
+        }
+
+        public SectionIndex build() {
+            if (fSections.isEmpty()) {
+                return NONE;
+            }
+            return new SectionIndex(fSections.toArray(new String[0]),
+                    Arrays.copyOf(fSectionStarts, fSections.size()),
+                    Arrays.copyOf(fSectionOfPosition, fCount));
+        }
+    }
+
+    /**
+     * The index of a list already in the given order.
+     */
+    public static SectionIndex of(final List<Beer> beers, final SortOrder sortOrder) {
+        Builder builder = new Builder(sortOrder, beers.size());
+        for (Beer beer : beers) {
+            builder.add(beer);
+        }
+        return builder.build();
+    }
+
+    private static boolean isSectioned(final SortOrder sortOrder) {
+        return sortOrder != null && (Beer.BREWERY_NAME_FIELD.equals(sortOrder.columnName())
+                || Beer.NAME_FIELD.equals(sortOrder.columnName()));
+    }
+
+    static String initial(final String name) {
+        if (name == null || name.isEmpty()) {
+            return OTHER;
+        }
+        char c = name.charAt(0);
+        if (c >= 'a' && c <= 'z') {
+            return String.valueOf((char) (c - ('a' - 'A')));
+        }
+        if (c >= 'A' && c <= 'Z') {
+            return String.valueOf(c);
+        }
+        // Only names starting with an accent or a symbol need the full normalization.
+        String normalized = SearchText.normalize(name);
+        if (normalized.isEmpty() || !Character.isLetter(normalized.charAt(0))) {
+            return OTHER;
+        }
+        return normalized.substring(0, 1).toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * The sections' labels, in the list's order. Adjacent sections never share a label, but
+     * sections apart may, where the collation puts something between them.
+     */
+    public String[] getSections() {
+        return fSections.clone();
+    }
+
+    public int getSectionCount() {
+        return fSections.length;
+    }
+
+    /**
+     * The position of the first beer of the section, clamped to the sections there are.
+     */
+    public int getPositionForSection(final int section) {
+        if (fSections.length == 0) {
+            return 0;
+        }
+        return fSectionStarts[Math.max(0, Math.min(section, fSections.length - 1))];
+    }
+
+    /**
+     * The section of the beer at the position, clamped to the positions there are.
+     */
+    public int getSectionForPosition(final int position) {
+        if (fSectionOfPosition.length == 0) {
+            return 0;
+        }
+        return fSectionOfPosition[Math.max(0, Math.min(position, fSectionOfPosition.length - 1))];
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        final SectionIndex that = (SectionIndex) o;
+        return Arrays.equals(fSections, that.fSections)
+                && Arrays.equals(fSectionStarts, that.fSectionStarts)
+                && fSectionOfPosition.length == that.fSectionOfPosition.length;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(fSections) + Arrays.hashCode(fSectionStarts);
+    }
+}
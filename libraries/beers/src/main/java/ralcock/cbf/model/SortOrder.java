@@ -1,12 +1,14 @@
 package ralcock.cbf.model;
 
 import java.io.Serializable;
+import java.text.Collator;
+import java.util.Comparator;
 
 @SuppressWarnings({"UnusedDeclaration"})
 public enum SortOrder implements Serializable {
 
-    BREWERY_NAME_ASC(Beer.BREWERY_FIELD, true, "Brewery (A-Z)"),
-    BREWERY_NAME_DESC(Beer.BREWERY_FIELD, false, "Brewery (Z-A)"),
+    BREWERY_NAME_ASC(Beer.BREWERY_NAME_FIELD, true, "Brewery (A-Z)"),
+    BREWERY_NAME_DESC(Beer.BREWERY_NAME_FIELD, false, "Brewery (Z-A)"),
 
     BEER_NAME_ASC(Beer.NAME_FIELD, true, "Beer (A-Z)"),
     BEER_NAME_DESC(Beer.NAME_FIELD, false, "Beer (Z-A)"),
@@ -42,4 +44,57 @@ public enum SortOrder implements Serializable {
     public boolean ascending() {
         return fAscending;
     }
+
+    /**
+     * Whether the order depends only on the festival's catalog, and not on what the user has
+     * recorded, so it can be worked out once when the catalog is ingested. See
+     * {@link ralcock.cbf.model.search.SortIndex}.
+     */
+    public boolean isCatalogOrder() {
+        return !Beer.RATING_FIELD.equals(fColumnName);
+    }
+
+    /**
+     * The order of beer lists. Names are compared with the default locale's collation, missing
+     * names first, and the brewery order is by brewery name. Beers that compare equal are
+     * ordered by id, in both directions.
+     */
+    public Comparator<Beer> comparator() {
+        final Collator collator = Collator.getInstance();
+        return new Comparator<Beer>() {
+            public int compare(final Beer a, final Beer b) {
+                int c = compareColumn(collator, a, b);
+                if (!fAscending) {
+                    c = -c;
+                }
+                return c != 0 ? c : Long.compare(a.getId(), b.getId());
+            }
+        };
+    }
+
+    private int compareColumn(final Collator collator, final Beer a, final Beer b) {
+        switch (fColumnName) {
+            case Beer.BREWERY_NAME_FIELD:
+                return compareNullsFirst(collator, breweryName(a), breweryName(b));
+            case Beer.NAME_FIELD:
+                return compareNullsFirst(collator, a.getName(), b.getName());
+            case Beer.ABV_FIELD:
+                return Float.compare(a.getAbv(), b.getAbv());
+            case Beer.RATING_FIELD:
+                return Integer.compare(a.getRating(), b.getRating());
+            default:
+                throw new IllegalStateException("No comparator for " + fColumnName);
+        }
+    }
+
+    private static String breweryName(final Beer beer) {
+        return beer.getBrewery() == null ? null : beer.getBrewery().getName();
+    }
+
+    private static int compareNullsFirst(final Collator collator, final String a, final String b) {
+        if (a == null || b == null) {
+            return a == null ? (b == null ? 0 : -1) : 1;
+        }
+        return collator.compare(a, b);
+    }
 }
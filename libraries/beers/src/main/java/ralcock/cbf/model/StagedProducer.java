@@ -0,0 +1,74 @@
+package ralcock.cbf.model;
+
+import com.j256.ormlite.field.DataType;
+import com.j256.ormlite.field.DatabaseField;
+import com.j256.ormlite.table.DatabaseTable;
+import ralcock.cbf.model.dao.StagingImpl;
+
+/**
+ * One producer of a feed being ingested, kept as the JSON text it was downloaded as until the
+ * whole feed has been staged and can be applied to the catalog at once.
+ */
+@DatabaseTable(tableName = StagedProducer.TABLE_NAME, daoClass = StagingImpl.class)
+public final class StagedProducer {
+
+    public static final String TABLE_NAME = "staged_producers";
+    public static final String ID_FIELD = "_id";
+    public static final String FESTIVAL_FIELD = "festival";
+    public static final String SOURCE_FIELD = "source";
+    public static final String POSITION_FIELD = "producer";
+    public static final String JSON_FIELD = "json";
+
+    @DatabaseField(columnName = ID_FIELD, generatedId = true)
+    private long fId;
+
+    @DatabaseField(columnName = FESTIVAL_FIELD, uniqueCombo = true)
+    private String fFestival;
+
+    @DatabaseField(columnName = SOURCE_FIELD, uniqueCombo = true)
+    private String fSource;
+
+    @DatabaseField(columnName = POSITION_FIELD, uniqueCombo = true)
+    private int fPosition;
+
+    @DatabaseField(columnName = JSON_FIELD, dataType = DataType.LONG_STRING)
+    private String fJson;
+
+    @SuppressWarnings("UnusedDeclaration")
+        // needed by ormlite
+    StagedProducer() {
+    }
+
+    public StagedProducer(final String source, final int position, final String json) {
+        fSource = source;
+        fPosition = position;
+        fJson = json;
+    }
+
+    public long getId() {
+        return fId;
+    }
+
+    public String getFestival() {
+        return fFestival;
+    }
+
+    public void setFestival(final String festival) {
+        fFestival = festival;
+    }
+
+    public String getSource() {
+        return fSource;
+    }
+
+    /**
+     * Where the producer is in the feed's producers array.
+     */
+    public int getPosition() {
+        return fPosition;
+    }
+
+    public String getJson() {
+        return fJson;
+    }
+}
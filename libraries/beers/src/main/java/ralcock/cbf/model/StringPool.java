@@ -0,0 +1,44 @@
+package ralcock.cbf.model;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Canonical copies of the short strings that repeat across a catalog: styles, statuses, dispense
+ * methods, categories and the like. Thousands of beers share a few dozen such values, but parsing
+ * a feed or reading the database gives every beer copies of its own unless they are swapped for
+ * the canonical copy here. Used by {@link JsonBeerList} and, through {@code @Pooled} fields, the
+ * generated row mappers.
+ * <p>
+ * Thread-safe. Unlike {@link String#intern}, the pool is bounded: only short strings are pooled,
+ * and only until it is full, so a feed of unexpected values cannot grow it for ever. Anything
+ * else is returned as it is.
+ */
+public final class StringPool {
+
+    private static final int MAX_LENGTH = 64;
+    private static final int MAX_SIZE = 4096;
+
+    private static final ConcurrentHashMap<String, String> POOL = new ConcurrentHashMap<>();
+
+    private StringPool() {
+        // Utility class
+    }
+
+    /**
+     * Returns the pooled string equal to {@code value}, pooling it if there is none.
+     */
+    public static String canonical(final String value) {
+        if (value == null || value.length() > MAX_LENGTH) {
+            return value;
+        }
+        String canonical = POOL.get(value);
+        if (canonical != null) {
+            return canonical;
+        }
+        if (POOL.size() >= MAX_SIZE) {
+            return value;
+        }
+        canonical = POOL.putIfAbsent(value, value);
+        return canonical == null ? value : canonical;
+    }
+}
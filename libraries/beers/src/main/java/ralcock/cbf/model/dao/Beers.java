@@ -1,20 +1,64 @@
 package ralcock.cbf.model.dao;
 
-import com.j256.ormlite.dao.Dao;
 import ralcock.cbf.model.Beer;
 import ralcock.cbf.model.BeerChangedListener;
+import ralcock.cbf.model.BeerList;
 import ralcock.cbf.model.SortOrder;
+import ralcock.cbf.model.live.LiveBeerList;
+import ralcock.cbf.model.search.SuggestionIndex;
+import ralcock.cbf.model.stats.FestivalStats;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * The beers of one festival at a time. Beers of several festivals can be stored together; every
+ * query and update is on the current festival, set with {@link #setFestival}, and beers created
+ * through this DAO without a festival are put in it.
+ * <p>
+ * Says nothing of how the beers are stored, so engines can be swapped: {@link BeersImpl} keeps
+ * them in the app's SQLite database and {@link InMemoryBeers} in memory. Each must pass the
+ * conformance suite in the tests, BeersConformanceTest.
+ */
+public interface Beers {
+    /**
+     * The festival of beers that have not been given one.
+     */
+    String NO_FESTIVAL = "";
 
-public interface Beers extends Dao<Beer, Long> {
     void addBeerChangedListener(BeerChangedListener l);
     void removeBeerChangedListener(BeerChangedListener l);
+
+    /**
+     * Watches one of the beer lists as the catalog changes, delivering it to the observer on the
+     * given executor: now, and again each time it changes. See {@link LiveBeerList}. Changes made
+     * in a transaction are delivered once {@link #rebuildSearchIndex} is called after it, as an
+     * update does.
+     */
+    LiveBeerList observeBeerList(BeerList.Type type,
+                                 BeerList.Config config,
+                                 Executor executor,
+                                 LiveBeerList.Observer observer);
+
+    /**
+     * Returns the beer with the given id, whichever festival it is in, or null if there is none.
+     */
     Beer getBeerWithId(long id);
 
     long getNumberOfBeers();
 
+    /**
+     * Returns how many beers were last ingested from the given feed.
+     */
+    long getNumberOfBeersFrom(String source);
+
+    /**
+     * Returns summaries of the beers in the list: beers with only the {@link Beer#SUMMARY_FIELDS}
+     * read, and breweries with only their names. Use {@link #getBeerWithId} for the whole beer,
+     * and never write a summary back with {@link #updateBeer}. The same goes for the other lists.
+     */
     List<Beer> allBeersList(SortOrder sortOrder,
                             CharSequence filterText,
                             Set<String> filterStyles,
@@ -33,6 +77,7 @@ public interface Beers extends Dao<Beer, Long> {
      * <p>
      * This method retrieves beers that match the given category,
      * applying additional filters for sort order, text search, styles, allergens, and status.
+     * Like {@link #allBeersList}, it returns summaries.
      *
      * @param sortOrder        the order in which to sort the beers
      * @param filterText       text to filter beer names/descriptions
@@ -51,6 +96,21 @@ public interface Beers extends Dao<Beer, Long> {
 
     void updateFromFestivalOrCreate(Beer beer);
 
+    /**
+     * Deletes the beers ingested from {@code source} whose festival ids are not in
+     * {@code festivalIds}, keeping any the user has rated, bookmarked or commented on. Beers from
+     * other sources are never touched. Returns the number deleted.
+     */
+    int deleteStaleBeers(String source, Set<String> festivalIds);
+
+    /**
+     * Sets the status of each of the current festival's beers whose festival id is in
+     * {@code statusByFestivalId}, leaving the rest of its row alone, for refreshes in which only
+     * the statuses have changed. Only the beers whose status is different are written, together.
+     * Returns the number changed.
+     */
+    int updateStatuses(Map<String, String> statusByFestivalId);
+
     Set<String> getAvailableStyles();
 
     /**
@@ -62,5 +122,92 @@ public interface Beers extends Dao<Beer, Long> {
 
     List<Beer> getRatedBeers();
 
+    /**
+     * Returns up to {@code limit} beers that have been rated or bookmarked and have an id greater
+     * than {@code afterId}, in id order. Used to page through the user's beers without holding
+     * them all in memory.
+     */
+    List<Beer> ratedOrBookmarkedBeers(long afterId, int limit);
+
+    /**
+     * Returns up to {@code maxResults} beers whose name, brewery name or style is similar to the
+     * given text, best match first. Tolerates typos and missing accents. Returns summaries, as
+     * the lists do.
+     */
+    List<Beer> fuzzySearch(CharSequence text, int maxResults);
+
+    /**
+     * Returns up to {@code maxResults} of the current festival's beers most like the beer with the
+     * given id, most alike first: of the same style and a similar strength, described in the same
+     * words, and from the same brewery. Looked up in memory, in an index built the first time it
+     * is asked for after the catalog is ingested, apart from the search structures. Returns
+     * summaries, as the lists do, and none if the beer is not in the festival.
+     */
+    List<Beer> similarBeers(long id, int maxResults);
+
+    /**
+     * Returns the ids of the current festival's beers whose description contains the text,
+     * matched as the lists match it. Lets a list of summaries, which have no descriptions, be
+     * refined without reading its beers again.
+     */
+    Set<Long> idsWithDescriptionContaining(CharSequence text);
+
+    /**
+     * Returns up to {@code maxResults} beer, brewery and style names that complete the given
+     * prefix, best first. Answered from memory, so it is cheap enough to call on every keystroke.
+     * Returns none until {@link #rebuildSearchIndex} has built the search structures: they are
+     * never built on the caller's thread.
+     */
+    List<SuggestionIndex.Suggestion> suggest(CharSequence prefix, int maxResults);
+
+    /**
+     * Returns the current festival's stats. Counted in memory when first asked for after an
+     * ingest, or by {@link #rebuildSearchIndex}, without building the search structures, and
+     * kept up to date by {@link #updateBeer}, so it is cheap enough to call whenever the stats
+     * are shown.
+     */
+    FestivalStats getFestivalStats();
+
+    /**
+     * Rebuilds the in-memory search structures from the database. Called off the main thread
+     * when the catalog is opened and once an update has been ingested; until then they are
+     * built on first use by {@link #fuzzySearch}, which waits for a build already under way
+     * rather than making its own. The lists never build them: they
+     * are sorted as they are asked for until the structures are there. Changes made in a
+     * transaction leave the structures as they were until this is called after it.
+     */
+    void rebuildSearchIndex();
+
     void updateBeer(Beer beer);
+
+    /**
+     * Switches to the beers of another festival, which are already stored or will be added by
+     * the next update. Also switches the breweries.
+     */
+    void setFestival(String festival);
+
+    String getFestival();
+
+    /**
+     * Returns all the beers of the current festival.
+     */
+    List<Beer> getFestivalBeers();
+
+    /**
+     * Returns the festivals that have beers stored.
+     */
+    Set<String> getFestivals();
+
+    /**
+     * Deletes the beers and breweries of a festival, including what the user recorded about
+     * them. Returns the number of beers deleted.
+     */
+    int deleteFestival(String festival);
+
+    /**
+     * Deletes the festivals stored beyond the {@code maxFestivals} most recently used: the
+     * current festival and then those of {@code mostRecentFirst}, in order. Returns the
+     * festivals deleted.
+     */
+    List<String> evictFestivals(List<String> mostRecentFirst, int maxFestivals);
 }
@@ -2,6 +2,9 @@ package ralcock.cbf.model.dao;
 
 import com.j256.ormlite.dao.BaseDaoImpl;
 import com.j256.ormlite.dao.GenericRawResults;
+import com.j256.ormlite.misc.TransactionManager;
+import com.j256.ormlite.stmt.DeleteBuilder;
+import com.j256.ormlite.stmt.PreparedQuery;
 import com.j256.ormlite.stmt.PreparedUpdate;
 import com.j256.ormlite.stmt.QueryBuilder;
 import com.j256.ormlite.stmt.SelectArg;
@@ -11,28 +14,65 @@ import com.j256.ormlite.support.ConnectionSource;
 import com.j256.ormlite.table.DatabaseTableConfig;
 import ralcock.cbf.model.Beer;
 import ralcock.cbf.model.BeerChangedListener;
+import ralcock.cbf.model.BeerList;
+import ralcock.cbf.model.BeerRowMapper;
 import ralcock.cbf.model.Brewery;
 import ralcock.cbf.model.SortOrder;
+import ralcock.cbf.model.live.LiveBeerList;
+import ralcock.cbf.model.live.LiveQueries;
+import ralcock.cbf.model.search.SuggestionIndex;
+import ralcock.cbf.model.search.TrigramIndex;
+import ralcock.cbf.model.stats.FestivalStats;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
+/**
+ * The catalog engine the app runs on, storing beers in its SQLite database through ORMLite.
+ * <p>
+ * Lists of beers are read, and beers written, through the generated {@link BeerRowMapper} rather
+ * than ORMLite's reflection, and each list's breweries are looked up in one query of the
+ * festival's breweries rather than one query per beer.
+ */
 public class BeersImpl extends BaseDaoImpl<Beer, Long> implements Beers {
 
+    private static final int DELETE_BATCH_SIZE = 500;
+
+    private static final Map<Long, Brewery> NO_BREWERIES = Collections.emptyMap();
+
     private final Logger logger = LoggerFactory.getLogger(BeersImpl.class);
 
     private Breweries fBreweries;
 
+    private volatile String fFestival = NO_FESTIVAL;
+
     private final CopyOnWriteArrayList<BeerChangedListener> fListeners
         = new CopyOnWriteArrayList<BeerChangedListener>();
 
+    private final CatalogIndexes fIndexes = new CatalogIndexes(new CatalogIndexes.Catalog() {
+        public List<Beer> getFestivalBeers() {
+            return BeersImpl.this.getFestivalBeers();
+        }
+    });
+
+    private MappedTable<Beer> fMappedTable;
+
+    private final LiveQueries fLiveQueries = new LiveQueries(this);
+
     private static BeerAccessException newBeerAccessException(final String msg, final Throwable cause) {
         LoggerFactory.getLogger(BeersImpl.class).error(msg, cause);
         return new BeerAccessException(msg, cause);
@@ -51,7 +91,9 @@ public class BeersImpl extends BaseDaoImpl<Beer, Long> implements Beers {
     public Beer getBeerWithId(final long id) {
         try {
             Beer beer = queryForId(id);
-            logger.info("Got Beer {} '{}'", id, beer.getName());
+            if (beer != null) {
+                logger.info("Got Beer {} '{}'", id, beer.getName());
+            }
             return beer;
         } catch (SQLException e) {
             throw newBeerAccessException("Failed to getBeerWithId " + id, e);
@@ -60,12 +102,21 @@ public class BeersImpl extends BaseDaoImpl<Beer, Long> implements Beers {
 
     public long getNumberOfBeers() {
         try {
-            return countOf();
+            return festivalWhere().countOf();
         } catch (SQLException e) {
             throw newBeerAccessException("Failed to getNumberOfBeers", e);
         }
     }
 
+    public long getNumberOfBeersFrom(final String source) {
+        try {
+            Where<Beer, Long> where = festivalWhere();
+            return where.and().eq(Beer.SOURCE_FIELD, new SelectArg(source)).countOf();
+        } catch (SQLException e) {
+            throw newBeerAccessException("Failed to getNumberOfBeersFrom " + source, e);
+        }
+    }
+
     public Set<String> getAvailableStyles() {
         QueryBuilder<Beer, Long> qb = queryBuilder();
         qb.selectColumns(Beer.STYLE_FIELD);
@@ -74,7 +125,8 @@ public class BeersImpl extends BaseDaoImpl<Beer, Long> implements Beers {
 
         GenericRawResults<String[]> results = null;
         try {
-            results = queryRaw(qb.prepareStatementString());
+            qb.where().eq(Beer.FESTIVAL_FIELD, new SelectArg());
+            results = queryRaw(qb.prepareStatementString(), fFestival);
             Set<String> styles = new TreeSet<String>();
             List<String[]> resultList = results.getResults();
             for (String[] array : resultList) {
@@ -116,27 +168,12 @@ public class BeersImpl extends BaseDaoImpl<Beer, Long> implements Beers {
 
         GenericRawResults<String[]> results = null;
         try {
-            results = queryRaw(qb.prepareStatementString());
+            qb.where().eq(Beer.FESTIVAL_FIELD, new SelectArg());
+            results = queryRaw(qb.prepareStatementString(), fFestival);
             Set<String> allergens = new TreeSet<String>();
             List<String[]> resultList = results.getResults();
             for (String[] array : resultList) {
-                final String allergenString = array[0];
-                if (allergenString != null && allergenString.length() > 0) {
-                    // Allergens are comma-separated, so split and add each
-                    String[] parts = allergenString.split(",");
-                    for (String part : parts) {
-                        String allergen = part.trim();
-                        if (!allergen.isEmpty()) {
-                            // Capitalize first letter
-                            if (allergen.length() == 1) {
-                                allergen = allergen.toUpperCase();
-                            } else {
-                                allergen = allergen.substring(0, 1).toUpperCase() + allergen.substring(1).toLowerCase();
-                            }
-                            allergens.add(allergen);
-                        }
-                    }
-                }
+                CatalogRules.addAllergens(array[0], allergens);
             }
             return allergens;
         } catch (SQLException e) {
@@ -153,25 +190,174 @@ public class BeersImpl extends BaseDaoImpl<Beer, Long> implements Beers {
     }
 
     public List<Beer> getRatedBeers() {
+        try {
+            return queryMapped(festivalWhere().and().gt(Beer.RATING_FIELD, 0).prepare());
+        } catch (SQLException e) {
+            throw newBeerAccessException("Failed to get rated beers", e);
+        }
+    }
+
+    public List<Beer> ratedOrBookmarkedBeers(final long afterId, final int limit) {
         try {
             QueryBuilder<Beer, Long> qb = queryBuilder();
             Where where = qb.where();
-            where.gt(Beer.RATING_FIELD, 0);
-            return qb.query();
+            where.and(
+                    where.eq(Beer.FESTIVAL_FIELD, new SelectArg(fFestival)),
+                    where.gt(Beer.ID_FIELD, afterId),
+                    where.or(
+                            where.gt(Beer.RATING_FIELD, 0),
+                            where.eq(Beer.ON_WISH_LIST_FIELD, true)
+                    )
+            );
+            qb.orderBy(Beer.ID_FIELD, true);
+            qb.limit((long) limit);
+            return queryMapped(qb.prepare());
         } catch (SQLException e) {
-            throw newBeerAccessException("Failed to get rated beers", e);
+            throw newBeerAccessException("Failed to get rated or bookmarked beers", e);
+        }
+    }
+
+    public List<Beer> fuzzySearch(final CharSequence text, final int maxResults) {
+        List<TrigramIndex.Match> matches = fIndexes.buildSearchIndexes().fTrigramIndex.search(text, maxResults);
+        if (matches.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Long> ids = new ArrayList<>(matches.size());
+        for (TrigramIndex.Match match : matches) {
+            ids.add(match.getId());
+        }
+        try {
+            return summariesInOrder(ids);
+        } catch (SQLException e) {
+            throw newBeerAccessException("Failed to get beers similar to '" + text + "'", e);
+        }
+    }
+
+    public List<Beer> similarBeers(final long id, final int maxResults) {
+        List<Long> ids = fIndexes.buildSimilarityIndex().similarTo(id, maxResults);
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        try {
+            return summariesInOrder(ids);
+        } catch (SQLException e) {
+            throw newBeerAccessException("Failed to get beers similar to beer " + id, e);
+        }
+    }
+
+    /**
+     * Reads the summaries of the beers with the given ids, in the order of the ids, leaving out
+     * any that have gone.
+     */
+    private List<Beer> summariesInOrder(final List<Long> ids) throws SQLException {
+        Map<Long, Beer> beersById = new HashMap<>();
+        QueryBuilder<Beer, Long> qb = queryBuilder();
+        qb.where().in(Beer.ID_FIELD, ids);
+        for (Beer beer : querySummaries(qb)) {
+            beersById.put(beer.getId(), beer);
+        }
+        List<Beer> beers = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Beer beer = beersById.get(id);
+            if (beer != null) {
+                beers.add(beer);
+            }
+        }
+        return beers;
+    }
+
+    public Set<Long> idsWithDescriptionContaining(final CharSequence text) {
+        try {
+            QueryBuilder<Beer, Long> qb = queryBuilder();
+            qb.selectColumns(Beer.ID_FIELD);
+            qb.where().eq(Beer.FESTIVAL_FIELD, new SelectArg(fFestival))
+                    .and().like(Beer.DESCRIPTION_FIELD, new SelectArg("%" + text + "%"));
+            Set<Long> ids = new HashSet<>();
+            for (Beer beer : getMappedTable().query(qb.prepare(), new BeerRowMapper(NO_BREWERIES))) {
+                ids.add(beer.getId());
+            }
+            return ids;
+        } catch (SQLException e) {
+            throw newBeerAccessException("Failed to get beers described with '" + text + "'", e);
+        }
+    }
+
+    public List<SuggestionIndex.Suggestion> suggest(final CharSequence prefix, final int maxResults) {
+        SearchIndexes indexes = fIndexes.getSearchIndexes();
+        if (indexes == null) {
+            return Collections.emptyList();
+        }
+        return indexes.fSuggestionIndex.suggest(prefix, maxResults);
+    }
+
+    public FestivalStats getFestivalStats() {
+        return fIndexes.getFestivalStats();
+    }
+
+    public void rebuildSearchIndex() {
+        fIndexes.rebuild();
+        // Publishes what was changed in the update's transaction; see catalogChanged().
+        fLiveQueries.catalogChanged();
+    }
+
+    public List<Beer> getFestivalBeers() {
+        try {
+            return queryMapped(festivalWhere().prepare());
+        } catch (SQLException e) {
+            throw newBeerAccessException("Failed to getFestivalBeers", e);
         }
     }
 
     public void updateBeer(final Beer beer) {
         try {
-            update(beer);
+            getMappedTable().update(BeerRowMapper.values(beer), beer.getId());
             fireBeerChanged(beer);
+            if (inTransaction()) {
+                // Counted again once the transaction is over, in case it is rolled back.
+                fIndexes.invalidateStats();
+            } else {
+                fIndexes.beerChanged(beer);
+                fLiveQueries.beerChanged(beer);
+            }
         } catch (SQLException e) {
             throw newBeerAccessException("Failed to update beer", e);
         }
     }
 
+    public LiveBeerList observeBeerList(final BeerList.Type type,
+                                        final BeerList.Config config,
+                                        final Executor executor,
+                                        final LiveBeerList.Observer observer) {
+        return fLiveQueries.observeBeerList(type, config, executor, observer);
+    }
+
+    /**
+     * Drops the search indexes and stats, which no longer match the catalog. Changes made in a
+     * transaction leave them as they are, matching what readers still see, until
+     * {@link #rebuildSearchIndex} replaces them once the transaction has committed, rather than
+     * dropping them for every beer ingested.
+     */
+    private void invalidateIndexes() {
+        if (!inTransaction()) {
+            fIndexes.invalidate();
+        }
+    }
+
+    /**
+     * Tells the live lists the catalog has changed. Changes made in a transaction are left to
+     * {@link #rebuildSearchIndex}, which an update calls once its transaction has committed:
+     * until then the lists' queries would not see them, and would run for every beer ingested.
+     */
+    private void catalogChanged() {
+        if (!inTransaction()) {
+            fLiveQueries.catalogChanged();
+        }
+    }
+
+    private boolean inTransaction() {
+        return getConnectionSource().getSpecialConnection(Beer.TABLE_NAME) != null;
+    }
+
     public void addBeerChangedListener(final BeerChangedListener l) {
         fListeners.add(l);
     }
@@ -192,10 +378,10 @@ public class BeersImpl extends BaseDaoImpl<Beer, Long> implements Beers {
                                    final Set<String> allergensToHide,
                                    final Set<String> statusToHide,
                                    final String categoryToExclude) {
-        QueryBuilder<Beer, Long> query = buildSortedFilteredBeerQuery(sortOrder, filterText, stylesToHide, statusToHide, categoryToExclude);
+        QueryBuilder<Beer, Long> query = buildFilteredBeerQuery(sortOrder, filterText, stylesToHide, statusToHide, categoryToExclude);
         try {
-            List<Beer> beers = query.query();
-            return filterByAllergens(beers, allergensToHide);
+            List<Beer> beers = querySummaries(query);
+            return inOrder(CatalogRules.filterByAllergens(beers, allergensToHide), sortOrder);
         } catch (SQLException e) {
             throw newBeerAccessException("Failed to get all beers list", e);
         }
@@ -208,8 +394,8 @@ public class BeersImpl extends BaseDaoImpl<Beer, Long> implements Beers {
                                           final Set<String> statusToHide) {
         QueryBuilder<Beer, Long> query = buildBookmarkQuery(sortOrder, filterText, stylesToHide, statusToHide);
         try {
-            List<Beer> beers = query.query();
-            return filterByAllergens(beers, allergensToHide);
+            List<Beer> beers = querySummaries(query);
+            return inOrder(CatalogRules.filterByAllergens(beers, allergensToHide), sortOrder);
         } catch (SQLException e) {
             throw newBeerAccessException("Failed to get bookmarked beer list", e);
         }
@@ -240,85 +426,82 @@ public class BeersImpl extends BaseDaoImpl<Beer, Long> implements Beers {
                                             final String category) {
         QueryBuilder<Beer, Long> query = buildLowNoAlcoholQuery(sortOrder, filterText, stylesToHide, statusToHide, category);
         try {
-            List<Beer> beers = query.query();
-            return filterByAllergens(beers, allergensToHide);
+            List<Beer> beers = querySummaries(query);
+            return inOrder(CatalogRules.filterByAllergens(beers, allergensToHide), sortOrder);
         } catch (SQLException e) {
             throw newBeerAccessException("Failed to get low/no alcohol beer list", e);
         }
     }
 
-    private List<Beer> filterByAllergens(final List<Beer> beers, final Set<String> allergensToHide) {
-        if (allergensToHide == null || allergensToHide.isEmpty()) {
+    /**
+     * Lists in catalog orders are queried unordered and put in order from the sort index, rather
+     * than sorted by the database on every query. The other orders change as the user rates
+     * beers, so are left to the database, which reads them in order from an index. See
+     * {@link CatalogSchema}. Until the sort index has been built the list is sorted here, as
+     * building it would hold up the list.
+     */
+    private List<Beer> inOrder(final List<Beer> beers, final SortOrder sortOrder) {
+        if (!sortOrder.isCatalogOrder()) {
             return beers;
         }
-        List<Beer> filtered = new java.util.ArrayList<>();
-        for (Beer beer : beers) {
-            if (!containsAnyAllergen(beer.getAllergens(), allergensToHide)) {
-                filtered.add(beer);
-            }
-        }
-        return filtered;
+        return fIndexes.inOrder(beers, sortOrder);
     }
 
-    private boolean containsAnyAllergen(final String beerAllergens, final Set<String> allergensToHide) {
-        if (beerAllergens == null || beerAllergens.isEmpty()) {
-            return false;
-        }
-        String lowerAllergens = beerAllergens.toLowerCase();
-        for (String allergen : allergensToHide) {
-            if (lowerAllergens.contains(allergen.toLowerCase())) {
-                return true;
-            }
+    private static void orderBy(final QueryBuilder<Beer, Long> qb, final SortOrder sortOrder) {
+        if (!sortOrder.isCatalogOrder()) {
+            qb.orderBy(sortOrder.columnName(), sortOrder.ascending());
+            qb.orderBy(Beer.ID_FIELD, true);
         }
-        return false;
     }
 
-    private QueryBuilder<Beer, Long> buildBookmarkQuery(final SortOrder sortOrder,
-                                                        final CharSequence filterText,
-                                                        final Set<String> stylesToHide,
-                                                        final Set<String> statusToHide) {
+    // The list queries are package-private for the query plan test.
+
+    QueryBuilder<Beer, Long> buildBookmarkQuery(final SortOrder sortOrder,
+                                                final CharSequence filterText,
+                                                final Set<String> stylesToHide,
+                                                final Set<String> statusToHide) {
         QueryBuilder<Beer, Long> qb = queryBuilder();
         Where where = qb.where();
         try {
-            doWhere(where, fBreweries, filterText, stylesToHide, statusToHide);
+            doWhere(where, fFestival, filterText, stylesToHide, statusToHide);
             where.and().eq(Beer.ON_WISH_LIST_FIELD, true);
-            qb.orderBy(sortOrder.columnName(), sortOrder.ascending());
+            orderBy(qb, sortOrder);
             return qb;
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
     }
 
-    private QueryBuilder<Beer, Long> buildSortedFilteredBeerQuery(final SortOrder sortOrder,
-                                                                  final CharSequence filterText,
-                                                                  final Set<String> stylesToHide,
-                                                                  final Set<String> statusToHide,
-                                                                  final String categoryToExclude) {
+    QueryBuilder<Beer, Long> buildFilteredBeerQuery(final SortOrder sortOrder,
+                                                    final CharSequence filterText,
+                                                    final Set<String> stylesToHide,
+                                                    final Set<String> statusToHide,
+                                                    final String categoryToExclude) {
         QueryBuilder<Beer, Long> qb = queryBuilder();
         Where where = qb.where();
         try {
-            doWhere(where, fBreweries, filterText, stylesToHide, statusToHide);
+            doWhere(where, fFestival, filterText, stylesToHide, statusToHide);
             if (categoryToExclude != null && !categoryToExclude.isEmpty()) {
                 where.and().ne(Beer.CATEGORY_FIELD, categoryToExclude);
             }
-            qb.orderBy(sortOrder.columnName(), sortOrder.ascending());
+            orderBy(qb, sortOrder);
             return qb;
         } catch (SQLException e) {
             throw new RuntimeException(e);
         }
     }
 
-    private QueryBuilder<Beer, Long> buildLowNoAlcoholQuery(final SortOrder sortOrder,
-                                                            final CharSequence filterText,
-                                                            final Set<String> stylesToHide,
-                                                            final Set<String> statusToHide,
-                                                            final String category) {
+    QueryBuilder<Beer, Long> buildLowNoAlcoholQuery(final SortOrder sortOrder,
+                                                    final CharSequence filterText,
+                                                    final Set<String> stylesToHide,
+                                                    final Set<String> statusToHide,
+                                                    final String category) {
         QueryBuilder<Beer, Long> qb = queryBuilder();
         Where where = qb.where();
         try {
-            doWhere(where, fBreweries, filterText, stylesToHide, statusToHide);
+            doWhere(where, fFestival, filterText, stylesToHide, statusToHide);
             where.and().eq(Beer.CATEGORY_FIELD, category);
-            qb.orderBy(sortOrder.columnName(), sortOrder.ascending());
+            orderBy(qb, sortOrder);
             return qb;
         } catch (SQLException e) {
             throw new RuntimeException(e);
@@ -326,7 +509,7 @@ public class BeersImpl extends BaseDaoImpl<Beer, Long> implements Beers {
     }
 
     private static void doWhere(final Where where,
-                                final Breweries breweries,
+                                final String festival,
                                 final CharSequence filterText,
                                 final Set<String> stylesToHide,
                                 final Set<String> statusToHide) throws SQLException {
@@ -334,25 +517,28 @@ public class BeersImpl extends BaseDaoImpl<Beer, Long> implements Beers {
         SelectArg nameFilter = new SelectArg("%"+filterText+"%");
         SelectArg styleFilter = new SelectArg("%"+filterText+"%");
         SelectArg descFilter = new SelectArg("%"+filterText+"%");
+        SelectArg breweryFilter = new SelectArg("%" + Beer.normalizeName(String.valueOf(filterText)) + "%");
         where.and(
+                where.eq(Beer.FESTIVAL_FIELD, new SelectArg(festival)),
                 where.not().in(Beer.STATUS_FIELD, statusToHide),
                 where.not().in(Beer.STYLE_FIELD, stylesToHide),
                 where.or(
-                        where.or(
-                                where.like(Beer.NAME_FIELD, nameFilter),
-                                where.like(Beer.STYLE_FIELD, styleFilter),
-                                where.like(Beer.DESCRIPTION_FIELD, descFilter)
-                        ),
-                        where.in(Beer.BREWERY_FIELD, breweries.buildFilteredBreweryQuery(filterText))
+                        where.like(Beer.NAME_FIELD, nameFilter),
+                        where.like(Beer.STYLE_FIELD, styleFilter),
+                        where.like(Beer.DESCRIPTION_FIELD, descFilter),
+                        where.like(Beer.BREWERY_NAME_FIELD, breweryFilter)
                 )
         );
     }
 
     public void updateFromFestivalOrCreate(final Beer festivalBeerDescription) {
+        invalidateIndexes();
+        festivalBeerDescription.setFestival(fFestival);
         final Brewery brewery = festivalBeerDescription.getBrewery();
         if (brewery.getId() == 0) {
             fBreweries.updateFromFestivalOrCreate(brewery);
         }
+        festivalBeerDescription.setBreweryName(Beer.normalizeName(brewery.getName()));
 
         if (festivalBeerDescription.getId() == 0) {
             try {
@@ -360,6 +546,7 @@ public class BeersImpl extends BaseDaoImpl<Beer, Long> implements Beers {
             } catch (SQLException e) {
                 throw newBeerAccessException("Failed to update beer " + festivalBeerDescription + " from festival description", e);
             }
+            catalogChanged();
         }
     }
 
@@ -367,37 +554,240 @@ public class BeersImpl extends BaseDaoImpl<Beer, Long> implements Beers {
         SelectArg beerName = new SelectArg(festivalBeerDescription.getName());
         SelectArg beerDescription = new SelectArg(festivalBeerDescription.getDescription());
         SelectArg beerBrewery = new SelectArg(festivalBeerDescription.getBrewery());
+        SelectArg beerBreweryName = new SelectArg(festivalBeerDescription.getBreweryName());
         SelectArg beerAbv = new SelectArg(festivalBeerDescription.getAbv());
         SelectArg beerStatus = new SelectArg(festivalBeerDescription.getStatus());
         SelectArg beerStyle = new SelectArg(festivalBeerDescription.getStyle());
         SelectArg beerAllergens = new SelectArg(festivalBeerDescription.getAllergens());
         SelectArg beerCategory = new SelectArg(festivalBeerDescription.getCategory());
         SelectArg beerFestivalId = new SelectArg(festivalBeerDescription.getFestivalID());
+        SelectArg beerFestival = new SelectArg(fFestival);
+        SelectArg beerSource = new SelectArg(festivalBeerDescription.getSource());
 
         UpdateBuilder<Beer, Long> updateBuilder = updateBuilder();
         updateBuilder.updateColumnValue(Beer.NAME_FIELD, beerName);
         updateBuilder.updateColumnValue(Beer.DESCRIPTION_FIELD, beerDescription);
         updateBuilder.updateColumnValue(Beer.BREWERY_FIELD, beerBrewery);
+        updateBuilder.updateColumnValue(Beer.BREWERY_NAME_FIELD, beerBreweryName);
         updateBuilder.updateColumnValue(Beer.ABV_FIELD, beerAbv);
         updateBuilder.updateColumnValue(Beer.STATUS_FIELD, beerStatus);
         updateBuilder.updateColumnValue(Beer.STYLE_FIELD, beerStyle);
         updateBuilder.updateColumnValue(Beer.ALLERGENS_FIELD, beerAllergens);
         updateBuilder.updateColumnValue(Beer.CATEGORY_FIELD, beerCategory);
+        updateBuilder.updateColumnValue(Beer.SOURCE_FIELD, beerSource);
 
-        updateBuilder.where().eq(Beer.FESTIVAL_ID_FIELD, beerFestivalId);
+        Where<Beer, Long> where = updateBuilder.where();
+        where.and(where.eq(Beer.FESTIVAL_FIELD, beerFestival), where.eq(Beer.FESTIVAL_ID_FIELD, beerFestivalId));
         PreparedUpdate<Beer> preparedUpdate = updateBuilder.prepare();
 
         if (update(preparedUpdate) == 1) {
             // update the brewery's Id field to match the database
             QueryBuilder<Beer, Long> queryBuilder = queryBuilder();
-            queryBuilder.where().eq(Brewery.FESTIVAL_ID_FIELD, beerFestivalId);
-            festivalBeerDescription.setId(queryBuilder.queryForFirst().getId());
+            queryBuilder.selectColumns(Beer.ID_FIELD);
+            Where<Beer, Long> idWhere = queryBuilder.where();
+            idWhere.and(idWhere.eq(Beer.FESTIVAL_FIELD, beerFestival), idWhere.eq(Beer.FESTIVAL_ID_FIELD, beerFestivalId));
+            List<Beer> updated = getMappedTable().query(queryBuilder.prepare(), new BeerRowMapper(NO_BREWERIES));
+            festivalBeerDescription.setId(updated.get(0).getId());
         } else {
             create(festivalBeerDescription);
         }
     }
 
+    public int deleteStaleBeers(final String source, final Set<String> festivalIds) {
+        invalidateIndexes();
+        try {
+            QueryBuilder<Beer, Long> qb = queryBuilder();
+            qb.selectColumns(Beer.ID_FIELD, Beer.FESTIVAL_ID_FIELD);
+            Where<Beer, Long> where = qb.where();
+            where.and(where.eq(Beer.FESTIVAL_FIELD, new SelectArg(fFestival)),
+                    where.eq(Beer.SOURCE_FIELD, new SelectArg(source)),
+                    where.eq(Beer.RATING_FIELD, 0),
+                    where.eq(Beer.ON_WISH_LIST_FIELD, false),
+                    where.or(where.isNull(Beer.USER_COMMENTS_FIELD), where.eq(Beer.USER_COMMENTS_FIELD, "")));
+            List<Long> stale = new ArrayList<>();
+            for (Beer beer : qb.query()) {
+                if (!festivalIds.contains(beer.getFestivalID())) {
+                    stale.add(beer.getId());
+                }
+            }
+            // Deleted in batches to stay under SQLite's limit on bound parameters.
+            int deleted = 0;
+            for (int i = 0; i < stale.size(); i += DELETE_BATCH_SIZE) {
+                deleted += deleteIds(stale.subList(i, Math.min(stale.size(), i + DELETE_BATCH_SIZE)));
+            }
+            if (deleted > 0) {
+                catalogChanged();
+            }
+            return deleted;
+        } catch (SQLException e) {
+            throw newBeerAccessException("Failed to deleteStaleBeers from " + source, e);
+        }
+    }
+
+    public int updateStatuses(final Map<String, String> statusByFestivalId) {
+        GenericRawResults<String[]> results = null;
+        try {
+            QueryBuilder<Beer, Long> qb = queryBuilder();
+            qb.selectColumns(Beer.FESTIVAL_ID_FIELD, Beer.STATUS_FIELD);
+            qb.where().eq(Beer.FESTIVAL_FIELD, new SelectArg());
+            results = queryRaw(qb.prepareStatementString(), fFestival);
+            final Map<String, String> changed = new HashMap<>();
+            for (String[] row : results) {
+                String status = statusByFestivalId.get(row[0]);
+                if (status != null && !status.equals(row[1])) {
+                    changed.put(row[0], status);
+                }
+            }
+            if (changed.isEmpty()) {
+                return 0;
+            }
+
+            // One statement, prepared once and run for each beer in a single transaction.
+            final SelectArg status = new SelectArg();
+            final SelectArg festivalId = new SelectArg();
+            UpdateBuilder<Beer, Long> updateBuilder = updateBuilder();
+            updateBuilder.updateColumnValue(Beer.STATUS_FIELD, status);
+            Where<Beer, Long> where = updateBuilder.where();
+            where.and(where.eq(Beer.FESTIVAL_FIELD, new SelectArg(fFestival)), where.eq(Beer.FESTIVAL_ID_FIELD, festivalId));
+            final PreparedUpdate<Beer> preparedUpdate = updateBuilder.prepare();
+            TransactionManager.callInTransaction(getConnectionSource(), new Callable<Void>() {
+                public Void call() throws SQLException {
+                    for (Map.Entry<String, String> entry : changed.entrySet()) {
+                        status.setValue(entry.getValue());
+                        festivalId.setValue(entry.getKey());
+                        update(preparedUpdate);
+                    }
+                    return null;
+                }
+            });
+            // Statuses are not searched, so the search structures stay as they are.
+            catalogChanged();
+            return changed.size();
+        } catch (SQLException e) {
+            throw newBeerAccessException("Failed to updateStatuses", e);
+        } finally {
+            if (results != null) {
+                try {
+                    results.close();
+                } catch (IOException e) {
+                    throw newBeerAccessException("Failed to close results.", e);
+                }
+            }
+        }
+    }
+
+    public Set<String> getFestivals() {
+        GenericRawResults<String[]> results = null;
+        try {
+            QueryBuilder<Beer, Long> qb = queryBuilder();
+            qb.selectColumns(Beer.FESTIVAL_FIELD);
+            qb.distinct();
+            results = queryRaw(qb.prepareStatementString());
+            Set<String> festivals = new TreeSet<String>();
+            for (String[] array : results) {
+                festivals.add(array[0]);
+            }
+            return festivals;
+        } catch (SQLException e) {
+            throw newBeerAccessException("Failed to get festivals", e);
+        } finally {
+            if (results != null) {
+                try {
+                    results.close();
+                } catch (IOException e) {
+                    throw newBeerAccessException("Failed to close results.", e);
+                }
+            }
+        }
+    }
+
+    public int deleteFestival(final String festival) {
+        if (festival.equals(fFestival)) {
+            invalidateIndexes();
+        }
+        try {
+            DeleteBuilder<Beer, Long> deleteBuilder = deleteBuilder();
+            deleteBuilder.where().eq(Beer.FESTIVAL_FIELD, new SelectArg(festival));
+            int deleted = deleteBuilder.delete();
+            fBreweries.deleteFestival(festival);
+            if (festival.equals(fFestival)) {
+                catalogChanged();
+            }
+            return deleted;
+        } catch (SQLException e) {
+            throw newBeerAccessException("Failed to deleteFestival " + festival, e);
+        }
+    }
+
+    public List<String> evictFestivals(final List<String> mostRecentFirst, final int maxFestivals) {
+        List<String> keep = CatalogRules.festivalsToKeep(fFestival, mostRecentFirst, maxFestivals);
+        List<String> evicted = new ArrayList<>();
+        for (String festival : getFestivals()) {
+            if (!keep.contains(festival)) {
+                deleteFestival(festival);
+                evicted.add(festival);
+            }
+        }
+        return evicted;
+    }
+
+    public void setFestival(final String festival) {
+        fFestival = festival;
+        fIndexes.invalidate();
+        if (fBreweries != null) {
+            fBreweries.setFestival(festival);
+        }
+        fLiveQueries.catalogChanged();
+    }
+
+    public String getFestival() {
+        return fFestival;
+    }
+
+    /**
+     * Stamps beers created without a festival with the current one, so every way of creating a
+     * beer puts it where this DAO's queries will find it, and fills in the brewery name.
+     */
+    @Override
+    public int create(final Beer beer) throws SQLException {
+        if (beer.getFestival() == null) {
+            beer.setFestival(fFestival);
+        }
+        if (beer.getBreweryName() == null && beer.getBrewery() != null) {
+            beer.setBreweryName(Beer.normalizeName(beer.getBrewery().getName()));
+        }
+        BeerRowMapper.setId(beer, getMappedTable().insert(BeerRowMapper.values(beer)));
+        catalogChanged();
+        return 1;
+    }
+
+    private Where<Beer, Long> festivalWhere() throws SQLException {
+        return queryBuilder().where().eq(Beer.FESTIVAL_FIELD, new SelectArg(fFestival));
+    }
+
+    private List<Beer> queryMapped(final PreparedQuery<Beer> query) throws SQLException {
+        Map<Long, Brewery> breweries = fBreweries == null ? NO_BREWERIES : fBreweries.getFestivalBreweries();
+        return getMappedTable().query(query, new BeerRowMapper(breweries));
+    }
+
+    /**
+     * Reads the beers as summaries; see {@link Beers#allBeersList}.
+     */
+    private List<Beer> querySummaries(final QueryBuilder<Beer, Long> qb) throws SQLException {
+        qb.selectColumns(Beer.SUMMARY_FIELDS);
+        Map<Long, Brewery> breweries = fBreweries == null ? NO_BREWERIES : fBreweries.getFestivalBreweryNames();
+        return getMappedTable().query(qb.prepare(), new BeerRowMapper(breweries));
+    }
+
+    private MappedTable<Beer> getMappedTable() {
+        if (fMappedTable == null) {
+            fMappedTable = new MappedTable<>(this, BeerRowMapper.VALUE_COLUMNS);
+        }
+        return fMappedTable;
+    }
+
     public void setBreweries(final Breweries breweries) {
         fBreweries = breweries;
+        breweries.setFestival(fFestival);
     }
 }
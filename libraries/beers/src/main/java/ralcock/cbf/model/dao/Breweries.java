@@ -1,11 +1,27 @@
 package ralcock.cbf.model.dao;
 
 import com.j256.ormlite.dao.Dao;
-import com.j256.ormlite.stmt.QueryBuilder;
 import ralcock.cbf.model.Brewery;
 
-public interface Breweries extends Dao<Brewery, Long> {
-    QueryBuilder<Brewery, Long> buildFilteredBreweryQuery(CharSequence filterText);
+import java.util.Map;
 
+public interface Breweries extends Dao<Brewery, Long> {
     void updateFromFestivalOrCreate(Brewery brewery);
+
+    /**
+     * Switches to the breweries of another festival. See {@link Beers#setFestival}.
+     */
+    void setFestival(String festival);
+
+    int deleteFestival(String festival);
+
+    /**
+     * The current festival's breweries, by id.
+     */
+    Map<Long, Brewery> getFestivalBreweries();
+
+    /**
+     * The current festival's breweries, by id, with only their names read. For beer summaries.
+     */
+    Map<Long, Brewery> getFestivalBreweryNames();
 }
@@ -1,23 +1,32 @@
 package ralcock.cbf.model.dao;
 
 import com.j256.ormlite.dao.BaseDaoImpl;
+import com.j256.ormlite.stmt.DeleteBuilder;
 import com.j256.ormlite.stmt.PreparedUpdate;
 import com.j256.ormlite.stmt.QueryBuilder;
 import com.j256.ormlite.stmt.SelectArg;
 import com.j256.ormlite.stmt.UpdateBuilder;
+import com.j256.ormlite.stmt.Where;
 import com.j256.ormlite.support.ConnectionSource;
 import com.j256.ormlite.table.DatabaseTableConfig;
 import ralcock.cbf.model.Brewery;
+import ralcock.cbf.model.BreweryRowMapper;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
 
 public class BreweriesImpl extends BaseDaoImpl<Brewery, Long> implements Breweries {
 
     private final Logger logger = LoggerFactory.getLogger(BreweriesImpl.class);
 
+    private volatile String fFestival = Beers.NO_FESTIVAL;
+
+    private MappedTable<Brewery> fMappedTable;
+
     @SuppressWarnings("UnusedDeclaration")
     public BreweriesImpl(final ConnectionSource connectionSource) throws SQLException {
         super(connectionSource, Brewery.class);
@@ -28,19 +37,8 @@ public class BreweriesImpl extends BaseDaoImpl<Brewery, Long> implements Breweri
         super(connectionSource, config);
     }
 
-    public QueryBuilder<Brewery, Long> buildFilteredBreweryQuery(final CharSequence filterText) {
-        SelectArg filterTextArg = new SelectArg("%"+filterText+"%");
-        QueryBuilder<Brewery, Long> qb = queryBuilder();
-        qb.selectColumns(Brewery.ID_FIELD);
-        try {
-            qb.where().like(Brewery.NAME_FIELD, filterTextArg);
-            return qb;
-        } catch (SQLException e) {
-            throw new RuntimeException(e);
-        }
-    }
-
     public void updateFromFestivalOrCreate(final Brewery brewery) {
+        brewery.setFestival(fFestival);
         try {
             doUpdateOrCreate(brewery);
         } catch (SQLException e) {
@@ -54,21 +52,86 @@ public class BreweriesImpl extends BaseDaoImpl<Brewery, Long> implements Breweri
         SelectArg breweryName = new SelectArg(brewery.getName());
         SelectArg breweryDescription = new SelectArg(brewery.getDescription());
         SelectArg breweryFestivalId = new SelectArg(brewery.getFestivalID());
+        SelectArg breweryFestival = new SelectArg(fFestival);
 
         UpdateBuilder<Brewery, Long> updateBuilder = updateBuilder();
         updateBuilder.updateColumnValue(Brewery.NAME_FIELD, breweryName);
         updateBuilder.updateColumnValue(Brewery.DESCRIPTION_FIELD, breweryDescription);
-        updateBuilder.where().eq(Brewery.FESTIVAL_ID_FIELD, breweryFestivalId);
+        Where<Brewery, Long> where = updateBuilder.where();
+        where.and(where.eq(Brewery.FESTIVAL_FIELD, breweryFestival), where.eq(Brewery.FESTIVAL_ID_FIELD, breweryFestivalId));
         PreparedUpdate<Brewery> preparedUpdate = updateBuilder.prepare();
 
         if (update(preparedUpdate) == 1) {
             // update the brewery's Id field to match the database
             QueryBuilder<Brewery, Long> queryBuilder = queryBuilder();
-            queryBuilder.where().eq(Brewery.FESTIVAL_ID_FIELD, breweryFestivalId);
+            Where<Brewery, Long> idWhere = queryBuilder.where();
+            idWhere.and(idWhere.eq(Brewery.FESTIVAL_FIELD, breweryFestival),
+                    idWhere.eq(Brewery.FESTIVAL_ID_FIELD, breweryFestivalId));
             brewery.setId(queryBuilder.queryForFirst().getId());
         } else {
             create(brewery);
         }
     }
 
+    public void setFestival(final String festival) {
+        fFestival = festival;
+    }
+
+    public int deleteFestival(final String festival) {
+        try {
+            DeleteBuilder<Brewery, Long> deleteBuilder = deleteBuilder();
+            deleteBuilder.where().eq(Brewery.FESTIVAL_FIELD, new SelectArg(festival));
+            return deleteBuilder.delete();
+        } catch (SQLException e) {
+            String msg = "Failed to deleteFestival " + festival;
+            logger.error(msg, e);
+            throw new BeerAccessException(msg, e);
+        }
+    }
+
+    public Map<Long, Brewery> getFestivalBreweries() {
+        return festivalBreweries(queryBuilder());
+    }
+
+    public Map<Long, Brewery> getFestivalBreweryNames() {
+        QueryBuilder<Brewery, Long> qb = queryBuilder();
+        qb.selectColumns(Brewery.ID_FIELD, Brewery.NAME_FIELD);
+        return festivalBreweries(qb);
+    }
+
+    private Map<Long, Brewery> festivalBreweries(final QueryBuilder<Brewery, Long> qb) {
+        try {
+            qb.where().eq(Brewery.FESTIVAL_FIELD, new SelectArg(fFestival));
+            Map<Long, Brewery> breweries = new HashMap<>();
+            for (Brewery brewery : getMappedTable().query(qb.prepare(), new BreweryRowMapper())) {
+                breweries.put(brewery.getId(), brewery);
+            }
+            return breweries;
+        } catch (SQLException e) {
+            String msg = "Failed to getFestivalBreweries";
+            logger.error(msg, e);
+            throw new BeerAccessException(msg, e);
+        }
+    }
+
+    /**
+     * Stamps breweries created without a festival with the current one. Inserted through the
+     * generated row mapper.
+     */
+    @Override
+    public int create(final Brewery brewery) throws SQLException {
+        if (brewery.getFestival() == null) {
+            brewery.setFestival(fFestival);
+        }
+        BreweryRowMapper.setId(brewery, getMappedTable().insert(BreweryRowMapper.values(brewery)));
+        return 1;
+    }
+
+    private MappedTable<Brewery> getMappedTable() {
+        if (fMappedTable == null) {
+            fMappedTable = new MappedTable<>(this, BreweryRowMapper.VALUE_COLUMNS);
+        }
+        return fMappedTable;
+    }
+
 }
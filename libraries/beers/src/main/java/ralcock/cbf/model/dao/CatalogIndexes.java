@@ -0,0 +1,212 @@
+package ralcock.cbf.model.dao;
+
+import ralcock.cbf.model.Beer;
+import ralcock.cbf.model.SortOrder;
+import ralcock.cbf.model.search.SimilarityIndex;
+import ralcock.cbf.model.stats.FestivalStats;
+import ralcock.cbf.model.stats.StatsAggregator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Holds a catalog's {@link SearchIndexes}, {@link SimilarityIndex} and {@link StatsAggregator},
+ * and builds them. The similarity index is built only when a beer's details first ask for it,
+ * so that neither the lists nor the searches wait for it.
+ * <p>
+ * They are built one build at a time, so a query that wants them while the catalog is being
+ * opened waits for that build rather than making its own. Each kind has a generation, moved on
+ * whenever the catalog changes under it, and a build publishes only if its generation has not
+ * moved on since it read the beers, so one that read them before a change never replaces what
+ * is current with what is not.
+ */
+final class CatalogIndexes {
+
+    /**
+     * Where the beers they are built from are read.
+     */
+    interface Catalog {
+        List<Beer> getFestivalBeers();
+    }
+
+    private final Catalog fCatalog;
+
+    // Guards the generations, and the fields whenever they are published or cleared.
+    private final Object fLock = new Object();
+    private long fIndexGeneration;
+    private long fStatsGeneration;
+
+    private volatile SearchIndexes fSearchIndexes;
+    private volatile SimilarityIndex fSimilarityIndex;
+    private volatile StatsAggregator fStats;
+
+    CatalogIndexes(final Catalog catalog) {
+        fCatalog = catalog;
+    }
+
+    /**
+     * The current search indexes, or null if they have not been built since the catalog last
+     * changed.
+     */
+    SearchIndexes getSearchIndexes() {
+        return fSearchIndexes;
+    }
+
+    /**
+     * The current search indexes, built first if there are none.
+     */
+    SearchIndexes buildSearchIndexes() {
+        final SearchIndexes indexes = fSearchIndexes;
+        return indexes != null ? indexes : build();
+    }
+
+    private synchronized SearchIndexes build() {
+        SearchIndexes indexes = fSearchIndexes;
+        if (indexes != null) {
+            // Built by the build this one waited for.
+            return indexes;
+        }
+        final long generation;
+        synchronized (fLock) {
+            generation = fIndexGeneration;
+        }
+        indexes = new SearchIndexes(fCatalog.getFestivalBeers());
+        synchronized (fLock) {
+            if (generation == fIndexGeneration) {
+                fSearchIndexes = indexes;
+            }
+        }
+        return indexes;
+    }
+
+    /**
+     * The current similarity index, built first if there is none.
+     */
+    SimilarityIndex buildSimilarityIndex() {
+        final SimilarityIndex index = fSimilarityIndex;
+        return index != null ? index : buildSimilarity();
+    }
+
+    private synchronized SimilarityIndex buildSimilarity() {
+        SimilarityIndex index = fSimilarityIndex;
+        if (index != null) {
+            return index;
+        }
+        final long generation;
+        synchronized (fLock) {
+            generation = fIndexGeneration;
+        }
+        index = SimilarityIndex.forBeers(fCatalog.getFestivalBeers());
+        synchronized (fLock) {
+            if (generation == fIndexGeneration) {
+                fSimilarityIndex = index;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Returns the beers in {@code sortOrder}: from the sort index if it has been built, and
+     * otherwise sorted, as building it would hold up the caller.
+     */
+    List<Beer> inOrder(final List<Beer> beers, final SortOrder sortOrder) {
+        final SearchIndexes indexes = fSearchIndexes;
+        if (indexes != null) {
+            return indexes.fSortIndex.inOrder(beers, sortOrder);
+        }
+        final List<Beer> sorted = new ArrayList<>(beers);
+        Collections.sort(sorted, sortOrder.comparator());
+        return sorted;
+    }
+
+    FestivalStats getFestivalStats() {
+        StatsAggregator stats = fStats;
+        if (stats == null) {
+            stats = countStats();
+        }
+        return stats.getStats();
+    }
+
+    private synchronized StatsAggregator countStats() {
+        StatsAggregator stats = fStats;
+        if (stats != null) {
+            return stats;
+        }
+        final long generation;
+        synchronized (fLock) {
+            generation = fStatsGeneration;
+        }
+        stats = StatsAggregator.forBeers(fCatalog.getFestivalBeers());
+        synchronized (fLock) {
+            if (generation == fStatsGeneration) {
+                fStats = stats;
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Builds the search indexes and stats from one read of the beers, replacing what there was,
+     * and drops the similarity index, to be built again when it is next asked for.
+     */
+    synchronized void rebuild() {
+        final long indexGeneration;
+        final long statsGeneration;
+        synchronized (fLock) {
+            indexGeneration = fIndexGeneration;
+            statsGeneration = fStatsGeneration;
+        }
+        final List<Beer> beers = fCatalog.getFestivalBeers();
+        final SearchIndexes indexes = new SearchIndexes(beers);
+        final StatsAggregator stats = StatsAggregator.forBeers(beers);
+        synchronized (fLock) {
+            if (indexGeneration == fIndexGeneration) {
+                fSearchIndexes = indexes;
+                fSimilarityIndex = null;
+            }
+            if (statsGeneration == fStatsGeneration) {
+                fStats = stats;
+            }
+        }
+    }
+
+    /**
+     * Drops them all, as the catalog has changed. Never waits for a build, so it is cheap enough to
+     * call for every beer written outside a transaction.
+     */
+    void invalidate() {
+        synchronized (fLock) {
+            fIndexGeneration++;
+            fStatsGeneration++;
+            fSearchIndexes = null;
+            fSimilarityIndex = null;
+            fStats = null;
+        }
+    }
+
+    /**
+     * Drops the stats alone, to be counted again.
+     */
+    void invalidateStats() {
+        synchronized (fLock) {
+            fStatsGeneration++;
+            fStats = null;
+        }
+    }
+
+    /**
+     * Counts the beer's new rating in the stats, or, if they are being counted, has them counted
+     * again.
+     */
+    void beerChanged(final Beer beer) {
+        synchronized (fLock) {
+            final StatsAggregator stats = fStats;
+            if (stats != null) {
+                stats.update(beer);
+            } else {
+                fStatsGeneration++;
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package ralcock.cbf.model.dao;
+
+import ralcock.cbf.model.Beer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * What the catalog engines work out the same way, whichever stores the beers.
+ */
+final class CatalogRules {
+
+    private CatalogRules() {
+        // Utility class
+    }
+
+    static List<Beer> filterByAllergens(final List<Beer> beers, final Set<String> allergensToHide) {
+        if (allergensToHide == null || allergensToHide.isEmpty()) {
+            return beers;
+        }
+        List<Beer> filtered = new ArrayList<>();
+        for (Beer beer : beers) {
+            if (!containsAnyAllergen(beer.getAllergens(), allergensToHide)) {
+                filtered.add(beer);
+            }
+        }
+        return filtered;
+    }
+
+    private static boolean containsAnyAllergen(final String beerAllergens, final Set<String> allergensToHide) {
+        if (beerAllergens == null || beerAllergens.isEmpty()) {
+            return false;
+        }
+        String lowerAllergens = beerAllergens.toLowerCase();
+        for (String allergen : allergensToHide) {
+            if (lowerAllergens.contains(allergen.toLowerCase())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Adds the allergens of a beer, stored as comma-separated strings (e.g., "Gluten, Sulphites"),
+     * trimmed and in title case.
+     */
+    static void addAllergens(final String allergenString, final Set<String> allergens) {
+        if (allergenString == null || allergenString.length() == 0) {
+            return;
+        }
+        // Allergens are comma-separated, so split and add each
+        String[] parts = allergenString.split(",");
+        for (String part : parts) {
+            String allergen = part.trim();
+            if (!allergen.isEmpty()) {
+                // Capitalize first letter
+                if (allergen.length() == 1) {
+                    allergen = allergen.toUpperCase();
+                } else {
+                    allergen = allergen.substring(0, 1).toUpperCase() + allergen.substring(1).toLowerCase();
+                }
+                allergens.add(allergen);
+            }
+        }
+    }
+
+    /**
+     * The festivals {@link Beers#evictFestivals} keeps: the current one and then the most
+     * recently used, up to {@code maxFestivals}.
+     */
+    static List<String> festivalsToKeep(final String current, final List<String> mostRecentFirst,
+                                        final int maxFestivals) {
+        List<String> keep = new ArrayList<>();
+        keep.add(current);
+        for (String festival : mostRecentFirst) {
+            if (keep.size() >= maxFestivals) {
+                break;
+            }
+            if (!keep.contains(festival)) {
+                keep.add(festival);
+            }
+        }
+        return keep;
+    }
+}
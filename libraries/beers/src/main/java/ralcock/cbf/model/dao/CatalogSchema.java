@@ -0,0 +1,143 @@
+package ralcock.cbf.model.dao;
+
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.dao.DaoManager;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.table.TableUtils;
+import ralcock.cbf.model.Beer;
+import ralcock.cbf.model.Brewery;
+import ralcock.cbf.model.IngestCheckpoint;
+import ralcock.cbf.model.StagedProducer;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Creates and drops the catalog tables. Several festivals share the tables, each beer and
+ * brewery being tagged with its festival, so every query the DAOs make is on one festival and the
+ * indexes lead on the festival column. The (festival, festival_id) unique constraints give one
+ * each; the rest are composite, which the table annotations cannot express, so are created here.
+ * <p>
+ * The beer lists are one query per tab (all, bookmarks, low/no) in each {@link
+ * ralcock.cbf.model.SortOrder}. Catalog orders are applied in memory, so for those a query only
+ * needs to find the festival's beers, and the bookmark and category filters through an index.
+ * Rating orders are left to the database: each tab has an index ending in rating in each
+ * direction, which, with the row id SQLite appends to every index, reads beers in exactly the
+ * order asked for, ties by id ascending, without a sort. {@code BeersImplQueryPlanTest} checks
+ * all of them.
+ * <p>
+ * Feeds being ingested are staged in tables of their own, see {@link Staging}, keyed by festival
+ * and source through their unique constraints.
+ * <p>
+ * Databases made by earlier versions are brought up to date a step at a time, see {@link
+ * #addBreweryNames}, {@link #recreateIndexes} and {@link #createStagingTables}, so the ratings,
+ * bookmarks and comments in them are kept.
+ */
+public final class CatalogSchema {
+
+    private static final String[] FESTIVAL_INDEXES = {
+            index("beers_festival_name_idx", Beer.TABLE_NAME, Beer.FESTIVAL_FIELD, Beer.NAME_FIELD),
+            index("beers_festival_brewery_name_idx", Beer.TABLE_NAME, Beer.FESTIVAL_FIELD, Beer.BREWERY_NAME_FIELD),
+            index("beers_festival_source_idx", Beer.TABLE_NAME, Beer.FESTIVAL_FIELD, Beer.SOURCE_FIELD),
+
+            // All beers
+            index("beers_festival_rating_idx", Beer.TABLE_NAME,
+                    Beer.FESTIVAL_FIELD, Beer.RATING_FIELD),
+            index("beers_festival_rating_desc_idx", Beer.TABLE_NAME,
+                    Beer.FESTIVAL_FIELD, Beer.RATING_FIELD + " DESC"),
+            // Bookmarks
+            index("beers_festival_on_wish_list_rating_idx", Beer.TABLE_NAME,
+                    Beer.FESTIVAL_FIELD, Beer.ON_WISH_LIST_FIELD, Beer.RATING_FIELD),
+            index("beers_festival_on_wish_list_rating_desc_idx", Beer.TABLE_NAME,
+                    Beer.FESTIVAL_FIELD, Beer.ON_WISH_LIST_FIELD, Beer.RATING_FIELD + " DESC"),
+            // Low/no
+            index("beers_festival_category_rating_idx", Beer.TABLE_NAME,
+                    Beer.FESTIVAL_FIELD, Beer.CATEGORY_FIELD, Beer.RATING_FIELD),
+            index("beers_festival_category_rating_desc_idx", Beer.TABLE_NAME,
+                    Beer.FESTIVAL_FIELD, Beer.CATEGORY_FIELD, Beer.RATING_FIELD + " DESC"),
+
+            index("breweries_festival_name_idx", Brewery.TABLE_NAME, Brewery.FESTIVAL_FIELD, Brewery.NAME_FIELD),
+    };
+
+    // Made by the index = true annotations the beer lists no longer use.
+    private static final String[] OBSOLETE_INDEXES = {
+            "beers_status_idx",
+            "beers_style_idx",
+            "beers_category_idx",
+            "beers_on_wish_list_idx",
+            "beers_festival_on_wish_list_idx",
+    };
+
+    private CatalogSchema() {
+        // Static methods only
+    }
+
+    private static String index(final String name, final String table, final String... columns) {
+        StringBuilder sql = new StringBuilder("CREATE INDEX IF NOT EXISTS ")
+                .append(name).append(" ON ").append(table).append(" (");
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(columns[i]);
+        }
+        return sql.append(")").toString();
+    }
+
+    public static void createTables(final ConnectionSource connectionSource) throws SQLException {
+        TableUtils.createTable(connectionSource, Beer.class);
+        TableUtils.createTable(connectionSource, Brewery.class);
+        TableUtils.createTable(connectionSource, StagedProducer.class);
+        TableUtils.createTable(connectionSource, IngestCheckpoint.class);
+        createIndexes(connectionSource);
+    }
+
+    private static void createIndexes(final ConnectionSource connectionSource) throws SQLException {
+        Dao<Beer, Long> beers = DaoManager.createDao(connectionSource, Beer.class);
+        for (String sql : FESTIVAL_INDEXES) {
+            beers.executeRaw(sql);
+        }
+    }
+
+    /**
+     * Adds the brewery_name column to a beers table made before it existed, filled in from each
+     * beer's brewery as {@link Beer#normalizeName} would. SQLite's lower() only folds ASCII.
+     */
+    public static void addBreweryNames(final ConnectionSource connectionSource) throws SQLException {
+        Dao<Beer, Long> beers = DaoManager.createDao(connectionSource, Beer.class);
+        beers.executeRaw("ALTER TABLE " + Beer.TABLE_NAME + " ADD COLUMN " + Beer.BREWERY_NAME_FIELD + " VARCHAR");
+        final String update = "UPDATE " + Beer.TABLE_NAME + " SET " + Beer.BREWERY_NAME_FIELD + " = ?"
+                + " WHERE " + Beer.BREWERY_FIELD + " = ?";
+        List<String[]> breweries = beers.queryRaw(
+                "SELECT " + Brewery.ID_FIELD + ", " + Brewery.NAME_FIELD + " FROM " + Brewery.TABLE_NAME).getResults();
+        for (String[] brewery : breweries) {
+            beers.updateRaw(update, Beer.normalizeName(brewery[1]), brewery[0]);
+        }
+    }
+
+    /**
+     * Replaces the single-column indexes of earlier versions with the ones the beer lists use.
+     */
+    public static void recreateIndexes(final ConnectionSource connectionSource) throws SQLException {
+        Dao<Beer, Long> beers = DaoManager.createDao(connectionSource, Beer.class);
+        for (String index : OBSOLETE_INDEXES) {
+            beers.executeRaw("DROP INDEX IF EXISTS " + index);
+        }
+        createIndexes(connectionSource);
+    }
+
+    /**
+     * Adds the tables feeds are staged in to a database made before they existed.
+     */
+    public static void createStagingTables(final ConnectionSource connectionSource) throws SQLException {
+        TableUtils.createTableIfNotExists(connectionSource, StagedProducer.class);
+        TableUtils.createTableIfNotExists(connectionSource, IngestCheckpoint.class);
+    }
+
+    public static void dropTables(final ConnectionSource connectionSource) throws SQLException {
+        TableUtils.dropTable(connectionSource, Beer.class, true);
+        TableUtils.dropTable(connectionSource, Brewery.class, true);
+        TableUtils.dropTable(connectionSource, StagedProducer.class, true);
+        TableUtils.dropTable(connectionSource, IngestCheckpoint.class, true);
+    }
+}
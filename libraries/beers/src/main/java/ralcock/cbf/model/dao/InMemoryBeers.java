@@ -0,0 +1,569 @@
+package ralcock.cbf.model.dao;
+
+import ralcock.cbf.model.Beer;
+import ralcock.cbf.model.BeerChangedListener;
+import ralcock.cbf.model.BeerList;
+import ralcock.cbf.model.Brewery;
+import ralcock.cbf.model.SortOrder;
+import ralcock.cbf.model.live.LiveBeerList;
+import ralcock.cbf.model.live.LiveQueries;
+import ralcock.cbf.model.search.SuggestionIndex;
+import ralcock.cbf.model.search.TrigramIndex;
+import ralcock.cbf.model.stats.FestivalStats;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+/**
+ * A catalog engine that keeps the beers in memory only, with no database behind it. Each
+ * festival's beers are held in id order and lists are filtered from them directly, giving the
+ * answers {@link BeersImpl} gives. Text is matched as SQLite's LIKE matches it, ignoring the case
+ * of ASCII letters only, though taken literally where LIKE would treat {@code %} and {@code _} as
+ * wildcards.
+ * <p>
+ * Beers are copied in and out, so a beer that has been read is only changed by passing it to
+ * {@link #updateBeer}, as with the database. Beers read at the same time share their brewery.
+ * Safe to use from several threads.
+ */
+public final class InMemoryBeers implements Beers {
+
+    private final CopyOnWriteArrayList<BeerChangedListener> fListeners
+        = new CopyOnWriteArrayList<BeerChangedListener>();
+
+    private final Map<Long, Beer> fBeers = new HashMap<>();
+    private final Map<Long, Brewery> fBreweries = new HashMap<>();
+    private final Map<String, Catalog> fCatalogs = new HashMap<>();
+    private long fLastBeerId;
+    private long fLastBreweryId;
+
+    private volatile String fFestival = NO_FESTIVAL;
+
+    private final CatalogIndexes fIndexes = new CatalogIndexes(new CatalogIndexes.Catalog() {
+        public List<Beer> getFestivalBeers() {
+            return InMemoryBeers.this.getFestivalBeers();
+        }
+    });
+
+    private final LiveQueries fLiveQueries = new LiveQueries(this);
+
+    /**
+     * One festival's beers, in id order, and its breweries.
+     */
+    private static final class Catalog {
+        final TreeMap<Long, Beer> fBeers = new TreeMap<>();
+        final Map<String, Beer> fBeersByFestivalId = new HashMap<>();
+        final Map<String, Brewery> fBreweriesByFestivalId = new HashMap<>();
+    }
+
+    private interface Filter {
+        boolean accept(Beer beer);
+    }
+
+    private Catalog catalog(final String festival) {
+        Catalog catalog = fCatalogs.get(festival);
+        if (catalog == null) {
+            catalog = new Catalog();
+            fCatalogs.put(festival, catalog);
+        }
+        return catalog;
+    }
+
+    private List<Beer> select(final Filter filter) {
+        List<Beer> beers = new ArrayList<>();
+        Catalog catalog = fCatalogs.get(fFestival);
+        if (catalog != null) {
+            for (Beer beer : catalog.fBeers.values()) {
+                if (filter.accept(beer)) {
+                    beers.add(read(beer));
+                }
+            }
+        }
+        return beers;
+    }
+
+    private List<Beer> selectSummaries(final Filter filter) {
+        List<Beer> beers = new ArrayList<>();
+        Catalog catalog = fCatalogs.get(fFestival);
+        if (catalog != null) {
+            for (Beer beer : catalog.fBeers.values()) {
+                if (filter.accept(beer)) {
+                    beers.add(readSummary(beer));
+                }
+            }
+        }
+        return beers;
+    }
+
+    private static Beer copy(final Beer beer, final Brewery brewery) {
+        Beer copy = new Beer(beer.getFestivalID(), beer.getName(), beer.getAbv(), beer.getDescription(),
+                beer.getStyle(), beer.getStatus(), beer.getDispenseMethod(), beer.getAllergens(),
+                beer.getCategory(), brewery);
+        copy.setId(beer.getId());
+        copy.setBreweryName(beer.getBreweryName());
+        copy.setNumberOfStars(beer.getNumberOfStars());
+        copy.setIsOnWishList(beer.isIsOnWishList());
+        copy.setUserComments(beer.getUserComments());
+        copy.setSource(beer.getSource());
+        copy.setFestival(beer.getFestival());
+        return copy;
+    }
+
+    /**
+     * A copy of a stored beer with its brewery as it is now, which is how the database joins it.
+     */
+    private Beer read(final Beer stored) {
+        Brewery brewery = stored.getBrewery();
+        if (brewery != null && fBreweries.containsKey(brewery.getId())) {
+            brewery = fBreweries.get(brewery.getId());
+        }
+        return copy(stored, brewery);
+    }
+
+    /**
+     * A summary of a stored beer, with what the database reads of it for the lists. See
+     * {@link Beer#SUMMARY_FIELDS}.
+     */
+    private Beer readSummary(final Beer stored) {
+        Brewery brewery = stored.getBrewery();
+        if (brewery != null) {
+            Brewery current = fBreweries.get(brewery.getId());
+            Brewery named = new Brewery(null, current == null ? null : current.getName(), null);
+            named.setId(brewery.getId());
+            brewery = named;
+        }
+        Beer summary = new Beer(null, stored.getName(), stored.getAbv(), null, stored.getStyle(),
+                stored.getStatus(), stored.getDispenseMethod(), stored.getAllergens(), stored.getCategory(), brewery);
+        summary.setId(stored.getId());
+        summary.setBreweryName(stored.getBreweryName());
+        summary.setNumberOfStars(stored.getNumberOfStars());
+        summary.setIsOnWishList(stored.isIsOnWishList());
+        return summary;
+    }
+
+    private void store(final Beer beer) {
+        Beer stored = copy(beer, beer.getBrewery());
+        Catalog catalog = catalog(stored.getFestival());
+        fBeers.put(stored.getId(), stored);
+        catalog.fBeers.put(stored.getId(), stored);
+        catalog.fBeersByFestivalId.put(stored.getFestivalID(), stored);
+    }
+
+    private void remove(final Beer stored) {
+        Catalog catalog = catalog(stored.getFestival());
+        fBeers.remove(stored.getId());
+        catalog.fBeers.remove(stored.getId());
+        catalog.fBeersByFestivalId.remove(stored.getFestivalID());
+    }
+
+    public synchronized Beer getBeerWithId(final long id) {
+        Beer beer = fBeers.get(id);
+        return beer == null ? null : read(beer);
+    }
+
+    public synchronized long getNumberOfBeers() {
+        Catalog catalog = fCatalogs.get(fFestival);
+        return catalog == null ? 0 : catalog.fBeers.size();
+    }
+
+    public synchronized long getNumberOfBeersFrom(final String source) {
+        return select(new Filter() {
+            public boolean accept(final Beer beer) {
+                return source.equals(beer.getSource());
+            }
+        }).size();
+    }
+
+    public synchronized Set<String> getAvailableStyles() {
+        Set<String> styles = new TreeSet<String>();
+        Catalog catalog = fCatalogs.get(fFestival);
+        if (catalog != null) {
+            for (Beer beer : catalog.fBeers.values()) {
+                String style = beer.getStyle();
+                if (style != null && style.length() > 0) {
+                    styles.add(style);
+                }
+            }
+        }
+        return styles;
+    }
+
+    public synchronized Set<String> getAvailableAllergens() {
+        Set<String> allergens = new TreeSet<String>();
+        Catalog catalog = fCatalogs.get(fFestival);
+        if (catalog != null) {
+            for (Beer beer : catalog.fBeers.values()) {
+                CatalogRules.addAllergens(beer.getAllergens(), allergens);
+            }
+        }
+        return allergens;
+    }
+
+    public synchronized List<Beer> getRatedBeers() {
+        return select(new Filter() {
+            public boolean accept(final Beer beer) {
+                return beer.getRating() > 0;
+            }
+        });
+    }
+
+    public synchronized List<Beer> ratedOrBookmarkedBeers(final long afterId, final int limit) {
+        List<Beer> beers = new ArrayList<>();
+        Catalog catalog = fCatalogs.get(fFestival);
+        if (catalog == null) {
+            return beers;
+        }
+        Iterator<Beer> after = catalog.fBeers.tailMap(afterId, false).values().iterator();
+        while (beers.size() < limit && after.hasNext()) {
+            Beer beer = after.next();
+            if (beer.getRating() > 0 || beer.isIsOnWishList()) {
+                beers.add(read(beer));
+            }
+        }
+        return beers;
+    }
+
+    public List<Beer> fuzzySearch(final CharSequence text, final int maxResults) {
+        List<TrigramIndex.Match> matches = fIndexes.buildSearchIndexes().fTrigramIndex.search(text, maxResults);
+        if (matches.isEmpty()) {
+            return Collections.emptyList();
+        }
+        synchronized (this) {
+            List<Beer> beers = new ArrayList<>(matches.size());
+            for (TrigramIndex.Match match : matches) {
+                Beer beer = fBeers.get(match.getId());
+                if (beer != null) {
+                    beers.add(readSummary(beer));
+                }
+            }
+            return beers;
+        }
+    }
+
+    public List<Beer> similarBeers(final long id, final int maxResults) {
+        List<Long> ids = fIndexes.buildSimilarityIndex().similarTo(id, maxResults);
+        synchronized (this) {
+            List<Beer> beers = new ArrayList<>(ids.size());
+            for (Long similar : ids) {
+                Beer beer = fBeers.get(similar);
+                if (beer != null) {
+                    beers.add(readSummary(beer));
+                }
+            }
+            return beers;
+        }
+    }
+
+    public synchronized Set<Long> idsWithDescriptionContaining(final CharSequence text) {
+        final String description = String.valueOf(text);
+        List<Beer> described = select(new Filter() {
+            public boolean accept(final Beer beer) {
+                return like(beer.getDescription(), description);
+            }
+        });
+        Set<Long> ids = new HashSet<>();
+        for (Beer beer : described) {
+            ids.add(beer.getId());
+        }
+        return ids;
+    }
+
+    public List<SuggestionIndex.Suggestion> suggest(final CharSequence prefix, final int maxResults) {
+        SearchIndexes indexes = fIndexes.getSearchIndexes();
+        if (indexes == null) {
+            return Collections.emptyList();
+        }
+        return indexes.fSuggestionIndex.suggest(prefix, maxResults);
+    }
+
+    public FestivalStats getFestivalStats() {
+        return fIndexes.getFestivalStats();
+    }
+
+    public void rebuildSearchIndex() {
+        fIndexes.rebuild();
+        fLiveQueries.catalogChanged();
+    }
+
+    public synchronized List<Beer> getFestivalBeers() {
+        return select(new Filter() {
+            public boolean accept(final Beer beer) {
+                return true;
+            }
+        });
+    }
+
+    public void updateBeer(final Beer beer) {
+        synchronized (this) {
+            Beer stored = fBeers.get(beer.getId());
+            if (stored != null) {
+                remove(stored);
+                store(beer);
+                fIndexes.beerChanged(beer);
+            }
+        }
+        fireBeerChanged(beer);
+        fLiveQueries.beerChanged(beer);
+    }
+
+    public LiveBeerList observeBeerList(final BeerList.Type type,
+                                        final BeerList.Config config,
+                                        final Executor executor,
+                                        final LiveBeerList.Observer observer) {
+        return fLiveQueries.observeBeerList(type, config, executor, observer);
+    }
+
+    public void addBeerChangedListener(final BeerChangedListener l) {
+        fListeners.add(l);
+    }
+
+    public void removeBeerChangedListener(final BeerChangedListener l) {
+        fListeners.remove(l);
+    }
+
+    private void fireBeerChanged(final Beer beer) {
+        for (BeerChangedListener l : fListeners) {
+            l.beerChanged(beer);
+        }
+    }
+
+    public List<Beer> allBeersList(final SortOrder sortOrder,
+                                   final CharSequence filterText,
+                                   final Set<String> stylesToHide,
+                                   final Set<String> allergensToHide,
+                                   final Set<String> statusToHide,
+                                   final String categoryToExclude) {
+        final boolean excludeCategory = categoryToExclude != null && !categoryToExclude.isEmpty();
+        return list(sortOrder, filterText, stylesToHide, allergensToHide, statusToHide, new Filter() {
+            public boolean accept(final Beer beer) {
+                return !excludeCategory
+                        || (beer.getCategory() != null && !beer.getCategory().equals(categoryToExclude));
+            }
+        });
+    }
+
+    public List<Beer> bookmarkedBeersList(final SortOrder sortOrder,
+                                          final CharSequence filterText,
+                                          final Set<String> stylesToHide,
+                                          final Set<String> allergensToHide,
+                                          final Set<String> statusToHide) {
+        return list(sortOrder, filterText, stylesToHide, allergensToHide, statusToHide, new Filter() {
+            public boolean accept(final Beer beer) {
+                return beer.isIsOnWishList();
+            }
+        });
+    }
+
+    public List<Beer> lowNoAlcoholBeersList(final SortOrder sortOrder,
+                                            final CharSequence filterText,
+                                            final Set<String> stylesToHide,
+                                            final Set<String> allergensToHide,
+                                            final Set<String> statusToHide,
+                                            final String category) {
+        return list(sortOrder, filterText, stylesToHide, allergensToHide, statusToHide, new Filter() {
+            public boolean accept(final Beer beer) {
+                return category.equals(beer.getCategory());
+            }
+        });
+    }
+
+    /**
+     * The festival's beers that pass the filters every list applies and the list's own, in order.
+     * Mirrors {@link BeersImpl}'s query, where a missing value is never in or out of a set.
+     */
+    private List<Beer> list(final SortOrder sortOrder,
+                            final CharSequence filterText,
+                            final Set<String> stylesToHide,
+                            final Set<String> allergensToHide,
+                            final Set<String> statusToHide,
+                            final Filter listFilter) {
+        final String text = String.valueOf(filterText);
+        final String breweryText = Beer.normalizeName(text);
+        List<Beer> beers;
+        synchronized (this) {
+            beers = selectSummaries(new Filter() {
+                public boolean accept(final Beer beer) {
+                    return notIn(beer.getStatus(), statusToHide)
+                            && notIn(beer.getStyle(), stylesToHide)
+                            && (like(beer.getName(), text)
+                                || like(beer.getStyle(), text)
+                                || like(beer.getDescription(), text)
+                                || like(beer.getBreweryName(), breweryText))
+                            && listFilter.accept(beer);
+                }
+            });
+        }
+        return fIndexes.inOrder(CatalogRules.filterByAllergens(beers, allergensToHide), sortOrder);
+    }
+
+    private static boolean notIn(final String value, final Set<String> values) {
+        if (values == null || values.isEmpty()) {
+            return true;
+        }
+        return value != null && !values.contains(value);
+    }
+
+    private static boolean like(final String value, final String text) {
+        if (value == null) {
+            return false;
+        }
+        search:
+        for (int start = 0; start <= value.length() - text.length(); start++) {
+            for (int i = 0; i < text.length(); i++) {
+                if (asciiLowerCase(value.charAt(start + i)) != asciiLowerCase(text.charAt(i))) {
+                    continue search;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static char asciiLowerCase(final char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    public synchronized void updateFromFestivalOrCreate(final Beer festivalBeerDescription) {
+        fIndexes.invalidate();
+        festivalBeerDescription.setFestival(fFestival);
+        final Catalog catalog = catalog(fFestival);
+        final Brewery brewery = festivalBeerDescription.getBrewery();
+        if (brewery.getId() == 0) {
+            updateBreweryOrCreate(catalog, brewery);
+        }
+        festivalBeerDescription.setBreweryName(Beer.normalizeName(brewery.getName()));
+
+        if (festivalBeerDescription.getId() == 0) {
+            Beer existing = catalog.fBeersByFestivalId.get(festivalBeerDescription.getFestivalID());
+            if (existing == null) {
+                festivalBeerDescription.setId(++fLastBeerId);
+                store(festivalBeerDescription);
+            } else {
+                // The festival's description replaces the stored one, keeping what the user recorded.
+                festivalBeerDescription.setId(existing.getId());
+                Beer updated = copy(festivalBeerDescription, brewery);
+                updated.setDispenseMethod(existing.getDispenseMethod());
+                updated.setNumberOfStars(existing.getNumberOfStars());
+                updated.setIsOnWishList(existing.isIsOnWishList());
+                updated.setUserComments(existing.getUserComments());
+                remove(existing);
+                store(updated);
+            }
+        }
+        fLiveQueries.catalogChanged();
+    }
+
+    private void updateBreweryOrCreate(final Catalog catalog, final Brewery brewery) {
+        brewery.setFestival(fFestival);
+        Brewery existing = catalog.fBreweriesByFestivalId.get(brewery.getFestivalID());
+        brewery.setId(existing == null ? ++fLastBreweryId : existing.getId());
+        Brewery stored = new Brewery(brewery.getFestivalID(), brewery.getName(), brewery.getDescription());
+        stored.setFestival(fFestival);
+        stored.setId(brewery.getId());
+        catalog.fBreweriesByFestivalId.put(stored.getFestivalID(), stored);
+        fBreweries.put(stored.getId(), stored);
+    }
+
+    public synchronized int deleteStaleBeers(final String source, final Set<String> festivalIds) {
+        fIndexes.invalidate();
+        Catalog catalog = fCatalogs.get(fFestival);
+        if (catalog == null) {
+            return 0;
+        }
+        List<Beer> stale = new ArrayList<>();
+        for (Beer beer : catalog.fBeers.values()) {
+            if (source.equals(beer.getSource())
+                    && beer.getRating() == 0
+                    && !beer.isIsOnWishList()
+                    && (beer.getUserComments() == null || beer.getUserComments().isEmpty())
+                    && !festivalIds.contains(beer.getFestivalID())) {
+                stale.add(beer);
+            }
+        }
+        for (Beer beer : stale) {
+            remove(beer);
+        }
+        if (!stale.isEmpty()) {
+            fLiveQueries.catalogChanged();
+        }
+        return stale.size();
+    }
+
+    public synchronized int updateStatuses(final Map<String, String> statusByFestivalId) {
+        Catalog catalog = fCatalogs.get(fFestival);
+        if (catalog == null) {
+            return 0;
+        }
+        int changed = 0;
+        for (Beer stored : catalog.fBeersByFestivalId.values()) {
+            String status = statusByFestivalId.get(stored.getFestivalID());
+            if (status != null && !status.equals(stored.getStatus())) {
+                stored.setStatus(status);
+                changed++;
+            }
+        }
+        if (changed > 0) {
+            fLiveQueries.catalogChanged();
+        }
+        return changed;
+    }
+
+    public synchronized Set<String> getFestivals() {
+        Set<String> festivals = new TreeSet<String>();
+        for (Map.Entry<String, Catalog> entry : fCatalogs.entrySet()) {
+            if (!entry.getValue().fBeers.isEmpty()) {
+                festivals.add(entry.getKey());
+            }
+        }
+        return festivals;
+    }
+
+    public synchronized int deleteFestival(final String festival) {
+        if (festival.equals(fFestival)) {
+            fIndexes.invalidate();
+        }
+        Catalog catalog = fCatalogs.remove(festival);
+        if (catalog == null) {
+            return 0;
+        }
+        if (festival.equals(fFestival)) {
+            fLiveQueries.catalogChanged();
+        }
+        fBeers.keySet().removeAll(catalog.fBeers.keySet());
+        for (Brewery brewery : catalog.fBreweriesByFestivalId.values()) {
+            fBreweries.remove(brewery.getId());
+        }
+        return catalog.fBeers.size();
+    }
+
+    public synchronized List<String> evictFestivals(final List<String> mostRecentFirst, final int maxFestivals) {
+        List<String> keep = CatalogRules.festivalsToKeep(fFestival, mostRecentFirst, maxFestivals);
+        List<String> evicted = new ArrayList<>();
+        for (String festival : getFestivals()) {
+            if (!keep.contains(festival)) {
+                deleteFestival(festival);
+                evicted.add(festival);
+            }
+        }
+        return evicted;
+    }
+
+    public void setFestival(final String festival) {
+        fFestival = festival;
+        fIndexes.invalidate();
+        fLiveQueries.catalogChanged();
+    }
+
+    public String getFestival() {
+        return fFestival;
+    }
+}
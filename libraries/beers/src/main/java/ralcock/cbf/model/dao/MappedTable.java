@@ -0,0 +1,129 @@
+package ralcock.cbf.model.dao;
+
+import com.j256.ormlite.dao.BaseDaoImpl;
+import com.j256.ormlite.dao.DatabaseResultsMapper;
+import com.j256.ormlite.db.DatabaseType;
+import com.j256.ormlite.field.FieldType;
+import com.j256.ormlite.stmt.PreparedQuery;
+import com.j256.ormlite.stmt.StatementBuilder;
+import com.j256.ormlite.support.CompiledStatement;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.support.DatabaseConnection;
+import com.j256.ormlite.support.DatabaseResults;
+import com.j256.ormlite.support.GeneratedKeyHolder;
+import com.j256.ormlite.table.TableInfo;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs a DAO's queries, inserts and updates through its generated row mapper, rather than
+ * through ORMLite's reflection. The statements are run on the DAO's connections as ORMLite
+ * would run them, so they take part in its transactions.
+ */
+final class MappedTable<T> {
+
+    private final ConnectionSource fConnectionSource;
+    private final String fTableName;
+    private final String fInsert;
+    private final String fUpdate;
+    private final FieldType[] fValueTypes;
+    private final FieldType[] fUpdateTypes;
+
+    /**
+     * @param valueColumns the columns of the values inserts and updates are given, in order,
+     *                     which are all but the generated id
+     */
+    MappedTable(final BaseDaoImpl<T, Long> dao, final String[] valueColumns) {
+        TableInfo<T, Long> tableInfo = dao.getTableInfo();
+        DatabaseType databaseType = dao.getConnectionSource().getDatabaseType();
+        fConnectionSource = dao.getConnectionSource();
+        fTableName = tableInfo.getTableName();
+
+        fValueTypes = new FieldType[valueColumns.length];
+        fUpdateTypes = new FieldType[valueColumns.length + 1];
+        StringBuilder insert = new StringBuilder("INSERT INTO ");
+        databaseType.appendEscapedEntityName(insert, fTableName);
+        insert.append(" (");
+        StringBuilder update = new StringBuilder("UPDATE ");
+        databaseType.appendEscapedEntityName(update, fTableName);
+        update.append(" SET ");
+        for (int i = 0; i < valueColumns.length; i++) {
+            fValueTypes[i] = tableInfo.getFieldTypeByColumnName(valueColumns[i]);
+            fUpdateTypes[i] = fValueTypes[i];
+            if (i > 0) {
+                insert.append(", ");
+                update.append(", ");
+            }
+            databaseType.appendEscapedEntityName(insert, valueColumns[i]);
+            databaseType.appendEscapedEntityName(update, valueColumns[i]);
+            update.append(" = ?");
+        }
+        insert.append(") VALUES (");
+        for (int i = 0; i < valueColumns.length; i++) {
+            insert.append(i > 0 ? ", ?" : "?");
+        }
+        insert.append(")");
+        FieldType id = tableInfo.getIdField();
+        fUpdateTypes[valueColumns.length] = id;
+        update.append(" WHERE ");
+        databaseType.appendEscapedEntityName(update, id.getColumnName());
+        update.append(" = ?");
+        fInsert = insert.toString();
+        fUpdate = update.toString();
+    }
+
+    List<T> query(final PreparedQuery<T> query, final DatabaseResultsMapper<T> mapper) throws SQLException {
+        DatabaseConnection connection = fConnectionSource.getReadOnlyConnection(fTableName);
+        CompiledStatement statement = null;
+        DatabaseResults results = null;
+        try {
+            statement = query.compile(connection, StatementBuilder.StatementType.SELECT);
+            results = statement.runQuery(null);
+            List<T> rows = new ArrayList<>();
+            for (boolean more = results.first(); more; more = results.next()) {
+                rows.add(mapper.mapRow(results));
+            }
+            return rows;
+        } finally {
+            if (results != null) {
+                results.closeQuietly();
+            }
+            if (statement != null) {
+                statement.closeQuietly();
+            }
+            fConnectionSource.releaseConnection(connection);
+        }
+    }
+
+    /**
+     * @return the generated id of the inserted row
+     */
+    long insert(final Object[] values) throws SQLException {
+        final long[] key = new long[1];
+        DatabaseConnection connection = fConnectionSource.getReadWriteConnection(fTableName);
+        try {
+            connection.insert(fInsert, values, fValueTypes, new GeneratedKeyHolder() {
+                public void addKey(final Number id) {
+                    key[0] = id.longValue();
+                }
+            });
+        } finally {
+            fConnectionSource.releaseConnection(connection);
+        }
+        return key[0];
+    }
+
+    int update(final Object[] values, final long id) throws SQLException {
+        Object[] args = new Object[values.length + 1];
+        System.arraycopy(values, 0, args, 0, values.length);
+        args[values.length] = id;
+        DatabaseConnection connection = fConnectionSource.getReadWriteConnection(fTableName);
+        try {
+            return connection.update(fUpdate, args, fUpdateTypes);
+        } finally {
+            fConnectionSource.releaseConnection(connection);
+        }
+    }
+}
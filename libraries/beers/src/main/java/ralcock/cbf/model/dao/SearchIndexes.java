@@ -0,0 +1,28 @@
+package ralcock.cbf.model.dao;
+
+import ralcock.cbf.model.Beer;
+import ralcock.cbf.model.search.SortIndex;
+import ralcock.cbf.model.search.SuggestionIndex;
+import ralcock.cbf.model.search.TrigramIndex;
+import ralcock.cbf.model.stats.StatsAggregator;
+
+import java.util.List;
+
+/**
+ * The in-memory search and sort structures, built together from one pass over the beers and
+ * swapped in as a unit. They stay as they were built until the next ingest. The festival's stats
+ * change as beers are rated, so are kept apart from them, in a {@link StatsAggregator}, and the
+ * similarity index is wanted only by a beer's details, so is built apart from them when it is
+ * first asked for; see {@link CatalogIndexes}.
+ */
+final class SearchIndexes {
+    final TrigramIndex fTrigramIndex;
+    final SuggestionIndex fSuggestionIndex;
+    final SortIndex fSortIndex;
+
+    SearchIndexes(final List<Beer> beers) {
+        fTrigramIndex = TrigramIndex.forBeers(beers);
+        fSuggestionIndex = SuggestionIndex.forBeers(beers);
+        fSortIndex = SortIndex.forBeers(beers);
+    }
+}
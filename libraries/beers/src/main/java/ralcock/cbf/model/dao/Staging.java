@@ -0,0 +1,59 @@
+package ralcock.cbf.model.dao;
+
+import com.j256.ormlite.dao.Dao;
+import ralcock.cbf.model.IngestCheckpoint;
+import ralcock.cbf.model.StagedProducer;
+
+import java.util.List;
+
+/**
+ * Feeds part way through being ingested, kept apart from the catalog until each is complete.
+ */
+public interface Staging extends Dao<StagedProducer, Long> {
+
+    /**
+     * Switches to the staging of another festival. See {@link Beers#setFestival}.
+     */
+    void setFestival(String festival);
+
+    /**
+     * The source's checkpoint, or null if nothing of it is staged.
+     */
+    IngestCheckpoint getCheckpoint(String source);
+
+    /**
+     * Stages producers of a source, replacing any staged at the same positions, and moves the
+     * source's checkpoint on to {@code lastProducer}, all in one transaction. The source is
+     * incomplete until {@link #complete} is called.
+     */
+    void stage(String source, List<StagedProducer> producers, int lastProducer);
+
+    /**
+     * Records that the first {@code producers} producers staged are the whole of the feed with
+     * this digest, discarding any staged beyond them.
+     */
+    void complete(String source, int producers, String digest);
+
+    /**
+     * The checkpoints of the sources that have been staged to their end, in the order staged.
+     */
+    List<IngestCheckpoint> getCompleted();
+
+    /**
+     * The source's staged producers, in order.
+     */
+    List<StagedProducer> getStagedProducers(String source);
+
+    /**
+     * The source's staged producers at positions {@code from} to {@code from + count - 1}, in
+     * order, so a large source can be read a chunk at a time.
+     */
+    List<StagedProducer> getStagedProducers(String source, int from, int count);
+
+    /**
+     * Discards the source's staged producers and its checkpoint.
+     */
+    void clear(String source);
+
+    int deleteFestival(String festival);
+}
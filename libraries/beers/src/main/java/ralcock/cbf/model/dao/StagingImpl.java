@@ -0,0 +1,197 @@
+package ralcock.cbf.model.dao;
+
+import com.j256.ormlite.dao.BaseDaoImpl;
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.misc.TransactionManager;
+import com.j256.ormlite.stmt.DeleteBuilder;
+import com.j256.ormlite.stmt.QueryBuilder;
+import com.j256.ormlite.stmt.SelectArg;
+import com.j256.ormlite.stmt.UpdateBuilder;
+import com.j256.ormlite.stmt.Where;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.table.DatabaseTableConfig;
+import ralcock.cbf.model.IngestCheckpoint;
+import ralcock.cbf.model.StagedProducer;
+
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+public class StagingImpl extends BaseDaoImpl<StagedProducer, Long> implements Staging {
+
+    private Dao<IngestCheckpoint, Long> fCheckpoints;
+
+    private volatile String fFestival = Beers.NO_FESTIVAL;
+
+    private static BeerAccessException newBeerAccessException(final String msg, final Throwable cause) {
+        LoggerFactory.getLogger(StagingImpl.class).error(msg, cause);
+        return new BeerAccessException(msg, cause);
+    }
+
+    @SuppressWarnings("UnusedDeclaration")
+    public StagingImpl(final ConnectionSource connectionSource) throws SQLException {
+        super(connectionSource, StagedProducer.class);
+    }
+
+    @SuppressWarnings("UnusedDeclaration")
+    public StagingImpl(final ConnectionSource connectionSource, DatabaseTableConfig<StagedProducer> config) throws SQLException {
+        super(connectionSource, config);
+    }
+
+    public void setCheckpoints(final Dao<IngestCheckpoint, Long> checkpoints) {
+        fCheckpoints = checkpoints;
+    }
+
+    public void setFestival(final String festival) {
+        fFestival = festival;
+    }
+
+    public IngestCheckpoint getCheckpoint(final String source) {
+        try {
+            return queryCheckpoint(source);
+        } catch (SQLException e) {
+            throw newBeerAccessException("Failed to getCheckpoint of " + source, e);
+        }
+    }
+
+    private IngestCheckpoint queryCheckpoint(final String source) throws SQLException {
+        QueryBuilder<IngestCheckpoint, Long> qb = fCheckpoints.queryBuilder();
+        Where<IngestCheckpoint, Long> where = qb.where();
+        where.and(where.eq(IngestCheckpoint.FESTIVAL_FIELD, new SelectArg(fFestival)),
+                where.eq(IngestCheckpoint.SOURCE_FIELD, new SelectArg(source)));
+        return qb.queryForFirst();
+    }
+
+    private void moveCheckpoint(final String source, final int lastProducer, final String digest) throws SQLException {
+        IngestCheckpoint checkpoint = queryCheckpoint(source);
+        if (checkpoint == null) {
+            checkpoint = new IngestCheckpoint(fFestival, source);
+        }
+        checkpoint.setLastProducer(lastProducer);
+        checkpoint.setDigest(digest);
+        fCheckpoints.createOrUpdate(checkpoint);
+    }
+
+    public void stage(final String source, final List<StagedProducer> producers, final int lastProducer) {
+        try {
+            TransactionManager.callInTransaction(getConnectionSource(), new Callable<Void>() {
+                public Void call() throws SQLException {
+                    for (StagedProducer producer : producers) {
+                        producer.setFestival(fFestival);
+                        if (updateStaged(producer) == 0) {
+                            create(producer);
+                        }
+                    }
+                    moveCheckpoint(source, lastProducer, IngestCheckpoint.INCOMPLETE);
+                    return null;
+                }
+            });
+        } catch (SQLException e) {
+            throw newBeerAccessException("Failed to stage " + producers.size() + " producers of " + source, e);
+        }
+    }
+
+    private int updateStaged(final StagedProducer producer) throws SQLException {
+        UpdateBuilder<StagedProducer, Long> updateBuilder = updateBuilder();
+        updateBuilder.updateColumnValue(StagedProducer.JSON_FIELD, new SelectArg(producer.getJson()));
+        Where<StagedProducer, Long> where = updateBuilder.where();
+        where.and(where.eq(StagedProducer.FESTIVAL_FIELD, new SelectArg(fFestival)),
+                where.eq(StagedProducer.SOURCE_FIELD, new SelectArg(producer.getSource())),
+                where.eq(StagedProducer.POSITION_FIELD, producer.getPosition()));
+        return updateBuilder.update();
+    }
+
+    public void complete(final String source, final int producers, final String digest) {
+        try {
+            TransactionManager.callInTransaction(getConnectionSource(), new Callable<Void>() {
+                public Void call() throws SQLException {
+                    DeleteBuilder<StagedProducer, Long> deleteBuilder = deleteBuilder();
+                    Where<StagedProducer, Long> where = deleteBuilder.where();
+                    where.and(where.eq(StagedProducer.FESTIVAL_FIELD, new SelectArg(fFestival)),
+                            where.eq(StagedProducer.SOURCE_FIELD, new SelectArg(source)),
+                            where.ge(StagedProducer.POSITION_FIELD, producers));
+                    deleteBuilder.delete();
+                    moveCheckpoint(source, producers - 1, digest);
+                    return null;
+                }
+            });
+        } catch (SQLException e) {
+            throw newBeerAccessException("Failed to complete " + source, e);
+        }
+    }
+
+    public List<IngestCheckpoint> getCompleted() {
+        try {
+            QueryBuilder<IngestCheckpoint, Long> qb = fCheckpoints.queryBuilder();
+            qb.orderBy(IngestCheckpoint.ID_FIELD, true);
+            Where<IngestCheckpoint, Long> where = qb.where();
+            where.and(where.eq(IngestCheckpoint.FESTIVAL_FIELD, new SelectArg(fFestival)),
+                    where.ne(IngestCheckpoint.DIGEST_FIELD, new SelectArg(IngestCheckpoint.INCOMPLETE)));
+            return qb.query();
+        } catch (SQLException e) {
+            throw newBeerAccessException("Failed to getCompleted", e);
+        }
+    }
+
+    public List<StagedProducer> getStagedProducers(final String source) {
+        try {
+            QueryBuilder<StagedProducer, Long> qb = queryBuilder();
+            qb.orderBy(StagedProducer.POSITION_FIELD, true);
+            Where<StagedProducer, Long> where = qb.where();
+            where.and(where.eq(StagedProducer.FESTIVAL_FIELD, new SelectArg(fFestival)),
+                    where.eq(StagedProducer.SOURCE_FIELD, new SelectArg(source)));
+            return qb.query();
+        } catch (SQLException e) {
+            throw newBeerAccessException("Failed to getStagedProducers of " + source, e);
+        }
+    }
+
+    public List<StagedProducer> getStagedProducers(final String source, final int from, final int count) {
+        try {
+            QueryBuilder<StagedProducer, Long> qb = queryBuilder();
+            qb.orderBy(StagedProducer.POSITION_FIELD, true);
+            Where<StagedProducer, Long> where = qb.where();
+            where.and(where.eq(StagedProducer.FESTIVAL_FIELD, new SelectArg(fFestival)),
+                    where.eq(StagedProducer.SOURCE_FIELD, new SelectArg(source)),
+                    where.ge(StagedProducer.POSITION_FIELD, from),
+                    where.lt(StagedProducer.POSITION_FIELD, from + count));
+            return qb.query();
+        } catch (SQLException e) {
+            throw newBeerAccessException("Failed to getStagedProducers of " + source + " from " + from, e);
+        }
+    }
+
+    public void clear(final String source) {
+        try {
+            DeleteBuilder<StagedProducer, Long> deleteBuilder = deleteBuilder();
+            Where<StagedProducer, Long> where = deleteBuilder.where();
+            where.and(where.eq(StagedProducer.FESTIVAL_FIELD, new SelectArg(fFestival)),
+                    where.eq(StagedProducer.SOURCE_FIELD, new SelectArg(source)));
+            deleteBuilder.delete();
+
+            DeleteBuilder<IngestCheckpoint, Long> checkpoints = fCheckpoints.deleteBuilder();
+            Where<IngestCheckpoint, Long> checkpointWhere = checkpoints.where();
+            checkpointWhere.and(checkpointWhere.eq(IngestCheckpoint.FESTIVAL_FIELD, new SelectArg(fFestival)),
+                    checkpointWhere.eq(IngestCheckpoint.SOURCE_FIELD, new SelectArg(source)));
+            checkpoints.delete();
+        } catch (SQLException e) {
+            throw newBeerAccessException("Failed to clear " + source, e);
+        }
+    }
+
+    public int deleteFestival(final String festival) {
+        try {
+            DeleteBuilder<IngestCheckpoint, Long> checkpoints = fCheckpoints.deleteBuilder();
+            checkpoints.where().eq(IngestCheckpoint.FESTIVAL_FIELD, new SelectArg(festival));
+            checkpoints.delete();
+
+            DeleteBuilder<StagedProducer, Long> deleteBuilder = deleteBuilder();
+            deleteBuilder.where().eq(StagedProducer.FESTIVAL_FIELD, new SelectArg(festival));
+            return deleteBuilder.delete();
+        } catch (SQLException e) {
+            throw newBeerAccessException("Failed to deleteFestival " + festival, e);
+        }
+    }
+}
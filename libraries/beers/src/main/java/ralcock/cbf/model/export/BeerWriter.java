@@ -0,0 +1,18 @@
+package ralcock.cbf.model.export;
+
+import ralcock.cbf.model.Beer;
+
+import java.io.IOException;
+
+/**
+ * Writes beers one at a time in some {@link ExportFormat}, holding on to none of them.
+ */
+public interface BeerWriter {
+
+    void write(Beer beer) throws IOException;
+
+    /**
+     * Writes any trailer and flushes. The underlying writer is left open.
+     */
+    void finish() throws IOException;
+}
@@ -0,0 +1,74 @@
+package ralcock.cbf.model.export;
+
+import ralcock.cbf.model.Beer;
+import ralcock.cbf.model.Brewery;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * RFC 4180 CSV: text fields are always quoted, with embedded quotes doubled, and lines end in
+ * CRLF. Embedded line breaks are kept inside the quotes.
+ */
+public final class CsvExportFormat implements ExportFormat {
+
+    private static final String LINE_END = "\r\n";
+    private static final String HEADER = "Beer,Brewery,Style,Rating,Bookmarked,Comments";
+
+    public String getMimeType() {
+        return "text/csv";
+    }
+
+    public String getFileExtension() {
+        return "csv";
+    }
+
+    public BeerWriter newWriter(final Writer out) throws IOException {
+        out.write(HEADER);
+        out.write(LINE_END);
+        return new CsvBeerWriter(out);
+    }
+
+    static void writeQuoted(final Writer out, final String text) throws IOException {
+        out.write('"');
+        if (text != null) {
+            int start = 0;
+            int quote;
+            while ((quote = text.indexOf('"', start)) >= 0) {
+                out.write(text, start, quote + 1 - start);
+                out.write('"');
+                start = quote + 1;
+            }
+            out.write(text, start, text.length() - start);
+        }
+        out.write('"');
+    }
+
+    private static final class CsvBeerWriter implements BeerWriter {
+        private final Writer fOut;
+
+        CsvBeerWriter(final Writer out) {
+            fOut = out;
+        }
+
+        public void write(final Beer beer) throws IOException {
+            final Brewery brewery = beer.getBrewery();
+            writeQuoted(fOut, beer.getName());
+            fOut.write(',');
+            writeQuoted(fOut, brewery == null ? null : brewery.getName());
+            fOut.write(',');
+            writeQuoted(fOut, beer.getStyle());
+            fOut.write(',');
+            fOut.write(Integer.toString(beer.getRating()));
+            fOut.write(',');
+            fOut.write(beer.isIsOnWishList() ? "true" : "false");
+            fOut.write(',');
+            writeQuoted(fOut, beer.getUserComments());
+            fOut.write(LINE_END);
+        }
+
+        public void finish() throws IOException {
+            fOut.flush();
+        }
+    }
+}
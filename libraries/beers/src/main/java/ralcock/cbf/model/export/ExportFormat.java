@@ -0,0 +1,19 @@
+package ralcock.cbf.model.export;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * A file format that rated and bookmarked beers can be exported in.
+ */
+public interface ExportFormat {
+
+    String getMimeType();
+
+    String getFileExtension();
+
+    /**
+     * Starts writing an export to {@code out}, writing any header straight away.
+     */
+    BeerWriter newWriter(Writer out) throws IOException;
+}
@@ -0,0 +1,100 @@
+package ralcock.cbf.model.export;
+
+import ralcock.cbf.model.Beer;
+import ralcock.cbf.model.Brewery;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+
+/**
+ * A JSON array with one object per beer, written one line per beer so that nothing but the
+ * current beer is held in memory.
+ */
+public final class JsonExportFormat implements ExportFormat {
+
+    public String getMimeType() {
+        return "application/json";
+    }
+
+    public String getFileExtension() {
+        return "json";
+    }
+
+    public BeerWriter newWriter(final Writer out) throws IOException {
+        out.write('[');
+        return new JsonBeerWriter(out);
+    }
+
+    static void writeString(final Writer out, final String text) throws IOException {
+        if (text == null) {
+            out.write("null");
+            return;
+        }
+        out.write('"');
+        int start = 0;
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\') {
+                continue;
+            }
+            out.write(text, start, i - start);
+            start = i + 1;
+            switch (c) {
+                case '"':
+                    out.write("\\\"");
+                    break;
+                case '\\':
+                    out.write("\\\\");
+                    break;
+                case '\n':
+                    out.write("\\n");
+                    break;
+                case '\r':
+                    out.write("\\r");
+                    break;
+                case '\t':
+                    out.write("\\t");
+                    break;
+                default:
+                    out.write(String.format(Locale.US, "\\u%04x", (int) c));
+                    break;
+            }
+        }
+        out.write(text, start, text.length() - start);
+        out.write('"');
+    }
+
+    private static final class JsonBeerWriter implements BeerWriter {
+        private final Writer fOut;
+        private boolean fFirst = true;
+
+        JsonBeerWriter(final Writer out) {
+            fOut = out;
+        }
+
+        public void write(final Beer beer) throws IOException {
+            final Brewery brewery = beer.getBrewery();
+            fOut.write(fFirst ? "\n" : ",\n");
+            fFirst = false;
+            fOut.write("{\"name\":");
+            writeString(fOut, beer.getName());
+            fOut.write(",\"brewery\":");
+            writeString(fOut, brewery == null ? null : brewery.getName());
+            fOut.write(",\"style\":");
+            writeString(fOut, beer.getStyle());
+            fOut.write(",\"rating\":");
+            fOut.write(Integer.toString(beer.getRating()));
+            fOut.write(",\"bookmarked\":");
+            fOut.write(beer.isIsOnWishList() ? "true" : "false");
+            fOut.write(",\"comments\":");
+            writeString(fOut, beer.getUserComments());
+            fOut.write('}');
+        }
+
+        public void finish() throws IOException {
+            fOut.write(fFirst ? "]\n" : "\n]\n");
+            fOut.flush();
+        }
+    }
+}
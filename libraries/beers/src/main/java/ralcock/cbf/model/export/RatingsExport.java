@@ -0,0 +1,71 @@
+package ralcock.cbf.model.export;
+
+import ralcock.cbf.model.Beer;
+import ralcock.cbf.model.dao.Beers;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Streams the user's rated and bookmarked beers to a {@link Writer} in a given
+ * {@link ExportFormat}.
+ * <p>
+ * Beers are read a page at a time, keyed on the last id seen rather than an offset, so memory
+ * use is bounded by the page size however long the tasting log is and each page is an index
+ * range scan.
+ */
+public final class RatingsExport {
+
+    public static final int DEFAULT_PAGE_SIZE = 200;
+
+    /**
+     * Supplies beers in increasing id order.
+     */
+    public interface Source {
+        /**
+         * Returns up to {@code limit} beers with an id greater than {@code afterId}, in id order.
+         */
+        List<Beer> page(long afterId, int limit);
+    }
+
+    private final Source fSource;
+    private final int fPageSize;
+
+    public RatingsExport(final Source source, final int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive: " + pageSize);
+        }
+        fSource = source;
+        fPageSize = pageSize;
+    }
+
+    public static RatingsExport of(final Beers beers) {
+        return new RatingsExport(new Source() {
+            public List<Beer> page(final long afterId, final int limit) {
+                return beers.ratedOrBookmarkedBeers(afterId, limit);
+            }
+        }, DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * Writes every beer from the source, returning how many were written. The writer is flushed
+     * but not closed.
+     */
+    public int writeTo(final ExportFormat format, final Writer out) throws IOException {
+        final BeerWriter writer = format.newWriter(out);
+        int count = 0;
+        long lastId = 0;
+        List<Beer> page;
+        do {
+            page = fSource.page(lastId, fPageSize);
+            for (Beer beer : page) {
+                writer.write(beer);
+                lastId = beer.getId();
+            }
+            count += page.size();
+        } while (page.size() == fPageSize);
+        writer.finish();
+        return count;
+    }
+}
@@ -0,0 +1,527 @@
+package ralcock.cbf.model.ingest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ingests festival feeds in three stages, each on its own thread, so that downloading, parsing
+ * and writing to the database overlap instead of running one after the other:
+ * <ol>
+ * <li>fetch reads each feed's stream in chunks;</li>
+ * <li>parse splits the chunks into batches of {@link Producer}s, a producer's text at a time;</li>
+ * <li>write hands each producer to the {@link Writer}. It runs on the thread that called {@link
+ * #run}, so the writer can write within that thread's transaction.</li>
+ * </ol>
+ * The stages are connected by bounded queues. A stage that gets ahead of the next waits for it,
+ * so only a few chunks and batches are held at once, however large the feeds are.
+ * <p>
+ * A feed's digest is known only once it has been read to the end. The producers of a feed that is
+ * ingested whatever its content, see {@link Writer#mustIngest}, are written as they are read.
+ * The producers of other feeds are held until the digest shows whether the feed has changed.
+ * Producers are not parsed into beers here; the writer parses those it keeps, once.
+ */
+public final class IngestPipeline {
+
+    static final int CHUNK_SIZE = 0x4000;
+    static final int CHUNK_CAPACITY = 8;
+    static final int BATCH_SIZE = 64;
+    static final int BATCH_CAPACITY = 8;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final Logger logger = LoggerFactory.getLogger(IngestPipeline.class);
+
+    /**
+     * One of the festival's feeds.
+     */
+    public interface Feed {
+        /**
+         * The name the feed's beers are recorded under.
+         */
+        String getName();
+
+        /**
+         * Opens the feed. The stream is read to its end and closed on the fetch stage's thread.
+         */
+        InputStream open() throws IOException;
+
+        /**
+         * The digest of the feed's content. Called once its stream has been read to the end.
+         */
+        String getDigest();
+    }
+
+    /**
+     * Receives the parsed feeds, on the thread that called {@link IngestPipeline#run}.
+     */
+    public interface Writer {
+        /**
+         * Whether the feed is to be ingested whatever its content, in which case its producers
+         * are written as soon as they are read.
+         */
+        boolean mustIngest(String feed);
+
+        /**
+         * Whether a feed with this digest needs ingesting. Not asked of feeds that must be.
+         */
+        boolean hasChanged(String feed, String digest);
+
+        void write(String feed, Producer producer);
+
+        /**
+         * Called once all of an ingested feed's producers have been written.
+         */
+        void endFeed(String feed, String digest);
+
+        /**
+         * Called if a feed could not be read or parsed. Any of its producers that have been written
+         * stay written, and {@link #endFeed} is not called for it.
+         */
+        void failed(String feed, Exception e);
+    }
+
+    private final int fChunkSize;
+    private final int fChunkCapacity;
+    private final int fBatchSize;
+    private final int fBatchCapacity;
+
+    public IngestPipeline() {
+        this(CHUNK_SIZE, CHUNK_CAPACITY, BATCH_SIZE, BATCH_CAPACITY);
+    }
+
+    IngestPipeline(final int chunkSize, final int chunkCapacity, final int batchSize, final int batchCapacity) {
+        fChunkSize = chunkSize;
+        fChunkCapacity = chunkCapacity;
+        fBatchSize = batchSize;
+        fBatchCapacity = batchCapacity;
+    }
+
+    /**
+     * Ingests the feeds, in order, returning once every one has been written or has failed. If
+     * the writer throws, or the calling thread is interrupted, the other stages are stopped and
+     * the exception is rethrown.
+     */
+    public Metrics run(final List<? extends Feed> feeds, final Writer writer) throws InterruptedException {
+        return new Run(feeds).run(writer);
+    }
+
+    /**
+     * One element of a feed's producers array: where it is in the array and its JSON text. See
+     * {@link ralcock.cbf.model.JsonBeerList#producerBeers} for its beers.
+     */
+    public static final class Producer {
+        private final int fPosition;
+        private final String fJson;
+
+        public Producer(final int position, final String json) {
+            fPosition = position;
+            fJson = json;
+        }
+
+        public int getPosition() {
+            return fPosition;
+        }
+
+        public String getJson() {
+            return fJson;
+        }
+    }
+
+    /**
+     * How long each stage spent working, waiting for its input, and blocked on the next stage.
+     */
+    public static final class Metrics {
+        private final StageMetrics fFetch = new StageMetrics("fetch", "bytes");
+        private final StageMetrics fParse = new StageMetrics("parse", "producers");
+        private final StageMetrics fWrite = new StageMetrics("write", "producers");
+
+        /**
+         * Waiting for the fetch stage is waiting for the network.
+         */
+        public StageMetrics getFetch() {
+            return fFetch;
+        }
+
+        public StageMetrics getParse() {
+            return fParse;
+        }
+
+        public StageMetrics getWrite() {
+            return fWrite;
+        }
+
+        @Override
+        public String toString() {
+            return fFetch + "; " + fParse + "; " + fWrite;
+        }
+    }
+
+    public static final class StageMetrics {
+        private final String fName;
+        private final String fUnit;
+        private long fItems;
+        private long fElapsedNanos;
+        private long fWaitingNanos;
+        private long fBlockedNanos;
+
+        StageMetrics(final String name, final String unit) {
+            fName = name;
+            fUnit = unit;
+        }
+
+        public String getName() {
+            return fName;
+        }
+
+        /**
+         * What the stage has produced: bytes read by fetch, producers parsed or written by the others.
+         */
+        public long getItems() {
+            return fItems;
+        }
+
+        public long getElapsedNanos() {
+            return fElapsedNanos;
+        }
+
+        public long getWaitingNanos() {
+            return fWaitingNanos;
+        }
+
+        public long getBlockedNanos() {
+            return fBlockedNanos;
+        }
+
+        public long getBusyNanos() {
+            return fElapsedNanos - fWaitingNanos - fBlockedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return fName + ": " + fItems + " " + fUnit
+                    + ", busy " + TimeUnit.NANOSECONDS.toMillis(getBusyNanos())
+                    + "ms, waiting " + TimeUnit.NANOSECONDS.toMillis(fWaitingNanos)
+                    + "ms, blocked " + TimeUnit.NANOSECONDS.toMillis(fBlockedNanos) + "ms";
+        }
+    }
+
+    /**
+     * What passes from one stage to the next: part of a feed, the end of a feed, its failure, or,
+     * with no feed, the end of them all.
+     */
+    private static final class Message<T> {
+        final String fFeed;
+        final T fPart;
+        final String fDigest;
+        final Exception fFailure;
+
+        private Message(final String feed, final T part, final String digest, final Exception failure) {
+            fFeed = feed;
+            fPart = part;
+            fDigest = digest;
+            fFailure = failure;
+        }
+
+        static <T> Message<T> part(final String feed, final T part) {
+            return new Message<>(feed, part, null, null);
+        }
+
+        static <T> Message<T> end(final String feed, final String digest) {
+            return new Message<>(feed, null, digest, null);
+        }
+
+        static <T> Message<T> failed(final String feed, final Exception failure) {
+            return new Message<>(feed, null, null, failure);
+        }
+
+        static <T> Message<T> last() {
+            return new Message<>(null, null, null, null);
+        }
+
+        boolean isLast() {
+            return fFeed == null;
+        }
+
+        boolean isEnd() {
+            return fPart == null;
+        }
+    }
+
+    private final class Run {
+        private final List<? extends Feed> fFeeds;
+        private final BlockingQueue<Message<byte[]>> fChunks = new ArrayBlockingQueue<>(fChunkCapacity);
+        private final BlockingQueue<Message<List<Producer>>> fBatches = new ArrayBlockingQueue<>(fBatchCapacity);
+        private final Metrics fMetrics = new Metrics();
+        private final Thread fFetchThread;
+        private final Thread fParseThread;
+        private volatile boolean fStopped;
+
+        Run(final List<? extends Feed> feeds) {
+            fFeeds = feeds;
+            fFetchThread = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        fetch();
+                    } catch (InterruptedException e) {
+                        logger.debug("Fetch stopped.");
+                    }
+                }
+            }, "ingest-fetch");
+            fParseThread = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        parse();
+                    } catch (InterruptedException e) {
+                        logger.debug("Parse stopped.");
+                    }
+                }
+            }, "ingest-parse");
+        }
+
+        Metrics run(final Writer writer) throws InterruptedException {
+            fFetchThread.start();
+            fParseThread.start();
+            boolean finished = false;
+            try {
+                write(writer);
+                finished = true;
+            } finally {
+                if (!finished) {
+                    // Neither stage touches the database, so they are left to stop on their own.
+                    fStopped = true;
+                    fFetchThread.interrupt();
+                    fParseThread.interrupt();
+                }
+            }
+            return fMetrics;
+        }
+
+        private void fetch() throws InterruptedException {
+            final StageMetrics stage = fMetrics.fFetch;
+            final long start = System.nanoTime();
+            for (Feed feed : fFeeds) {
+                final String name = feed.getName();
+                Message<byte[]> end;
+                try {
+                    InputStream inputStream = feed.open();
+                    try {
+                        while (true) {
+                            byte[] chunk = new byte[fChunkSize];
+                            long reading = System.nanoTime();
+                            int read = inputStream.read(chunk);
+                            stage.fWaitingNanos += System.nanoTime() - reading;
+                            if (read < 0) {
+                                break;
+                            }
+                            stage.fItems += read;
+                            put(fChunks, Message.part(name, read < chunk.length ? Arrays.copyOf(chunk, read) : chunk), stage);
+                        }
+                    } finally {
+                        inputStream.close();
+                    }
+                    end = Message.end(name, feed.getDigest());
+                } catch (IOException | RuntimeException e) {
+                    logger.warn("Failed to fetch " + name, e);
+                    end = Message.failed(name, e);
+                }
+                put(fChunks, end, stage);
+            }
+            stage.fElapsedNanos = System.nanoTime() - start;
+            put(fChunks, Message.<byte[]>last(), stage);
+        }
+
+        private void parse() throws InterruptedException {
+            final StageMetrics stage = fMetrics.fParse;
+            final long start = System.nanoTime();
+            Message<byte[]> first;
+            while (!(first = take(fChunks, stage)).isLast()) {
+                final String name = first.fFeed;
+                final ChunkInputStream chunks = new ChunkInputStream(first, stage);
+                Message<List<Producer>> end;
+                try {
+                    ProducerReader producers = new ProducerReader(new InputStreamReader(chunks, UTF_8));
+                    List<Producer> batch = new ArrayList<>(fBatchSize);
+                    int position = 0;
+                    String json;
+                    while ((json = producers.next()) != null) {
+                        batch.add(new Producer(position++, json));
+                        stage.fItems++;
+                        if (batch.size() == fBatchSize) {
+                            put(fBatches, Message.part(name, batch), stage);
+                            batch = new ArrayList<>(fBatchSize);
+                        }
+                    }
+                    if (!batch.isEmpty()) {
+                        put(fBatches, Message.part(name, batch), stage);
+                    }
+                    end = Message.end(name, chunks.getDigest());
+                } catch (Exception e) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        // Stopped while reading the chunks.
+                        throw new InterruptedException();
+                    }
+                    if (chunks.getFailure() != null) {
+                        end = Message.failed(name, chunks.getFailure());
+                    } else {
+                        logger.warn("Failed to parse " + name, e);
+                        end = Message.failed(name, e);
+                    }
+                    chunks.skipToEnd();
+                }
+                put(fBatches, end, stage);
+            }
+            stage.fElapsedNanos = System.nanoTime() - start;
+            put(fBatches, Message.<List<Producer>>last(), stage);
+        }
+
+        private void write(final Writer writer) throws InterruptedException {
+            final StageMetrics stage = fMetrics.fWrite;
+            final long start = System.nanoTime();
+            String feed = null;
+            boolean streaming = false;
+            List<Producer> held = new ArrayList<>();
+            Message<List<Producer>> message;
+            while (!(message = take(fBatches, stage)).isLast()) {
+                if (!message.fFeed.equals(feed)) {
+                    feed = message.fFeed;
+                    streaming = writer.mustIngest(feed);
+                }
+                if (message.fFailure != null) {
+                    writer.failed(feed, message.fFailure);
+                } else if (!message.isEnd()) {
+                    if (streaming) {
+                        write(writer, feed, message.fPart, stage);
+                    } else {
+                        held.addAll(message.fPart);
+                    }
+                    continue;
+                } else if (streaming || writer.hasChanged(feed, message.fDigest)) {
+                    write(writer, feed, held, stage);
+                    writer.endFeed(feed, message.fDigest);
+                }
+                // The feed is done with.
+                feed = null;
+                held = new ArrayList<>();
+            }
+            stage.fElapsedNanos = System.nanoTime() - start;
+        }
+
+        private void write(final Writer writer, final String feed, final List<Producer> producers,
+                           final StageMetrics stage) {
+            for (Producer producer : producers) {
+                writer.write(feed, producer);
+                stage.fItems++;
+            }
+        }
+
+        private <T> void put(final BlockingQueue<Message<T>> queue, final Message<T> message, final StageMetrics stage)
+                throws InterruptedException {
+            final long putting = System.nanoTime();
+            // A stage reading a stream that ignores interrupts may miss being stopped, so it checks.
+            while (!queue.offer(message, 100, TimeUnit.MILLISECONDS)) {
+                if (fStopped) {
+                    throw new InterruptedException();
+                }
+            }
+            stage.fBlockedNanos += System.nanoTime() - putting;
+        }
+
+        private <T> Message<T> take(final BlockingQueue<Message<T>> queue, final StageMetrics stage)
+                throws InterruptedException {
+            final long taking = System.nanoTime();
+            Message<T> message = queue.take();
+            stage.fWaitingNanos += System.nanoTime() - taking;
+            return message;
+        }
+
+        /**
+         * One feed's chunks, as the parse stage reads them.
+         */
+        private final class ChunkInputStream extends InputStream {
+            private final StageMetrics fStage;
+            private Message<byte[]> fMessage;
+            private int fPosition;
+            private boolean fEnded;
+            private String fDigest;
+            private Exception fFailure;
+
+            ChunkInputStream(final Message<byte[]> first, final StageMetrics stage) {
+                fMessage = first;
+                fStage = stage;
+            }
+
+            String getDigest() {
+                return fDigest;
+            }
+
+            /**
+             * Why the feed could not be fetched, if it could not.
+             */
+            Exception getFailure() {
+                return fFailure;
+            }
+
+            @Override
+            public int read() throws IOException {
+                final byte[] one = new byte[1];
+                return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+            }
+
+            @Override
+            public int read(final byte[] b, final int off, final int len) throws IOException {
+                while (!fMessage.isEnd() && fPosition == fMessage.fPart.length) {
+                    fMessage = next();
+                    fPosition = 0;
+                }
+                if (fMessage.isEnd()) {
+                    end();
+                    return -1;
+                }
+                final int n = Math.min(len, fMessage.fPart.length - fPosition);
+                System.arraycopy(fMessage.fPart, fPosition, b, off, n);
+                fPosition += n;
+                return n;
+            }
+
+            void skipToEnd() throws InterruptedException {
+                while (!fMessage.isEnd()) {
+                    fMessage = take(fChunks, fStage);
+                }
+                fEnded = true;
+            }
+
+            private Message<byte[]> next() throws InterruptedIOException {
+                try {
+                    return take(fChunks, fStage);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+            }
+
+            private void end() throws IOException {
+                if (fEnded) {
+                    return;
+                }
+                fEnded = true;
+                fDigest = fMessage.fDigest;
+                fFailure = fMessage.fFailure;
+                if (fFailure != null) {
+                    throw new IOException("Failed to fetch " + fMessage.fFeed, fFailure);
+                }
+            }
+        }
+    }
+}
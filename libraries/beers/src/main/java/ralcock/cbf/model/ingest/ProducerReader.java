@@ -0,0 +1,136 @@
+package ralcock.cbf.model.ingest;
+
+import org.json.JSONException;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads the elements of a feed's producers array one at a time, as the text arrives, so that a
+ * producer can be parsed as soon as it has been downloaded rather than once the whole feed has.
+ * <p>
+ * Only enough of the JSON is scanned to find where each producer starts and ends, leaving each
+ * producer's text to be parsed by {@link org.json.JSONObject}. Other members of the feed are
+ * skipped.
+ */
+final class ProducerReader {
+
+    private static final String PRODUCERS = "producers";
+
+    private final Reader fReader;
+    private final char[] fBuffer = new char[0x2000];
+    private int fPosition;
+    private int fLimit;
+
+    private int fDepth;
+    private boolean fInString;
+    private boolean fEscaped;
+    private StringBuilder fKey;
+    private String fLastString;
+    private boolean fInProducers;
+    private boolean fSeenProducers;
+    private StringBuilder fProducer;
+
+    ProducerReader(final Reader reader) {
+        fReader = reader;
+    }
+
+    /**
+     * Returns the JSON text of the next producer, or null once the feed has been read to its end.
+     */
+    String next() throws IOException, JSONException {
+        int c;
+        while ((c = read()) >= 0) {
+            if (fProducer != null) {
+                fProducer.append((char) c);
+            }
+            if (fInString) {
+                inString((char) c);
+                continue;
+            }
+            switch (c) {
+                case '"':
+                    if (fDepth == 2 && fInProducers) {
+                        throw new JSONException("JSONArray[producers] is not a JSONObject.");
+                    }
+                    fInString = true;
+                    if (fDepth == 1) {
+                        fKey = new StringBuilder();
+                    }
+                    break;
+                case '{':
+                case '[':
+                    if (fDepth == 0 && c != '{') {
+                        throw new JSONException("A JSONObject text must begin with '{'");
+                    }
+                    if (fDepth == 1 && c == '[' && PRODUCERS.equals(fLastString)) {
+                        fInProducers = true;
+                        fSeenProducers = true;
+                    } else if (fDepth == 2 && fInProducers) {
+                        if (c != '{') {
+                            throw new JSONException("JSONArray[producers] is not a JSONObject.");
+                        }
+                        fProducer = new StringBuilder().append('{');
+                    }
+                    fDepth++;
+                    break;
+                case '}':
+                case ']':
+                    fDepth--;
+                    if (fDepth < 0) {
+                        throw new JSONException("Unbalanced '" + (char) c + "'");
+                    }
+                    if (fDepth == 1) {
+                        fInProducers = false;
+                    } else if (fDepth == 2 && fProducer != null) {
+                        final String producer = fProducer.toString();
+                        fProducer = null;
+                        return producer;
+                    }
+                    break;
+                default:
+                    if (fDepth == 2 && fInProducers && !Character.isWhitespace(c) && c != ',') {
+                        throw new JSONException("JSONArray[producers] is not a JSONObject.");
+                    }
+                    break;
+            }
+        }
+        if (fDepth != 0 || fInString) {
+            throw new JSONException("Unterminated JSON");
+        }
+        if (!fSeenProducers) {
+            throw new JSONException("JSONObject[\"" + PRODUCERS + "\"] not found.");
+        }
+        return null;
+    }
+
+    private void inString(final char c) {
+        if (fEscaped) {
+            fEscaped = false;
+        } else if (c == '\\') {
+            fEscaped = true;
+        } else if (c == '"') {
+            fInString = false;
+            if (fKey != null) {
+                fLastString = fKey.toString();
+                fKey = null;
+            }
+            return;
+        }
+        if (fKey != null) {
+            fKey.append(c);
+        }
+    }
+
+    private int read() throws IOException {
+        if (fPosition == fLimit) {
+            fLimit = fReader.read(fBuffer);
+            fPosition = 0;
+            if (fLimit <= 0) {
+                fLimit = 0;
+                return -1;
+            }
+        }
+        return fBuffer[fPosition++];
+    }
+}
@@ -0,0 +1,238 @@
+package ralcock.cbf.model.ingest;
+
+import com.j256.ormlite.misc.TransactionManager;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ralcock.cbf.model.Beer;
+import ralcock.cbf.model.IngestCheckpoint;
+import ralcock.cbf.model.JsonBeerList;
+import ralcock.cbf.model.StagedProducer;
+import ralcock.cbf.model.dao.BeerAccessException;
+import ralcock.cbf.model.dao.Beers;
+import ralcock.cbf.model.dao.Staging;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+/**
+ * Stages the feeds an {@link IngestPipeline} reads, a chunk of producers at a time, each chunk
+ * committed along with the source's checkpoint. Nothing staged is seen by readers of the catalog
+ * until {@link #publish} applies the sources that have been staged to their end, each in one
+ * transaction, so readers see each feed either as it was or as it is now. An update that is
+ * stopped part way loses no more than a chunk.
+ * <p>
+ * A feed's digest is known only once it has all been downloaded, and the download starts from the
+ * beginning every time, so the checkpoint cannot say which producers can be skipped. Instead a
+ * source with producers staged by an earlier update is compared as it is read: a producer staged
+ * with the same text is left as it is, and the rest are staged over what was there. Staging a
+ * producer marks the source incomplete until it has been staged to its end again.
+ */
+public final class StagingWriter implements IngestPipeline.Writer {
+
+    static final int CHUNK_SIZE = 32;
+
+    private final Logger logger = LoggerFactory.getLogger(StagingWriter.class);
+
+    public interface ProgressListener {
+        void onProgress(int count, int total);
+    }
+
+    private final Staging fStaging;
+    private final Beers fBeers;
+    private final boolean fClean;
+    private final Map<String, String> fDigests;
+    private final int fChunkSize;
+
+    private final List<StagedProducer> fChunk = new ArrayList<>();
+    private String fSource;
+    private Map<Integer, String> fStaged = Collections.emptyMap();
+    private int fLastProducer;
+    private int fUnchanged;
+    private Exception fFailure;
+    private int fPublished;
+    private int fProgress;
+
+    /**
+     * @param clean   whether every source is to be ingested, whatever its content
+     * @param digests the digest of each source as it was last ingested
+     */
+    public StagingWriter(final Staging staging, final Beers beers, final boolean clean, final Map<String, String> digests) {
+        this(staging, beers, clean, digests, CHUNK_SIZE);
+    }
+
+    StagingWriter(final Staging staging, final Beers beers, final boolean clean, final Map<String, String> digests,
+                  final int chunkSize) {
+        fStaging = staging;
+        fBeers = beers;
+        fClean = clean;
+        fDigests = digests;
+        fChunkSize = chunkSize;
+    }
+
+    public boolean mustIngest(final String source) {
+        // A source with no beers recorded may have been lost with the database, whatever its digest.
+        return fClean
+                || fStaging.getCheckpoint(source) != null
+                || fBeers.getNumberOfBeersFrom(source) == 0;
+    }
+
+    public boolean hasChanged(final String source, final String digest) {
+        if (digest.equals(fDigests.get(source))) {
+            logger.debug("{} has not changed.", source);
+            return false;
+        }
+        logger.debug("{} has changed.", source);
+        return true;
+    }
+
+    public void write(final String source, final IngestPipeline.Producer producer) {
+        if (!source.equals(fSource)) {
+            startSource(source);
+        }
+        fLastProducer = producer.getPosition();
+        if (producer.getJson().equals(fStaged.get(producer.getPosition()))) {
+            fUnchanged++;
+            return;
+        }
+        fChunk.add(new StagedProducer(source, producer.getPosition(), producer.getJson()));
+        if (fChunk.size() >= fChunkSize) {
+            flush();
+        }
+    }
+
+    public void endFeed(final String source, final String digest) {
+        if (!source.equals(fSource)) {
+            startSource(source);
+        }
+        flush();
+        fStaging.complete(source, fLastProducer + 1, digest);
+        fSource = null;
+    }
+
+    public void failed(final String source, final Exception e) {
+        logger.warn("Failed to fetch " + source + ", continuing with other sources.", e);
+        if (source.equals(fSource)) {
+            // What was read before the failure is good, and saves reading it again.
+            flush();
+        }
+        fSource = null;
+        fFailure = e;
+    }
+
+    private void startSource(final String source) {
+        fSource = source;
+        fChunk.clear();
+        fLastProducer = -1;
+        fStaged = new HashMap<>();
+        for (StagedProducer staged : fStaging.getStagedProducers(source)) {
+            fStaged.put(staged.getPosition(), staged.getJson());
+        }
+    }
+
+    private void flush() {
+        if (!fChunk.isEmpty()) {
+            fStaging.stage(fSource, fChunk, fLastProducer);
+            fChunk.clear();
+        }
+    }
+
+    /**
+     * The last failure to read a source, or to read the beers staged from it, or null if they
+     * were all read.
+     */
+    public Exception getFailure() {
+        return fFailure;
+    }
+
+    /**
+     * How many producers read were already staged, as they were, by an earlier update.
+     */
+    public int getUnchanged() {
+        return fUnchanged;
+    }
+
+    /**
+     * How many beers {@link #publish} applied. Its progress is counted in producers.
+     */
+    public int getPublished() {
+        return fPublished;
+    }
+
+    /**
+     * Applies every source that has been staged to its end to the catalog, tagging each beer with
+     * its source and removing the beers that have gone from it, and then discards its staging.
+     * Other sources' beers are left alone. Each source is applied in a transaction of its own, its
+     * staged producers read and parsed a chunk at a time, so no more than a chunk of a feed is
+     * held at once and readers see each feed either as it was or as it is now. A source with a
+     * producer whose beers cannot be read is not applied; its staging is discarded so that the
+     * next update stages it afresh, and it is reported by {@link #getFailure}.
+     *
+     * @return the digest of each source applied
+     */
+    public Map<String, String> publish(final ProgressListener progressListener) {
+        final List<IngestCheckpoint> completed = fStaging.getCompleted();
+        int total = 0;
+        for (IngestCheckpoint checkpoint : completed) {
+            total += checkpoint.getLastProducer() + 1;
+        }
+
+        final Map<String, String> digests = new LinkedHashMap<>();
+        fPublished = 0;
+        fProgress = 0;
+        for (IngestCheckpoint checkpoint : completed) {
+            final String source = checkpoint.getSource();
+            final int producers = checkpoint.getLastProducer() + 1;
+            final int progressTotal = total;
+            try {
+                fPublished += TransactionManager.callInTransaction(fStaging.getConnectionSource(),
+                        new Callable<Integer>() {
+                            public Integer call() throws JSONException {
+                                return publish(source, producers, progressListener, progressTotal);
+                            }
+                        });
+                digests.put(source, checkpoint.getDigest());
+            } catch (SQLException e) {
+                if (!(e.getCause() instanceof JSONException)) {
+                    throw new BeerAccessException("Failed to publish " + source, e);
+                }
+                logger.warn("Failed to read the beers staged from " + source + ", discarding them.", e);
+                fStaging.clear(source);
+                fFailure = e;
+            }
+        }
+        return digests;
+    }
+
+    private int publish(final String source, final int producers, final ProgressListener progressListener,
+                        final int total) throws JSONException {
+        final Set<String> festivalIds = new HashSet<>();
+        int published = 0;
+        for (int from = 0; from < producers; from += fChunkSize) {
+            for (StagedProducer producer : fStaging.getStagedProducers(source, from, fChunkSize)) {
+                for (Beer beer : JsonBeerList.producerBeers(new JSONObject(producer.getJson()))) {
+                    beer.setSource(source);
+                    fBeers.updateFromFestivalOrCreate(beer);
+                    festivalIds.add(beer.getFestivalID());
+                    published++;
+                }
+                progressListener.onProgress(++fProgress, total);
+            }
+        }
+        int removed = fBeers.deleteStaleBeers(source, festivalIds);
+        if (removed > 0) {
+            logger.debug("Removed {} beers no longer in {}", removed, source);
+        }
+        fStaging.clear(source);
+        return published;
+    }
+}
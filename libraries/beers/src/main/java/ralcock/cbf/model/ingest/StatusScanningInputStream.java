@@ -0,0 +1,293 @@
+package ralcock.cbf.model.ingest;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+import ralcock.cbf.model.StringPool;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reads a feed for its beers' statuses alone, for refreshes in which nothing else has changed.
+ * <p>
+ * The bytes are scanned as they pass through, without decoding them or parsing the feed: JSON's
+ * structure is all ASCII, so only enough is tracked to find each product's "id" and
+ * "status_text", and only those two values are ever turned into strings. Everything else, the
+ * notes included, is skipped over.
+ * <p>
+ * The bytes are also digested, leaving out the status values and the feed's timestamp, which
+ * changes along with them, so that a feed whose digest without statuses is the same as when it
+ * was last ingested is known to differ from it, if at all, only in its statuses.
+ */
+public final class StatusScanningInputStream extends FilterInputStream {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final String PRODUCERS = "producers";
+    private static final String PRODUCTS = "products";
+    private static final String IDENTIFIER = "id";
+    private static final String STATUS = "status_text";
+    private static final String TIMESTAMP = "timestamp";
+
+    // The root object, producers array, producer object, products array and product object.
+    private static final int PRODUCT_DEPTH = 5;
+
+    private final MessageDigest fDigest;
+    private final Map<String, String> fStatuses = new LinkedHashMap<>();
+
+    private int fDepth;
+    private boolean[] fInObject = new boolean[8];
+    private String[] fKeys = new String[8];
+    private boolean fExpectingKey;
+    private boolean fInString;
+    private boolean fEscaped;
+    private StringBuilder fKey;
+
+    // The product or root member whose value comes next, and the value as it is read.
+    private String fValueKey;
+    private ByteArrayOutputStream fValue;
+    private String fCapturing;
+    private boolean fInLiteral;
+    private Object fId;
+    private Object fStatus;
+
+    /**
+     * @param digest digests the feed without its statuses
+     */
+    public StatusScanningInputStream(final InputStream in, final MessageDigest digest) {
+        super(in);
+        fDigest = digest;
+    }
+
+    /**
+     * The status of each product read so far, by festival id.
+     */
+    public Map<String, String> getStatuses() {
+        return Collections.unmodifiableMap(fStatuses);
+    }
+
+    /**
+     * The digest of the feed without its statuses. Complete once the stream has been read to its
+     * end.
+     */
+    public MessageDigest getMessageDigest() {
+        return fDigest;
+    }
+
+    @Override
+    public int read() throws IOException {
+        final int b = in.read();
+        if (b >= 0 && scan(b)) {
+            fDigest.update((byte) b);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        final int n = in.read(b, off, len);
+        if (n > 0) {
+            // The digested bytes are handed over in runs, broken only by the statuses.
+            int run = off;
+            for (int i = off; i < off + n; i++) {
+                if (!scan(b[i] & 0xff)) {
+                    fDigest.update(b, run, i - run);
+                    run = i + 1;
+                }
+            }
+            fDigest.update(b, run, off + n - run);
+        }
+        return n;
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+        // Skipped bytes are still scanned.
+        final byte[] buffer = new byte[(int) Math.min(n, 0x2000)];
+        long skipped = 0;
+        while (skipped < n) {
+            int count = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+            if (count < 0) {
+                break;
+            }
+            skipped += count;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(final int readlimit) {
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+
+    /**
+     * Scans the next byte, returning whether it is digested.
+     */
+    private boolean scan(final int b) {
+        if (fInString) {
+            final boolean digested = !isLeftOut();
+            if (fValue != null) {
+                fValue.write(b);
+            }
+            inString(b);
+            return digested;
+        }
+        if (fInLiteral) {
+            if (b != ',' && b != '}' && b != ']' && !isWhitespace(b)) {
+                fValue.write(b);
+                return !isLeftOut();
+            }
+            endValue();
+        }
+        switch (b) {
+            case '"':
+                fInString = true;
+                if (fExpectingKey) {
+                    fKey = new StringBuilder();
+                } else {
+                    startValue(b);
+                }
+                return !isLeftOut();
+            case '{':
+            case '[':
+                fValueKey = null;
+                fDepth++;
+                if (fDepth == fInObject.length) {
+                    fInObject = Arrays.copyOf(fInObject, fDepth * 2);
+                    fKeys = Arrays.copyOf(fKeys, fDepth * 2);
+                }
+                fInObject[fDepth] = b == '{';
+                fKeys[fDepth] = null;
+                fExpectingKey = b == '{';
+                if (isProduct()) {
+                    fId = null;
+                    fStatus = null;
+                }
+                break;
+            case '}':
+            case ']':
+                if (isProduct()) {
+                    endProduct();
+                }
+                fDepth = Math.max(0, fDepth - 1);
+                fExpectingKey = false;
+                break;
+            case ':':
+                fExpectingKey = false;
+                fValueKey = isProduct() || isRoot() ? fKeys[fDepth] : null;
+                break;
+            case ',':
+                fExpectingKey = fInObject[fDepth];
+                break;
+            default:
+                if (!isWhitespace(b)) {
+                    startValue(b);
+                    if (fValue != null) {
+                        fInLiteral = true;
+                        return !isLeftOut();
+                    }
+                }
+                break;
+        }
+        return true;
+    }
+
+    private void inString(final int b) {
+        if (fEscaped) {
+            fEscaped = false;
+        } else if (b == '\\') {
+            fEscaped = true;
+        } else if (b == '"') {
+            fInString = false;
+            if (fKey != null) {
+                fKeys[fDepth] = fKey.toString();
+                fKey = null;
+            } else if (fValue != null) {
+                endValue();
+            }
+            return;
+        }
+        if (fKey != null) {
+            // Only compared with ASCII names, so other bytes need not be decoded.
+            fKey.append((char) b);
+        }
+    }
+
+    private void startValue(final int b) {
+        final boolean captured = isProduct()
+                ? IDENTIFIER.equals(fValueKey) || STATUS.equals(fValueKey)
+                : TIMESTAMP.equals(fValueKey);
+        if (captured) {
+            fCapturing = fValueKey;
+            fValue = new ByteArrayOutputStream();
+            fValue.write(b);
+        }
+        fValueKey = null;
+    }
+
+    private void endValue() {
+        Object value;
+        try {
+            value = new JSONTokener(new String(fValue.toByteArray(), UTF_8)).nextValue();
+        } catch (JSONException e) {
+            value = null;
+        }
+        if (IDENTIFIER.equals(fCapturing)) {
+            fId = value;
+        } else if (STATUS.equals(fCapturing)) {
+            fStatus = value;
+        }
+        fCapturing = null;
+        fValue = null;
+        fInLiteral = false;
+    }
+
+    private void endProduct() {
+        if (fId == null || JSONObject.NULL.equals(fId)) {
+            return;
+        }
+        // As JsonBeerList reads a missing status.
+        final String status = fStatus == null || JSONObject.NULL.equals(fStatus)
+                ? "Unknown" : StringPool.canonical(String.valueOf(fStatus));
+        fStatuses.put(String.valueOf(fId), status);
+    }
+
+    /**
+     * Whether the value being read is left out of the digest.
+     */
+    private boolean isLeftOut() {
+        return STATUS.equals(fCapturing) || TIMESTAMP.equals(fCapturing);
+    }
+
+    private boolean isRoot() {
+        return fDepth == 1 && fInObject[1];
+    }
+
+    private boolean isProduct() {
+        return fDepth == PRODUCT_DEPTH && fInObject[PRODUCT_DEPTH]
+                && PRODUCERS.equals(fKeys[1]) && PRODUCTS.equals(fKeys[3])
+                && fInObject[1] && !fInObject[2] && fInObject[3] && !fInObject[4];
+    }
+
+    private static boolean isWhitespace(final int b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+    }
+}
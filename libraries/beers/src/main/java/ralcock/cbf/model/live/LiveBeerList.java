@@ -0,0 +1,290 @@
+package ralcock.cbf.model.live;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ralcock.cbf.model.Beer;
+import ralcock.cbf.model.BeerList;
+import ralcock.cbf.model.SectionIndex;
+import ralcock.cbf.model.SortOrder;
+import ralcock.cbf.model.StatusToShow;
+import ralcock.cbf.model.dao.Beers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One of the beer lists, kept up to date as the catalog changes. Made by
+ * {@link Beers#observeBeerList}.
+ * <p>
+ * The list is queried on the engine's live query thread, never the caller's. Its observer is
+ * given the list when it is first queried and then again each time it changes, on the executor
+ * chosen when it was made. Changes that arrive while a query is waiting or running are coalesced
+ * into the next one; a change to a single beer that was not in the list and would not be in it
+ * causes no query at all; and a result equal to the one last delivered is not delivered.
+ * <p>
+ * The list's settings are changed as {@link BeerList}'s are, and apply in the order they are
+ * made, so typing more of a search still refines the list in memory.
+ */
+public final class LiveBeerList {
+
+    public interface Observer {
+        void beerListChanged(Result result);
+    }
+
+    /**
+     * The beers of the list at one time. Immutable.
+     */
+    public static final class Result {
+        private final List<Beer> fBeers;
+        private final boolean fShowingSimilarMatches;
+        private final Set<Long> fIds;
+        private final SectionIndex fSections;
+
+        private Result(final BeerList beerList) {
+            final int count = beerList.getCount();
+            List<Beer> beers = new ArrayList<>(count);
+            Set<Long> ids = new HashSet<>();
+            fShowingSimilarMatches = beerList.isShowingSimilarMatches();
+            // Similar matches are in order of how well they match.
+            SectionIndex.Builder sections = new SectionIndex.Builder(
+                    fShowingSimilarMatches ? null : beerList.getSortOrder(), count);
+            for (int i = 0; i < count; i++) {
+                Beer beer = beerList.getBeerAt(i);
+                beers.add(beer);
+                ids.add(beer.getId());
+                sections.add(beer);
+            }
+            fBeers = Collections.unmodifiableList(beers);
+            fIds = ids;
+            fSections = sections.build();
+        }
+
+        public List<Beer> getBeers() {
+            return fBeers;
+        }
+
+        /**
+         * The list's sections for fast scrolling, or {@link SectionIndex#NONE} if its order has
+         * none.
+         */
+        public SectionIndex getSections() {
+            return fSections;
+        }
+
+        /**
+         * See {@link BeerList#isShowingSimilarMatches}.
+         */
+        public boolean isShowingSimilarMatches() {
+            return fShowingSimilarMatches;
+        }
+
+        boolean containsBeer(final long id) {
+            return fIds.contains(id);
+        }
+
+        /**
+         * True if the other result lists the same beers, in the same order and as they were, in
+         * the same sections.
+         */
+        boolean sameAs(final Result other) {
+            if (other == null || other.fShowingSimilarMatches != fShowingSimilarMatches
+                    || other.fBeers.size() != fBeers.size() || !other.fSections.equals(fSections)) {
+                return false;
+            }
+            for (int i = 0; i < fBeers.size(); i++) {
+                Beer beer = fBeers.get(i);
+                Beer otherBeer = other.fBeers.get(i);
+                if (beer.getId() != otherBeer.getId() || !beer.equals(otherBeer)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private final Logger logger = LoggerFactory.getLogger(LiveBeerList.class);
+
+    private final LiveQueries fLiveQueries;
+    private final Beers fBeers;
+    private final BeerList.Type fType;
+    private final Executor fQueryExecutor;
+    private final Executor fExecutor;
+    private final Observer fObserver;
+
+    // Settings changes not yet applied to the list, in the order they were made.
+    private final ConcurrentLinkedQueue<Runnable> fChanges = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean fScheduled = new AtomicBoolean();
+    private final AtomicBoolean fStale = new AtomicBoolean();
+    private volatile boolean fClosed;
+
+    // The settings as last changed, to decide whether a changed beer belongs in the list.
+    private volatile BeerList.Config fConfig;
+    private volatile Result fLast;
+
+    // Only used on the query thread.
+    private BeerList fBeerList;
+
+    private final Runnable fRefresh = new Runnable() {
+        public void run() {
+            refresh();
+        }
+    };
+
+    LiveBeerList(final LiveQueries liveQueries,
+                 final Beers beers,
+                 final BeerList.Type type,
+                 final BeerList.Config config,
+                 final Executor queryExecutor,
+                 final Executor executor,
+                 final Observer observer) {
+        fLiveQueries = liveQueries;
+        fBeers = beers;
+        fType = type;
+        fConfig = copy(config);
+        fQueryExecutor = queryExecutor;
+        fExecutor = executor;
+        fObserver = observer;
+    }
+
+    private static BeerList.Config copy(final BeerList.Config config) {
+        return new BeerList.Config(config.SortOrder, config.SearchText, config.StylesToHide,
+                config.AllergensToHide, config.StatusToShow);
+    }
+
+    public void filterBy(final CharSequence filterText) {
+        BeerList.Config config = copy(fConfig);
+        config.SearchText = filterText;
+        change(config, new Runnable() {
+            public void run() {
+                fBeerList.filterBy(filterText);
+            }
+        });
+    }
+
+    public void sortBy(final SortOrder sortOrder) {
+        BeerList.Config config = copy(fConfig).withSortOrder(sortOrder);
+        change(config, new Runnable() {
+            public void run() {
+                fBeerList.sortBy(sortOrder);
+            }
+        });
+    }
+
+    public void stylesToHide(final Set<String> stylesToHide) {
+        BeerList.Config config = copy(fConfig).withStylesToHide(stylesToHide);
+        change(config, new Runnable() {
+            public void run() {
+                fBeerList.stylesToHide(stylesToHide);
+            }
+        });
+    }
+
+    public void allergensToHide(final Set<String> allergensToHide) {
+        BeerList.Config config = copy(fConfig).withAllergensToHide(allergensToHide);
+        change(config, new Runnable() {
+            public void run() {
+                fBeerList.allergensToHide(allergensToHide);
+            }
+        });
+    }
+
+    public void setStatusToShow(final StatusToShow statusToShow) {
+        BeerList.Config config = copy(fConfig);
+        config.StatusToShow = statusToShow;
+        change(config, new Runnable() {
+            public void run() {
+                fBeerList.setStatusToShow(statusToShow);
+            }
+        });
+    }
+
+    /**
+     * Stops watching the list. Nothing more is delivered to the observer, though a delivery
+     * already handed to the executor may still run.
+     */
+    public void close() {
+        fClosed = true;
+        fLiveQueries.remove(this);
+    }
+
+    private synchronized void change(final BeerList.Config config, final Runnable change) {
+        fConfig = config;
+        fChanges.add(change);
+        schedule();
+    }
+
+    void start() {
+        schedule();
+    }
+
+    /**
+     * Called when a single beer has been changed.
+     */
+    void beerChanged(final Beer beer) {
+        Result last = fLast;
+        if (last == null || last.isShowingSimilarMatches() || last.containsBeer(beer.getId())
+                || !BeerList.select(Collections.singletonList(beer), fType, fConfig).isEmpty()) {
+            catalogChanged();
+        }
+    }
+
+    /**
+     * Called when any number of beers may have changed.
+     */
+    void catalogChanged() {
+        fStale.set(true);
+        schedule();
+    }
+
+    private void schedule() {
+        if (!fClosed && fScheduled.compareAndSet(false, true)) {
+            fQueryExecutor.execute(fRefresh);
+        }
+    }
+
+    private void refresh() {
+        // Cleared first, so whatever changes during the query schedules another.
+        fScheduled.set(false);
+        if (fClosed) {
+            return;
+        }
+        try {
+            boolean stale = fStale.getAndSet(false);
+            if (fBeerList == null) {
+                // Made with the latest settings, which include any changes queued so far.
+                fChanges.clear();
+                fBeerList = new BeerList(fBeers, fType, fConfig);
+            } else {
+                Runnable change;
+                while ((change = fChanges.poll()) != null) {
+                    change.run();
+                }
+                if (stale) {
+                    fBeerList.updateBeerList();
+                }
+            }
+        } catch (RuntimeException e) {
+            // Tried again on the next change.
+            logger.error("Failed to query live beer list", e);
+            return;
+        }
+        final Result result = new Result(fBeerList);
+        if (result.sameAs(fLast)) {
+            return;
+        }
+        fLast = result;
+        fExecutor.execute(new Runnable() {
+            public void run() {
+                if (!fClosed) {
+                    fObserver.beerListChanged(result);
+                }
+            }
+        });
+    }
+}
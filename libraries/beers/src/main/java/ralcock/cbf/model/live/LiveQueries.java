@@ -0,0 +1,86 @@
+package ralcock.cbf.model.live;
+
+import ralcock.cbf.model.Beer;
+import ralcock.cbf.model.BeerList;
+import ralcock.cbf.model.dao.Beers;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The live beer lists of one catalog engine. The engine makes them through
+ * {@link #observeBeerList} and tells this of every change it makes, and this passes the changes
+ * on to the lists.
+ */
+public final class LiveQueries {
+
+    private static final long IDLE_SECONDS = 30;
+
+    private final Beers fBeers;
+    private final Executor fQueryExecutor;
+    private final CopyOnWriteArrayList<LiveBeerList> fLists = new CopyOnWriteArrayList<>();
+
+    /**
+     * Queries the lists on a thread of their own, which stops while they are idle.
+     */
+    public LiveQueries(final Beers beers) {
+        this(beers, newQueryExecutor());
+    }
+
+    /**
+     * @param queryExecutor runs the lists' queries, one at a time
+     */
+    public LiveQueries(final Beers beers, final Executor queryExecutor) {
+        fBeers = beers;
+        fQueryExecutor = queryExecutor;
+    }
+
+    private static Executor newQueryExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, IDLE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    public Thread newThread(final Runnable r) {
+                        Thread thread = new Thread(r, "live-beer-lists");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    public LiveBeerList observeBeerList(final BeerList.Type type,
+                                        final BeerList.Config config,
+                                        final Executor executor,
+                                        final LiveBeerList.Observer observer) {
+        LiveBeerList list = new LiveBeerList(this, fBeers, type, config, fQueryExecutor, executor, observer);
+        fLists.add(list);
+        list.start();
+        return list;
+    }
+
+    /**
+     * Tells the lists a single beer was changed, so only those it is or would be in query again.
+     */
+    public void beerChanged(final Beer beer) {
+        for (LiveBeerList list : fLists) {
+            list.beerChanged(beer);
+        }
+    }
+
+    /**
+     * Tells the lists that any beers may have changed.
+     */
+    public void catalogChanged() {
+        for (LiveBeerList list : fLists) {
+            list.catalogChanged();
+        }
+    }
+
+    void remove(final LiveBeerList list) {
+        fLists.remove(list);
+    }
+}
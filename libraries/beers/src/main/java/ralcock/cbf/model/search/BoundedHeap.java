@@ -0,0 +1,103 @@
+package ralcock.cbf.model.search;
+
+/**
+ * Keeps the {@code capacity} highest scoring ordinals offered to it, using a binary min-heap so
+ * each offer costs O(log capacity) and nothing is allocated after construction.
+ * <p>
+ * Ties are broken in favour of the lower ordinal so results are deterministic.
+ */
+final class BoundedHeap {
+    private final float[] fScores;
+    private final int[] fOrdinals;
+    private int fSize;
+
+    BoundedHeap(final int capacity) {
+        fScores = new float[capacity];
+        fOrdinals = new int[capacity];
+    }
+
+    int size() {
+        return fSize;
+    }
+
+    void offer(final int ordinal, final float score) {
+        if (fScores.length == 0) {
+            return;
+        }
+        if (fSize < fScores.length) {
+            fScores[fSize] = score;
+            fOrdinals[fSize] = ordinal;
+            siftUp(fSize++);
+        } else if (isBetter(score, ordinal, fScores[0], fOrdinals[0])) {
+            fScores[0] = score;
+            fOrdinals[0] = ordinal;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Empties the heap, returning the ordinals best first. Scores are copied into
+     * {@code scoresOut} (which must be at least {@link #size()} long) in the same order.
+     */
+    int[] drainBestFirst(final float[] scoresOut) {
+        final int n = fSize;
+        int[] ordinals = new int[n];
+        for (int i = n - 1; i >= 0; i--) {
+            ordinals[i] = fOrdinals[0];
+            scoresOut[i] = fScores[0];
+            fSize--;
+            fScores[0] = fScores[fSize];
+            fOrdinals[0] = fOrdinals[fSize];
+            siftDown(0);
+        }
+        return ordinals;
+    }
+
+    void clear() {
+        fSize = 0;
+    }
+
+    private static boolean isBetter(final float score, final int ordinal,
+                                    final float otherScore, final int otherOrdinal) {
+        return score > otherScore || (score == otherScore && ordinal < otherOrdinal);
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!isBetter(fScores[parent], fOrdinals[parent], fScores[i], fOrdinals[i])) {
+                return;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= fSize) {
+                return;
+            }
+            int worst = left;
+            int right = left + 1;
+            if (right < fSize && isBetter(fScores[left], fOrdinals[left], fScores[right], fOrdinals[right])) {
+                worst = right;
+            }
+            if (!isBetter(fScores[i], fOrdinals[i], fScores[worst], fOrdinals[worst])) {
+                return;
+            }
+            swap(i, worst);
+            i = worst;
+        }
+    }
+
+    private void swap(final int i, final int j) {
+        float s = fScores[i];
+        fScores[i] = fScores[j];
+        fScores[j] = s;
+        int o = fOrdinals[i];
+        fOrdinals[i] = fOrdinals[j];
+        fOrdinals[j] = o;
+    }
+}
@@ -0,0 +1,46 @@
+package ralcock.cbf.model.search;
+
+import java.util.Arrays;
+
+/**
+ * Minimal growable list of primitive ints, to avoid boxing in the search hot paths.
+ */
+final class IntList {
+    private int[] fValues;
+    private int fSize;
+
+    IntList() {
+        this(8);
+    }
+
+    IntList(final int capacity) {
+        fValues = new int[Math.max(1, capacity)];
+    }
+
+    void add(final int value) {
+        if (fSize == fValues.length) {
+            fValues = Arrays.copyOf(fValues, fSize * 2);
+        }
+        fValues[fSize++] = value;
+    }
+
+    int get(final int index) {
+        return fValues[index];
+    }
+
+    void set(final int index, final int value) {
+        fValues[index] = value;
+    }
+
+    int size() {
+        return fSize;
+    }
+
+    void clear() {
+        fSize = 0;
+    }
+
+    int[] toArray() {
+        return Arrays.copyOf(fValues, fSize);
+    }
+}
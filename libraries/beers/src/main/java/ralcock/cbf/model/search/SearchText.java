@@ -0,0 +1,65 @@
+package ralcock.cbf.model.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Normalisation shared by the in-memory search structures, so that "K&ouml;lsch", "KOLSCH" and
+ * "kolsch" all index and look up the same way.
+ */
+public final class SearchText {
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    private SearchText() {
+        // Utility class
+    }
+
+    /**
+     * Lower-cases the text, strips diacritics and replaces anything that is not a letter or
+     * digit with a single space.
+     */
+    public static String normalize(final CharSequence text) {
+        if (text == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        String stripped = COMBINING_MARKS.matcher(decomposed).replaceAll("");
+        StringBuilder sb = new StringBuilder(stripped.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < stripped.length(); i++) {
+            char c = stripped.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (pendingSpace && sb.length() > 0) {
+                    sb.append(' ');
+                }
+                pendingSpace = false;
+                sb.append(Character.toLowerCase(c));
+            } else {
+                pendingSpace = true;
+            }
+        }
+        return sb.toString().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Splits normalised text into words.
+     */
+    public static List<String> words(final CharSequence text) {
+        List<String> words = new ArrayList<>();
+        String normalized = normalize(text);
+        int start = 0;
+        while (start < normalized.length()) {
+            int end = normalized.indexOf(' ', start);
+            if (end < 0) {
+                end = normalized.length();
+            }
+            words.add(normalized.substring(start, end));
+            start = end + 1;
+        }
+        return words;
+    }
+}
@@ -0,0 +1,268 @@
+package ralcock.cbf.model.search;
+
+import ralcock.cbf.model.Beer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the beers most like a given beer, for "similar beers", from what the catalog says of
+ * them: the same style, a similar strength, words in common in the descriptions and the same
+ * brewery, in that order of weight.
+ * <p>
+ * Each beer's description is a TF-IDF vector over the words of at least three letters found in
+ * more than one description but no more than half of them, which say little and would make every
+ * lookup walk most of the beers. The vectors are unit length and kept as flat arrays of term
+ * numbers and weights, once by beer and once, inverted, by term, so the similarity of one beer's
+ * description to all the others is accumulated from the postings of its own terms only. Style,
+ * brewery and strength are compared for every beer in a single pass over primitive arrays, and
+ * the best are kept in a bounded heap.
+ * <p>
+ * Built once per ingest from the full beers; the lookups never read the database. The index is
+ * immutable and safe to share between threads.
+ */
+public final class SimilarityIndex {
+
+    static final float STYLE_WEIGHT = 0.4f;
+    static final float ABV_WEIGHT = 0.25f;
+    static final float DESCRIPTION_WEIGHT = 0.25f;
+    static final float BREWERY_WEIGHT = 0.1f;
+
+    /**
+     * How far apart, in percent ABV, two beers' strengths can be and still count as alike.
+     */
+    static final float ABV_RANGE = 2f;
+
+    private static final int MIN_TERM_LENGTH = 3;
+
+    private final long[] fIds;
+    private final int[] fStyles;
+    private final int[] fBreweries;
+    private final float[] fAbvs;
+    private final int[] fDocTermStarts;
+    private final int[] fDocTerms;
+    private final float[] fDocWeights;
+    private final int[] fTermDocStarts;
+    private final int[] fTermDocs;
+    private final float[] fTermWeights;
+
+    private SimilarityIndex(final long[] ids,
+                            final int[] styles,
+                            final int[] breweries,
+                            final float[] abvs,
+                            final int[] docTermStarts,
+                            final int[] docTerms,
+                            final float[] docWeights,
+                            final int[] termDocStarts,
+                            final int[] termDocs,
+                            final float[] termWeights) {
+        fIds = ids;
+        fStyles = styles;
+        fBreweries = breweries;
+        fAbvs = abvs;
+        fDocTermStarts = docTermStarts;
+        fDocTerms = docTerms;
+        fDocWeights = docWeights;
+        fTermDocStarts = termDocStarts;
+        fTermDocs = termDocs;
+        fTermWeights = termWeights;
+    }
+
+    public static SimilarityIndex forBeers(final Collection<Beer> beers) {
+        final Beer[] byId = beers.toArray(new Beer[beers.size()]);
+        Arrays.sort(byId, new Comparator<Beer>() {
+            public int compare(final Beer a, final Beer b) {
+                return Long.compare(a.getId(), b.getId());
+            }
+        });
+        final int n = byId.length;
+
+        final long[] ids = new long[n];
+        final int[] styles = new int[n];
+        final int[] breweries = new int[n];
+        final float[] abvs = new float[n];
+        final Map<String, Integer> styleNumbers = new HashMap<>();
+        final Map<String, Integer> breweryNumbers = new HashMap<>();
+
+        // Each description's distinct words and how often each occurs, numbered as first seen.
+        final Map<String, Integer> words = new HashMap<>();
+        final IntList documentFrequencies = new IntList();
+        final int[][] docWords = new int[n][];
+        final int[][] docCounts = new int[n][];
+        for (int doc = 0; doc < n; doc++) {
+            Beer beer = byId[doc];
+            ids[doc] = beer.getId();
+            styles[doc] = number(styleNumbers, beer.getStyle());
+            breweries[doc] = number(breweryNumbers, beer.getBreweryName());
+            abvs[doc] = beer.getAbv();
+
+            Map<Integer, int[]> counts = new HashMap<>();
+            for (String word : SearchText.words(beer.getDescription())) {
+                if (word.length() < MIN_TERM_LENGTH) {
+                    continue;
+                }
+                Integer number = words.get(word);
+                if (number == null) {
+                    number = words.size();
+                    words.put(word, number);
+                    documentFrequencies.add(0);
+                }
+                int[] count = counts.get(number);
+                if (count == null) {
+                    counts.put(number, new int[]{1});
+                    documentFrequencies.set(number, documentFrequencies.get(number) + 1);
+                } else {
+                    count[0]++;
+                }
+            }
+            docWords[doc] = new int[counts.size()];
+            docCounts[doc] = new int[counts.size()];
+            int i = 0;
+            for (Map.Entry<Integer, int[]> entry : counts.entrySet()) {
+                docWords[doc][i] = entry.getKey();
+                docCounts[doc][i] = entry.getValue()[0];
+                i++;
+            }
+        }
+
+        // The words kept as terms, and their inverse document frequencies.
+        final int[] terms = new int[words.size()];
+        final float[] idfs = new float[words.size()];
+        int termCount = 0;
+        for (int word = 0; word < words.size(); word++) {
+            int df = documentFrequencies.get(word);
+            if (df > 1 && df * 2 <= n) {
+                terms[word] = termCount++;
+                idfs[word] = (float) Math.log((double) n / df);
+            } else {
+                terms[word] = -1;
+            }
+        }
+
+        // The unit length vectors, by beer.
+        int postingCount = 0;
+        for (int doc = 0; doc < n; doc++) {
+            for (int word : docWords[doc]) {
+                if (terms[word] >= 0) {
+                    postingCount++;
+                }
+            }
+        }
+        final int[] docTermStarts = new int[n + 1];
+        final int[] docTerms = new int[postingCount];
+        final float[] docWeights = new float[postingCount];
+        final int[] termSizes = new int[termCount];
+        int posting = 0;
+        for (int doc = 0; doc < n; doc++) {
+            docTermStarts[doc] = posting;
+            double norm = 0;
+            for (int i = 0; i < docWords[doc].length; i++) {
+                int term = terms[docWords[doc][i]];
+                if (term >= 0) {
+                    float weight = (float) (1 + Math.log(docCounts[doc][i])) * idfs[docWords[doc][i]];
+                    docTerms[posting] = term;
+                    docWeights[posting++] = weight;
+                    termSizes[term]++;
+                    norm += weight * weight;
+                }
+            }
+            float scale = norm == 0 ? 0 : (float) (1 / Math.sqrt(norm));
+            for (int i = docTermStarts[doc]; i < posting; i++) {
+                docWeights[i] *= scale;
+            }
+        }
+        docTermStarts[n] = posting;
+
+        // The same vectors, inverted by term.
+        final int[] termDocStarts = new int[termCount + 1];
+        for (int term = 0; term < termCount; term++) {
+            termDocStarts[term + 1] = termDocStarts[term] + termSizes[term];
+        }
+        final int[] next = Arrays.copyOf(termDocStarts, termCount);
+        final int[] termDocs = new int[postingCount];
+        final float[] termWeights = new float[postingCount];
+        for (int doc = 0; doc < n; doc++) {
+            for (int i = docTermStarts[doc]; i < docTermStarts[doc + 1]; i++) {
+                int inverted = next[docTerms[i]]++;
+                termDocs[inverted] = doc;
+                termWeights[inverted] = docWeights[i];
+            }
+        }
+
+        return new SimilarityIndex(ids, styles, breweries, abvs, docTermStarts, docTerms, docWeights,
+                termDocStarts, termDocs, termWeights);
+    }
+
+    private static int number(final Map<String, Integer> numbers, final String value) {
+        if (value == null || value.isEmpty()) {
+            return -1;
+        }
+        Integer number = numbers.get(value);
+        if (number == null) {
+            number = numbers.size();
+            numbers.put(value, number);
+        }
+        return number;
+    }
+
+    public int size() {
+        return fIds.length;
+    }
+
+    /**
+     * Returns the ids of up to {@code maxResults} beers most like the one with the given id, most
+     * alike first. Returns none if the beer is not in the index.
+     */
+    public List<Long> similarTo(final long id, final int maxResults) {
+        final int doc = Arrays.binarySearch(fIds, id);
+        if (doc < 0 || maxResults <= 0) {
+            return Collections.emptyList();
+        }
+
+        final float[] scores = new float[fIds.length];
+        for (int i = fDocTermStarts[doc]; i < fDocTermStarts[doc + 1]; i++) {
+            final int term = fDocTerms[i];
+            final float weight = DESCRIPTION_WEIGHT * fDocWeights[i];
+            for (int j = fTermDocStarts[term]; j < fTermDocStarts[term + 1]; j++) {
+                scores[fTermDocs[j]] += weight * fTermWeights[j];
+            }
+        }
+
+        final int style = fStyles[doc];
+        final int brewery = fBreweries[doc];
+        final float abv = fAbvs[doc];
+        final BoundedHeap heap = new BoundedHeap(Math.min(maxResults, fIds.length - 1));
+        for (int other = 0; other < fIds.length; other++) {
+            if (other == doc) {
+                continue;
+            }
+            float score = scores[other];
+            if (style >= 0 && fStyles[other] == style) {
+                score += STYLE_WEIGHT;
+            }
+            if (brewery >= 0 && fBreweries[other] == brewery) {
+                score += BREWERY_WEIGHT;
+            }
+            final float closeness = 1 - Math.abs(fAbvs[other] - abv) / ABV_RANGE;
+            if (closeness > 0) {
+                score += ABV_WEIGHT * closeness;
+            }
+            if (score > 0) {
+                heap.offer(other, score);
+            }
+        }
+
+        final int[] best = heap.drainBestFirst(new float[heap.size()]);
+        List<Long> similar = new ArrayList<>(best.length);
+        for (int other : best) {
+            similar.add(fIds[other]);
+        }
+        return similar;
+    }
+}
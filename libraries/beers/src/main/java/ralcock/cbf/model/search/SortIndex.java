@@ -0,0 +1,179 @@
+package ralcock.cbf.model.search;
+
+import ralcock.cbf.model.Beer;
+import ralcock.cbf.model.Brewery;
+import ralcock.cbf.model.SortOrder;
+
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The festival's beers in every {@link SortOrder} that depends only on the catalog, worked out
+ * once when the catalog is ingested so that lists never need sorting when they are shown.
+ * <p>
+ * Each beer has a position, its rank by id, and each order is a permutation of the positions,
+ * built from collation keys of the names so comparing strings is a byte comparison. Ties are
+ * broken by id, as {@link SortOrder#comparator()} does, which gives the same order. To put a
+ * filtered list in order its beers are placed by position and the permutation walked, picking
+ * out the positions that are filled. A list much shorter than the catalog, such as a typed
+ * search or the bookmarks, is cheaper to sort than to place, so is sorted instead.
+ * <p>
+ * Orders on what the user records, such as rating, change between ingests, so lists in those
+ * orders are sorted when asked for, as are lists holding beers added since the index was built.
+ * <p>
+ * The index is immutable and safe to share between threads.
+ */
+public final class SortIndex {
+
+    // Lists shorter than this fraction of the catalog are sorted rather than placed.
+    private static final int SORTED_FRACTION = 8;
+
+    private final long[] fIds;
+    private final Map<SortOrder, int[]> fPermutations;
+
+    // Each thread's beers by position, left empty between lists so they need not be allocated for each.
+    private final ThreadLocal<Beer[]> fByPosition = new ThreadLocal<Beer[]>() {
+        @Override
+        protected Beer[] initialValue() {
+            return new Beer[fIds.length];
+        }
+    };
+
+    private SortIndex(final long[] ids, final Map<SortOrder, int[]> permutations) {
+        fIds = ids;
+        fPermutations = permutations;
+    }
+
+    public static SortIndex forBeers(final Collection<Beer> beers) {
+        final Beer[] byId = beers.toArray(new Beer[beers.size()]);
+        Arrays.sort(byId, new Comparator<Beer>() {
+            public int compare(final Beer a, final Beer b) {
+                return Long.compare(a.getId(), b.getId());
+            }
+        });
+
+        final Collator collator = Collator.getInstance();
+        final long[] ids = new long[byId.length];
+        final CollationKey[] names = new CollationKey[byId.length];
+        final CollationKey[] breweryNames = new CollationKey[byId.length];
+        final float[] abvs = new float[byId.length];
+        for (int i = 0; i < byId.length; i++) {
+            Beer beer = byId[i];
+            ids[i] = beer.getId();
+            names[i] = collationKey(collator, beer.getName());
+            Brewery brewery = beer.getBrewery();
+            breweryNames[i] = collationKey(collator, brewery == null ? null : brewery.getName());
+            abvs[i] = beer.getAbv();
+        }
+
+        Map<SortOrder, int[]> permutations = new EnumMap<>(SortOrder.class);
+        for (SortOrder sortOrder : SortOrder.values()) {
+            if (sortOrder.isCatalogOrder()) {
+                permutations.put(sortOrder, permutation(sortOrder, names, breweryNames, abvs));
+            }
+        }
+        return new SortIndex(ids, permutations);
+    }
+
+    public int size() {
+        return fIds.length;
+    }
+
+    /**
+     * Returns the given beers in {@code sortOrder}.
+     */
+    public List<Beer> inOrder(final List<Beer> beers, final SortOrder sortOrder) {
+        final int[] permutation = fPermutations.get(sortOrder);
+        if (permutation == null || beers.size() < fIds.length / SORTED_FRACTION) {
+            return sorted(beers, sortOrder);
+        }
+        final Beer[] byPosition = fByPosition.get();
+        for (Beer beer : beers) {
+            final int position = Arrays.binarySearch(fIds, beer.getId());
+            if (position < 0) {
+                // Added since the index was built.
+                Arrays.fill(byPosition, null);
+                return sorted(beers, sortOrder);
+            }
+            byPosition[position] = beer;
+        }
+        final List<Beer> ordered = new ArrayList<>(beers.size());
+        for (int i = 0; i < permutation.length && ordered.size() < beers.size(); i++) {
+            final int position = permutation[i];
+            final Beer beer = byPosition[position];
+            if (beer != null) {
+                ordered.add(beer);
+                byPosition[position] = null;
+            }
+        }
+        return ordered;
+    }
+
+    private static List<Beer> sorted(final List<Beer> beers, final SortOrder sortOrder) {
+        List<Beer> sorted = new ArrayList<>(beers);
+        Collections.sort(sorted, sortOrder.comparator());
+        return sorted;
+    }
+
+    private static CollationKey collationKey(final Collator collator, final String s) {
+        return s == null ? null : collator.getCollationKey(s);
+    }
+
+    private static int[] permutation(final SortOrder sortOrder,
+                                     final CollationKey[] names,
+                                     final CollationKey[] breweryNames,
+                                     final float[] abvs) {
+        final Integer[] positions = new Integer[abvs.length];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = i;
+        }
+        Arrays.sort(positions, new Comparator<Integer>() {
+            public int compare(final Integer a, final Integer b) {
+                int c = compareColumn(sortOrder, names, breweryNames, abvs, a, b);
+                if (!sortOrder.ascending()) {
+                    c = -c;
+                }
+                // Positions are in id order.
+                return c != 0 ? c : Integer.compare(a, b);
+            }
+        });
+        final int[] permutation = new int[positions.length];
+        for (int i = 0; i < permutation.length; i++) {
+            permutation[i] = positions[i];
+        }
+        return permutation;
+    }
+
+    private static int compareColumn(final SortOrder sortOrder,
+                                     final CollationKey[] names,
+                                     final CollationKey[] breweryNames,
+                                     final float[] abvs,
+                                     final int a,
+                                     final int b) {
+        switch (sortOrder.columnName()) {
+            case Beer.BREWERY_NAME_FIELD:
+                return compareNullsFirst(breweryNames[a], breweryNames[b]);
+            case Beer.NAME_FIELD:
+                return compareNullsFirst(names[a], names[b]);
+            case Beer.ABV_FIELD:
+                return Float.compare(abvs[a], abvs[b]);
+            default:
+                throw new IllegalStateException("No catalog order on " + sortOrder.columnName());
+        }
+    }
+
+    private static int compareNullsFirst(final CollationKey a, final CollationKey b) {
+        if (a == null || b == null) {
+            return a == null ? (b == null ? 0 : -1) : 1;
+        }
+        return a.compareTo(b);
+    }
+}
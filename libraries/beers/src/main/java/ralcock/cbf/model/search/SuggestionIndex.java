@@ -0,0 +1,203 @@
+package ralcock.cbf.model.search;
+
+import ralcock.cbf.model.Beer;
+import ralcock.cbf.model.Brewery;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Search-as-you-type completions over beer names, brewery names and styles.
+ * <p>
+ * Every distinct name is stored once, together with the number of beers it belongs to. Each name
+ * is keyed by its normalised text and by every word-suffix of it ("green devil ipa", "devil ipa",
+ * "ipa"), and the keys are kept in one sorted array, so the completions for a prefix are a
+ * contiguous range found with a binary search. Completions that start with the prefix rank above
+ * ones where only a later word does, then more popular names rank first, then alphabetical order.
+ * <p>
+ * The index is immutable and safe to share between threads.
+ */
+public final class SuggestionIndex {
+
+    private static final float PHRASE_START_BONUS = 1 << 20;
+
+    private final String[] fKeys;
+    private final int[] fKeyEntries;
+    private final String[] fTexts;
+    private final int[] fCounts;
+    private final String[] fNormalized;
+
+    private SuggestionIndex(final String[] keys,
+                            final int[] keyEntries,
+                            final String[] texts,
+                            final int[] counts,
+                            final String[] normalized) {
+        fKeys = keys;
+        fKeyEntries = keyEntries;
+        fTexts = texts;
+        fCounts = counts;
+        fNormalized = normalized;
+    }
+
+    public static SuggestionIndex forBeers(final Iterable<Beer> beers) {
+        Builder builder = new Builder();
+        for (Beer beer : beers) {
+            Brewery brewery = beer.getBrewery();
+            builder.add(beer.getName());
+            builder.add(brewery == null ? null : brewery.getName());
+            builder.add(beer.getStyle());
+        }
+        return builder.build();
+    }
+
+    public int size() {
+        return fTexts.length;
+    }
+
+    /**
+     * Returns up to {@code maxResults} names completing {@code prefix}, best first.
+     */
+    public List<Suggestion> suggest(final CharSequence prefix, final int maxResults) {
+        final String normalized = SearchText.normalize(prefix);
+        if (normalized.isEmpty() || maxResults <= 0 || fKeys.length == 0) {
+            return Collections.emptyList();
+        }
+
+        final BoundedHeap heap = new BoundedHeap(maxResults);
+        final BitSet seen = new BitSet(fTexts.length);
+        for (int i = lowerBound(normalized); i < fKeys.length && fKeys[i].startsWith(normalized); i++) {
+            final int entry = fKeyEntries[i];
+            if (seen.get(entry)) {
+                continue;
+            }
+            seen.set(entry);
+            final boolean phraseStart = fNormalized[entry].startsWith(normalized);
+            heap.offer(entry, (phraseStart ? PHRASE_START_BONUS : 0) + fCounts[entry]);
+        }
+
+        final float[] scores = new float[heap.size()];
+        final int[] best = heap.drainBestFirst(scores);
+        List<Suggestion> suggestions = new ArrayList<>(best.length);
+        for (int i = 0; i < best.length; i++) {
+            suggestions.add(new Suggestion(fTexts[best[i]], fCounts[best[i]]));
+        }
+        return suggestions;
+    }
+
+    private int lowerBound(final String prefix) {
+        int lo = 0;
+        int hi = fKeys.length;
+        while (lo < hi) {
+            final int mid = (lo + hi) >>> 1;
+            if (fKeys[mid].compareTo(prefix) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    public static final class Suggestion {
+        private final String fText;
+        private final int fCount;
+
+        Suggestion(final String text, final int count) {
+            fText = text;
+            fCount = count;
+        }
+
+        public String getText() {
+            return fText;
+        }
+
+        /**
+         * The number of beers this name belongs to.
+         */
+        public int getCount() {
+            return fCount;
+        }
+
+        @Override
+        public String toString() {
+            return "Suggestion{fText='" + fText + "', fCount=" + fCount + '}';
+        }
+    }
+
+    public static final class Builder {
+        private final Map<String, Entry> fEntries = new HashMap<>();
+
+        private static final class Entry {
+            private final String fText;
+            private int fCount;
+
+            Entry(final String text) {
+                fText = text;
+            }
+        }
+
+        public Builder add(final String text) {
+            if (text == null) {
+                return this;
+            }
+            final String normalized = SearchText.normalize(text);
+            if (normalized.isEmpty()) {
+                return this;
+            }
+            Entry entry = fEntries.get(normalized);
+            if (entry == null) {
+                entry = new Entry(text.trim());
+                fEntries.put(normalized, entry);
+            }
+            entry.fCount++;
+            return this;
+        }
+
+        public SuggestionIndex build() {
+            final String[] normalized = fEntries.keySet().toArray(new String[0]);
+            Arrays.sort(normalized);
+
+            final String[] texts = new String[normalized.length];
+            final int[] counts = new int[normalized.length];
+            final List<String> keys = new ArrayList<>();
+            final IntList keyEntries = new IntList();
+            for (int entry = 0; entry < normalized.length; entry++) {
+                final String phrase = normalized[entry];
+                final Entry e = fEntries.get(phrase);
+                texts[entry] = e.fText;
+                counts[entry] = e.fCount;
+                keys.add(phrase);
+                keyEntries.add(entry);
+                for (int space = phrase.indexOf(' '); space >= 0; space = phrase.indexOf(' ', space + 1)) {
+                    keys.add(phrase.substring(space + 1));
+                    keyEntries.add(entry);
+                }
+            }
+
+            final Integer[] order = new Integer[keys.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, new Comparator<Integer>() {
+                public int compare(final Integer a, final Integer b) {
+                    int c = keys.get(a).compareTo(keys.get(b));
+                    return c != 0 ? c : Integer.compare(keyEntries.get(a), keyEntries.get(b));
+                }
+            });
+
+            final String[] sortedKeys = new String[order.length];
+            final int[] sortedEntries = new int[order.length];
+            for (int i = 0; i < order.length; i++) {
+                sortedKeys[i] = keys.get(order[i]);
+                sortedEntries[i] = keyEntries.get(order[i]);
+            }
+            return new SuggestionIndex(sortedKeys, sortedEntries, texts, counts, normalized);
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package ralcock.cbf.model.search;
+
+import ralcock.cbf.model.Beer;
+import ralcock.cbf.model.Brewery;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Typo-tolerant lookup over beer name, brewery name and style.
+ * <p>
+ * Every distinct word in those fields is a term, and every term is broken into padded trigrams
+ * ("adnams" gives "  a", " ad", "adn", "dna", "nam", "ams", "ms "). A query word is compared with
+ * each term sharing at least one of its trigrams using the Dice coefficient, so "adnmas" still
+ * finds "adnams" and "kolsch" finds "K&ouml;lsch". A beer's score is the mean, over the query words, of
+ * the best similarity of that word to any of the beer's terms; the best {@code maxResults} beers
+ * are kept in a bounded heap.
+ * <p>
+ * The index is immutable and safe to share between threads.
+ */
+public final class TrigramIndex {
+
+    public static final float DEFAULT_THRESHOLD = 0.35f;
+
+    private final long[] fDocIds;
+    private final int[][] fTermDocs;
+    private final int[] fTermTrigramCounts;
+    private final Map<Long, int[]> fPostings;
+
+    private TrigramIndex(final long[] docIds,
+                         final int[][] termDocs,
+                         final int[] termTrigramCounts,
+                         final Map<Long, int[]> postings) {
+        fDocIds = docIds;
+        fTermDocs = termDocs;
+        fTermTrigramCounts = termTrigramCounts;
+        fPostings = postings;
+    }
+
+    public static TrigramIndex forBeers(final Iterable<Beer> beers) {
+        Builder builder = new Builder();
+        for (Beer beer : beers) {
+            Brewery brewery = beer.getBrewery();
+            builder.add(beer.getId(), beer.getName(), brewery == null ? null : brewery.getName(), beer.getStyle());
+        }
+        return builder.build();
+    }
+
+    public int size() {
+        return fDocIds.length;
+    }
+
+    public List<Match> search(final CharSequence query, final int maxResults) {
+        return search(query, maxResults, DEFAULT_THRESHOLD);
+    }
+
+    public List<Match> search(final CharSequence query, final int maxResults, final float threshold) {
+        final List<String> words = SearchText.words(query);
+        if (words.isEmpty() || maxResults <= 0 || fDocIds.length == 0) {
+            return Collections.emptyList();
+        }
+
+        final float[] docScores = new float[fDocIds.length];
+        final float[] wordBest = new float[fDocIds.length];
+        final int[] termShared = new int[fTermDocs.length];
+        final IntList touchedDocs = new IntList();
+        final IntList wordDocs = new IntList();
+        final IntList touchedTerms = new IntList();
+
+        for (String word : words) {
+            long[] trigrams = trigrams(word);
+            for (long trigram : trigrams) {
+                int[] terms = fPostings.get(trigram);
+                if (terms == null) {
+                    continue;
+                }
+                for (int term : terms) {
+                    if (termShared[term]++ == 0) {
+                        touchedTerms.add(term);
+                    }
+                }
+            }
+
+            for (int i = 0; i < touchedTerms.size(); i++) {
+                final int term = touchedTerms.get(i);
+                final int shared = termShared[term];
+                termShared[term] = 0;
+                final float similarity = 2.0f * shared / (trigrams.length + fTermTrigramCounts[term]);
+                if (similarity < threshold) {
+                    continue;
+                }
+                for (int doc : fTermDocs[term]) {
+                    if (wordBest[doc] == 0) {
+                        wordDocs.add(doc);
+                    }
+                    if (similarity > wordBest[doc]) {
+                        wordBest[doc] = similarity;
+                    }
+                }
+            }
+            touchedTerms.clear();
+
+            for (int i = 0; i < wordDocs.size(); i++) {
+                final int doc = wordDocs.get(i);
+                if (docScores[doc] == 0) {
+                    touchedDocs.add(doc);
+                }
+                docScores[doc] += wordBest[doc];
+                wordBest[doc] = 0;
+            }
+            wordDocs.clear();
+        }
+
+        final BoundedHeap heap = new BoundedHeap(Math.min(maxResults, touchedDocs.size()));
+        for (int i = 0; i < touchedDocs.size(); i++) {
+            final int doc = touchedDocs.get(i);
+            final float score = docScores[doc] / words.size();
+            if (score >= threshold) {
+                heap.offer(doc, score);
+            }
+        }
+
+        final float[] scores = new float[heap.size()];
+        final int[] best = heap.drainBestFirst(scores);
+        List<Match> matches = new ArrayList<>(best.length);
+        for (int i = 0; i < best.length; i++) {
+            matches.add(new Match(fDocIds[best[i]], scores[i]));
+        }
+        return matches;
+    }
+
+    /**
+     * Returns the distinct padded trigrams of a single normalised word, each packed into a long.
+     */
+    static long[] trigrams(final String word) {
+        final String padded = "  " + word + " ";
+        long[] trigrams = new long[padded.length() - 2];
+        int n = 0;
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            long trigram = ((long) padded.charAt(i) << 32)
+                    | ((long) padded.charAt(i + 1) << 16)
+                    | padded.charAt(i + 2);
+            boolean seen = false;
+            for (int j = 0; j < n; j++) {
+                if (trigrams[j] == trigram) {
+                    seen = true;
+                    break;
+                }
+            }
+            if (!seen) {
+                trigrams[n++] = trigram;
+            }
+        }
+        return n == trigrams.length ? trigrams : Arrays.copyOf(trigrams, n);
+    }
+
+    public static final class Match {
+        private final long fId;
+        private final float fScore;
+
+        Match(final long id, final float score) {
+            fId = id;
+            fScore = score;
+        }
+
+        public long getId() {
+            return fId;
+        }
+
+        public float getScore() {
+            return fScore;
+        }
+
+        @Override
+        public String toString() {
+            return "Match{fId=" + fId + ", fScore=" + fScore + '}';
+        }
+    }
+
+    public static final class Builder {
+        private final List<Long> fDocIds = new ArrayList<>();
+        private final Map<String, Integer> fTerms = new HashMap<>();
+        private final List<IntList> fTermDocs = new ArrayList<>();
+
+        public Builder add(final long id, final String... fields) {
+            final int doc = fDocIds.size();
+            fDocIds.add(id);
+            for (String field : fields) {
+                for (String word : SearchText.words(field)) {
+                    Integer term = fTerms.get(word);
+                    if (term == null) {
+                        term = fTermDocs.size();
+                        fTerms.put(word, term);
+                        fTermDocs.add(new IntList());
+                    }
+                    IntList docs = fTermDocs.get(term);
+                    if (docs.size() == 0 || docs.get(docs.size() - 1) != doc) {
+                        docs.add(doc);
+                    }
+                }
+            }
+            return this;
+        }
+
+        public TrigramIndex build() {
+            long[] docIds = new long[fDocIds.size()];
+            for (int i = 0; i < docIds.length; i++) {
+                docIds[i] = fDocIds.get(i);
+            }
+
+            int[][] termDocs = new int[fTermDocs.size()][];
+            int[] termTrigramCounts = new int[fTermDocs.size()];
+            Map<Long, IntList> postings = new HashMap<>();
+            for (Map.Entry<String, Integer> entry : fTerms.entrySet()) {
+                final int term = entry.getValue();
+                termDocs[term] = fTermDocs.get(term).toArray();
+                long[] trigrams = trigrams(entry.getKey());
+                termTrigramCounts[term] = trigrams.length;
+                for (long trigram : trigrams) {
+                    IntList terms = postings.get(trigram);
+                    if (terms == null) {
+                        terms = new IntList();
+                        postings.put(trigram, terms);
+                    }
+                    terms.add(term);
+                }
+            }
+
+            Map<Long, int[]> compactPostings = new HashMap<>(postings.size() * 2);
+            for (Map.Entry<Long, IntList> entry : postings.entrySet()) {
+                compactPostings.put(entry.getKey(), entry.getValue().toArray());
+            }
+            return new TrigramIndex(docIds, termDocs, termTrigramCounts, compactPostings);
+        }
+    }
+}
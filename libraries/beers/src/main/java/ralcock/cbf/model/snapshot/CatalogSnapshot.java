@@ -0,0 +1,181 @@
+package ralcock.cbf.model.snapshot;
+
+import ralcock.cbf.model.Beer;
+import ralcock.cbf.model.Brewery;
+import ralcock.cbf.model.StarRating;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static ralcock.cbf.model.snapshot.CatalogSnapshotFormat.*;
+
+/**
+ * A read-only, memory-mapped copy of the catalog as it was after an update, so the beer list
+ * can be shown on a cold start without opening the database or creating any DAOs.
+ * <p>
+ * Records are fixed width and read straight from the mapped buffer; each distinct string is
+ * decoded at most once. The user's ratings and bookmarks are as they were when the snapshot was
+ * written, so anything shown from a snapshot should be replaced by a database query once that
+ * is ready. See {@link CatalogSnapshotFormat} for the layout.
+ */
+public final class CatalogSnapshot {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final ByteBuffer fBuffer;
+    private final int fRecordCount;
+    private final int fStringsOffset;
+    private final int fStringDataOffset;
+    private final String[] fStrings;
+    private final String fDigest;
+
+    private CatalogSnapshot(final ByteBuffer buffer) throws IOException {
+        fBuffer = buffer;
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a catalog snapshot");
+        }
+        final int version = buffer.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported catalog snapshot version " + version);
+        }
+        fRecordCount = buffer.getInt(8);
+        final int stringCount = buffer.getInt(12);
+        fStringsOffset = HEADER_SIZE + fRecordCount * RECORD_SIZE;
+        fStringDataOffset = fStringsOffset + (stringCount + 1) * 4;
+        if (fRecordCount < 0 || stringCount < 0 || fStringDataOffset > buffer.limit()
+                || fStringDataOffset + buffer.getInt(fStringsOffset + stringCount * 4) != buffer.limit()) {
+            throw new IOException("Truncated catalog snapshot");
+        }
+        fStrings = new String[stringCount];
+        fDigest = string(buffer.getInt(16));
+    }
+
+    /**
+     * Maps the snapshot in {@code file}. Throws if the file is missing, truncated or was written
+     * by a different version of the format.
+     */
+    public static CatalogSnapshot open(final File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            // The mapping stays valid after the channel is closed.
+            return new CatalogSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * The digest of the feed this snapshot was built from.
+     */
+    public String getDigest() {
+        return fDigest;
+    }
+
+    public int size() {
+        return fRecordCount;
+    }
+
+    public long getId(final int i) {
+        return fBuffer.getLong(record(i) + REC_ID);
+    }
+
+    public String getName(final int i) {
+        return stringField(i, REC_NAME);
+    }
+
+    public String getBreweryName(final int i) {
+        return stringField(i, REC_BREWERY_NAME);
+    }
+
+    public String getStyle(final int i) {
+        return stringField(i, REC_STYLE);
+    }
+
+    public float getAbv(final int i) {
+        return fBuffer.getFloat(record(i) + REC_ABV);
+    }
+
+    /**
+     * Materialises record {@code i} as a detached beer. Beers from the same brewery share one
+     * {@link Brewery}, which only has its id and name.
+     */
+    public Beer getBeer(final int i) {
+        return getBeer(i, new HashMap<Long, Brewery>());
+    }
+
+    /**
+     * Materialises every record, in the order they were written.
+     */
+    public List<Beer> getBeers() {
+        final Map<Long, Brewery> breweries = new HashMap<>();
+        final List<Beer> beers = new ArrayList<>(fRecordCount);
+        for (int i = 0; i < fRecordCount; i++) {
+            beers.add(getBeer(i, breweries));
+        }
+        return beers;
+    }
+
+    private Beer getBeer(final int i, final Map<Long, Brewery> breweries) {
+        final int record = record(i);
+        final long breweryId = fBuffer.getLong(record + REC_BREWERY_ID);
+        Brewery brewery = breweries.get(breweryId);
+        if (brewery == null) {
+            brewery = new Brewery(null, stringField(i, REC_BREWERY_NAME), null);
+            brewery.setId(breweryId);
+            breweries.put(breweryId, brewery);
+        }
+        Beer beer = new Beer(stringField(i, REC_FESTIVAL_ID),
+                stringField(i, REC_NAME),
+                fBuffer.getFloat(record + REC_ABV),
+                stringField(i, REC_DESCRIPTION),
+                stringField(i, REC_STYLE),
+                stringField(i, REC_STATUS),
+                stringField(i, REC_DISPENSE),
+                stringField(i, REC_ALLERGENS),
+                stringField(i, REC_CATEGORY),
+                brewery);
+        beer.setId(fBuffer.getLong(record + REC_ID));
+        beer.setNumberOfStars(new StarRating(fBuffer.getInt(record + REC_RATING)));
+        beer.setIsOnWishList((fBuffer.getInt(record + REC_FLAGS) & FLAG_ON_WISH_LIST) != 0);
+        return beer;
+    }
+
+    private int record(final int i) {
+        if (i < 0 || i >= fRecordCount) {
+            throw new IndexOutOfBoundsException("Record " + i + " of " + fRecordCount);
+        }
+        return HEADER_SIZE + i * RECORD_SIZE;
+    }
+
+    private String stringField(final int i, final int fieldOffset) {
+        return string(fBuffer.getInt(record(i) + fieldOffset));
+    }
+
+    private String string(final int index) {
+        if (index == NULL_STRING) {
+            return null;
+        }
+        String s = fStrings[index];
+        if (s == null) {
+            final int start = fBuffer.getInt(fStringsOffset + index * 4);
+            final int end = fBuffer.getInt(fStringsOffset + (index + 1) * 4);
+            final byte[] bytes = new byte[end - start];
+            // Read through a duplicate so the shared buffer's position is never changed.
+            ByteBuffer view = fBuffer.duplicate();
+            view.position(fStringDataOffset + start);
+            view.get(bytes);
+            s = new String(bytes, UTF_8);
+            fStrings[index] = s;
+        }
+        return s;
+    }
+}
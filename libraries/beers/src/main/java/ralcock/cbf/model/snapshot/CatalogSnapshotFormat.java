@@ -0,0 +1,44 @@
+package ralcock.cbf.model.snapshot;
+
+/**
+ * Layout of a catalog snapshot file. All values are big-endian.
+ *
+ * <pre>
+ * header   magic int, version int, record count int, string count int, digest string int
+ * records  record count x RECORD_SIZE bytes, see the REC_ offsets
+ * strings  (string count + 1) int offsets into the UTF-8 bytes that follow, then the bytes
+ * </pre>
+ *
+ * String fields are indexes into the string table, with {@link #NULL_STRING} for null. Equal
+ * strings (styles, statuses, brewery names) are stored once.
+ */
+final class CatalogSnapshotFormat {
+    static final int MAGIC = 0x43424653; // "CBFS"
+    static final int VERSION = 1;
+
+    static final int HEADER_SIZE = 20;
+
+    static final int REC_ID = 0;
+    static final int REC_BREWERY_ID = 8;
+    static final int REC_FESTIVAL_ID = 16;
+    static final int REC_NAME = 20;
+    static final int REC_BREWERY_NAME = 24;
+    static final int REC_DESCRIPTION = 28;
+    static final int REC_STYLE = 32;
+    static final int REC_STATUS = 36;
+    static final int REC_DISPENSE = 40;
+    static final int REC_CATEGORY = 44;
+    static final int REC_ALLERGENS = 48;
+    static final int REC_ABV = 52;
+    static final int REC_RATING = 56;
+    static final int REC_FLAGS = 60;
+    static final int RECORD_SIZE = 64;
+
+    static final int FLAG_ON_WISH_LIST = 1;
+
+    static final int NULL_STRING = -1;
+
+    private CatalogSnapshotFormat() {
+        // Constants only
+    }
+}
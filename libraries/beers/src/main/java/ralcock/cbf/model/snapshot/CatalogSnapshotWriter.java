@@ -0,0 +1,116 @@
+package ralcock.cbf.model.snapshot;
+
+import ralcock.cbf.model.Beer;
+import ralcock.cbf.model.Brewery;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static ralcock.cbf.model.snapshot.CatalogSnapshotFormat.*;
+
+/**
+ * Writes a {@link CatalogSnapshot} of the beers, tagged with the digest of the feed they came
+ * from.
+ */
+public final class CatalogSnapshotWriter {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final List<String> fStrings = new ArrayList<>();
+    private final Map<String, Integer> fStringIndexes = new HashMap<>();
+
+    private CatalogSnapshotWriter() {
+    }
+
+    /**
+     * Writes the snapshot to a temporary file alongside {@code file} and renames it into place,
+     * so a reader never sees a partly written snapshot.
+     */
+    public static void write(final File file, final String digest, final List<Beer> beers) throws IOException {
+        final File tmp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+        try {
+            new CatalogSnapshotWriter().writeTo(out, digest, beers);
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(file)) {
+            if (!tmp.delete()) {
+                tmp.deleteOnExit();
+            }
+            throw new IOException("Failed to rename " + tmp + " to " + file);
+        }
+    }
+
+    private void writeTo(final DataOutputStream out, final String digest, final List<Beer> beers) throws IOException {
+        // Intern all the strings first so the header can give the string count.
+        final int digestIndex = intern(digest);
+        final int[] fields = new int[beers.size() * 9];
+        int f = 0;
+        for (Beer beer : beers) {
+            final Brewery brewery = beer.getBrewery();
+            fields[f++] = intern(beer.getFestivalID());
+            fields[f++] = intern(beer.getName());
+            fields[f++] = intern(brewery == null ? null : brewery.getName());
+            fields[f++] = intern(beer.getDescription());
+            fields[f++] = intern(beer.getStyle());
+            fields[f++] = intern(beer.getStatus());
+            fields[f++] = intern(beer.getDispenseMethod());
+            fields[f++] = intern(beer.getCategory());
+            fields[f++] = intern(beer.getAllergens());
+        }
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(beers.size());
+        out.writeInt(fStrings.size());
+        out.writeInt(digestIndex);
+
+        f = 0;
+        for (Beer beer : beers) {
+            final Brewery brewery = beer.getBrewery();
+            out.writeLong(beer.getId());
+            out.writeLong(brewery == null ? 0 : brewery.getId());
+            for (int i = 0; i < 9; i++) {
+                out.writeInt(fields[f++]);
+            }
+            out.writeFloat(beer.getAbv());
+            out.writeInt(beer.getRating());
+            out.writeInt(beer.isIsOnWishList() ? FLAG_ON_WISH_LIST : 0);
+        }
+
+        final List<byte[]> encoded = new ArrayList<>(fStrings.size());
+        int offset = 0;
+        out.writeInt(offset);
+        for (String s : fStrings) {
+            byte[] bytes = s.getBytes(UTF_8);
+            encoded.add(bytes);
+            offset += bytes.length;
+            out.writeInt(offset);
+        }
+        for (byte[] bytes : encoded) {
+            out.write(bytes);
+        }
+    }
+
+    private int intern(final String s) {
+        if (s == null) {
+            return NULL_STRING;
+        }
+        Integer index = fStringIndexes.get(s);
+        if (index == null) {
+            index = fStrings.size();
+            fStrings.add(s);
+            fStringIndexes.put(s, index);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,128 @@
+package ralcock.cbf.model.stats;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Figures about the current festival's beers, for the stats screen: how many there are of each
+ * style and category, how their strengths are spread, and how many the user has rated. Made by
+ * {@link StatsAggregator}, which keeps them up to date, so reading any of them is a lookup.
+ * <p>
+ * Beers with no style or category are counted in the totals only. Immutable.
+ */
+public final class FestivalStats {
+
+    /**
+     * The ABV histogram has a bucket for each whole percent below this, and one more for the
+     * beers this strong or stronger.
+     */
+    public static final int MAX_ABV_BUCKET = 12;
+
+    static final FestivalStats EMPTY = new FestivalStats(0, 0, new int[MAX_ABV_BUCKET + 1],
+            new TreeMap<String, StyleStats>(), new TreeMap<String, Integer>());
+
+    /**
+     * How many beers there are of one style, and how they have been rated.
+     */
+    public static final class StyleStats {
+        private final int fBeerCount;
+        private final int fRatedCount;
+        private final int fRatingTotal;
+
+        StyleStats(final int beerCount, final int ratedCount, final int ratingTotal) {
+            fBeerCount = beerCount;
+            fRatedCount = ratedCount;
+            fRatingTotal = ratingTotal;
+        }
+
+        public int getBeerCount() {
+            return fBeerCount;
+        }
+
+        public int getRatedCount() {
+            return fRatedCount;
+        }
+
+        /**
+         * The mean of the ratings of the style's rated beers, or 0 if none have been rated.
+         */
+        public float getAverageRating() {
+            return fRatedCount == 0 ? 0 : (float) fRatingTotal / fRatedCount;
+        }
+    }
+
+    private final int fBeerCount;
+    private final int fRatedCount;
+    private final int[] fAbvHistogram;
+    private final SortedMap<String, StyleStats> fStyles;
+    private final SortedMap<String, Integer> fCategories;
+
+    FestivalStats(final int beerCount,
+                  final int ratedCount,
+                  final int[] abvHistogram,
+                  final SortedMap<String, StyleStats> styles,
+                  final SortedMap<String, Integer> categories) {
+        fBeerCount = beerCount;
+        fRatedCount = ratedCount;
+        fAbvHistogram = abvHistogram;
+        fStyles = Collections.unmodifiableSortedMap(styles);
+        fCategories = Collections.unmodifiableSortedMap(categories);
+    }
+
+    /**
+     * The bucket of the ABV histogram a beer of this strength is counted in.
+     */
+    public static int abvBucket(final float abv) {
+        if (!(abv > 0)) {
+            return 0;
+        }
+        return abv >= MAX_ABV_BUCKET ? MAX_ABV_BUCKET : (int) abv;
+    }
+
+    public int getBeerCount() {
+        return fBeerCount;
+    }
+
+    /**
+     * How many beers the user has given a rating.
+     */
+    public int getRatedCount() {
+        return fRatedCount;
+    }
+
+    /**
+     * How many beers are in the bucket, from 0 to {@link #MAX_ABV_BUCKET}; see
+     * {@link #abvBucket}.
+     */
+    public int getBeersInAbvBucket(final int bucket) {
+        return fAbvHistogram[bucket];
+    }
+
+    /**
+     * The styles, in alphabetical order.
+     */
+    public SortedMap<String, StyleStats> getStyles() {
+        return fStyles;
+    }
+
+    /**
+     * The stats of a style, or null if no beer has it.
+     */
+    public StyleStats getStyle(final String style) {
+        return fStyles.get(style);
+    }
+
+    /**
+     * How many beers are in each category, in alphabetical order.
+     */
+    public Map<String, Integer> getCategories() {
+        return fCategories;
+    }
+
+    public int getBeersInCategory(final String category) {
+        Integer count = fCategories.get(category);
+        return count == null ? 0 : count;
+    }
+}
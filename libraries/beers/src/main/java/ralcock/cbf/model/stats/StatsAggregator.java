@@ -0,0 +1,135 @@
+package ralcock.cbf.model.stats;
+
+import ralcock.cbf.model.Beer;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Counts the {@link FestivalStats} of a festival's beers and keeps them up to date as beers are
+ * changed. Each beer counted is remembered by id with what it was counted under, so a change is
+ * applied by taking the old beer out of the counts and putting the new one in, without reading
+ * the other beers again.
+ * <p>
+ * The stats are made from the counts when first asked for after a change, and shared until the
+ * next. Safe to use from several threads.
+ */
+public final class StatsAggregator {
+
+    /**
+     * What a beer was counted under.
+     */
+    private static final class Counted {
+        final String fStyle;
+        final String fCategory;
+        final int fAbvBucket;
+        final int fRating;
+
+        Counted(final Beer beer) {
+            fStyle = beer.getStyle();
+            fCategory = beer.getCategory();
+            fAbvBucket = FestivalStats.abvBucket(beer.getAbv());
+            fRating = beer.getRating();
+        }
+    }
+
+    /**
+     * The running counts of one style: beers, rated beers and the sum of their ratings.
+     */
+    private static final class StyleCounts {
+        int fBeers;
+        int fRated;
+        int fRatingTotal;
+    }
+
+    private final Map<Long, Counted> fCounted = new HashMap<>();
+    private final Map<String, StyleCounts> fStyles = new HashMap<>();
+    private final Map<String, Integer> fCategories = new HashMap<>();
+    private final int[] fAbvHistogram = new int[FestivalStats.MAX_ABV_BUCKET + 1];
+    private int fRatedCount;
+
+    private FestivalStats fStats = FestivalStats.EMPTY;
+    private boolean fChanged;
+
+    public static StatsAggregator forBeers(final Collection<Beer> beers) {
+        StatsAggregator aggregator = new StatsAggregator();
+        for (Beer beer : beers) {
+            aggregator.add(beer);
+        }
+        return aggregator;
+    }
+
+    /**
+     * Counts a beer, replacing it if it has already been counted.
+     */
+    public synchronized void add(final Beer beer) {
+        Counted old = fCounted.remove(beer.getId());
+        if (old != null) {
+            count(old, -1);
+        }
+        Counted counted = new Counted(beer);
+        fCounted.put(beer.getId(), counted);
+        count(counted, 1);
+    }
+
+    /**
+     * Counts a changed beer again. Beers that have not been counted, such as those of another
+     * festival, are ignored.
+     */
+    public synchronized void update(final Beer beer) {
+        if (fCounted.containsKey(beer.getId())) {
+            add(beer);
+        }
+    }
+
+    private void count(final Counted beer, final int delta) {
+        fChanged = true;
+        fAbvHistogram[beer.fAbvBucket] += delta;
+        boolean rated = beer.fRating > 0;
+        if (rated) {
+            fRatedCount += delta;
+        }
+        if (beer.fStyle != null && !beer.fStyle.isEmpty()) {
+            StyleCounts style = fStyles.get(beer.fStyle);
+            if (style == null) {
+                style = new StyleCounts();
+                fStyles.put(beer.fStyle, style);
+            }
+            style.fBeers += delta;
+            if (rated) {
+                style.fRated += delta;
+                style.fRatingTotal += delta * beer.fRating;
+            }
+            if (style.fBeers == 0) {
+                fStyles.remove(beer.fStyle);
+            }
+        }
+        if (beer.fCategory != null && !beer.fCategory.isEmpty()) {
+            Integer count = fCategories.get(beer.fCategory);
+            int updated = (count == null ? 0 : count) + delta;
+            if (updated == 0) {
+                fCategories.remove(beer.fCategory);
+            } else {
+                fCategories.put(beer.fCategory, updated);
+            }
+        }
+    }
+
+    public synchronized FestivalStats getStats() {
+        if (fChanged) {
+            SortedMap<String, FestivalStats.StyleStats> styles = new TreeMap<>();
+            for (Map.Entry<String, StyleCounts> entry : fStyles.entrySet()) {
+                StyleCounts counts = entry.getValue();
+                styles.put(entry.getKey(),
+                        new FestivalStats.StyleStats(counts.fBeers, counts.fRated, counts.fRatingTotal));
+            }
+            fStats = new FestivalStats(fCounted.size(), fRatedCount, fAbvHistogram.clone(), styles,
+                    new TreeMap<>(fCategories));
+            fChanged = false;
+        }
+        return fStats;
+    }
+}
@@ -0,0 +1,205 @@
+package ralcock.cbf.model.sync;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Random;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs catalog syncs one at a time, however often they are asked for.
+ * <p>
+ * A request made while a sync is running is not started alongside it; all such requests are
+ * coalesced into a single follow-up sync, which is clean if any of them asked for a clean sync.
+ * After a failed sync, requests are refused for a backoff period that doubles with each
+ * consecutive failure, up to {@link #MAX_BACKOFF_MILLIS}, and is jittered so that devices which
+ * failed together do not retry together. Forced requests, made by the user, ignore the backoff.
+ * When the backoff ends the failed sync is retried on its own, unless another sync has run since.
+ * <p>
+ * Time, timers, threads and randomness are all supplied by the caller.
+ */
+public final class SyncScheduler {
+
+    public static final long INITIAL_BACKOFF_MILLIS = 30 * 1000L;
+    public static final long MAX_BACKOFF_MILLIS = 30 * 60 * 1000L;
+
+    private final Logger logger = LoggerFactory.getLogger(SyncScheduler.class);
+
+    /**
+     * One sync of the catalog.
+     */
+    public interface Sync {
+        /**
+         * Returns true if the sync succeeded. A sync that returns false or throws is backed off.
+         */
+        boolean run(boolean clean) throws Exception;
+    }
+
+    public interface Clock {
+        long currentTimeMillis();
+    }
+
+    public interface Timer {
+        /**
+         * Runs the task once, after at least the given delay.
+         */
+        void schedule(Runnable task, long delayMillis);
+    }
+
+    public interface Listener {
+        /**
+         * Called on the sync thread when the last requested sync has finished.
+         */
+        void syncIdle();
+    }
+
+    public static final Clock SYSTEM_CLOCK = new Clock() {
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+    };
+
+    private final Sync fSync;
+    private final Executor fExecutor;
+    private final Clock fClock;
+    private final Timer fTimer;
+    private final Random fRandom;
+    private Listener fListener;
+
+    private boolean fRunning;
+    private boolean fPending;
+    private boolean fPendingClean;
+    private boolean fPendingForced;
+    private int fFailures;
+    private long fRetryAfter;
+    private boolean fRunningClean;
+    private int fGeneration;
+
+    public SyncScheduler(final Sync sync, final Executor executor, final Clock clock, final Timer timer,
+                         final Random random) {
+        fSync = sync;
+        fExecutor = executor;
+        fClock = clock;
+        fTimer = timer;
+        fRandom = random;
+    }
+
+    public synchronized void setListener(final Listener listener) {
+        fListener = listener;
+    }
+
+    /**
+     * Asks for a sync. Returns false if the request was refused because of a recent failure;
+     * otherwise the sync is started now, or after the one that is running.
+     */
+    public synchronized boolean request(final boolean clean, final boolean forced) {
+        if (!forced && isBackingOff()) {
+            logger.info("Not syncing for another {}ms after {} failures.",
+                    fRetryAfter - fClock.currentTimeMillis(), fFailures);
+            return false;
+        }
+        if (fRunning) {
+            fPending = true;
+            fPendingClean |= clean;
+            fPendingForced |= forced;
+            return true;
+        }
+        start(clean);
+        return true;
+    }
+
+    public synchronized boolean isRunning() {
+        return fRunning;
+    }
+
+    public synchronized boolean isBackingOff() {
+        return fClock.currentTimeMillis() < fRetryAfter;
+    }
+
+    /**
+     * When requests will next be accepted without being forced, or 0 if they are now.
+     */
+    public synchronized long getRetryAfter() {
+        return isBackingOff() ? fRetryAfter : 0;
+    }
+
+    private void start(final boolean clean) {
+        fRunning = true;
+        fRunningClean = clean;
+        fGeneration++;
+        fExecutor.execute(new Runnable() {
+            public void run() {
+                finished(runSync(clean));
+            }
+        });
+    }
+
+    private boolean runSync(final boolean clean) {
+        try {
+            return fSync.run(clean);
+        } catch (Exception e) {
+            logger.warn("Sync failed.", e);
+            return false;
+        }
+    }
+
+    private void finished(final boolean succeeded) {
+        final Listener listener;
+        synchronized (this) {
+            if (succeeded) {
+                fFailures = 0;
+                fRetryAfter = 0;
+            } else {
+                fFailures++;
+                final long backoff = backoff(fFailures);
+                fRetryAfter = fClock.currentTimeMillis() + backoff;
+                scheduleRetry(fGeneration, fRunningClean, backoff);
+            }
+            final boolean clean = fPendingClean;
+            final boolean startPending = fPending && (fPendingForced || !isBackingOff());
+            fPending = false;
+            fPendingClean = false;
+            fPendingForced = false;
+            if (startPending) {
+                start(clean);
+                return;
+            }
+            fRunning = false;
+            listener = fListener;
+        }
+        if (listener != null) {
+            listener.syncIdle();
+        }
+    }
+
+    private void scheduleRetry(final int generation, final boolean clean, final long delayMillis) {
+        fTimer.schedule(new Runnable() {
+            public void run() {
+                retry(generation, clean);
+            }
+        }, delayMillis);
+    }
+
+    /**
+     * Retries the failed sync, unless a sync has been started since it failed.
+     */
+    private synchronized void retry(final int generation, final boolean clean) {
+        if (fRunning || generation != fGeneration) {
+            return;
+        }
+        logger.info("Retrying sync after {} failures.", fFailures);
+        start(clean);
+    }
+
+    /**
+     * A random delay between half and all of the exponential backoff for this many failures.
+     */
+    private long backoff(final int failures) {
+        long backoff = MAX_BACKOFF_MILLIS;
+        if (failures < 32) {
+            backoff = Math.min(MAX_BACKOFF_MILLIS, INITIAL_BACKOFF_MILLIS << (failures - 1));
+        }
+        final long half = backoff / 2;
+        return half + (long) (fRandom.nextDouble() * half);
+    }
+}
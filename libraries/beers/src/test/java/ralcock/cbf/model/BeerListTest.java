@@ -0,0 +1,227 @@
+package ralcock.cbf.model;
+
+import com.j256.ormlite.dao.DaoManager;
+import com.j256.ormlite.jdbc.JdbcConnectionSource;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.table.TableUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ralcock.cbf.model.dao.BeersImpl;
+import ralcock.cbf.model.dao.BreweriesImpl;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class BeerListTest
+{
+    private ConnectionSource fConnectionSource;
+    private CountingBeers fBeers;
+
+    private static final class CountingBeers extends BeersImpl {
+        int fQueries;
+
+        CountingBeers(final ConnectionSource connectionSource) throws SQLException {
+            super(connectionSource);
+        }
+
+        @Override
+        public List<Beer> allBeersList(final SortOrder sortOrder,
+                                       final CharSequence filterText,
+                                       final Set<String> stylesToHide,
+                                       final Set<String> allergensToHide,
+                                       final Set<String> statusToHide,
+                                       final String categoryToExclude) {
+            fQueries++;
+            return super.allBeersList(sortOrder, filterText, stylesToHide, allergensToHide, statusToHide, categoryToExclude);
+        }
+    }
+
+    @Before
+    public void setup() throws Exception {
+        fConnectionSource = new JdbcConnectionSource("jdbc:h2:mem:beerlist");
+        TableUtils.createTable(fConnectionSource, Beer.class);
+        TableUtils.createTable(fConnectionSource, Brewery.class);
+        fBeers = new CountingBeers(fConnectionSource);
+        BreweriesImpl breweries = DaoManager.createDao(fConnectionSource, Brewery.class);
+        fBeers.setBreweries(breweries);
+
+        Brewery adnams = new Brewery("b1", "adnams", "");
+        Brewery oakham = new Brewery("b2", "oakham", "");
+        fBeers.updateFromFestivalOrCreate(new Beer("1", "broadside", 4.7f, "fruitcake", "bitter", "Available", "cask", "", "beer", adnams));
+        fBeers.updateFromFestivalOrCreate(new Beer("2", "ghost ship", 4.5f, "citrus", "pale ale", "Available", "cask", "", "beer", adnams));
+        fBeers.updateFromFestivalOrCreate(new Beer("3", "citra", 4.2f, "grapefruit", "ipa", "Available", "cask", "", "beer", oakham));
+        fBeers.updateFromFestivalOrCreate(new Beer("4", "green devil", 6.0f, "hoppy", "ipa", "Available", "cask", "", "beer", oakham));
+    }
+
+    @After
+    public void dropTables() throws Exception {
+        TableUtils.dropTable(fConnectionSource, Beer.class, true);
+        TableUtils.dropTable(fConnectionSource, Brewery.class, true);
+        fConnectionSource.close();
+    }
+
+    private BeerList newList(final String filterText) {
+        return BeerList.allBeers(fBeers, new BeerList.Config()
+                .withSortOrder(SortOrder.BEER_NAME_ASC)
+                .withSearchText(filterText));
+    }
+
+    @Test
+    public void extendingFilterTextRefinesWithoutQuerying() {
+        BeerList list = newList("i");
+        assertThat(fBeers.fQueries, equalTo(1));
+        assertThat(list.getCount(), equalTo(4));
+
+        list.filterBy("ip");
+        list.filterBy("ipa");
+        assertThat(fBeers.fQueries, equalTo(1));
+        assertThat(list.getCount(), equalTo(2));
+        assertThat(list.getBeerAt(0).getName(), equalTo("citra"));
+        assertThat(list.getBeerAt(1).getName(), equalTo("green devil"));
+    }
+
+    @Test
+    public void refinementMatchesBreweryName() {
+        BeerList list = newList("");
+        list.filterBy("oak");
+        assertThat(fBeers.fQueries, equalTo(1));
+        assertThat(list.getCount(), equalTo(2));
+    }
+
+    @Test
+    public void refinementMatchesDescriptions() {
+        BeerList list = newList("");
+        list.filterBy("fruit");
+        assertThat(fBeers.fQueries, equalTo(1));
+        assertThat(list.getCount(), equalTo(2));
+        assertThat(list.getBeerAt(0).getName(), equalTo("broadside"));
+        assertThat(list.getBeerAt(1).getName(), equalTo("citra"));
+    }
+
+    @Test
+    public void refinementIsCaseInsensitive() {
+        BeerList list = newList("");
+        list.filterBy("IPA");
+        assertThat(list.getCount(), equalTo(2));
+    }
+
+    @Test
+    public void shorteningFilterTextRequeries() {
+        BeerList list = newList("ipa");
+        list.filterBy("ip");
+        assertThat(fBeers.fQueries, equalTo(2));
+        assertThat(list.getCount(), equalTo(3));
+    }
+
+    @Test
+    public void editingFilterTextRequeries() {
+        BeerList list = newList("citra");
+        list.filterBy("citrus");
+        assertThat(fBeers.fQueries, equalTo(2));
+        assertThat(list.getCount(), equalTo(1));
+        assertThat(list.getBeerAt(0).getName(), equalTo("ghost ship"));
+    }
+
+    @Test
+    public void wildcardFilterTextRequeries() {
+        BeerList list = newList("");
+        list.filterBy("_");
+        assertThat(fBeers.fQueries, equalTo(2));
+    }
+
+    @Test
+    public void changingSettingsRequeries() {
+        BeerList list = newList("ip");
+        list.sortBy(SortOrder.BEER_NAME_DESC);
+        list.filterBy("ipa");
+        assertThat(fBeers.fQueries, equalTo(2));
+        assertThat(list.getBeerAt(0).getName(), equalTo("green devil"));
+    }
+
+    @Test
+    public void showsSimilarMatchesWhenNothingContainsText() {
+        BeerList list = newList("adnmas");
+        assertThat(list.isShowingSimilarMatches(), is(true));
+        assertThat(list.getCount(), equalTo(2));
+        assertThat(list.getBeerAt(0).getBrewery().getName(), equalTo("adnams"));
+    }
+
+    @Test
+    public void similarMatchesAreNotRefinedInMemory() {
+        BeerList list = newList("adnmas");
+        list.filterBy("adnmass");
+        assertThat(fBeers.fQueries, equalTo(2));
+    }
+
+    @Test
+    public void exactMatchesAreNotReplacedBySimilarMatches() {
+        BeerList list = newList("citra");
+        assertThat(list.isShowingSimilarMatches(), is(false));
+        assertThat(list.getCount(), equalTo(1));
+    }
+
+    @Test
+    public void containsIgnoreAsciiCase() {
+        assertThat(BeerList.containsIgnoreAsciiCase("Green Devil IPA", "devil ipa"), is(true));
+        assertThat(BeerList.containsIgnoreAsciiCase("Green Devil", "devils"), is(false));
+        assertThat(BeerList.containsIgnoreAsciiCase(null, "x"), is(false));
+        assertThat(BeerList.containsIgnoreAsciiCase("x", ""), is(true));
+    }
+
+    private static String[] names(final List<Beer> beers) {
+        String[] names = new String[beers.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = beers.get(i).getName();
+        }
+        return names;
+    }
+
+    private static String[] names(final BeerList list) {
+        String[] names = new String[list.getCount()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = list.getBeerAt(i).getName();
+        }
+        return names;
+    }
+
+    @Test
+    public void selectOrdersLikeTheDatabase() throws Exception {
+        List<Beer> catalogue = fBeers.queryForAll();
+        for (SortOrder sortOrder : new SortOrder[]{SortOrder.BEER_NAME_ASC, SortOrder.BEER_NAME_DESC,
+                SortOrder.BEER_ABV_ASC, SortOrder.BEER_ABV_DESC}) {
+            BeerList.Config config = new BeerList.Config().withSortOrder(sortOrder);
+            assertThat(sortOrder.toString(),
+                    names(BeerList.select(catalogue, BeerList.Type.ALL, config)),
+                    equalTo(names(BeerList.allBeers(fBeers, config))));
+        }
+    }
+
+    @Test
+    public void selectFiltersLikeTheDatabase() throws Exception {
+        BeerList.Config config = new BeerList.Config()
+                .withSortOrder(SortOrder.BEER_NAME_ASC)
+                .withSearchText("IPA")
+                .withStylesToHide(Collections.singleton("pale ale"));
+
+        List<Beer> selected = BeerList.select(fBeers.queryForAll(), BeerList.Type.ALL, config);
+
+        assertThat(names(selected), equalTo(names(BeerList.allBeers(fBeers, config))));
+        assertThat(names(selected), arrayContaining("citra", "green devil"));
+    }
+
+    @Test
+    public void selectBookmarks() throws Exception {
+        List<Beer> catalogue = fBeers.queryForAll();
+        catalogue.get(2).setIsOnWishList(true);
+
+        List<Beer> selected = BeerList.select(catalogue, BeerList.Type.BOOKMARKS, new BeerList.Config());
+
+        assertThat(selected, contains(catalogue.get(2)));
+    }
+}
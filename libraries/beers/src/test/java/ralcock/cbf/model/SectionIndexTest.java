@@ -0,0 +1,65 @@
+package ralcock.cbf.model;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static ralcock.cbf.model.BeerBuilder.aBeer;
+import static ralcock.cbf.model.BreweryBuilder.aBrewery;
+
+public class SectionIndexTest {
+
+    private static Beer beer(final String name, final String breweryName) {
+        return aBeer().withFestivalId("b-" + name).called(name).withABV(4.2f).withStyle("Bitter")
+                .withStatus("Available").withDispenseMethod("cask")
+                .from(aBrewery().withFestivalId("b-" + breweryName).called(breweryName)).build();
+    }
+
+    private final List<Beer> fByBrewery = Arrays.asList(
+            beer("Ghost Ship", "Adnams"),
+            beer("Broadside", "Adnams"),
+            beer("Pale", "Bexley"),
+            beer("Blonde", "\u00c9lan"),
+            beer("Jaipur", "Thornbridge"));
+
+    @Test
+    public void hasASectionForEachInitial() {
+        SectionIndex sections = SectionIndex.of(fByBrewery, SortOrder.BREWERY_NAME_ASC);
+
+        assertThat(Arrays.asList(sections.getSections()), contains("A", "B", "E", "T"));
+        assertThat(sections.getPositionForSection(1), equalTo(2));
+        assertThat(sections.getPositionForSection(3), equalTo(4));
+        assertThat(sections.getSectionForPosition(1), equalTo(0));
+        assertThat(sections.getSectionForPosition(3), equalTo(2));
+    }
+
+    @Test
+    public void sectionsByBeerNameWhenSortedByBeer() {
+        List<Beer> beers = Arrays.asList(beer("1664", "Kronenbourg"), beer("amber", "Zest"), beer("Ale", "Zest"));
+
+        SectionIndex sections = SectionIndex.of(beers, SortOrder.BEER_NAME_ASC);
+
+        assertThat(Arrays.asList(sections.getSections()), contains("#", "A"));
+        assertThat(sections.getSectionForPosition(2), equalTo(1));
+    }
+
+    @Test
+    public void clampsLookupsOutsideTheList() {
+        SectionIndex sections = SectionIndex.of(fByBrewery, SortOrder.BREWERY_NAME_ASC);
+
+        assertThat(sections.getPositionForSection(-1), equalTo(0));
+        assertThat(sections.getPositionForSection(10), equalTo(4));
+        assertThat(sections.getSectionForPosition(10), equalTo(3));
+    }
+
+    @Test
+    public void hasNoSectionsForOtherOrders() {
+        assertThat(SectionIndex.of(fByBrewery, SortOrder.BEER_ABV_DESC), sameInstance(SectionIndex.NONE));
+        assertThat(SectionIndex.of(fByBrewery, SortOrder.BEER_RATING_ASC), sameInstance(SectionIndex.NONE));
+        assertThat(SectionIndex.of(fByBrewery, null), sameInstance(SectionIndex.NONE));
+        assertThat(SectionIndex.NONE.getSectionForPosition(3), equalTo(0));
+    }
+}
@@ -1,9 +1,17 @@
 package ralcock.cbf.model;
 
 import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 import static org.junit.Assert.*;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
+import static ralcock.cbf.model.BeerBuilder.aBeer;
+import static ralcock.cbf.model.BreweryBuilder.aBrewery;
 
 public class SortOrderTest
 {
@@ -15,14 +23,14 @@ public class SortOrderTest
 
     @Test
     public void breweryNameAscending() {
-        assertThat(SortOrder.BREWERY_NAME_ASC.columnName(), equalTo(Beer.BREWERY_FIELD));
+        assertThat(SortOrder.BREWERY_NAME_ASC.columnName(), equalTo(Beer.BREWERY_NAME_FIELD));
         assertThat(SortOrder.BREWERY_NAME_ASC.ascending(), is(true));
         assertThat(SortOrder.BREWERY_NAME_ASC.getDescription(), equalTo("Brewery (A-Z)"));
     }
 
     @Test
     public void breweryNameDescending() {
-        assertThat(SortOrder.BREWERY_NAME_DESC.columnName(), equalTo(Beer.BREWERY_FIELD));
+        assertThat(SortOrder.BREWERY_NAME_DESC.columnName(), equalTo(Beer.BREWERY_NAME_FIELD));
         assertThat(SortOrder.BREWERY_NAME_DESC.ascending(), is(false));
         assertThat(SortOrder.BREWERY_NAME_DESC.getDescription(), equalTo("Brewery (Z-A)"));
     }
@@ -103,9 +111,54 @@ public class SortOrderTest
 
     @Test
     public void columnNamesMatchBeerFields() {
-        assertThat(SortOrder.BREWERY_NAME_ASC.columnName(), equalTo("brewery"));
+        assertThat(SortOrder.BREWERY_NAME_ASC.columnName(), equalTo("brewery_name"));
         assertThat(SortOrder.BEER_NAME_ASC.columnName(), equalTo("name"));
         assertThat(SortOrder.BEER_ABV_ASC.columnName(), equalTo("abv"));
         assertThat(SortOrder.BEER_RATING_ASC.columnName(), equalTo("rating"));
     }
+
+    private static Beer beer(final long id, final String name, final float abv, final long breweryId) {
+        Brewery brewery = aBrewery().withFestivalId("b" + breweryId).called("brewery " + breweryId).build();
+        brewery.setId(breweryId);
+        Beer beer = aBeer().withFestivalId("f" + id).called(name).withABV(abv).fromBrewery(brewery).build();
+        beer.setId(id);
+        return beer;
+    }
+
+    private static List<Beer> sorted(final SortOrder sortOrder, final Beer... beers) {
+        List<Beer> list = new ArrayList<>(Arrays.asList(beers));
+        Collections.sort(list, sortOrder.comparator());
+        return list;
+    }
+
+    @Test
+    public void comparatorOrdersByColumn() {
+        Beer a = beer(1, "Bitter", 4.5f, 2);
+        Beer b = beer(2, "Amber", 3.8f, 3);
+        Beer c = beer(3, "Citra", 4.2f, 1);
+
+        assertThat(sorted(SortOrder.BEER_NAME_ASC, a, b, c), contains(b, a, c));
+        assertThat(sorted(SortOrder.BEER_NAME_DESC, a, b, c), contains(c, a, b));
+        assertThat(sorted(SortOrder.BEER_ABV_ASC, a, b, c), contains(b, c, a));
+        assertThat(sorted(SortOrder.BEER_ABV_DESC, a, b, c), contains(a, c, b));
+        assertThat(sorted(SortOrder.BREWERY_NAME_ASC, a, b, c), contains(c, a, b));
+    }
+
+    @Test
+    public void comparatorBreaksTiesById() {
+        Beer a = beer(2, "Same", 4.0f, 1);
+        Beer b = beer(1, "Same", 4.0f, 1);
+
+        for (SortOrder sortOrder : SortOrder.values()) {
+            assertThat(sortOrder.toString(), sorted(sortOrder, a, b), contains(b, a));
+        }
+    }
+
+    @Test
+    public void comparatorPutsNullNamesFirst() {
+        Beer named = beer(1, "Amber", 4.0f, 1);
+        Beer unnamed = beer(2, null, 4.0f, 1);
+
+        assertThat(sorted(SortOrder.BEER_NAME_ASC, named, unnamed), contains(unnamed, named));
+    }
 }
@@ -0,0 +1,42 @@
+package ralcock.cbf.model;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class StringPoolTest {
+
+    @Test
+    public void returnsOneCopyOfEqualStrings() {
+        String first = StringPool.canonical(new String("Best Bitter"));
+        String second = StringPool.canonical(new String("Best Bitter"));
+
+        assertThat(second, sameInstance(first));
+    }
+
+    @Test
+    public void keepsTheFirstCopyPooled() {
+        String value = new String("Golden Ale " + StringPoolTest.class.getName());
+
+        assertThat(StringPool.canonical(value), sameInstance(value));
+    }
+
+    @Test
+    public void leavesLongStringsAlone() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            sb.append("A long description. ");
+        }
+        String value = sb.toString();
+        String equal = new String(value);
+        StringPool.canonical(value);
+
+        assertThat(StringPool.canonical(equal), sameInstance(equal));
+    }
+
+    @Test
+    public void passesNullThrough() {
+        assertThat(StringPool.canonical(null), nullValue());
+    }
+}
@@ -0,0 +1,571 @@
+package ralcock.cbf.model.dao;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ralcock.cbf.model.Beer;
+import ralcock.cbf.model.BeerChangedListener;
+import ralcock.cbf.model.BeerList;
+import ralcock.cbf.model.SortOrder;
+import ralcock.cbf.model.StarRating;
+import ralcock.cbf.model.live.LiveBeerList;
+import ralcock.cbf.model.search.SuggestionIndex;
+import ralcock.cbf.model.stats.FestivalStats;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static ralcock.cbf.model.BeerBuilder.aBeer;
+import static ralcock.cbf.model.BreweryBuilder.aBrewery;
+
+/**
+ * What every catalog engine must do, whatever it stores the beers in. Each engine has a subclass
+ * that creates it.
+ */
+public abstract class BeersConformanceTest {
+
+    private static final Set<String> NONE = Collections.emptySet();
+
+    private Beers fBeers;
+
+    protected abstract Beers createBeers() throws Exception;
+
+    protected void closeBeers() throws Exception {
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        fBeers = createBeers();
+        fBeers.setFestival("cbf2025");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        closeBeers();
+    }
+
+    private static Beer beer(final String festivalId, final String name, final String breweryName) {
+        return aBeer().withFestivalId(festivalId).called(name).withABV(4.2f).withDescription("A " + name)
+                .withStyle("Bitter").withStatus("Available").withDispenseMethod("cask")
+                .from(aBrewery().withFestivalId("b-" + breweryName).called(breweryName)).build();
+    }
+
+    private Beer add(final Beer beer) {
+        fBeers.updateFromFestivalOrCreate(beer);
+        return beer;
+    }
+
+    private Beer add(final String festivalId, final String name, final String breweryName) {
+        return add(beer(festivalId, name, breweryName));
+    }
+
+    private static List<String> names(final List<Beer> beers) {
+        List<String> names = new ArrayList<>();
+        for (Beer beer : beers) {
+            names.add(beer.getName());
+        }
+        return names;
+    }
+
+    private List<Beer> all(final SortOrder sortOrder, final String text) {
+        return fBeers.allBeersList(sortOrder, text, NONE, NONE, NONE, null);
+    }
+
+    private List<Beer> all(final String text) {
+        return all(SortOrder.BEER_NAME_ASC, text);
+    }
+
+    private static final class Results implements LiveBeerList.Observer {
+        private final BlockingQueue<LiveBeerList.Result> fResults = new LinkedBlockingQueue<>();
+
+        public void beerListChanged(final LiveBeerList.Result result) {
+            fResults.add(result);
+        }
+
+        List<String> next() throws InterruptedException {
+            LiveBeerList.Result result = fResults.poll(10, TimeUnit.SECONDS);
+            assertThat(result, notNullValue());
+            return names(result.getBeers());
+        }
+    }
+
+    private static final Executor DIRECT = new Executor() {
+        public void execute(final Runnable command) {
+            command.run();
+        }
+    };
+
+    private void rate(final Beer beer, final int stars) {
+        beer.setNumberOfStars(new StarRating(stars));
+        fBeers.updateBeer(beer);
+    }
+
+    @Test
+    public void startsEmpty() {
+        assertThat(fBeers.getNumberOfBeers(), equalTo(0L));
+        assertThat(fBeers.getFestivalBeers(), empty());
+        assertThat(fBeers.getFestivals(), empty());
+        assertThat(all(""), empty());
+    }
+
+    @Test
+    public void givesCreatedBeersIdsAndTheFestival() {
+        Beer beer = add("1", "Ghost Ship", "Adnams");
+
+        assertThat(beer.getId(), greaterThan(0L));
+        assertThat(beer.getFestival(), equalTo("cbf2025"));
+        assertThat(beer.getBrewery().getId(), greaterThan(0L));
+        Beer read = fBeers.getBeerWithId(beer.getId());
+        assertThat(read.getName(), equalTo("Ghost Ship"));
+        assertThat(read.getBrewery().getName(), equalTo("Adnams"));
+        assertThat(read.getBreweryName(), equalTo("adnams"));
+        assertThat(read.getFestival(), equalTo("cbf2025"));
+    }
+
+    @Test
+    public void countsBeersBySource() {
+        Beer one = beer("1", "One", "Adnams");
+        one.setSource("beer.json");
+        Beer two = beer("2", "Two", "Adnams");
+        two.setSource("low-no.json");
+        add(one);
+        add(two);
+
+        assertThat(fBeers.getNumberOfBeers(), equalTo(2L));
+        assertThat(fBeers.getNumberOfBeersFrom("beer.json"), equalTo(1L));
+        assertThat(fBeers.getNumberOfBeersFrom("other.json"), equalTo(0L));
+    }
+
+    @Test
+    public void updatesFromTheFestivalKeepingWhatTheUserRecorded() {
+        Beer beer = add("1", "Ghost Ship", "Adnams");
+        beer.setIsOnWishList(true);
+        beer.setUserComments("citrus");
+        rate(beer, 4);
+
+        Beer renamed = add("1", "Ghost Ship Pale", "Adnams");
+
+        assertThat(renamed.getId(), equalTo(beer.getId()));
+        assertThat(fBeers.getNumberOfBeers(), equalTo(1L));
+        Beer read = fBeers.getBeerWithId(beer.getId());
+        assertThat(read.getName(), equalTo("Ghost Ship Pale"));
+        assertThat(read.getRating(), equalTo(4));
+        assertThat(read.isIsOnWishList(), is(true));
+        assertThat(read.getUserComments(), equalTo("citrus"));
+    }
+
+    @Test
+    public void updatesTheBreweryOfExistingBeers() {
+        add(aBeer().withFestivalId("1").called("Helles").withABV(4.8f).withStyle("Lager")
+                .withDispenseMethod("keg").from(aBrewery().withFestivalId("b1").called("Old Name")).build());
+        add(aBeer().withFestivalId("2").called("Dunkel").withABV(5.1f).withStyle("Lager")
+                .withDispenseMethod("keg").from(aBrewery().withFestivalId("b1").called("Old Name")).build());
+
+        add(aBeer().withFestivalId("1").called("Helles").withABV(4.8f).withStyle("Lager")
+                .withDispenseMethod("keg").from(aBrewery().withFestivalId("b1").called("New Name")).build());
+
+        for (Beer beer : fBeers.getFestivalBeers()) {
+            assertThat(beer.getBrewery().getName(), equalTo("New Name"));
+            if (beer.getName().equals("Helles")) {
+                assertThat(beer.getBreweryName(), equalTo("new name"));
+            }
+        }
+    }
+
+    @Test
+    public void changesBeersReadOnlyWhenTheyAreUpdated() {
+        Beer beer = add("1", "Ghost Ship", "Adnams");
+
+        Beer read = fBeers.getBeerWithId(beer.getId());
+        read.setNumberOfStars(new StarRating(5));
+        assertThat(fBeers.getBeerWithId(beer.getId()).getRating(), equalTo(0));
+
+        fBeers.updateBeer(read);
+        assertThat(fBeers.getBeerWithId(beer.getId()).getRating(), equalTo(5));
+    }
+
+    @Test
+    public void tellsListenersOfUpdatedBeers() {
+        final List<Beer> changed = new ArrayList<>();
+        fBeers.addBeerChangedListener(new BeerChangedListener() {
+            public void beerChanged(final Beer beer) {
+                changed.add(beer);
+            }
+        });
+        Beer beer = add("1", "Ghost Ship", "Adnams");
+
+        rate(beer, 3);
+
+        assertThat(changed, contains(beer));
+    }
+
+    @Test
+    public void searchesNamesStylesDescriptionsAndBreweriesIgnoringAsciiCase() {
+        add("1", "Ghost Ship", "Adnams");
+        add(aBeer().withFestivalId("2").called("Jaipur").withABV(5.9f).withDescription("Citrus")
+                .withStyle("IPA").withStatus("Available").withDispenseMethod("cask")
+                .from(aBrewery().withFestivalId("b2").called("Thornbridge")).build());
+        add(aBeer().withFestivalId("3").called("Helles").withABV(4.8f).withStyle("Lager")
+                .withStatus("Available").withDispenseMethod("keg")
+                .from(aBrewery().withFestivalId("b3").called("\u00c4rger Br\u00e4u")).build());
+
+        assertThat(names(all("ghost")), contains("Ghost Ship"));
+        assertThat(names(all("ipa")), contains("Jaipur"));
+        assertThat(names(all("CITRUS")), contains("Jaipur"));
+        assertThat(names(all("thornBRIDGE")), contains("Jaipur"));
+        assertThat(names(all("\u00c4RGER")), contains("Helles"));
+        assertThat(names(all("")), hasSize(3));
+        assertThat(all("porter"), empty());
+    }
+
+    @Test
+    public void listsSummariesOfTheBeers() {
+        Beer beer = add("1", "Ghost Ship", "Adnams");
+        beer.setUserComments("Hoppy");
+        rate(beer, 4);
+
+        Beer summary = all("").get(0);
+
+        assertThat(summary.getId(), equalTo(beer.getId()));
+        assertThat(summary.getName(), equalTo("Ghost Ship"));
+        assertThat(summary.getRating(), equalTo(4));
+        assertThat(summary.getBrewery().getName(), equalTo("Adnams"));
+        assertThat(summary.getDescription(), nullValue());
+        assertThat(summary.getUserComments(), nullValue());
+        assertThat(summary.getBrewery().getDescription(), nullValue());
+        assertThat(fBeers.getBeerWithId(beer.getId()).getDescription(), equalTo("A Ghost Ship"));
+    }
+
+    @Test
+    public void findsBeersByDescription() {
+        Beer ghostShip = add("1", "Ghost Ship", "Adnams");
+        add("2", "Jaipur", "Thornbridge");
+
+        assertThat(fBeers.idsWithDescriptionContaining("GHOST"), contains(ghostShip.getId()));
+        assertThat(fBeers.idsWithDescriptionContaining("a "), hasSize(2));
+        assertThat(fBeers.idsWithDescriptionContaining("porter"), empty());
+    }
+
+    @Test
+    public void hidesStatusesStylesAllergensAndACategory() {
+        add(aBeer().withFestivalId("1").called("Sold").withABV(4f).withStyle("Bitter").withStatus("Sold Out")
+                .withDispenseMethod("cask").from(aBrewery().withFestivalId("b").called("B")).build());
+        add(aBeer().withFestivalId("2").called("Stout").withABV(4f).withStyle("Stout").withStatus("Available")
+                .withDispenseMethod("cask").from(aBrewery().withFestivalId("b").called("B")).build());
+        add(aBeer().withFestivalId("3").called("Wheat").withABV(4f).withStyle("Bitter").withStatus("Available")
+                .withDispenseMethod("cask").withAllergens("Gluten, Sulphites")
+                .from(aBrewery().withFestivalId("b").called("B")).build());
+        add(aBeer().withFestivalId("4").called("Alcohol Free").withABV(0.5f).withStyle("Bitter")
+                .withStatus("Available").withDispenseMethod("cask").withCategory("low-no")
+                .from(aBrewery().withFestivalId("b").called("B")).build());
+        add(aBeer().withFestivalId("5").called("Pale").withABV(4f).withStyle("Bitter").withStatus("Available")
+                .withDispenseMethod("cask").from(aBrewery().withFestivalId("b").called("B")).build());
+
+        List<Beer> beers = fBeers.allBeersList(SortOrder.BEER_NAME_ASC, "",
+                Collections.singleton("Stout"), Collections.singleton("gluten"),
+                Collections.singleton("Sold Out"), "low-no");
+
+        assertThat(names(beers), contains("Pale"));
+        assertThat(names(fBeers.lowNoAlcoholBeersList(SortOrder.BEER_NAME_ASC, "", NONE, NONE, NONE, "low-no")),
+                contains("Alcohol Free"));
+    }
+
+    @Test
+    public void listsBookmarkedBeers() {
+        add("1", "Ghost Ship", "Adnams");
+        Beer bookmarked = add("2", "Jaipur", "Thornbridge");
+        bookmarked.setIsOnWishList(true);
+        fBeers.updateBeer(bookmarked);
+
+        assertThat(names(fBeers.bookmarkedBeersList(SortOrder.BEER_NAME_ASC, "", NONE, NONE, NONE)),
+                contains("Jaipur"));
+    }
+
+    @Test
+    public void listsInEveryOrder() {
+        Beer a = add(aBeer().withFestivalId("1").called("Bitter").withABV(3.8f).withStyle("Bitter")
+                .withDispenseMethod("cask").from(aBrewery().withFestivalId("b1").called("Zeta")).build());
+        Beer b = add(aBeer().withFestivalId("2").called("Amber").withABV(5.0f).withStyle("Bitter")
+                .withDispenseMethod("cask").from(aBrewery().withFestivalId("b2").called("Alpha")).build());
+        Beer c = add(aBeer().withFestivalId("3").called("Citra").withABV(4.5f).withStyle("Bitter")
+                .withDispenseMethod("cask").from(aBrewery().withFestivalId("b3").called("Mid")).build());
+        Beer d = add(aBeer().withFestivalId("4").called("Amber").withABV(3.8f).withStyle("Bitter")
+                .withDispenseMethod("cask").from(aBrewery().withFestivalId("b3").called("Mid")).build());
+        rate(a, 2);
+        rate(c, 5);
+        rate(d, 2);
+
+        for (SortOrder sortOrder : SortOrder.values()) {
+            List<Beer> expected = new ArrayList<>(fBeers.getFestivalBeers());
+            Collections.sort(expected, sortOrder.comparator());
+            List<Long> expectedIds = new ArrayList<>();
+            for (Beer beer : expected) {
+                expectedIds.add(beer.getId());
+            }
+            List<Long> ids = new ArrayList<>();
+            for (Beer beer : all(sortOrder, "")) {
+                ids.add(beer.getId());
+            }
+            assertThat(sortOrder.name(), ids, equalTo(expectedIds));
+        }
+        assertThat(names(all(SortOrder.BEER_RATING_DESC, "")).get(0), equalTo("Citra"));
+        assertThat(all(SortOrder.BEER_ABV_DESC, "").get(0).getId(), equalTo(b.getId()));
+    }
+
+    @Test
+    public void listsStylesAndAllergensPresent() {
+        add(aBeer().withFestivalId("1").called("One").withABV(4f).withStyle("Bitter").withDispenseMethod("cask")
+                .withAllergens("gluten, Sulphites").from(aBrewery().withFestivalId("b").called("B")).build());
+        add(aBeer().withFestivalId("2").called("Two").withABV(4f).withStyle("Stout").withDispenseMethod("cask")
+                .withAllergens("Gluten").from(aBrewery().withFestivalId("b").called("B")).build());
+        add(aBeer().withFestivalId("3").called("Three").withABV(4f).withDispenseMethod("cask")
+                .from(aBrewery().withFestivalId("b").called("B")).build());
+
+        assertThat(fBeers.getAvailableStyles(), contains("Bitter", "Stout"));
+        assertThat(fBeers.getAvailableAllergens(), contains("Gluten", "Sulphites"));
+    }
+
+    @Test
+    public void pagesThroughRatedAndBookmarkedBeers() {
+        List<Long> expected = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Beer beer = add(Integer.toString(i), "Beer " + i, "Brewery");
+            if (i % 3 == 0) {
+                rate(beer, 1);
+                expected.add(beer.getId());
+            } else if (i % 3 == 1) {
+                beer.setIsOnWishList(true);
+                fBeers.updateBeer(beer);
+                expected.add(beer.getId());
+            }
+        }
+
+        List<Long> ids = new ArrayList<>();
+        long afterId = 0;
+        List<Beer> page;
+        while (!(page = fBeers.ratedOrBookmarkedBeers(afterId, 3)).isEmpty()) {
+            assertThat(page.size(), lessThanOrEqualTo(3));
+            for (Beer beer : page) {
+                ids.add(beer.getId());
+                afterId = beer.getId();
+            }
+        }
+
+        assertThat(ids, equalTo(expected));
+        assertThat(fBeers.getRatedBeers(), hasSize(4));
+    }
+
+    @Test
+    public void deletesStaleBeersTheUserHasNotUsed() {
+        List<Beer> beers = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            Beer beer = beer(Integer.toString(i), "Beer " + i, "Brewery");
+            beer.setSource("beer.json");
+            beers.add(add(beer));
+        }
+        Beer other = beer("other", "Other", "Brewery");
+        other.setSource("low-no.json");
+        add(other);
+        rate(beers.get(1), 3);
+        beers.get(2).setIsOnWishList(true);
+        fBeers.updateBeer(beers.get(2));
+        beers.get(3).setUserComments("hoppy");
+        fBeers.updateBeer(beers.get(3));
+
+        int deleted = fBeers.deleteStaleBeers("beer.json", Collections.singleton("0"));
+
+        assertThat(deleted, equalTo(1));
+        assertThat(fBeers.getNumberOfBeersFrom("beer.json"), equalTo(4L));
+        assertThat(fBeers.getNumberOfBeersFrom("low-no.json"), equalTo(1L));
+        assertThat(fBeers.getBeerWithId(beers.get(4).getId()), nullValue());
+    }
+
+    @Test
+    public void searchesSimilarNamesAndSuggestsCompletions() {
+        add("1", "Ghost Ship", "Adnams");
+        add("2", "Jaipur", "Thornbridge");
+        fBeers.rebuildSearchIndex();
+
+        assertThat(names(fBeers.fuzzySearch("jaipor", 5)), contains("Jaipur"));
+        List<String> suggestions = new ArrayList<>();
+        for (SuggestionIndex.Suggestion suggestion : fBeers.suggest("gho", 5)) {
+            suggestions.add(suggestion.getText());
+        }
+        assertThat(suggestions, hasItem("Ghost Ship"));
+    }
+
+    @Test
+    public void suggestsNothingUntilTheIndexIsBuilt() {
+        add("1", "Ghost Ship", "Adnams");
+
+        assertThat(fBeers.suggest("gho", 5), empty());
+        fBeers.rebuildSearchIndex();
+        assertThat(fBeers.suggest("gho", 5), not(empty()));
+    }
+
+    @Test
+    public void searchesBeersAddedSinceTheIndexWasBuilt() {
+        add("1", "Ghost Ship", "Adnams");
+        fBeers.rebuildSearchIndex();
+        add("2", "Jaipur", "Thornbridge");
+
+        assertThat(names(fBeers.fuzzySearch("jaipor", 5)), contains("Jaipur"));
+        assertThat(names(all(SortOrder.BEER_NAME_DESC, "")), contains("Jaipur", "Ghost Ship"));
+    }
+
+    @Test
+    public void keepsTheStatsUpToDateAsBeersAreRated() {
+        Beer ghostShip = add("1", "Ghost Ship", "Adnams");
+        Beer jaipur = add(aBeer().withFestivalId("2").called("Jaipur").withABV(5.9f).withStyle("IPA")
+                .withStatus("Available").withDispenseMethod("cask")
+                .from(aBrewery().withFestivalId("b-Thornbridge").called("Thornbridge")).build());
+        add("3", "Broadside", "Adnams");
+        fBeers.rebuildSearchIndex();
+
+        FestivalStats before = fBeers.getFestivalStats();
+        assertThat(before.getBeerCount(), equalTo(3));
+        assertThat(before.getRatedCount(), equalTo(0));
+        assertThat(before.getStyle("Bitter").getBeerCount(), equalTo(2));
+        assertThat(before.getBeersInCategory("beer"), equalTo(3));
+        assertThat(before.getBeersInAbvBucket(4), equalTo(2));
+        assertThat(before.getBeersInAbvBucket(5), equalTo(1));
+
+        rate(ghostShip, 4);
+        rate(jaipur, 5);
+        fBeers.setFestival("cbfw2025");
+        rate(add("1", "Winter Ship", "Adnams"), 2);
+        fBeers.setFestival("cbf2025");
+        rate(ghostShip, 2);
+
+        FestivalStats after = fBeers.getFestivalStats();
+        assertThat(after.getRatedCount(), equalTo(2));
+        assertThat(after.getStyle("Bitter").getRatedCount(), equalTo(1));
+        assertThat(after.getStyle("Bitter").getAverageRating(), equalTo(2f));
+        assertThat(after.getStyle("IPA").getAverageRating(), equalTo(5f));
+        assertThat(before.getRatedCount(), equalTo(0));
+    }
+
+    @Test
+    public void countsTheStatsWithoutBuildingTheSearchIndexes() {
+        add("1", "Ghost Ship", "Adnams");
+
+        assertThat(fBeers.getFestivalStats().getBeerCount(), equalTo(1));
+        assertThat(fBeers.suggest("gho", 5), empty());
+
+        add("2", "Broadside", "Adnams");
+        assertThat(fBeers.getFestivalStats().getBeerCount(), equalTo(2));
+    }
+
+    @Test
+    public void findsSimilarBeers() {
+        Beer ghostShip = add("1", "Ghost Ship", "Adnams");
+        add(aBeer().withFestivalId("2").called("Jaipur").withABV(5.9f).withDescription("Citrus hops")
+                .withStyle("IPA").withStatus("Available").withDispenseMethod("cask")
+                .from(aBrewery().withFestivalId("b-Thornbridge").called("Thornbridge")).build());
+        add("3", "Broadside", "Adnams");
+        fBeers.setFestival("cbfw2025");
+        add("3", "Winter Ship", "Adnams");
+        fBeers.setFestival("cbf2025");
+
+        List<Beer> similar = fBeers.similarBeers(ghostShip.getId(), 1);
+
+        assertThat(names(similar), contains("Broadside"));
+        assertThat(similar.get(0).getDescription(), nullValue());
+        assertThat(fBeers.similarBeers(-1, 5), empty());
+    }
+
+    @Test
+    public void updatesStatuses() throws Exception {
+        Beer ghostShip = add("1", "Ghost Ship", "Adnams");
+        Beer jaipur = add("2", "Jaipur", "Thornbridge");
+        rate(ghostShip, 4);
+        fBeers.setFestival("cbfw2025");
+        Beer winterShip = add("1", "Winter Ship", "Adnams");
+        fBeers.setFestival("cbf2025");
+        Results results = new Results();
+        LiveBeerList list = fBeers.observeBeerList(BeerList.Type.ALL,
+                new BeerList.Config().withSortOrder(SortOrder.BEER_NAME_ASC), DIRECT, results);
+        results.next();
+
+        Map<String, String> statuses = new HashMap<>();
+        statuses.put("1", "Sold Out");
+        statuses.put("2", "Available");
+        statuses.put("9", "Sold Out");
+
+        assertThat(fBeers.updateStatuses(statuses), equalTo(1));
+        Beer updated = fBeers.getBeerWithId(ghostShip.getId());
+        assertThat(updated.getStatus(), equalTo("Sold Out"));
+        assertThat(updated.getRating(), equalTo(4));
+        assertThat(updated.getDescription(), equalTo("A Ghost Ship"));
+        assertThat(fBeers.getBeerWithId(jaipur.getId()).getStatus(), equalTo("Available"));
+        assertThat(fBeers.getBeerWithId(winterShip.getId()).getStatus(), equalTo("Available"));
+        assertThat(results.next(), contains("Ghost Ship", "Jaipur"));
+
+        assertThat(fBeers.updateStatuses(statuses), equalTo(0));
+        list.close();
+    }
+
+    @Test
+    public void keepsFestivalsApart() {
+        add("1", "Ghost Ship", "Adnams");
+        add("2", "Jaipur", "Thornbridge");
+        fBeers.setFestival("cbfw2025");
+        Beer winter = add("1", "Winter Ship", "Adnams");
+        rate(winter, 4);
+
+        assertThat(fBeers.getNumberOfBeers(), equalTo(1L));
+        assertThat(names(all("")), contains("Winter Ship"));
+        assertThat(fBeers.getFestival(), equalTo("cbfw2025"));
+        fBeers.setFestival("cbf2025");
+        assertThat(names(all("")), contains("Ghost Ship", "Jaipur"));
+        assertThat(fBeers.getRatedBeers(), empty());
+        assertThat(fBeers.getFestivals(), contains("cbf2025", "cbfw2025"));
+    }
+
+    @Test
+    public void deletesAndEvictsFestivals() {
+        for (String festival : Arrays.asList("cbf2023", "cbf2024", "cbfw2024", "cbf2025")) {
+            fBeers.setFestival(festival);
+            add("1", "Beer", "Brewery");
+            add("2", "Other", "Brewery");
+        }
+
+        assertThat(fBeers.deleteFestival("cbf2023"), equalTo(2));
+        List<String> evicted = fBeers.evictFestivals(Arrays.asList("cbfw2024", "cbf2024"), 2);
+
+        assertThat(evicted, contains("cbf2024"));
+        assertThat(fBeers.getFestivals(), containsInAnyOrder("cbf2025", "cbfw2024"));
+        assertThat(fBeers.getNumberOfBeers(), equalTo(2L));
+    }
+
+    @Test
+    public void keepsLiveListsUpToDate() throws Exception {
+        Beer ghostShip = add("1", "Ghost Ship", "Adnams");
+        add("2", "Jaipur", "Thornbridge");
+        Results results = new Results();
+
+        LiveBeerList bookmarks = fBeers.observeBeerList(BeerList.Type.BOOKMARKS, new BeerList.Config(), DIRECT, results);
+        assertThat(results.next(), empty());
+
+        ghostShip.setIsOnWishList(true);
+        fBeers.updateBeer(ghostShip);
+        assertThat(results.next(), contains("Ghost Ship"));
+
+        // Leaves the bookmarks as they were, so is not delivered.
+        add("3", "Broadside", "Adnams");
+        bookmarks.filterBy("Jaipur");
+        assertThat(results.next(), empty());
+        bookmarks.close();
+    }
+}
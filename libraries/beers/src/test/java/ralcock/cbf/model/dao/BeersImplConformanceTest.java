@@ -0,0 +1,31 @@
+package ralcock.cbf.model.dao;
+
+import com.j256.ormlite.dao.DaoManager;
+import com.j256.ormlite.jdbc.JdbcConnectionSource;
+import com.j256.ormlite.support.ConnectionSource;
+import ralcock.cbf.model.Beer;
+import ralcock.cbf.model.Brewery;
+
+/**
+ * The ORMLite engine, on SQLite as the app runs it.
+ */
+public class BeersImplConformanceTest extends BeersConformanceTest {
+
+    private ConnectionSource fConnectionSource;
+
+    @Override
+    protected Beers createBeers() throws Exception {
+        fConnectionSource = new JdbcConnectionSource("jdbc:sqlite::memory:");
+        CatalogSchema.createTables(fConnectionSource);
+        BeersImpl beers = DaoManager.createDao(fConnectionSource, Beer.class);
+        BreweriesImpl breweries = DaoManager.createDao(fConnectionSource, Brewery.class);
+        beers.setBreweries(breweries);
+        return beers;
+    }
+
+    @Override
+    protected void closeBeers() throws Exception {
+        fConnectionSource.close();
+        DaoManager.clearCache();
+    }
+}
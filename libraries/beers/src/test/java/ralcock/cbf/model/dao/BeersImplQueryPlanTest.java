@@ -0,0 +1,119 @@
+package ralcock.cbf.model.dao;
+
+import com.j256.ormlite.dao.DaoManager;
+import com.j256.ormlite.dao.GenericRawResults;
+import com.j256.ormlite.jdbc.JdbcConnectionSource;
+import com.j256.ormlite.support.ConnectionSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ralcock.cbf.model.Beer;
+import ralcock.cbf.model.BeerList;
+import ralcock.cbf.model.Brewery;
+import ralcock.cbf.model.SortOrder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Checks how SQLite, which the app runs on, plans the beer list queries.
+ */
+public class BeersImplQueryPlanTest {
+
+    private ConnectionSource fConnectionSource;
+    private BeersImpl fBeers;
+
+    @Before
+    public void setUp() throws Exception {
+        fConnectionSource = new JdbcConnectionSource("jdbc:sqlite::memory:");
+        CatalogSchema.createTables(fConnectionSource);
+        fBeers = DaoManager.createDao(fConnectionSource, Beer.class);
+        BreweriesImpl breweries = DaoManager.createDao(fConnectionSource, Brewery.class);
+        fBeers.setBreweries(breweries);
+        fBeers.setFestival("cbfw2025");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        fConnectionSource.close();
+        DaoManager.clearCache();
+    }
+
+    private List<String> queryPlan(final String sql) throws Exception {
+        List<String> details = new ArrayList<>();
+        GenericRawResults<String[]> results = fBeers.queryRaw("EXPLAIN QUERY PLAN " + sql);
+        try {
+            for (String[] row : results) {
+                // id, parent, notused, detail
+                details.add(row[3]);
+            }
+        } finally {
+            results.close();
+        }
+        return details;
+    }
+
+    private String listQuery(final BeerList.Type type, final SortOrder sortOrder) throws Exception {
+        final Set<String> stylesToHide = Collections.emptySet();
+        final Set<String> statusToHide = Collections.singleton("Sold Out");
+        switch (type) {
+            case BOOKMARKS:
+                return fBeers.buildBookmarkQuery(sortOrder, "", stylesToHide, statusToHide)
+                        .prepareStatementString();
+            case LOW_NO:
+                return fBeers.buildLowNoAlcoholQuery(sortOrder, "", stylesToHide, statusToHide, "low-no")
+                        .prepareStatementString();
+            default:
+                return fBeers.buildFilteredBeerQuery(sortOrder, "", stylesToHide, statusToHide, "low-no")
+                        .prepareStatementString();
+        }
+    }
+
+    /**
+     * Every list, in every order, is read through an index on the festival, and in that order
+     * when the database orders it, with no full scan or sort.
+     */
+    @Test
+    public void everyListInEveryOrderIsReadFromAnIndex() throws Exception {
+        for (BeerList.Type type : BeerList.Type.values()) {
+            for (SortOrder sortOrder : SortOrder.values()) {
+                List<String> plan = queryPlan(listQuery(type, sortOrder));
+                String message = type + " " + sortOrder + " " + plan;
+                assertThat(message, plan, everyItem(not(containsString("TEMP B-TREE"))));
+                assertThat(message, plan, everyItem(not(startsWith("SCAN"))));
+                assertThat(message, plan, hasItem(containsString("(festival=?")));
+            }
+        }
+    }
+
+    @Test
+    public void searchReadsOnlyTheBeersTable() throws Exception {
+        String sql = fBeers.buildFilteredBeerQuery(SortOrder.BEER_NAME_ASC, "adnams",
+                Collections.singleton("Sold Out"), Collections.singleton("Porter"), "low-no")
+                .prepareStatementString();
+
+        List<String> plan = queryPlan(sql);
+
+        assertThat(plan.toString(), plan, everyItem(not(containsString(Brewery.TABLE_NAME))));
+        assertThat(plan.toString(), plan, hasItem(containsString("USING INDEX")));
+        assertThat(plan.toString(), plan, hasItem(containsString("(festival=?)")));
+    }
+
+    @Test
+    public void sortsByBreweryNameFromTheIndex() throws Exception {
+        String sql = fBeers.queryBuilder()
+                .orderBy(Beer.BREWERY_NAME_FIELD, true)
+                .where().eq(Beer.FESTIVAL_FIELD, "cbfw2025")
+                .prepare().getStatement();
+
+        List<String> plan = queryPlan(sql);
+
+        assertThat(plan.toString(), plan, contains(containsString("beers_festival_brewery_name_idx")));
+        assertThat(plan.toString(), plan, everyItem(not(containsString("TEMP B-TREE"))));
+    }
+}
@@ -1,13 +1,24 @@
 package ralcock.cbf.model.dao;
 
 import ralcock.cbf.model.Beer;
+import ralcock.cbf.model.BeerList;
 import ralcock.cbf.model.Brewery;
+import ralcock.cbf.model.StarRating;
+import ralcock.cbf.model.stats.FestivalStats;
 
 import com.j256.ormlite.dao.DaoManager;
-import com.j256.ormlite.table.TableUtils;
+import com.j256.ormlite.dao.GenericRawResults;
 import com.j256.ormlite.support.ConnectionSource;
 import com.j256.ormlite.jdbc.JdbcConnectionSource;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -31,8 +42,7 @@ public class BeersImplTest {
     @Before
     public void setup() throws Exception {
         connectionSource = new JdbcConnectionSource("jdbc:h2:mem:test");
-        TableUtils.createTable(connectionSource, Beer.class);
-        TableUtils.createTable(connectionSource, Brewery.class);
+        CatalogSchema.createTables(connectionSource);
         beersImpl = DaoManager.createDao(connectionSource, Beer.class);
         breweriesImpl = DaoManager.createDao(connectionSource, Brewery.class);
         beersImpl.setBreweries(breweriesImpl);
@@ -40,8 +50,7 @@ public class BeersImplTest {
 
     @After
     public void dropTables() throws Exception {
-        TableUtils.dropTable(connectionSource, Beer.class, true);
-        TableUtils.dropTable(connectionSource, Brewery.class, true);
+        CatalogSchema.dropTables(connectionSource);
     }
 
     private BeersImpl getBeers() throws Exception {
@@ -60,4 +69,247 @@ public class BeersImplTest {
         beers.updateFromFestivalOrCreate(aBeer());
         assertEquals(beers.getNumberOfBeers(), 1);
     }
+
+    private static Beer aBeerFrom(final String source, final String festivalId) {
+        Beer beer = new Beer(festivalId, "name " + festivalId, 4.2f,
+                "description", "style", "status", "cask", "", "beer", aBrewery());
+        beer.setSource(source);
+        return beer;
+    }
+
+    @Test
+    public void countsBeersBySource() throws Exception {
+        BeersImpl beers = getBeers();
+        beers.updateFromFestivalOrCreate(aBeerFrom("beer.json", "1"));
+        beers.updateFromFestivalOrCreate(aBeerFrom("beer.json", "2"));
+        beers.updateFromFestivalOrCreate(aBeerFrom("low-no.json", "3"));
+
+        assertEquals(2, beers.getNumberOfBeersFrom("beer.json"));
+        assertEquals(1, beers.getNumberOfBeersFrom("low-no.json"));
+        assertEquals(0, beers.getNumberOfBeersFrom("other.json"));
+    }
+
+    @Test
+    public void updateRecordsNewSource() throws Exception {
+        BeersImpl beers = getBeers();
+        beers.updateFromFestivalOrCreate(aBeerFrom("beer.json", "1"));
+        beers.updateFromFestivalOrCreate(aBeerFrom("low-no.json", "1"));
+
+        assertEquals(0, beers.getNumberOfBeersFrom("beer.json"));
+        assertEquals(1, beers.getNumberOfBeersFrom("low-no.json"));
+    }
+
+    @Test
+    public void deletesStaleBeersOnlyFromTheirSource() throws Exception {
+        BeersImpl beers = getBeers();
+        beers.updateFromFestivalOrCreate(aBeerFrom("beer.json", "1"));
+        beers.updateFromFestivalOrCreate(aBeerFrom("beer.json", "2"));
+        beers.updateFromFestivalOrCreate(aBeerFrom("low-no.json", "3"));
+
+        int deleted = beers.deleteStaleBeers("beer.json", new HashSet<>(Collections.singletonList("1")));
+
+        assertEquals(1, deleted);
+        assertEquals(1, beers.getNumberOfBeersFrom("beer.json"));
+        assertEquals(1, beers.getNumberOfBeersFrom("low-no.json"));
+    }
+
+    @Test
+    public void keepsStaleBeersTheUserHasUsed() throws Exception {
+        BeersImpl beers = getBeers();
+        Beer rated = aBeerFrom("beer.json", "1");
+        Beer bookmarked = aBeerFrom("beer.json", "2");
+        Beer commented = aBeerFrom("beer.json", "3");
+        beers.updateFromFestivalOrCreate(rated);
+        beers.updateFromFestivalOrCreate(bookmarked);
+        beers.updateFromFestivalOrCreate(commented);
+        beers.updateFromFestivalOrCreate(aBeerFrom("beer.json", "4"));
+        rated.setNumberOfStars(new StarRating(3));
+        beers.update(rated);
+        bookmarked.setIsOnWishList(true);
+        beers.update(bookmarked);
+        commented.setUserComments("hoppy");
+        beers.update(commented);
+
+        int deleted = beers.deleteStaleBeers("beer.json", new HashSet<>(Arrays.asList("5")));
+
+        assertEquals(1, deleted);
+        assertEquals(3, beers.getNumberOfBeersFrom("beer.json"));
+    }
+
+    @Test
+    public void festivalsAreStoredSeparately() throws Exception {
+        BeersImpl beers = getBeers();
+        beers.setFestival("cbf2025");
+        beers.updateFromFestivalOrCreate(aBeerFrom("beer.json", "1"));
+        beers.updateFromFestivalOrCreate(aBeerFrom("beer.json", "2"));
+        beers.setFestival("cbfw2025");
+        beers.updateFromFestivalOrCreate(aBeerFrom("beer.json", "1"));
+
+        assertEquals(1, beers.getNumberOfBeers());
+        assertEquals(1, BeerList.allBeers(beers, new BeerList.Config()).getCount());
+        assertEquals("cbfw2025", beers.getFestivalBeers().get(0).getFestival());
+
+        beers.setFestival("cbf2025");
+        assertEquals(2, beers.getNumberOfBeers());
+        assertEquals(2, beers.getNumberOfBeersFrom("beer.json"));
+        assertEquals(new TreeSet<>(Arrays.asList("cbf2025", "cbfw2025")), beers.getFestivals());
+        assertEquals(2, breweriesImpl.countOf());
+    }
+
+    @Test
+    public void updatesOnlyTheCurrentFestival() throws Exception {
+        BeersImpl beers = getBeers();
+        beers.setFestival("cbf2025");
+        beers.updateFromFestivalOrCreate(aBeerFrom("beer.json", "1"));
+        beers.setFestival("cbfw2025");
+        Beer renamed = aBeerFrom("beer.json", "1");
+        renamed.setName("renamed");
+        beers.updateFromFestivalOrCreate(renamed);
+        Beer rated = beers.getFestivalBeers().get(0);
+        rated.setNumberOfStars(new StarRating(4));
+        beers.updateBeer(rated);
+
+        beers.setFestival("cbf2025");
+        assertEquals("name 1", beers.getFestivalBeers().get(0).getName());
+        assertTrue(beers.getRatedBeers().isEmpty());
+    }
+
+    @Test
+    public void listsOnlyTheCurrentFestivalsStylesAndAllergens() throws Exception {
+        BeersImpl beers = getBeers();
+        beers.setFestival("cbf2025");
+        Beer ghostShip = aBeerFrom("beer.json", "1");
+        ghostShip.setAllergens("gluten");
+        beers.updateFromFestivalOrCreate(ghostShip);
+        beers.setFestival("cbfw2025");
+        Beer winter = aBeerFrom("beer.json", "1");
+        winter.setAllergens("sulphites");
+        beers.updateFromFestivalOrCreate(winter);
+
+        beers.setFestival("cbf2025");
+        assertEquals(new TreeSet<>(Collections.singletonList("style")), beers.getAvailableStyles());
+        assertEquals(new TreeSet<>(Collections.singletonList("Gluten")), beers.getAvailableAllergens());
+    }
+
+    @Test
+    public void deletesOneFestival() throws Exception {
+        BeersImpl beers = getBeers();
+        beers.setFestival("cbf2025");
+        beers.updateFromFestivalOrCreate(aBeerFrom("beer.json", "1"));
+        beers.setFestival("cbfw2025");
+        beers.updateFromFestivalOrCreate(aBeerFrom("beer.json", "1"));
+
+        assertEquals(1, beers.deleteFestival("cbf2025"));
+
+        assertEquals(Collections.singleton("cbfw2025"), beers.getFestivals());
+        assertEquals(1, beers.getNumberOfBeers());
+        assertEquals(1, breweriesImpl.countOf());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedFestivals() throws Exception {
+        BeersImpl beers = getBeers();
+        for (String festival : Arrays.asList("cbf2023", "cbf2024", "cbfw2024", "cbf2025")) {
+            beers.setFestival(festival);
+            beers.updateFromFestivalOrCreate(aBeerFrom("beer.json", "1"));
+        }
+
+        List<String> evicted = beers.evictFestivals(Arrays.asList("cbfw2024", "cbf2023", "cbf2024"), 2);
+
+        assertEquals(Arrays.asList("cbf2023", "cbf2024"), evicted);
+        assertEquals(new TreeSet<>(Arrays.asList("cbf2025", "cbfw2024")), beers.getFestivals());
+        assertEquals(2, breweriesImpl.countOf());
+    }
+
+    @Test
+    public void searchesBreweryNamesIgnoringCase() throws Exception {
+        BeersImpl beers = getBeers();
+        Brewery brewery = new Brewery("b1", "\u00c4rger Br\u00e4u", "");
+        beers.updateFromFestivalOrCreate(new Beer("1", "Helles", 4.8f, "", "Lager", "", "keg", "", "beer", brewery));
+        beers.updateFromFestivalOrCreate(aBeerFrom("beer.json", "2"));
+
+        assertEquals("\u00e4rger br\u00e4u", beers.getFestivalBeers().get(0).getBreweryName());
+        for (String text : Arrays.asList("\u00c4RGER", "\u00e4rger", "Br\u00c4u")) {
+            BeerList list = BeerList.allBeers(beers, new BeerList.Config().withSearchText(text));
+            assertEquals(text, 1, list.getCount());
+        }
+    }
+
+    @Test
+    public void updatesBreweryNameOfExistingBeers() throws Exception {
+        BeersImpl beers = getBeers();
+        beers.updateFromFestivalOrCreate(new Beer("1", "Helles", 4.8f, "", "Lager", "", "keg", "", "beer",
+                new Brewery("b1", "Old Name", "")));
+        beers.updateFromFestivalOrCreate(new Beer("1", "Helles", 4.8f, "", "Lager", "", "keg", "", "beer",
+                new Brewery("b1", "New Name", "")));
+
+        assertEquals("new name", beers.getFestivalBeers().get(0).getBreweryName());
+    }
+
+    private Map<String, String[]> groupBy(final String group, final String... aggregates) throws Exception {
+        StringBuilder sql = new StringBuilder("SELECT ").append(group);
+        for (String aggregate : aggregates) {
+            sql.append(", ").append(aggregate);
+        }
+        sql.append(" FROM ").append(Beer.TABLE_NAME).append(" WHERE ").append(Beer.FESTIVAL_FIELD)
+                .append(" = ? GROUP BY ").append(group);
+        Map<String, String[]> rows = new HashMap<>();
+        GenericRawResults<String[]> results = beersImpl.queryRaw(sql.toString(), beersImpl.getFestival());
+        try {
+            for (String[] row : results) {
+                rows.put(row[0], row);
+            }
+        } finally {
+            results.close();
+        }
+        return rows;
+    }
+
+    @Test
+    public void statsAgreeWithTheDatabase() throws Exception {
+        BeersImpl beers = getBeers();
+        beers.setFestival("cbf2025");
+        String[] styles = {"Bitter", "IPA", "Stout", ""};
+        String[] categories = {"beer", "cider", "low-no"};
+        for (int i = 0; i < 40; i++) {
+            beers.updateFromFestivalOrCreate(new Beer(String.valueOf(i), "beer " + i, 0.5f + i * 0.37f, "",
+                    styles[i % styles.length], "Available", "cask", "", categories[i % categories.length],
+                    aBrewery()));
+        }
+        beers.rebuildSearchIndex();
+        for (Beer beer : beers.getFestivalBeers()) {
+            if (beer.getId() % 3 == 0) {
+                beer.setNumberOfStars(new StarRating((int) (beer.getId() % 5) + 1));
+                beers.updateBeer(beer);
+            }
+        }
+
+        FestivalStats stats = beers.getFestivalStats();
+
+        assertEquals(beers.getNumberOfBeers(), stats.getBeerCount());
+        assertEquals(beers.getRatedBeers().size(), stats.getRatedCount());
+        Map<String, String[]> byStyle = groupBy(Beer.STYLE_FIELD, "COUNT(*)",
+                "SUM(CASE WHEN " + Beer.RATING_FIELD + " > 0 THEN 1 ELSE 0 END)",
+                "AVG(CASE WHEN " + Beer.RATING_FIELD + " > 0 THEN " + Beer.RATING_FIELD + " * 1.0 END)");
+        byStyle.remove("");
+        assertEquals(byStyle.keySet(), stats.getStyles().keySet());
+        for (Map.Entry<String, String[]> row : byStyle.entrySet()) {
+            FestivalStats.StyleStats style = stats.getStyle(row.getKey());
+            assertEquals(Integer.parseInt(row.getValue()[1]), style.getBeerCount());
+            assertEquals(Integer.parseInt(row.getValue()[2]), style.getRatedCount());
+            assertEquals(Float.parseFloat(row.getValue()[3]), style.getAverageRating(), 0.001f);
+        }
+        Map<String, String[]> byCategory = groupBy(Beer.CATEGORY_FIELD, "COUNT(*)");
+        assertEquals(byCategory.keySet(), stats.getCategories().keySet());
+        for (Map.Entry<String, String[]> row : byCategory.entrySet()) {
+            assertEquals(Integer.parseInt(row.getValue()[1]), stats.getBeersInCategory(row.getKey()));
+        }
+        Map<String, String[]> byAbv = groupBy("CASE WHEN " + Beer.ABV_FIELD + " >= " + FestivalStats.MAX_ABV_BUCKET
+                + " THEN " + FestivalStats.MAX_ABV_BUCKET + " ELSE CAST(FLOOR(" + Beer.ABV_FIELD + ") AS INT) END",
+                "COUNT(*)");
+        for (int bucket = 0; bucket <= FestivalStats.MAX_ABV_BUCKET; bucket++) {
+            String[] row = byAbv.get(String.valueOf(bucket));
+            assertEquals(row == null ? 0 : Integer.parseInt(row[1]), stats.getBeersInAbvBucket(bucket));
+        }
+    }
 }
@@ -0,0 +1,160 @@
+package ralcock.cbf.model.dao;
+
+import org.junit.After;
+import org.junit.Test;
+import ralcock.cbf.model.Beer;
+import ralcock.cbf.model.SortOrder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static ralcock.cbf.model.BeerBuilder.aBeer;
+import static ralcock.cbf.model.BreweryBuilder.aBrewery;
+
+public class CatalogIndexesTest {
+
+    // Far longer than any build takes, but short of hanging the build.
+    private static final long TIMEOUT_SECONDS = 30;
+
+    private final ExecutorService fExecutor = Executors.newSingleThreadExecutor();
+
+    /**
+     * A catalog whose reads can be held up, to change it while a build is reading it.
+     */
+    private static final class HeldCatalog implements CatalogIndexes.Catalog {
+        final CountDownLatch fReading = new CountDownLatch(1);
+        final CountDownLatch fRelease = new CountDownLatch(1);
+        final AtomicInteger fReads = new AtomicInteger();
+        volatile List<Beer> fBeers = new ArrayList<>();
+
+        public List<Beer> getFestivalBeers() {
+            fReads.incrementAndGet();
+            List<Beer> beers = fBeers;
+            fReading.countDown();
+            try {
+                fRelease.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return beers;
+        }
+    }
+
+    @After
+    public void tearDown() {
+        fExecutor.shutdownNow();
+    }
+
+    private static Beer beer(final long id, final String name) {
+        Beer beer = aBeer().withFestivalId(Long.toString(id)).called(name)
+                .from(aBrewery().withFestivalId("b").called("Brewery")).build();
+        beer.setId(id);
+        return beer;
+    }
+
+    private Future<?> rebuild(final CatalogIndexes indexes) {
+        return fExecutor.submit(new Runnable() {
+            public void run() {
+                indexes.rebuild();
+            }
+        });
+    }
+
+    @Test
+    public void aBuildThatReadTheBeersBeforeAChangeIsNotPublished() throws Exception {
+        HeldCatalog catalog = new HeldCatalog();
+        CatalogIndexes indexes = new CatalogIndexes(catalog);
+        Future<?> rebuilt = rebuild(indexes);
+        catalog.fReading.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        indexes.invalidate();
+        catalog.fRelease.countDown();
+        rebuilt.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        assertThat(indexes.getSearchIndexes(), nullValue());
+    }
+
+    @Test
+    public void waitsForTheBuildUnderWayInsteadOfMakingItsOwn() throws Exception {
+        HeldCatalog catalog = new HeldCatalog();
+        catalog.fBeers = Arrays.asList(beer(1, "Ghost Ship"));
+        final CatalogIndexes indexes = new CatalogIndexes(catalog);
+        Future<?> rebuilt = rebuild(indexes);
+        catalog.fReading.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        final SearchIndexes[] built = new SearchIndexes[1];
+        Thread query = new Thread(new Runnable() {
+            public void run() {
+                built[0] = indexes.buildSearchIndexes();
+            }
+        });
+        query.start();
+        while (query.getState() != Thread.State.BLOCKED) {
+            Thread.yield();
+        }
+        catalog.fRelease.countDown();
+        rebuilt.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        query.join(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+
+        assertThat(catalog.fReads.get(), equalTo(1));
+        assertThat(built[0], sameInstance(indexes.getSearchIndexes()));
+    }
+
+    @Test
+    public void buildsTheSimilarityIndexOnlyWhenItIsAskedFor() {
+        HeldCatalog catalog = new HeldCatalog();
+        catalog.fRelease.countDown();
+        catalog.fBeers = Arrays.asList(beer(1, "Ghost Ship"));
+        CatalogIndexes indexes = new CatalogIndexes(catalog);
+
+        indexes.rebuild();
+        assertThat(catalog.fReads.get(), equalTo(1));
+
+        indexes.buildSimilarityIndex();
+        indexes.buildSimilarityIndex();
+        assertThat(catalog.fReads.get(), equalTo(2));
+    }
+
+    @Test
+    public void sortsWithoutBuildingTheIndexes() {
+        HeldCatalog catalog = new HeldCatalog();
+        catalog.fRelease.countDown();
+        CatalogIndexes indexes = new CatalogIndexes(catalog);
+        List<Beer> beers = Arrays.asList(beer(1, "Jaipur"), beer(2, "Broadside"), beer(3, "Ghost Ship"));
+
+        List<Beer> sorted = indexes.inOrder(beers, SortOrder.BEER_NAME_ASC);
+
+        assertThat(sorted, contains(beers.get(1), beers.get(2), beers.get(0)));
+        assertThat(catalog.fReads.get(), equalTo(0));
+        assertThat(indexes.getSearchIndexes(), nullValue());
+    }
+
+    @Test
+    public void aRatingWhileTheStatsAreCountedHasThemCountedAgain() throws Exception {
+        final HeldCatalog catalog = new HeldCatalog();
+        catalog.fBeers = Arrays.asList(beer(1, "Ghost Ship"));
+        final CatalogIndexes indexes = new CatalogIndexes(catalog);
+        Future<?> counted = fExecutor.submit(new Runnable() {
+            public void run() {
+                indexes.getFestivalStats();
+            }
+        });
+        catalog.fReading.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        indexes.beerChanged(beer(1, "Ghost Ship"));
+        catalog.fRelease.countDown();
+        counted.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        indexes.getFestivalStats();
+
+        assertThat(catalog.fReads.get(), equalTo(2));
+    }
+}
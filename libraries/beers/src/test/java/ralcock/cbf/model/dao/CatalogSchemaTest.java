@@ -0,0 +1,120 @@
+package ralcock.cbf.model.dao;
+
+import com.j256.ormlite.dao.DaoManager;
+import com.j256.ormlite.jdbc.JdbcConnectionSource;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.table.TableUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ralcock.cbf.model.Beer;
+import ralcock.cbf.model.Brewery;
+import ralcock.cbf.model.IngestCheckpoint;
+import ralcock.cbf.model.StagedProducer;
+import ralcock.cbf.model.StarRating;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static ralcock.cbf.model.BeerBuilder.aBeer;
+import static ralcock.cbf.model.BreweryBuilder.aBrewery;
+
+/**
+ * Upgrades a catalog shaped as it was when it was first kept per festival, on SQLite, which the
+ * app runs on.
+ */
+public class CatalogSchemaTest {
+
+    private ConnectionSource fConnectionSource;
+    private BeersImpl fBeers;
+
+    @Before
+    public void setUp() throws Exception {
+        fConnectionSource = new JdbcConnectionSource("jdbc:sqlite::memory:");
+        CatalogSchema.createTables(fConnectionSource);
+        fBeers = DaoManager.createDao(fConnectionSource, Beer.class);
+        BreweriesImpl breweries = DaoManager.createDao(fConnectionSource, Brewery.class);
+        fBeers.setBreweries(breweries);
+        fBeers.setFestival("cbf2025");
+
+        fBeers.updateFromFestivalOrCreate(aBeer().withFestivalId("1").called("Ghost Ship")
+                .from(aBrewery().withFestivalId("a").called("Adnams")).build());
+        fBeers.updateFromFestivalOrCreate(aBeer().withFestivalId("2").called("Jaipur")
+                .from(aBrewery().withFestivalId("b").called("\u00c9lan Brewing")).build());
+        Beer rated = fBeers.getBeerWithId(fBeers.queryForAll().get(0).getId());
+        rated.setNumberOfStars(new StarRating(4));
+        fBeers.updateBeer(rated);
+
+        // As version 36 left it: no brewery names, single-column indexes and no staging tables.
+        TableUtils.dropTable(fConnectionSource, StagedProducer.class, true);
+        TableUtils.dropTable(fConnectionSource, IngestCheckpoint.class, true);
+        fBeers.executeRaw("DROP INDEX beers_festival_brewery_name_idx");
+        fBeers.executeRaw("DROP INDEX beers_festival_rating_idx");
+        fBeers.executeRaw("ALTER TABLE beers DROP COLUMN brewery_name");
+        fBeers.executeRaw("CREATE INDEX beers_status_idx ON beers (status)");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        fConnectionSource.close();
+        DaoManager.clearCache();
+    }
+
+    private void upgrade() throws Exception {
+        CatalogSchema.addBreweryNames(fConnectionSource);
+        CatalogSchema.recreateIndexes(fConnectionSource);
+        CatalogSchema.createStagingTables(fConnectionSource);
+        // The DAO remembers where its columns were; the app only makes its DAOs after upgrading.
+        DaoManager.clearCache();
+        fBeers = DaoManager.createDao(fConnectionSource, Beer.class);
+    }
+
+    private List<String> indexes() throws Exception {
+        List<String> names = new ArrayList<>();
+        for (String[] row : fBeers.queryRaw("SELECT name FROM sqlite_master WHERE type = 'index'"
+                + " AND name NOT LIKE 'sqlite_autoindex%'").getResults()) {
+            names.add(row[0]);
+        }
+        return names;
+    }
+
+    @Test
+    public void fillsInTheBreweryNames() throws Exception {
+        upgrade();
+
+        List<String> names = new ArrayList<>();
+        for (Beer beer : fBeers.queryForAll()) {
+            names.add(beer.getBreweryName());
+        }
+        assertThat(names, containsInAnyOrder("adnams", "\u00e9lan brewing"));
+    }
+
+    @Test
+    public void keepsTheRatings() throws Exception {
+        upgrade();
+
+        List<Integer> ratings = new ArrayList<>();
+        for (Beer beer : fBeers.queryForAll()) {
+            ratings.add(beer.getRating());
+        }
+        assertThat(ratings, containsInAnyOrder(4, 0));
+    }
+
+    @Test
+    public void replacesTheOldIndexes() throws Exception {
+        upgrade();
+
+        assertThat(indexes(), hasItems("beers_festival_brewery_name_idx", "beers_festival_rating_idx"));
+        assertThat(indexes(), not(hasItem("beers_status_idx")));
+    }
+
+    @Test
+    public void createsTheStagingTables() throws Exception {
+        upgrade();
+
+        assertThat(DaoManager.createDao(fConnectionSource, StagedProducer.class).countOf(), equalTo(0L));
+        assertThat(DaoManager.createDao(fConnectionSource, IngestCheckpoint.class).countOf(), equalTo(0L));
+    }
+}
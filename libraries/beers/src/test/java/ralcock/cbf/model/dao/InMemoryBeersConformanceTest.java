@@ -0,0 +1,9 @@
+package ralcock.cbf.model.dao;
+
+public class InMemoryBeersConformanceTest extends BeersConformanceTest {
+
+    @Override
+    protected Beers createBeers() {
+        return new InMemoryBeers();
+    }
+}
@@ -0,0 +1,206 @@
+package ralcock.cbf.model.dao;
+
+import com.j256.ormlite.dao.BaseDaoImpl;
+import com.j256.ormlite.dao.DaoManager;
+import com.j256.ormlite.jdbc.JdbcConnectionSource;
+import com.j256.ormlite.stmt.QueryBuilder;
+import com.j256.ormlite.support.ConnectionSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ralcock.cbf.model.Beer;
+import ralcock.cbf.model.BeerBuilder;
+import ralcock.cbf.model.BeerRowMapper;
+import ralcock.cbf.model.Brewery;
+import ralcock.cbf.model.BreweryRowMapper;
+import ralcock.cbf.model.StarRating;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+/**
+ * Checks that the generated row mappers write and read beers and breweries as ORMLite does.
+ */
+public class MappedTableTest {
+
+    private ConnectionSource fConnectionSource;
+    private BeersImpl fBeers;
+    private BreweriesImpl fBreweries;
+    private MappedTable<Beer> fBeerTable;
+    private MappedTable<Brewery> fBreweryTable;
+    // Reads and writes beers by reflection, as BeersImpl did before it had a mapper.
+    private BaseDaoImpl<Beer, Long> fReflective;
+
+    @Before
+    public void setUp() throws Exception {
+        fConnectionSource = new JdbcConnectionSource("jdbc:sqlite::memory:");
+        CatalogSchema.createTables(fConnectionSource);
+        fBeers = DaoManager.createDao(fConnectionSource, Beer.class);
+        fBreweries = DaoManager.createDao(fConnectionSource, Brewery.class);
+        fBeerTable = new MappedTable<>(fBeers, BeerRowMapper.VALUE_COLUMNS);
+        fBreweryTable = new MappedTable<>(fBreweries, BreweryRowMapper.VALUE_COLUMNS);
+        fReflective = new BaseDaoImpl<Beer, Long>(fConnectionSource, Beer.class) {
+        };
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        fConnectionSource.close();
+        DaoManager.clearCache();
+    }
+
+    private Brewery insertBrewery() throws Exception {
+        Brewery brewery = new Brewery("b1", "Brewery", "description");
+        brewery.setFestival("cbf");
+        BreweryRowMapper.setId(brewery, fBreweryTable.insert(BreweryRowMapper.values(brewery)));
+        return brewery;
+    }
+
+    private static Beer aBeer(final String festivalId, final Brewery brewery) {
+        Beer beer = new BeerBuilder().withFestivalId(festivalId).called("Beer").withABV(4.2f).withDescription("description")
+                .withStyle("style").withStatus("status").withDispenseMethod("cask").withAllergens("gluten")
+                .fromBrewery(brewery).build();
+        beer.setFestival("cbf");
+        beer.setSource("beer.json");
+        beer.setNumberOfStars(new StarRating(3));
+        beer.setIsOnWishList(true);
+        beer.setUserComments("nice");
+        return beer;
+    }
+
+    private long insert(final Beer beer) throws Exception {
+        long id = fBeerTable.insert(BeerRowMapper.values(beer));
+        beer.setId(id);
+        return id;
+    }
+
+    @Test
+    public void readsWhatORMLiteWrote() throws Exception {
+        Brewery brewery = insertBrewery();
+        Beer beer = aBeer("1", brewery);
+        beer.setBreweryName("brewery");
+        fReflective.create(beer);
+
+        List<Beer> read = fBeerTable.query(fBeers.queryBuilder().prepare(),
+                new BeerRowMapper(Collections.singletonMap(brewery.getId(), brewery)));
+
+        assertThat(read, contains(beer));
+        assertThat(read.get(0).getId(), equalTo(beer.getId()));
+        assertThat(read.get(0).getFestival(), equalTo("cbf"));
+        assertThat(read.get(0).getSource(), equalTo("beer.json"));
+    }
+
+    @Test
+    public void writesWhatORMLiteReads() throws Exception {
+        Brewery brewery = insertBrewery();
+        Beer beer = aBeer("1", brewery);
+        long id = insert(beer);
+
+        Beer read = fReflective.queryForId(id);
+
+        assertThat(read, equalTo(beer));
+        assertThat(read.getBrewery().getId(), equalTo(brewery.getId()));
+        assertThat(read.getFestival(), equalTo("cbf"));
+        assertThat(read.getBreweryName(), equalTo("brewery"));
+    }
+
+    @Test
+    public void updatesEveryColumnById() throws Exception {
+        Brewery brewery = insertBrewery();
+        Beer beer = aBeer("1", brewery);
+        insert(beer);
+        Beer other = aBeer("2", brewery);
+        insert(other);
+
+        beer.setNumberOfStars(new StarRating(5));
+        beer.setIsOnWishList(false);
+        beer.setUserComments(null);
+
+        assertThat(fBeerTable.update(BeerRowMapper.values(beer), beer.getId()), equalTo(1));
+        assertThat(fReflective.queryForId(beer.getId()), equalTo(beer));
+        assertThat(fReflective.queryForId(other.getId()), equalTo(other));
+    }
+
+    @Test
+    public void looksUpBreweriesInTheMapGiven() throws Exception {
+        Brewery brewery = insertBrewery();
+        insert(aBeer("1", brewery));
+
+        Map<Long, Brewery> breweries = Collections.singletonMap(brewery.getId(), brewery);
+        Beer read = fBeerTable.query(fBeers.queryBuilder().prepare(), new BeerRowMapper(breweries)).get(0);
+
+        assertThat(read.getBrewery(), sameInstance(brewery));
+    }
+
+    @Test
+    public void leavesBreweriesNotInTheMapWithJustTheirId() throws Exception {
+        Brewery brewery = insertBrewery();
+        insert(aBeer("1", brewery));
+
+        Map<Long, Brewery> none = Collections.emptyMap();
+        Beer read = fBeerTable.query(fBeers.queryBuilder().prepare(), new BeerRowMapper(none)).get(0);
+
+        assertThat(read.getBrewery().getId(), equalTo(brewery.getId()));
+        assertThat(read.getBrewery().getName(), nullValue());
+    }
+
+    @Test
+    public void readsANullBreweryAsNull() throws Exception {
+        insert(aBeer("1", null));
+
+        Map<Long, Brewery> none = Collections.emptyMap();
+        Beer read = fBeerTable.query(fBeers.queryBuilder().prepare(), new BeerRowMapper(none)).get(0);
+
+        assertThat(read.getBrewery(), nullValue());
+    }
+
+    @Test
+    public void skipsColumnsTheQueryDidNotSelect() throws Exception {
+        Beer beer = aBeer("1", insertBrewery());
+        insert(beer);
+
+        QueryBuilder<Beer, Long> qb = fBeers.queryBuilder();
+        qb.selectColumns(Beer.ID_FIELD, Beer.FESTIVAL_ID_FIELD);
+        Map<Long, Brewery> none = Collections.emptyMap();
+        Beer read = fBeerTable.query(qb.prepare(), new BeerRowMapper(none)).get(0);
+
+        assertThat(read.getId(), equalTo(beer.getId()));
+        assertThat(read.getFestivalID(), equalTo("1"));
+        assertThat(read.getName(), nullValue());
+        assertThat(read.getBrewery(), nullValue());
+        assertThat(read.getRating(), equalTo(0));
+    }
+
+    @Test
+    public void sharesOneCopyOfPooledStrings() throws Exception {
+        Brewery brewery = insertBrewery();
+        insert(aBeer("1", brewery));
+        insert(aBeer("2", brewery));
+
+        Map<Long, Brewery> none = Collections.emptyMap();
+        List<Beer> beers = fBeerTable.query(fBeers.queryBuilder().prepare(), new BeerRowMapper(none));
+
+        assertThat(beers.get(1).getStyle(), sameInstance(beers.get(0).getStyle()));
+        assertThat(beers.get(1).getStatus(), sameInstance(beers.get(0).getStatus()));
+        assertThat(beers.get(1).getName(), not(sameInstance(beers.get(0).getName())));
+    }
+
+    @Test
+    public void readsEveryRow() throws Exception {
+        Brewery brewery = insertBrewery();
+        for (int i = 0; i < 10; i++) {
+            insert(aBeer(String.valueOf(i), brewery));
+        }
+
+        List<Brewery> breweries = fBreweryTable.query(fBreweries.queryBuilder().prepare(), new BreweryRowMapper());
+        Map<Long, Brewery> none = Collections.emptyMap();
+        List<Beer> beers = fBeerTable.query(fBeers.queryBuilder().prepare(), new BeerRowMapper(none));
+
+        assertThat(breweries, contains(brewery));
+        assertThat(beers, hasSize(10));
+    }
+}
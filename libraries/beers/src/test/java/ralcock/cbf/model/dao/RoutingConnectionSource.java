@@ -0,0 +1,109 @@
+package ralcock.cbf.model.dao;
+
+import com.j256.ormlite.db.DatabaseType;
+import com.j256.ormlite.logger.Logger;
+import com.j256.ormlite.logger.LoggerFactory;
+import com.j256.ormlite.support.BaseConnectionSource;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.support.DatabaseConnection;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Sends writes to a single writer connection and reads to a pool of reader connections, so that
+ * with the database in write-ahead-log mode a read is not held up by a write transaction and
+ * sees the database as it was last committed. A thread that has the writer, in a transaction,
+ * reads through it too, so it sees its own writes.
+ * <p>
+ * The writer is used by one thread at a time, from when a connection is got until it is
+ * released; other writers wait for it. This is how SQLite on Android shares a database opened
+ * with write-ahead logging, where its primary connection is the writer. The app gets this from
+ * Android; the tests use it to run the DAOs the same way on JDBC.
+ */
+final class RoutingConnectionSource extends BaseConnectionSource {
+
+    private static final Logger logger = LoggerFactory.getLogger(RoutingConnectionSource.class);
+
+    private final ConnectionSource fWriter;
+    private final ConnectionSource fReaders;
+    private final ReentrantLock fWriterLock = new ReentrantLock();
+    private DatabaseConnection fWriterConnection;
+
+    /**
+     * @param writer  the single connection writes are made through
+     * @param readers the pool read connections are taken from
+     */
+    RoutingConnectionSource(final ConnectionSource writer, final ConnectionSource readers) {
+        fWriter = writer;
+        fReaders = readers;
+    }
+
+    public DatabaseConnection getReadOnlyConnection(final String tableName) throws SQLException {
+        if (getSavedConnection() != null || fWriterLock.isHeldByCurrentThread()) {
+            return getReadWriteConnection(tableName);
+        }
+        return fReaders.getReadOnlyConnection(tableName);
+    }
+
+    public DatabaseConnection getReadWriteConnection(final String tableName) throws SQLException {
+        fWriterLock.lock();
+        try {
+            DatabaseConnection connection = fWriter.getReadWriteConnection(tableName);
+            fWriterConnection = connection;
+            return connection;
+        } catch (SQLException e) {
+            fWriterLock.unlock();
+            throw e;
+        }
+    }
+
+    public void releaseConnection(final DatabaseConnection connection) throws SQLException {
+        if (fWriterLock.isHeldByCurrentThread() && connection == fWriterConnection) {
+            try {
+                fWriter.releaseConnection(connection);
+            } finally {
+                fWriterLock.unlock();
+            }
+        } else {
+            fReaders.releaseConnection(connection);
+        }
+    }
+
+    public boolean saveSpecialConnection(final DatabaseConnection connection) throws SQLException {
+        boolean saved = saveSpecial(connection);
+        fWriter.saveSpecialConnection(connection);
+        return saved;
+    }
+
+    public void clearSpecialConnection(final DatabaseConnection connection) {
+        clearSpecial(connection, logger);
+        fWriter.clearSpecialConnection(connection);
+    }
+
+    public void closeQuietly() {
+        fReaders.closeQuietly();
+        fWriter.closeQuietly();
+    }
+
+    public void close() throws IOException {
+        try {
+            fReaders.close();
+        } finally {
+            fWriter.close();
+        }
+    }
+
+    public DatabaseType getDatabaseType() {
+        return fWriter.getDatabaseType();
+    }
+
+    public boolean isOpen(final String tableName) {
+        return fWriter.isOpen(tableName) && fReaders.isOpen(tableName);
+    }
+
+    public boolean isSingleConnection(final String tableName) {
+        return false;
+    }
+}
@@ -0,0 +1,151 @@
+package ralcock.cbf.model.dao;
+
+import com.j256.ormlite.dao.DaoManager;
+import com.j256.ormlite.jdbc.JdbcConnectionSource;
+import com.j256.ormlite.jdbc.JdbcPooledConnectionSource;
+import com.j256.ormlite.misc.TransactionManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ralcock.cbf.model.Beer;
+import ralcock.cbf.model.Brewery;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static ralcock.cbf.model.BeerBuilder.aBeer;
+import static ralcock.cbf.model.BreweryBuilder.aBrewery;
+
+/**
+ * Checks that reads go on while beers are written, on SQLite in write-ahead-log mode as the app
+ * runs it.
+ */
+public class RoutingConnectionSourceTest {
+
+    private static final int INGEST_SIZE = 10000;
+
+    // Far longer than any read takes, even on a slow machine, but short of hanging the build.
+    private static final long READ_TIMEOUT_SECONDS = 30;
+
+    @Rule
+    public final TemporaryFolder fFolder = new TemporaryFolder();
+
+    private RoutingConnectionSource fConnectionSource;
+    private BeersImpl fBeers;
+    private final ExecutorService fIngestExecutor = Executors.newSingleThreadExecutor();
+    private final ExecutorService fReadExecutor = Executors.newSingleThreadExecutor();
+
+    @Before
+    public void setUp() throws Exception {
+        String url = "jdbc:sqlite:" + fFolder.newFile("beers.db").getPath() + "?journal_mode=WAL";
+        fConnectionSource = new RoutingConnectionSource(new JdbcConnectionSource(url), new JdbcPooledConnectionSource(url));
+        CatalogSchema.createTables(fConnectionSource);
+        fBeers = DaoManager.createDao(fConnectionSource, Beer.class);
+        BreweriesImpl breweries = DaoManager.createDao(fConnectionSource, Brewery.class);
+        fBeers.setBreweries(breweries);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        fIngestExecutor.shutdownNow();
+        fReadExecutor.shutdownNow();
+        fConnectionSource.close();
+        DaoManager.clearCache();
+    }
+
+    private void addBeers(final int from, final int to) {
+        for (int n = from; n < to; n++) {
+            fBeers.updateFromFestivalOrCreate(aBeer().withFestivalId("beer" + n).called("Beer " + n)
+                    .from(aBrewery().withFestivalId("brewery" + n % 100).called("Brewery " + n % 100)).build());
+        }
+    }
+
+    /**
+     * Adds beers in one transaction, as an update does, on another thread, and holds the
+     * transaction open, its beers written, until told to finish.
+     */
+    private Future<Void> ingest(final int from, final int to, final CountDownLatch written,
+                                final CountDownLatch finish) {
+        return fIngestExecutor.submit(new Callable<Void>() {
+            public Void call() throws Exception {
+                return TransactionManager.callInTransaction(fConnectionSource, new Callable<Void>() {
+                    public Void call() throws Exception {
+                        addBeers(from, to);
+                        written.countDown();
+                        finish.await();
+                        return null;
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Counts the beers on a thread of its own, failing if the count is held up for long.
+     */
+    private long read() throws Exception {
+        return fReadExecutor.submit(new Callable<Long>() {
+            public Long call() {
+                return fBeers.getNumberOfBeers();
+            }
+        }).get(READ_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void readsWhatWasCommittedWhileATransactionIsOpen() throws Exception {
+        addBeers(0, 1);
+        CountDownLatch written = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+
+        Future<Void> ingest = ingest(1, 10, written, finish);
+        written.await();
+        long during = read();
+        finish.countDown();
+        ingest.get(READ_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        assertThat(during, equalTo(1L));
+        assertThat(read(), equalTo(10L));
+    }
+
+    @Test
+    public void readsItsOwnWritesInATransaction() throws Exception {
+        long count = TransactionManager.callInTransaction(fConnectionSource, new Callable<Long>() {
+            public Long call() {
+                addBeers(0, 5);
+                return fBeers.getNumberOfBeers();
+            }
+        });
+
+        assertThat(count, equalTo(5L));
+    }
+
+    @Test
+    public void readsAreNotHeldUpByALargeIngest() throws Exception {
+        addBeers(0, 500);
+        CountDownLatch written = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+
+        Future<Void> ingest = ingest(500, 500 + INGEST_SIZE, written, finish);
+        written.await();
+        List<Long> during = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            during.add(read());
+        }
+        finish.countDown();
+        ingest.get(READ_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        // None of the ingest until it commits, and then all of it.
+        assertThat(during, everyItem(equalTo(500L)));
+        assertThat(read(), equalTo(500L + INGEST_SIZE));
+    }
+}
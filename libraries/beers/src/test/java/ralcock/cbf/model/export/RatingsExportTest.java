@@ -0,0 +1,153 @@
+package ralcock.cbf.model.export;
+
+import com.j256.ormlite.dao.DaoManager;
+import com.j256.ormlite.jdbc.JdbcConnectionSource;
+import com.j256.ormlite.support.ConnectionSource;
+import com.j256.ormlite.table.TableUtils;
+import org.json.JSONArray;
+import org.junit.Test;
+import ralcock.cbf.model.Beer;
+import ralcock.cbf.model.Brewery;
+import ralcock.cbf.model.StarRating;
+import ralcock.cbf.model.dao.BeersImpl;
+import ralcock.cbf.model.dao.BreweriesImpl;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static ralcock.cbf.model.BeerBuilder.aBeer;
+import static ralcock.cbf.model.BreweryBuilder.aBrewery;
+
+public class RatingsExportTest
+{
+    private static Beer rated(final long id, final String name, final String brewery, final int rating) {
+        Beer beer = aBeer().called(name).from(aBrewery().called(brewery)).withStyle("IPA").build();
+        beer.setId(id);
+        beer.setNumberOfStars(new StarRating(rating));
+        return beer;
+    }
+
+    /**
+     * Serves pages from a list, recording the page requests made.
+     */
+    private static final class ListSource implements RatingsExport.Source {
+        private final List<Beer> fBeers;
+        private final List<Long> fRequests = new ArrayList<>();
+
+        ListSource(final Beer... beers) {
+            fBeers = Arrays.asList(beers);
+        }
+
+        public List<Beer> page(final long afterId, final int limit) {
+            fRequests.add(afterId);
+            List<Beer> page = new ArrayList<>();
+            for (Beer beer : fBeers) {
+                if (beer.getId() > afterId && page.size() < limit) {
+                    page.add(beer);
+                }
+            }
+            return page;
+        }
+    }
+
+    private static String export(final ExportFormat format, final Beer... beers) throws Exception {
+        StringWriter out = new StringWriter();
+        new RatingsExport(new ListSource(beers), 10).writeTo(format, out);
+        return out.toString();
+    }
+
+    @Test
+    public void writesCsv() throws Exception {
+        Beer beer = rated(1, "Citra", "Oakham", 4);
+        beer.setIsOnWishList(true);
+        beer.setUserComments("Lovely");
+        assertThat(export(new CsvExportFormat(), beer),
+                equalTo("Beer,Brewery,Style,Rating,Bookmarked,Comments\r\n"
+                        + "\"Citra\",\"Oakham\",\"IPA\",4,true,\"Lovely\"\r\n"));
+    }
+
+    @Test
+    public void escapesCsvQuotesCommasAndNewlines() throws Exception {
+        Beer beer = rated(1, "The \"Quoted\" Beer", "Brewery, Inc.", 3);
+        beer.setUserComments("two\nlines");
+        String csv = export(new CsvExportFormat(), beer);
+        assertThat(csv, endsWith("\"The \"\"Quoted\"\" Beer\",\"Brewery, Inc.\",\"IPA\",3,false,\"two\nlines\"\r\n"));
+    }
+
+    @Test
+    public void emptyCsvHasOnlyHeader() throws Exception {
+        assertThat(export(new CsvExportFormat()), equalTo("Beer,Brewery,Style,Rating,Bookmarked,Comments\r\n"));
+    }
+
+    @Test
+    public void writesValidJson() throws Exception {
+        Beer first = rated(1, "Say \"hi\"", "Adnams", 5);
+        Beer second = rated(2, "Jaipur", "Thornbridge", 2);
+        second.setUserComments("back\\slash\ttab\u0001");
+        JSONArray json = new JSONArray(export(new JsonExportFormat(), first, second));
+        assertThat(json.length(), equalTo(2));
+        assertThat(json.getJSONObject(0).getString("name"), equalTo("Say \"hi\""));
+        assertThat(json.getJSONObject(0).getInt("rating"), equalTo(5));
+        assertThat(json.getJSONObject(1).getString("brewery"), equalTo("Thornbridge"));
+        assertThat(json.getJSONObject(1).getString("comments"), equalTo("back\\slash\ttab\u0001"));
+        assertThat(json.getJSONObject(1).getBoolean("bookmarked"), is(false));
+    }
+
+    @Test
+    public void emptyJsonIsEmptyArray() throws Exception {
+        assertThat(new JSONArray(export(new JsonExportFormat())).length(), equalTo(0));
+    }
+
+    @Test
+    public void pagesByLastId() throws Exception {
+        ListSource source = new ListSource(
+                rated(3, "a", "x", 1), rated(5, "b", "x", 1), rated(8, "c", "x", 1),
+                rated(9, "d", "x", 1), rated(12, "e", "x", 1));
+        int count = new RatingsExport(source, 2).writeTo(new CsvExportFormat(), new StringWriter());
+        assertThat(count, equalTo(5));
+        assertThat(source.fRequests, contains(0L, 5L, 9L));
+    }
+
+    @Test
+    public void exportsOnlyRatedOrBookmarkedBeersFromDatabase() throws Exception {
+        ConnectionSource connectionSource = new JdbcConnectionSource("jdbc:h2:mem:export");
+        try {
+            TableUtils.createTable(connectionSource, Beer.class);
+            TableUtils.createTable(connectionSource, Brewery.class);
+            BeersImpl beers = DaoManager.createDao(connectionSource, Beer.class);
+            BreweriesImpl breweries = DaoManager.createDao(connectionSource, Brewery.class);
+            beers.setBreweries(breweries);
+
+            for (int i = 0; i < 7; i++) {
+                Beer beer = aBeer().withFestivalId("f" + i).called("Beer " + i)
+                        .from(aBrewery().withFestivalId("b" + i).called("Brewery " + i)).build();
+                beers.updateFromFestivalOrCreate(beer);
+                if (i % 3 == 0) {
+                    beer.setNumberOfStars(new StarRating(i % 5 + 1));
+                } else if (i % 3 == 1) {
+                    beer.setIsOnWishList(true);
+                }
+                beers.updateBeer(beer);
+            }
+
+            StringWriter out = new StringWriter();
+            int count = new RatingsExport(new RatingsExport.Source() {
+                public List<Beer> page(final long afterId, final int limit) {
+                    return beers.ratedOrBookmarkedBeers(afterId, limit);
+                }
+            }, 2).writeTo(new CsvExportFormat(), out);
+
+            assertThat(count, equalTo(5));
+            assertThat(out.toString(), containsString("\"Beer 6\",\"Brewery 6\""));
+            assertThat(out.toString(), not(containsString("\"Beer 2\"")));
+        } finally {
+            TableUtils.dropTable(connectionSource, Beer.class, true);
+            TableUtils.dropTable(connectionSource, Brewery.class, true);
+            connectionSource.close();
+        }
+    }
+}
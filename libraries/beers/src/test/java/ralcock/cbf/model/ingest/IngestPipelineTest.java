@@ -0,0 +1,340 @@
+package ralcock.cbf.model.ingest;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+import ralcock.cbf.model.Beer;
+import ralcock.cbf.model.JsonBeerList;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class IngestPipelineTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // Small enough that a test feed is many chunks and batches.
+    private final IngestPipeline fPipeline = new IngestPipeline(256, 2, 4, 2);
+
+    private static String feed(final int producers, final int productsEach) {
+        StringBuilder json = new StringBuilder("{\"timestamp\": \"2025-05-24T00:01:00Z\", \"producers\": [");
+        for (int p = 0; p < producers; p++) {
+            if (p > 0) {
+                json.append(',');
+            }
+            json.append("{\"id\": \"p").append(p).append("\", \"name\": \"Brewery ").append(p)
+                    .append("\", \"notes\": \"\", \"products\": [");
+            for (int i = 0; i < productsEach; i++) {
+                if (i > 0) {
+                    json.append(',');
+                }
+                json.append("{\"id\": \"p").append(p).append('-').append(i)
+                        .append("\", \"name\": \"Beer ").append(i)
+                        .append("\", \"abv\": 4.5, \"style\": \"Bitter\", \"status_text\": \"Plenty left\"}");
+            }
+            json.append("]}");
+        }
+        return json.append("]}").toString();
+    }
+
+    private static List<String> festivalIds(final int producers, final int productsEach) {
+        List<String> ids = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            for (int i = 0; i < productsEach; i++) {
+                ids.add("p" + p + "-" + i);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Serves a feed a few bytes at a time with a pause before each read, as a slow network does,
+     * recording how much has been read and when the end was reached.
+     */
+    private static final class ThrottledInputStream extends InputStream {
+        private final byte[] fContent;
+        private final int fBytesPerRead;
+        private final long fPauseMillis;
+        private final int fFailAt;
+        private volatile int fPosition;
+        private volatile long fEndNanos;
+        private final CountDownLatch fClosed = new CountDownLatch(1);
+
+        ThrottledInputStream(final String content, final int bytesPerRead, final long pauseMillis) {
+            this(content, bytesPerRead, pauseMillis, Integer.MAX_VALUE);
+        }
+
+        ThrottledInputStream(final String content, final int bytesPerRead, final long pauseMillis, final int failAt) {
+            fContent = content.getBytes(UTF_8);
+            fBytesPerRead = bytesPerRead;
+            fPauseMillis = pauseMillis;
+            fFailAt = failAt;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            try {
+                Thread.sleep(fPauseMillis);
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException();
+            }
+            if (fPosition >= fFailAt) {
+                throw new IOException("Connection reset");
+            }
+            if (fPosition == fContent.length) {
+                if (fEndNanos == 0) {
+                    fEndNanos = System.nanoTime();
+                }
+                return -1;
+            }
+            final int n = Math.min(Math.min(len, fBytesPerRead), fContent.length - fPosition);
+            System.arraycopy(fContent, fPosition, b, off, n);
+            fPosition += n;
+            return n;
+        }
+
+        @Override
+        public void close() {
+            fClosed.countDown();
+        }
+
+        int getPosition() {
+            return fPosition;
+        }
+
+        long getEndNanos() {
+            return fEndNanos;
+        }
+
+        boolean awaitClosed() throws InterruptedException {
+            return fClosed.await(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private static final class TestFeed implements IngestPipeline.Feed {
+        private final String fName;
+        private final InputStream fInputStream;
+
+        TestFeed(final String name, final InputStream inputStream) {
+            fName = name;
+            fInputStream = inputStream;
+        }
+
+        public String getName() {
+            return fName;
+        }
+
+        public InputStream open() {
+            return fInputStream;
+        }
+
+        public String getDigest() {
+            return "digest-" + fName;
+        }
+    }
+
+    /**
+     * Records what it is given, and when.
+     */
+    private static class RecordingWriter implements IngestPipeline.Writer {
+        private final boolean fMustIngest;
+        private final boolean fHasChanged;
+        final List<String> fWritten = Collections.synchronizedList(new ArrayList<String>());
+        final List<String> fEnded = Collections.synchronizedList(new ArrayList<String>());
+        final List<Exception> fFailures = Collections.synchronizedList(new ArrayList<Exception>());
+        final List<Integer> fPositions = Collections.synchronizedList(new ArrayList<Integer>());
+        volatile long fFirstWriteNanos;
+
+        RecordingWriter(final boolean mustIngest, final boolean hasChanged) {
+            fMustIngest = mustIngest;
+            fHasChanged = hasChanged;
+        }
+
+        public boolean mustIngest(final String feed) {
+            return fMustIngest;
+        }
+
+        public boolean hasChanged(final String feed, final String digest) {
+            return fHasChanged;
+        }
+
+        public void write(final String feed, final IngestPipeline.Producer producer) {
+            if (fFirstWriteNanos == 0) {
+                fFirstWriteNanos = System.nanoTime();
+            }
+            try {
+                for (Beer beer : JsonBeerList.producerBeers(new JSONObject(producer.getJson()))) {
+                    fWritten.add(beer.getFestivalID());
+                }
+            } catch (JSONException e) {
+                throw new AssertionError(e);
+            }
+            fPositions.add(producer.getPosition());
+        }
+
+        public void endFeed(final String feed, final String digest) {
+            fEnded.add(feed + ":" + digest);
+        }
+
+        public void failed(final String feed, final Exception e) {
+            fEnded.add(feed + ":failed");
+            fFailures.add(e);
+        }
+    }
+
+    @Test
+    public void writesBeersWhileTheFeedIsStillDownloading() throws Exception {
+        ThrottledInputStream stream = new ThrottledInputStream(feed(40, 3), 128, 2);
+        RecordingWriter writer = new RecordingWriter(true, false);
+
+        IngestPipeline.Metrics metrics = fPipeline.run(
+                Collections.singletonList(new TestFeed("beer.json", stream)), writer);
+
+        assertThat(writer.fWritten, equalTo(festivalIds(40, 3)));
+        assertThat(writer.fEnded, contains("beer.json:digest-beer.json"));
+        assertThat(writer.fFirstWriteNanos, lessThan(stream.getEndNanos()));
+        assertThat(stream.awaitClosed(), is(true));
+
+        assertThat(metrics.getFetch().getItems(), equalTo((long) feed(40, 3).getBytes(UTF_8).length));
+        assertThat(metrics.getParse().getItems(), equalTo(40L));
+        assertThat(metrics.getWrite().getItems(), equalTo(40L));
+        // The download is the bottleneck, so the later stages spend most of their time waiting for it.
+        assertThat(metrics.getFetch().getWaitingNanos(), greaterThan(0L));
+        assertThat(metrics.getWrite().getWaitingNanos(), greaterThan(metrics.getWrite().getBusyNanos()));
+    }
+
+    @Test
+    public void holdsBeersUntilTheFeedIsKnownToHaveChanged() throws Exception {
+        ThrottledInputStream stream = new ThrottledInputStream(feed(10, 2), 128, 1);
+        RecordingWriter writer = new RecordingWriter(false, true);
+
+        fPipeline.run(Collections.singletonList(new TestFeed("beer.json", stream)), writer);
+
+        assertThat(writer.fWritten, equalTo(festivalIds(10, 2)));
+        assertThat(writer.fEnded, contains("beer.json:digest-beer.json"));
+        assertThat(writer.fFirstWriteNanos, greaterThan(stream.getEndNanos()));
+    }
+
+    @Test
+    public void writesNothingFromAnUnchangedFeed() throws Exception {
+        RecordingWriter writer = new RecordingWriter(false, false);
+
+        IngestPipeline.Metrics metrics = fPipeline.run(Collections.singletonList(
+                new TestFeed("beer.json", new ByteArrayInputStream(feed(10, 2).getBytes(UTF_8)))), writer);
+
+        assertThat(writer.fWritten, empty());
+        assertThat(writer.fEnded, empty());
+        assertThat(metrics.getParse().getItems(), equalTo(10L));
+    }
+
+    @Test
+    public void blocksTheDownloadWhileTheWriterIsBehind() throws Exception {
+        final String content = feed(2000, 2);
+        final ThrottledInputStream stream = new ThrottledInputStream(content, 4096, 0);
+        final CountDownLatch release = new CountDownLatch(1);
+        final int[] readWhileBlocked = new int[1];
+        RecordingWriter writer = new RecordingWriter(true, false) {
+            @Override
+            public void write(final String feed, final IngestPipeline.Producer producer) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                super.write(feed, producer);
+            }
+        };
+        Thread releaser = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    Thread.sleep(500);
+                    readWhileBlocked[0] = stream.getPosition();
+                } catch (InterruptedException e) {
+                    readWhileBlocked[0] = -1;
+                } finally {
+                    release.countDown();
+                }
+            }
+        });
+        releaser.start();
+
+        fPipeline.run(Collections.singletonList(new TestFeed("beer.json", stream)), writer);
+        releaser.join();
+
+        // Bounded by the queues, and what the parser's reader buffers.
+        assertThat(content.length(), greaterThan(128 * 1024));
+        assertThat(readWhileBlocked[0], allOf(greaterThan(0), lessThan(64 * 1024)));
+        assertThat(writer.fWritten.size(), equalTo(4000));
+    }
+
+    @Test
+    public void carriesOnAfterAFeedFailsToDownload() throws Exception {
+        ThrottledInputStream broken = new ThrottledInputStream(feed(10, 2), 128, 0, 600);
+        RecordingWriter writer = new RecordingWriter(false, true);
+
+        fPipeline.run(Arrays.asList(
+                new TestFeed("beer.json", broken),
+                new TestFeed("low-no.json", new ByteArrayInputStream(feed(1, 2).getBytes(UTF_8)))), writer);
+
+        assertThat(writer.fEnded, contains("beer.json:failed", "low-no.json:digest-low-no.json"));
+        assertThat(writer.fFailures.get(0), instanceOf(IOException.class));
+        assertThat(writer.fFailures.get(0).getMessage(), equalTo("Connection reset"));
+        assertThat(writer.fWritten, equalTo(festivalIds(1, 2)));
+        // Positions are within each feed.
+        assertThat(writer.fPositions, contains(0));
+        assertThat(broken.awaitClosed(), is(true));
+    }
+
+    @Test
+    public void carriesOnAfterAFeedFailsToParse() throws Exception {
+        String truncated = feed(10, 2).substring(0, 500);
+        RecordingWriter writer = new RecordingWriter(false, true);
+
+        fPipeline.run(Arrays.asList(
+                new TestFeed("beer.json", new ByteArrayInputStream(truncated.getBytes(UTF_8))),
+                new TestFeed("low-no.json", new ByteArrayInputStream(feed(1, 2).getBytes(UTF_8)))), writer);
+
+        assertThat(writer.fEnded, contains("beer.json:failed", "low-no.json:digest-low-no.json"));
+        assertThat(writer.fFailures.get(0), instanceOf(JSONException.class));
+        assertThat(writer.fWritten, equalTo(festivalIds(1, 2)));
+    }
+
+    @Test
+    public void stopsWhenTheWriterFails() throws Exception {
+        ThrottledInputStream stream = new ThrottledInputStream(feed(2000, 2), 256, 1);
+        RecordingWriter writer = new RecordingWriter(true, false) {
+            @Override
+            public void write(final String feed, final IngestPipeline.Producer producer) {
+                throw new IllegalStateException("Disk full");
+            }
+        };
+
+        try {
+            fPipeline.run(Collections.singletonList(new TestFeed("beer.json", stream)), writer);
+            throw new AssertionError("Expected the writer's exception");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), equalTo("Disk full"));
+        }
+
+        assertThat(stream.awaitClosed(), is(true));
+        assertThat(stream.getEndNanos(), equalTo(0L));
+    }
+}
@@ -0,0 +1,102 @@
+package ralcock.cbf.model.ingest;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class ProducerReaderTest {
+
+    /**
+     * Hands out the text a character at a time, as a slow download might.
+     */
+    private static final class TrickleReader extends Reader {
+        private final String fText;
+        private int fPosition;
+
+        TrickleReader(final String text) {
+            fText = text;
+        }
+
+        @Override
+        public int read(final char[] cbuf, final int off, final int len) {
+            if (fPosition == fText.length()) {
+                return -1;
+            }
+            cbuf[off] = fText.charAt(fPosition++);
+            return 1;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static List<String> producerNames(final Reader reader) throws IOException, JSONException {
+        ProducerReader producers = new ProducerReader(reader);
+        List<String> names = new ArrayList<>();
+        String producer;
+        while ((producer = producers.next()) != null) {
+            names.add(new JSONObject(producer).getString("name"));
+        }
+        return names;
+    }
+
+    @Test
+    public void readsEachProducer() throws Exception {
+        String json = "{\"timestamp\": \"2025-05-24\", \"producers\": ["
+                + "{\"id\": \"1\", \"name\": \"Adnams\", \"products\": [{\"id\": \"a\"}]},"
+                + "{\"id\": \"2\", \"name\": \"Oakham\", \"products\": []}"
+                + "]}";
+
+        assertThat(producerNames(new TrickleReader(json)), contains("Adnams", "Oakham"));
+    }
+
+    @Test
+    public void skipsOtherMembers() throws Exception {
+        String json = "{\"meta\": {\"producers\": [{\"name\": \"Nested\"}]}, \"list\": [[1], {\"a\": 2}],"
+                + " \"note\": \"producers\", \"producers\": [{\"name\": \"Adnams\"}], \"after\": [3]}";
+
+        assertThat(producerNames(new StringReader(json)), contains("Adnams"));
+    }
+
+    @Test
+    public void ignoresBracesAndQuotesInStrings() throws Exception {
+        String json = "{\"producers\": [{\"name\": \"Br}ew \\\"[Dog]\\\" {\\\\\"}, {\"name\": \"Oakham\"}]}";
+
+        assertThat(producerNames(new TrickleReader(json)), contains("Br}ew \"[Dog]\" {\\", "Oakham"));
+    }
+
+    @Test
+    public void readsAnEmptyList() throws Exception {
+        assertThat(producerNames(new StringReader("{\"producers\": []}")), empty());
+    }
+
+    @Test(expected = JSONException.class)
+    public void failsWithoutProducers() throws Exception {
+        producerNames(new StringReader("{\"brewers\": []}"));
+    }
+
+    @Test(expected = JSONException.class)
+    public void failsOnTruncatedFeed() throws Exception {
+        producerNames(new StringReader("{\"producers\": [{\"name\": \"Adnams\"}, {\"name\": \"Oak"));
+    }
+
+    @Test(expected = JSONException.class)
+    public void failsOnProducerThatIsNotAnObject() throws Exception {
+        producerNames(new StringReader("{\"producers\": [\"Adnams\"]}"));
+    }
+
+    @Test(expected = JSONException.class)
+    public void failsOnFeedThatIsNotAnObject() throws Exception {
+        producerNames(new StringReader("[{\"producers\": []}]"));
+    }
+}
@@ -0,0 +1,260 @@
+package ralcock.cbf.model.ingest;
+
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.dao.DaoManager;
+import com.j256.ormlite.jdbc.JdbcConnectionSource;
+import com.j256.ormlite.support.ConnectionSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ralcock.cbf.model.Beer;
+import ralcock.cbf.model.Brewery;
+import ralcock.cbf.model.IngestCheckpoint;
+import ralcock.cbf.model.StagedProducer;
+import ralcock.cbf.model.dao.BeersImpl;
+import ralcock.cbf.model.dao.BreweriesImpl;
+import ralcock.cbf.model.dao.CatalogSchema;
+import ralcock.cbf.model.dao.StagingImpl;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class StagingWriterTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final IngestPipeline fPipeline = new IngestPipeline(256, 2, 4, 2);
+
+    private ConnectionSource fConnectionSource;
+    private BeersImpl fBeers;
+    private StagingImpl fStaging;
+    private final Map<String, String> fDigests = new HashMap<>();
+    private final List<String> fProgress = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        fConnectionSource = new JdbcConnectionSource("jdbc:h2:mem:staging");
+        CatalogSchema.createTables(fConnectionSource);
+        fBeers = DaoManager.createDao(fConnectionSource, Beer.class);
+        BreweriesImpl breweries = DaoManager.createDao(fConnectionSource, Brewery.class);
+        fBeers.setBreweries(breweries);
+        fStaging = DaoManager.createDao(fConnectionSource, StagedProducer.class);
+        Dao<IngestCheckpoint, Long> checkpoints = DaoManager.createDao(fConnectionSource, IngestCheckpoint.class);
+        fStaging.setCheckpoints(checkpoints);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        CatalogSchema.dropTables(fConnectionSource);
+        fConnectionSource.close();
+        DaoManager.clearCache();
+    }
+
+    /**
+     * A feed of producers with two beers each, whose names can be varied to make a new version.
+     */
+    private static String feed(final int producers, final String beerName) {
+        StringBuilder json = new StringBuilder("{\"producers\": [");
+        for (int p = 0; p < producers; p++) {
+            if (p > 0) {
+                json.append(',');
+            }
+            json.append("{\"id\": \"p").append(p).append("\", \"name\": \"Brewery ").append(p)
+                    .append("\", \"notes\": \"\", \"products\": [")
+                    .append("{\"id\": \"p").append(p).append("-0\", \"name\": \"").append(beerName).append("\"},")
+                    .append("{\"id\": \"p").append(p).append("-1\", \"name\": \"").append(beerName).append("\"}")
+                    .append("]}");
+        }
+        return json.append("]}").toString();
+    }
+
+    /**
+     * Serves the feed, failing after a number of bytes as a dropped connection would.
+     */
+    private static final class TestFeed implements IngestPipeline.Feed {
+        private final String fContent;
+        private final int fFailAt;
+
+        TestFeed(final String content, final int failAt) {
+            fContent = content;
+            fFailAt = failAt;
+        }
+
+        public String getName() {
+            return "beer.json";
+        }
+
+        public InputStream open() {
+            return new ByteArrayInputStream(fContent.getBytes(UTF_8)) {
+                @Override
+                public synchronized int read(final byte[] b, final int off, final int len) {
+                    if (pos >= fFailAt) {
+                        throw new IllegalStateException("Connection reset");
+                    }
+                    return super.read(b, off, Math.min(len, Math.max(1, fFailAt - pos)));
+                }
+            };
+        }
+
+        public String getDigest() {
+            return "digest-" + fContent.hashCode();
+        }
+    }
+
+    private StagingWriter ingest(final String content, final int failAt) throws Exception {
+        StagingWriter writer = new StagingWriter(fStaging, fBeers, false, fDigests, 3);
+        fPipeline.run(Collections.singletonList(new TestFeed(content, failAt)), writer);
+        return writer;
+    }
+
+    private StagingWriter ingest(final String content) throws Exception {
+        return ingest(content, Integer.MAX_VALUE);
+    }
+
+    private Map<String, String> publish(final StagingWriter writer) throws Exception {
+        return writer.publish(new StagingWriter.ProgressListener() {
+            public void onProgress(final int count, final int total) {
+                fProgress.add(count + "/" + total);
+            }
+        });
+    }
+
+    private List<String> beerNames() {
+        List<String> names = new ArrayList<>();
+        for (Beer beer : fBeers.getFestivalBeers()) {
+            names.add(beer.getName());
+        }
+        return names;
+    }
+
+    @Test
+    public void stagesAFeedWithoutChangingTheCatalog() throws Exception {
+        ingest(feed(10, "Bitter"));
+
+        IngestCheckpoint checkpoint = fStaging.getCheckpoint("beer.json");
+        assertThat(checkpoint.isComplete(), is(true));
+        assertThat(checkpoint.getLastProducer(), equalTo(9));
+        assertThat(fStaging.getStagedProducers("beer.json"), hasSize(10));
+        assertThat(fBeers.getNumberOfBeers(), equalTo(0L));
+    }
+
+    @Test
+    public void publishesWhatIsStaged() throws Exception {
+        StagingWriter writer = ingest(feed(10, "Bitter"));
+
+        Map<String, String> published = publish(writer);
+
+        assertThat(published, hasEntry("beer.json", "digest-" + feed(10, "Bitter").hashCode()));
+        assertThat(writer.getPublished(), equalTo(20));
+        assertThat(fBeers.getNumberOfBeersFrom("beer.json"), equalTo(20L));
+        assertThat(fStaging.getCheckpoint("beer.json"), nullValue());
+        assertThat(fStaging.getStagedProducers("beer.json"), empty());
+    }
+
+    @Test
+    public void reportsProgressInProducers() throws Exception {
+        publish(ingest(feed(4, "Bitter")));
+
+        assertThat(fProgress, contains("1/4", "2/4", "3/4", "4/4"));
+    }
+
+    @Test
+    public void discardsASourceWhoseBeersCannotBeRead() throws Exception {
+        String content = feed(4, "Bitter").replace("]}]}", "]}, {\"id\": \"p4\", \"name\": \"No products\"}]}");
+        StagingWriter writer = ingest(content);
+        assertThat(fStaging.getCheckpoint("beer.json").isComplete(), is(true));
+
+        assertThat(publish(writer).isEmpty(), is(true));
+
+        assertThat(writer.getFailure(), notNullValue());
+        assertThat(fBeers.getNumberOfBeers(), equalTo(0L));
+        assertThat(fStaging.getCheckpoint("beer.json"), nullValue());
+        assertThat(fStaging.getStagedProducers("beer.json"), empty());
+    }
+
+    @Test
+    public void keepsWhatWasStagedBeforeAFailure() throws Exception {
+        String content = feed(10, "Bitter");
+
+        StagingWriter writer = ingest(content, content.length() / 2);
+
+        assertThat(writer.getFailure(), instanceOf(IllegalStateException.class));
+        IngestCheckpoint checkpoint = fStaging.getCheckpoint("beer.json");
+        assertThat(checkpoint.isComplete(), is(false));
+        assertThat(checkpoint.getLastProducer(), allOf(greaterThan(0), lessThan(9)));
+        assertThat(fStaging.getStagedProducers("beer.json"), hasSize(checkpoint.getLastProducer() + 1));
+        assertThat(publish(writer).isEmpty(), is(true));
+        assertThat(fBeers.getNumberOfBeers(), equalTo(0L));
+    }
+
+    @Test
+    public void resumesFromWhatWasStaged() throws Exception {
+        String content = feed(10, "Bitter");
+        ingest(content, content.length() / 2);
+        int staged = fStaging.getCheckpoint("beer.json").getLastProducer() + 1;
+
+        StagingWriter writer = ingest(content);
+        publish(writer);
+
+        assertThat(writer.getUnchanged(), equalTo(staged));
+        assertThat(fBeers.getNumberOfBeers(), equalTo(20L));
+    }
+
+    @Test
+    public void restagesProducersThatHaveChanged() throws Exception {
+        String before = feed(10, "Bitter");
+        ingest(before, before.length() / 2);
+
+        StagingWriter writer = ingest(feed(8, "Mild"));
+        publish(writer);
+
+        assertThat(writer.getUnchanged(), equalTo(0));
+        assertThat(fBeers.getNumberOfBeers(), equalTo(16L));
+        assertThat(beerNames(), everyItem(equalTo("Mild")));
+    }
+
+    @Test
+    public void publishesACompleteSourceWhoseNextDownloadFails() throws Exception {
+        ingest(feed(10, "Bitter"));
+
+        StagingWriter writer = ingest(feed(10, "Mild"), 0);
+        publish(writer);
+
+        assertThat(writer.getFailure(), notNullValue());
+        assertThat(beerNames(), hasSize(20));
+        assertThat(beerNames(), everyItem(equalTo("Bitter")));
+    }
+
+    @Test
+    public void stagesNothingFromAnUnchangedSource() throws Exception {
+        String content = feed(10, "Bitter");
+        publish(ingest(content));
+        fDigests.put("beer.json", "digest-" + content.hashCode());
+
+        StagingWriter writer = ingest(content);
+
+        assertThat(fStaging.getCheckpoint("beer.json"), nullValue());
+        assertThat(publish(writer).isEmpty(), is(true));
+    }
+
+    @Test
+    public void appliesAChangedSourceOverTheCatalog() throws Exception {
+        String content = feed(10, "Bitter");
+        publish(ingest(content));
+        fDigests.put("beer.json", "digest-" + content.hashCode());
+
+        publish(ingest(feed(5, "Mild")));
+
+        assertThat(fBeers.getNumberOfBeers(), equalTo(10L));
+        assertThat(beerNames(), everyItem(equalTo("Mild")));
+    }
+}
@@ -0,0 +1,132 @@
+package ralcock.cbf.model.ingest;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class StatusScanningInputStreamTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static String feed(final String ghostShipStatus, final String jaipurNotes) {
+        return feed("\"2025-05-24T00:01:00Z\"", ghostShipStatus, jaipurNotes);
+    }
+
+    private static String feed(final String timestamp, final String ghostShipStatus, final String jaipurNotes) {
+        return "{\"timestamp\": " + timestamp + ", \"producers\": ["
+                + "{\"id\": \"1\", \"name\": \"Adnams\", \"notes\": \"{\\\"status_text\\\": [\", \"products\": ["
+                + "{\"id\": \"a\", \"name\": \"Ghost Ship\", \"notes\": \"Pale, \\\"hoppy\\\" and {citrus}\","
+                + " \"abv\": 4.5, \"status_text\": " + ghostShipStatus + ", \"allergens\": {\"gluten\": 1}}"
+                + "]},"
+                + "{\"id\": \"2\", \"name\": \"Thornbridge\", \"products\": ["
+                + "{\"status_text\": \"Sold Out\", \"notes\": \"" + jaipurNotes + "\", \"id\": 7},"
+                + "{\"id\": \"c\", \"name\": \"Kipling\", \"status_text\": null},"
+                + "{\"id\": \"d\", \"name\": \"Lord Marples\"}"
+                + "]}"
+                + "]}";
+    }
+
+    private static StatusScanningInputStream scan(final String json) throws Exception {
+        byte[] bytes = json.getBytes(UTF_8);
+        StatusScanningInputStream scanner = new StatusScanningInputStream(
+                new ByteArrayInputStream(bytes), MessageDigest.getInstance("MD5"));
+        byte[] buffer = new byte[7];
+        int total = 0;
+        int count;
+        while ((count = scanner.read(buffer, 0, buffer.length)) >= 0) {
+            total += count;
+        }
+        scanner.close();
+        assertThat(total, equalTo(bytes.length));
+        return scanner;
+    }
+
+    private static String digestWithoutStatuses(final String json) throws Exception {
+        return new BigInteger(1, scan(json).getMessageDigest().digest()).toString(16);
+    }
+
+    @Test
+    public void readsEachProductsStatus() throws Exception {
+        Map<String, String> statuses = scan(feed("\"Available\"", "Citrus")).getStatuses();
+
+        assertThat(statuses.size(), equalTo(4));
+        assertThat(statuses, hasEntry("a", "Available"));
+        assertThat(statuses, hasEntry("7", "Sold Out"));
+        assertThat(statuses, hasEntry("c", "Unknown"));
+        assertThat(statuses, hasEntry("d", "Unknown"));
+    }
+
+    @Test
+    public void decodesEscapedStatuses() throws Exception {
+        Map<String, String> statuses = scan(feed("\"Nearly \\\"gone\\\" \\u00e0 la carte\"", "")).getStatuses();
+
+        assertThat(statuses, hasEntry("a", "Nearly \"gone\" \u00e0 la carte"));
+    }
+
+    @Test
+    public void passesTheFeedThroughUnchanged() throws Exception {
+        final String json = feed("\"Available\"", "Citrus \u00e9");
+        StatusScanningInputStream scanner = new StatusScanningInputStream(
+                new ByteArrayInputStream(json.getBytes(UTF_8)), MessageDigest.getInstance("MD5"));
+        byte[] bytes = new byte[json.getBytes(UTF_8).length];
+        int offset = 0;
+        int b;
+        while ((b = scanner.read()) >= 0) {
+            bytes[offset++] = (byte) b;
+        }
+
+        assertThat(new String(bytes, 0, offset, UTF_8), equalTo(json));
+        assertThat(scanner.getStatuses(), hasEntry("a", "Available"));
+    }
+
+    @Test
+    public void digestsTheSameWhicheverWayItIsRead() throws Exception {
+        final String json = feed("\"Available\"", "Citrus");
+        StatusScanningInputStream scanner = new StatusScanningInputStream(
+                new ByteArrayInputStream(json.getBytes(UTF_8)), MessageDigest.getInstance("MD5"));
+        int total = 0;
+        while (scanner.read() >= 0) {
+            total++;
+        }
+        assertThat(total, equalTo(json.getBytes(UTF_8).length));
+
+        assertThat(new BigInteger(1, scanner.getMessageDigest().digest()).toString(16),
+                equalTo(digestWithoutStatuses(json)));
+    }
+
+    @Test
+    public void digestIgnoresTheStatuses() throws Exception {
+        assertThat(digestWithoutStatuses(feed("\"Sold Out\"", "Citrus")),
+                equalTo(digestWithoutStatuses(feed("\"Available\"", "Citrus"))));
+        assertThat(digestWithoutStatuses(feed("null", "Citrus")),
+                equalTo(digestWithoutStatuses(feed("\"Available\"", "Citrus"))));
+    }
+
+    @Test
+    public void digestIgnoresTheTimestampThatChangesWithTheStatuses() throws Exception {
+        assertThat(digestWithoutStatuses(feed("\"2025-05-24T14:30:00Z\"", "\"Sold Out\"", "Citrus")),
+                equalTo(digestWithoutStatuses(feed("\"2025-05-24T00:01:00Z\"", "\"Available\"", "Citrus"))));
+    }
+
+    @Test
+    public void digestNoticesEverythingElse() throws Exception {
+        assertThat(digestWithoutStatuses(feed("\"Available\"", "Citrus hops")),
+                not(equalTo(digestWithoutStatuses(feed("\"Available\"", "Citrus")))));
+    }
+
+    @Test
+    public void ignoresStatusesOutsideTheProducts() throws Exception {
+        String json = "{\"status_text\": \"Closed\", \"producers\": [{\"id\": \"1\", \"status_text\": \"Open\","
+                + " \"products\": [{\"id\": \"a\", \"status_text\": \"Available\", \"extra\": {\"id\": \"b\"}}]}]}";
+
+        assertThat(scan(json).getStatuses().keySet(), contains("a"));
+        assertThat(digestWithoutStatuses(json.replace("Closed", "Open")), not(equalTo(digestWithoutStatuses(json))));
+    }
+}
@@ -0,0 +1,223 @@
+package ralcock.cbf.model.live;
+
+import org.junit.Before;
+import org.junit.Test;
+import ralcock.cbf.model.Beer;
+import ralcock.cbf.model.BeerList;
+import ralcock.cbf.model.SortOrder;
+import ralcock.cbf.model.StarRating;
+import ralcock.cbf.model.dao.InMemoryBeers;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static ralcock.cbf.model.BeerBuilder.aBeer;
+import static ralcock.cbf.model.BreweryBuilder.aBrewery;
+
+/**
+ * Runs the live lists' queries by hand, to check when they run and what they deliver.
+ */
+public class LiveBeerListTest {
+
+    private final Queue<Runnable> fQueries = new ArrayDeque<>();
+    private final Executor fQueryExecutor = new Executor() {
+        public void execute(final Runnable command) {
+            fQueries.add(command);
+        }
+    };
+    private final Executor fDirect = new Executor() {
+        public void execute(final Runnable command) {
+            command.run();
+        }
+    };
+
+    private InMemoryBeers fBeers;
+    private LiveQueries fLiveQueries;
+    private Beer fGhostShip;
+    private Beer fJaipur;
+    private final List<List<String>> fDelivered = new ArrayList<>();
+    private final LiveBeerList.Observer fObserver = new LiveBeerList.Observer() {
+        public void beerListChanged(final LiveBeerList.Result result) {
+            List<String> names = new ArrayList<>();
+            for (Beer beer : result.getBeers()) {
+                names.add(beer.getName());
+            }
+            fDelivered.add(names);
+        }
+    };
+
+    @Before
+    public void setUp() {
+        fBeers = new InMemoryBeers();
+        fBeers.setFestival("cbf2025");
+        fGhostShip = add("1", "Ghost Ship", "Adnams");
+        fJaipur = add("2", "Jaipur", "Thornbridge");
+        fLiveQueries = new LiveQueries(fBeers, fQueryExecutor);
+    }
+
+    private Beer add(final String festivalId, final String name, final String breweryName) {
+        Beer beer = aBeer().withFestivalId(festivalId).called(name).withABV(4.2f).withDescription("A " + name)
+                .withStyle("Bitter").withStatus("Available").withDispenseMethod("cask")
+                .from(aBrewery().withFestivalId("b-" + breweryName).called(breweryName)).build();
+        fBeers.updateFromFestivalOrCreate(beer);
+        return beer;
+    }
+
+    private int runQueries() {
+        int count = 0;
+        Runnable query;
+        while ((query = fQueries.poll()) != null) {
+            query.run();
+            count++;
+        }
+        return count;
+    }
+
+    private LiveBeerList observe(final BeerList.Type type) {
+        LiveBeerList list = fLiveQueries.observeBeerList(type, new BeerList.Config().withSortOrder(SortOrder.BEER_NAME_ASC),
+                fDirect, fObserver);
+        runQueries();
+        fDelivered.clear();
+        return list;
+    }
+
+    private void bookmark(final Beer beer, final boolean bookmarked) {
+        beer.setIsOnWishList(bookmarked);
+        fBeers.updateBeer(beer);
+        fLiveQueries.beerChanged(beer);
+    }
+
+    @Test
+    public void deliversTheListOnceQueried() {
+        fLiveQueries.observeBeerList(BeerList.Type.ALL, new BeerList.Config().withSortOrder(SortOrder.BEER_NAME_ASC),
+                fDirect, fObserver);
+        assertThat(fDelivered, empty());
+
+        assertThat(runQueries(), equalTo(1));
+        assertThat(fDelivered, contains(contains("Ghost Ship", "Jaipur")));
+    }
+
+    @Test
+    public void coalescesChangesMadeBeforeTheQueryRuns() {
+        LiveBeerList list = observe(BeerList.Type.ALL);
+
+        add("3", "Broadside", "Adnams");
+        fLiveQueries.catalogChanged();
+        add("4", "Lighthouse", "Adnams");
+        fLiveQueries.catalogChanged();
+        list.sortBy(SortOrder.BEER_NAME_DESC);
+
+        assertThat(runQueries(), equalTo(1));
+        assertThat(fDelivered, contains(contains("Lighthouse", "Jaipur", "Ghost Ship", "Broadside")));
+    }
+
+    @Test
+    public void skipsResultsThatHaveNotChanged() {
+        observe(BeerList.Type.ALL);
+
+        fLiveQueries.catalogChanged();
+
+        assertThat(runQueries(), equalTo(1));
+        assertThat(fDelivered, empty());
+    }
+
+    @Test
+    public void ignoresChangesToBeersNotInTheList() {
+        observe(BeerList.Type.BOOKMARKS);
+
+        fJaipur.setUserComments("Hoppy");
+        fBeers.updateBeer(fJaipur);
+        fLiveQueries.beerChanged(fJaipur);
+
+        assertThat(runQueries(), equalTo(0));
+    }
+
+    @Test
+    public void queriesWhenABeerJoinsOrLeavesTheList() {
+        observe(BeerList.Type.BOOKMARKS);
+
+        bookmark(fGhostShip, true);
+        runQueries();
+        bookmark(fGhostShip, false);
+        runQueries();
+
+        assertThat(fDelivered, contains(Arrays.asList("Ghost Ship"), Collections.<String>emptyList()));
+    }
+
+    @Test
+    public void deliversChangesToBeersInTheList() {
+        observe(BeerList.Type.ALL);
+
+        fGhostShip.setNumberOfStars(new StarRating(4));
+        fBeers.updateBeer(fGhostShip);
+        fLiveQueries.beerChanged(fGhostShip);
+
+        assertThat(runQueries(), equalTo(1));
+        assertThat(fDelivered, hasSize(1));
+    }
+
+    @Test
+    public void deliversNewSectionsWhenOnlyTheOrderChanges() {
+        final List<Integer> sectionCounts = new ArrayList<>();
+        LiveBeerList list = fLiveQueries.observeBeerList(BeerList.Type.ALL,
+                new BeerList.Config().withSortOrder(SortOrder.BEER_NAME_ASC), fDirect, new LiveBeerList.Observer() {
+                    public void beerListChanged(final LiveBeerList.Result result) {
+                        sectionCounts.add(result.getSections().getSectionCount());
+                    }
+                });
+        runQueries();
+
+        // Both beers have the same ABV, so the order is the same.
+        list.sortBy(SortOrder.BEER_ABV_ASC);
+        runQueries();
+
+        assertThat(sectionCounts, contains(2, 0));
+    }
+
+    @Test
+    public void appliesSettingsInTheOrderTheyAreMade() {
+        LiveBeerList list = observe(BeerList.Type.ALL);
+
+        list.filterBy("J");
+        list.filterBy("Ja");
+        list.filterBy("Ghost");
+        runQueries();
+
+        assertThat(fDelivered, contains(contains("Ghost Ship")));
+    }
+
+    @Test
+    public void queriesAgainForChangesMadeWhileAQueryRuns() {
+        fLiveQueries.observeBeerList(BeerList.Type.ALL, new BeerList.Config(), fDirect, new LiveBeerList.Observer() {
+            public void beerListChanged(final LiveBeerList.Result result) {
+                if (result.getBeers().size() == 2) {
+                    add("3", "Broadside", "Adnams");
+                    fLiveQueries.catalogChanged();
+                }
+            }
+        });
+
+        assertThat(runQueries(), equalTo(2));
+    }
+
+    @Test
+    public void stopsWhenClosed() {
+        LiveBeerList list = observe(BeerList.Type.ALL);
+
+        add("3", "Broadside", "Adnams");
+        fLiveQueries.catalogChanged();
+        list.close();
+        runQueries();
+        fLiveQueries.catalogChanged();
+
+        assertThat(fQueries, empty());
+        assertThat(fDelivered, empty());
+    }
+}
@@ -0,0 +1,64 @@
+package ralcock.cbf.model.search;
+
+import org.junit.Before;
+import org.junit.Test;
+import ralcock.cbf.model.Beer;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static ralcock.cbf.model.BeerBuilder.aBeer;
+import static ralcock.cbf.model.BreweryBuilder.aBrewery;
+
+public class SimilarityIndexTest {
+
+    private SimilarityIndex fIndex;
+
+    private static Beer beer(final long id, final String name, final float abv, final String description,
+                             final String style, final String breweryName) {
+        Beer beer = aBeer().withFestivalId(String.valueOf(id)).called(name).withABV(abv)
+                .withDescription(description).withStyle(style).withStatus("Available").withDispenseMethod("cask")
+                .from(aBrewery().withFestivalId("b-" + breweryName).called(breweryName)).build();
+        beer.setId(id);
+        return beer;
+    }
+
+    @Before
+    public void setUp() {
+        fIndex = SimilarityIndex.forBeers(Arrays.asList(
+                beer(1, "Jaipur", 5.9f, "Citrus hops and a bitter finish", "IPA", "Thornbridge"),
+                beer(2, "Citra", 4.2f, "Pale with citrus hops", "IPA", "Oakham"),
+                beer(3, "Halcyon", 7.4f, "Strong, with citrus hops", "IPA", "Thornbridge"),
+                beer(4, "Old Peculier", 5.6f, "Rich and dark with roast malt", "Old Ale", "Theakston"),
+                beer(5, "Oatmeal Stout", 5.0f, "Dark and smooth with roast malt", "Stout", "Oakham"),
+                beer(6, "Cider", 6.0f, "", "", "Aspall"),
+                beer(7, "Mild", 3.5f, "Dark and sweet", "Mild", "Elgood's")));
+    }
+
+    @Test
+    public void putsTheMostAlikeFirst() {
+        assertThat(fIndex.similarTo(1, 2), contains(3L, 2L));
+        assertThat(fIndex.similarTo(5, 1), contains(4L));
+    }
+
+    @Test
+    public void matchesDescriptionsOnTheirRarerWords() {
+        // "roast" and "malt" are shared by two descriptions of seven; "dark" by three.
+        assertThat(fIndex.similarTo(4, 1), contains(5L));
+    }
+
+    @Test
+    public void neverIncludesTheBeerItself() {
+        assertThat(fIndex.similarTo(2, 10), not(hasItem(2L)));
+        assertThat(fIndex.similarTo(2, 10), hasSize(lessThanOrEqualTo(6)));
+    }
+
+    @Test
+    public void findsNothingForUnknownBeers() {
+        assertThat(fIndex.similarTo(42, 10), empty());
+        assertThat(fIndex.similarTo(1, 0), empty());
+        assertThat(SimilarityIndex.forBeers(Collections.<Beer>emptyList()).similarTo(1, 10), empty());
+    }
+}
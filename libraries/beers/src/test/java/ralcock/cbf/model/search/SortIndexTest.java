@@ -0,0 +1,155 @@
+package ralcock.cbf.model.search;
+
+import org.junit.Before;
+import org.junit.Test;
+import ralcock.cbf.model.Beer;
+import ralcock.cbf.model.Brewery;
+import ralcock.cbf.model.SortOrder;
+import ralcock.cbf.model.StarRating;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static ralcock.cbf.model.BeerBuilder.aBeer;
+import static ralcock.cbf.model.BreweryBuilder.aBrewery;
+
+public class SortIndexTest
+{
+    private Beer fBroadside;
+    private Beer fJaipur;
+    private Beer fCitra;
+    private Beer fFruh;
+    private List<Beer> fBeers;
+    private SortIndex fIndex;
+
+    private static Beer beer(final long id, final String name, final float abv,
+                             final long breweryId, final String breweryName) {
+        Brewery brewery = aBrewery().withFestivalId("b" + breweryId).called(breweryName).build();
+        brewery.setId(breweryId);
+        Beer beer = aBeer().withFestivalId("f" + id).called(name).withABV(abv).fromBrewery(brewery).build();
+        beer.setId(id);
+        return beer;
+    }
+
+    @Before
+    public void setUp() {
+        // Brewery ids are deliberately out of name order.
+        fBroadside = beer(1, "Broadside", 6.3f, 3, "Adnams");
+        fJaipur = beer(2, "Jaipur", 5.9f, 1, "Thornbridge");
+        fCitra = beer(3, "Citra", 4.2f, 2, "Oakham");
+        fFruh = beer(4, "Fr\u00fch K\u00f6lsch", 4.8f, 4, "\u00c4rger Br\u00e4u");
+        fBeers = Arrays.asList(fJaipur, fFruh, fBroadside, fCitra);
+        fIndex = SortIndex.forBeers(fBeers);
+    }
+
+    @Test
+    public void sortsByBreweryNameNotBreweryId() {
+        assertThat(fIndex.inOrder(fBeers, SortOrder.BREWERY_NAME_ASC), contains(fBroadside, fFruh, fCitra, fJaipur));
+        assertThat(fIndex.inOrder(fBeers, SortOrder.BREWERY_NAME_DESC), contains(fJaipur, fCitra, fFruh, fBroadside));
+    }
+
+    @Test
+    public void collatesAccentedNames() {
+        assertThat(fIndex.inOrder(fBeers, SortOrder.BEER_NAME_ASC), contains(fBroadside, fCitra, fFruh, fJaipur));
+    }
+
+    @Test
+    public void sortsByAbv() {
+        assertThat(fIndex.inOrder(fBeers, SortOrder.BEER_ABV_DESC), contains(fBroadside, fJaipur, fFruh, fCitra));
+    }
+
+    @Test
+    public void keepsOnlyTheGivenBeersInOrder() {
+        assertThat(fIndex.inOrder(Arrays.asList(fJaipur, fBroadside), SortOrder.BEER_NAME_ASC),
+                contains(fBroadside, fJaipur));
+        assertThat(fIndex.inOrder(Collections.<Beer>emptyList(), SortOrder.BEER_NAME_ASC), empty());
+    }
+
+    @Test
+    public void returnsTheGivenInstances() {
+        Beer fresh = beer(1, "Broadside", 6.3f, 3, "Adnams");
+        fresh.setIsOnWishList(true);
+
+        List<Beer> ordered = fIndex.inOrder(Arrays.asList(fJaipur, fresh), SortOrder.BEER_NAME_ASC);
+
+        assertThat(ordered.get(0), sameInstance(fresh));
+    }
+
+    @Test
+    public void breaksTiesByIdInBothDirections() {
+        Beer a = beer(7, "Same", 4.0f, 1, "Same");
+        Beer b = beer(5, "Same", 4.0f, 1, "Same");
+        SortIndex index = SortIndex.forBeers(Arrays.asList(a, b));
+
+        for (SortOrder sortOrder : SortOrder.values()) {
+            assertThat(sortOrder.toString(), index.inOrder(Arrays.asList(a, b), sortOrder), contains(b, a));
+        }
+    }
+
+    @Test
+    public void sortsRatingsWhenAsked() {
+        fCitra.setNumberOfStars(new StarRating(5));
+        fJaipur.setNumberOfStars(new StarRating(3));
+
+        assertThat(fIndex.inOrder(fBeers, SortOrder.BEER_RATING_DESC), contains(fCitra, fJaipur, fBroadside, fFruh));
+    }
+
+    @Test
+    public void sortsBeersAddedSinceItWasBuilt() {
+        Beer added = beer(9, "Amber", 3.8f, 5, "Zeta");
+
+        assertThat(fIndex.inOrder(Arrays.asList(fJaipur, added), SortOrder.BEER_NAME_ASC), contains(added, fJaipur));
+    }
+
+    @Test
+    public void placesEachListAfresh() {
+        List<Beer> beers = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            beers.add(beer(i + 1, "Beer " + (100 - i), 4f, 0, "Brewery"));
+        }
+        SortIndex index = SortIndex.forBeers(beers);
+        List<Beer> most = new ArrayList<>(beers.subList(0, 90));
+        List<Beer> withAdded = new ArrayList<>(most);
+        withAdded.add(beer(101, "Amber", 3.8f, 0, "Zeta"));
+        List<Beer> few = new ArrayList<>(beers.subList(90, 95));
+
+        index.inOrder(withAdded, SortOrder.BEER_NAME_ASC);
+        List<Beer> ordered = index.inOrder(most, SortOrder.BEER_NAME_ASC);
+        List<Beer> orderedFew = index.inOrder(few, SortOrder.BEER_NAME_ASC);
+
+        List<Beer> expected = new ArrayList<>(most);
+        Collections.sort(expected, SortOrder.BEER_NAME_ASC.comparator());
+        assertThat(ordered, equalTo(expected));
+        List<Beer> expectedFew = new ArrayList<>(few);
+        Collections.sort(expectedFew, SortOrder.BEER_NAME_ASC.comparator());
+        assertThat(orderedFew, equalTo(expectedFew));
+    }
+
+    @Test
+    public void agreesWithTheComparator() {
+        Random random = new Random(42);
+        List<Beer> beers = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            String name = random.nextInt(10) == 0 ? null : "Beer " + random.nextInt(50);
+            beers.add(beer(i + 1, name, random.nextInt(80) / 10f, random.nextInt(20), "Brewery " + random.nextInt(20)));
+        }
+        SortIndex index = SortIndex.forBeers(beers);
+        List<Beer> subset = new ArrayList<>();
+        for (Beer beer : beers) {
+            if (random.nextBoolean()) {
+                subset.add(beer);
+            }
+        }
+
+        for (SortOrder sortOrder : SortOrder.values()) {
+            List<Beer> expected = new ArrayList<>(subset);
+            Collections.sort(expected, sortOrder.comparator());
+            assertThat(sortOrder.toString(), index.inOrder(subset, sortOrder), equalTo(expected));
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package ralcock.cbf.model.search;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class SuggestionIndexTest
+{
+    private SuggestionIndex fIndex;
+
+    @Before
+    public void setUp() {
+        fIndex = new SuggestionIndex.Builder()
+                .add("Broadside").add("Adnams").add("Bitter")
+                .add("Ghost Ship").add("Adnams").add("Pale Ale")
+                .add("Citra").add("Oakham").add("IPA")
+                .add("Green Devil IPA").add("Oakham").add("IPA")
+                .add("Jaipur").add("Thornbridge").add("IPA")
+                .add("Pale Rider").add("Kelham Island").add("Pale Ale")
+                .build();
+    }
+
+    private static List<String> texts(final List<SuggestionIndex.Suggestion> suggestions) {
+        List<String> texts = new ArrayList<>();
+        for (SuggestionIndex.Suggestion suggestion : suggestions) {
+            texts.add(suggestion.getText());
+        }
+        return texts;
+    }
+
+    @Test
+    public void completesPrefix() {
+        assertThat(texts(fIndex.suggest("oak", 10)), contains("Oakham"));
+        assertThat(fIndex.suggest("oak", 10).get(0).getCount(), equalTo(2));
+    }
+
+    @Test
+    public void isCaseAndAccentInsensitive() {
+        assertThat(texts(fIndex.suggest("GH", 10)), contains("Ghost Ship"));
+        assertThat(texts(fIndex.suggest("J\u00e1", 10)), contains("Jaipur"));
+    }
+
+    @Test
+    public void ranksPopularNamesFirst() {
+        // "Pale Ale" is the style of two beers, "Pale Rider" is the name of one
+        assertThat(texts(fIndex.suggest("pale", 10)), contains("Pale Ale", "Pale Rider"));
+    }
+
+    @Test
+    public void ranksPhraseStartAboveLaterWord() {
+        // "IPA" starts with the prefix, "Green Devil IPA" only has it as its last word
+        assertThat(texts(fIndex.suggest("ip", 10)), contains("IPA", "Green Devil IPA"));
+    }
+
+    @Test
+    public void completesLaterWords() {
+        assertThat(texts(fIndex.suggest("devil", 10)), contains("Green Devil IPA"));
+        assertThat(texts(fIndex.suggest("island", 10)), contains("Kelham Island"));
+    }
+
+    @Test
+    public void completesMultipleWords() {
+        assertThat(texts(fIndex.suggest("ghost  sh", 10)), contains("Ghost Ship"));
+    }
+
+    @Test
+    public void limitsNumberOfResults() {
+        assertThat(texts(fIndex.suggest("a", 1)), contains("Adnams"));
+    }
+
+    @Test
+    public void sortsTiesAlphabetically() {
+        assertThat(texts(fIndex.suggest("b", 10)), contains("Bitter", "Broadside"));
+    }
+
+    @Test
+    public void emptyPrefixSuggestsNothing() {
+        assertThat(fIndex.suggest("", 10), is(empty()));
+        assertThat(fIndex.suggest(" ", 10), is(empty()));
+        assertThat(fIndex.suggest("zzz", 10), is(empty()));
+        assertThat(new SuggestionIndex.Builder().build().suggest("a", 10), is(empty()));
+    }
+}
@@ -0,0 +1,89 @@
+package ralcock.cbf.model.search;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class TrigramIndexTest
+{
+    private TrigramIndex fIndex;
+
+    @Before
+    public void setUp() {
+        fIndex = new TrigramIndex.Builder()
+                .add(1, "Broadside", "Adnams", "Bitter")
+                .add(2, "Ghost Ship", "Adnams", "Pale Ale")
+                .add(3, "Citra", "Oakham", "IPA")
+                .add(4, "Jaipur", "Thornbridge", "IPA")
+                .add(5, "Fr\u00fch K\u00f6lsch", "C\u00f6lner Hofbr\u00e4u", "K\u00f6lsch")
+                .build();
+    }
+
+    private static long[] ids(final List<TrigramIndex.Match> matches) {
+        long[] ids = new long[matches.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = matches.get(i).getId();
+        }
+        return ids;
+    }
+
+    @Test
+    public void findsMisspeltBrewery() {
+        List<TrigramIndex.Match> matches = fIndex.search("Adnmas", 10);
+        assertThat(matches.size(), equalTo(2));
+        assertThat(ids(matches), equalTo(new long[]{1, 2}));
+    }
+
+    @Test
+    public void ignoresAccents() {
+        List<TrigramIndex.Match> matches = fIndex.search("Kolsch", 10);
+        assertThat(ids(matches), equalTo(new long[]{5}));
+        assertThat(matches.get(0).getScore(), equalTo(1.0f));
+    }
+
+    @Test
+    public void ranksBestMatchFirst() {
+        List<TrigramIndex.Match> matches = fIndex.search("jaipor thornbrige", 10);
+        assertThat(matches.get(0).getId(), equalTo(4L));
+    }
+
+    @Test
+    public void limitsNumberOfResults() {
+        List<TrigramIndex.Match> matches = fIndex.search("ipa", 1);
+        assertThat(matches.size(), equalTo(1));
+        // Equal scores are broken by insertion order.
+        assertThat(matches.get(0).getId(), equalTo(3L));
+    }
+
+    @Test
+    public void unrelatedTextMatchesNothing() {
+        assertThat(fIndex.search("xyzzy12345nosuchbeer", 10), is(empty()));
+    }
+
+    @Test
+    public void emptyQueryMatchesNothing() {
+        assertThat(fIndex.search("", 10), is(empty()));
+        assertThat(fIndex.search(" - ", 10), is(empty()));
+    }
+
+    @Test
+    public void emptyIndexMatchesNothing() {
+        assertThat(new TrigramIndex.Builder().build().search("adnams", 10), is(empty()));
+    }
+
+    @Test
+    public void trigramsAreDistinct() {
+        // "  a", " aa", "aaa", "aa " - the repeated "aaa" is only counted once
+        assertThat(TrigramIndex.trigrams("aaaa").length, equalTo(4));
+    }
+
+    @Test
+    public void normalizesText() {
+        assertThat(SearchText.normalize("  Fr\u00fch-K\u00f6lsch!  "), equalTo("fruh kolsch"));
+        assertThat(SearchText.words("Elgood's Black Dog"), contains("elgood", "s", "black", "dog"));
+    }
+}
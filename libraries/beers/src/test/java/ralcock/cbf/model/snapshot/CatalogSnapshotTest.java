@@ -0,0 +1,165 @@
+package ralcock.cbf.model.snapshot;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ralcock.cbf.model.Beer;
+import ralcock.cbf.model.Brewery;
+import ralcock.cbf.model.StarRating;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static ralcock.cbf.model.BeerBuilder.aBeer;
+import static ralcock.cbf.model.BreweryBuilder.aBrewery;
+
+public class CatalogSnapshotTest
+{
+    @Rule
+    public TemporaryFolder fFolder = new TemporaryFolder();
+
+    private static Beer beer(final long id, final String name, final Brewery brewery) {
+        Beer beer = aBeer().called(name).fromBrewery(brewery).withStyle("Mild").withABV(3.6f).build();
+        beer.setId(id);
+        return beer;
+    }
+
+    private static Brewery brewery(final long id, final String name) {
+        Brewery brewery = aBrewery().called(name).build();
+        brewery.setId(id);
+        return brewery;
+    }
+
+    private File write(final String digest, final List<Beer> beers) throws IOException {
+        File file = new File(fFolder.getRoot(), "catalog.snapshot");
+        CatalogSnapshotWriter.write(file, digest, beers);
+        return file;
+    }
+
+    @Test
+    public void roundTripsBeers() throws Exception {
+        Brewery brewery = brewery(7, "Milton");
+        Beer rated = beer(1, "Pegasus", brewery);
+        rated.setNumberOfStars(new StarRating(4));
+        Beer bookmarked = beer(2, "Minotaur", brewery);
+        bookmarked.setIsOnWishList(true);
+
+        CatalogSnapshot snapshot = CatalogSnapshot.open(write("abc123", Arrays.asList(rated, bookmarked)));
+
+        assertThat(snapshot.getDigest(), equalTo("abc123"));
+        assertThat(snapshot.size(), equalTo(2));
+        List<Beer> beers = snapshot.getBeers();
+        assertThat(beers.get(0).getId(), equalTo(1L));
+        assertThat(beers.get(0).getName(), equalTo("Pegasus"));
+        assertThat(beers.get(0).getStyle(), equalTo("Mild"));
+        assertThat(beers.get(0).getAbv(), equalTo(3.6f));
+        assertThat(beers.get(0).getRating(), equalTo(4));
+        assertThat(beers.get(0).isIsOnWishList(), is(false));
+        assertThat(beers.get(1).isIsOnWishList(), is(true));
+        assertThat(beers.get(1).getBrewery().getId(), equalTo(7L));
+        assertThat(beers.get(1).getBrewery().getName(), equalTo("Milton"));
+    }
+
+    @Test
+    public void beersFromOneBreweryShareIt() throws Exception {
+        Brewery brewery = brewery(7, "Milton");
+        CatalogSnapshot snapshot = CatalogSnapshot.open(
+                write("d", Arrays.asList(beer(1, "Pegasus", brewery), beer(2, "Minotaur", brewery))));
+
+        List<Beer> beers = snapshot.getBeers();
+
+        assertThat(beers.get(0).getBrewery(), sameInstance(beers.get(1).getBrewery()));
+    }
+
+    @Test
+    public void readsSingleFieldsWithoutMaterialising() throws Exception {
+        CatalogSnapshot snapshot = CatalogSnapshot.open(
+                write("d", Collections.singletonList(beer(5, "K\u00f6lsch", brewery(1, "Haus")))));
+
+        assertThat(snapshot.getId(0), equalTo(5L));
+        assertThat(snapshot.getName(0), equalTo("K\u00f6lsch"));
+        assertThat(snapshot.getBreweryName(0), equalTo("Haus"));
+        assertThat(snapshot.getAbv(0), equalTo(3.6f));
+    }
+
+    @Test
+    public void keepsNullStrings() throws Exception {
+        Beer beer = aBeer().withFestivalId("1").called("Pegasus").withABV(4.0f).withDescription(null)
+                .withStyle("Bitter").withStatus(null).withDispenseMethod("cask").withAllergens(null).withCategory(null)
+                .fromBrewery(brewery(1, "Milton")).build();
+        beer.setId(1);
+
+        Beer read = CatalogSnapshot.open(write("d", Collections.singletonList(beer))).getBeer(0);
+
+        assertThat(read.getDescription(), nullValue());
+        assertThat(read.getStatus(), nullValue());
+        assertThat(read.getStyle(), equalTo("Bitter"));
+    }
+
+    @Test
+    public void emptyCatalog() throws Exception {
+        CatalogSnapshot snapshot = CatalogSnapshot.open(write("d", Collections.<Beer>emptyList()));
+
+        assertThat(snapshot.size(), equalTo(0));
+        assertThat(snapshot.getBeers(), empty());
+    }
+
+    @Test
+    public void replacesAnExistingSnapshot() throws Exception {
+        write("old", Collections.singletonList(beer(1, "Pegasus", brewery(1, "Milton"))));
+
+        CatalogSnapshot snapshot = CatalogSnapshot.open(write("new", Collections.<Beer>emptyList()));
+
+        assertThat(snapshot.getDigest(), equalTo("new"));
+        assertThat(snapshot.size(), equalTo(0));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void rejectsRecordOutOfRange() throws Exception {
+        CatalogSnapshot.open(write("d", Collections.<Beer>emptyList())).getBeer(0);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFiles() throws Exception {
+        File file = fFolder.newFile("not.snapshot");
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write("this is not a snapshot at all".getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        CatalogSnapshot.open(file);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherVersions() throws Exception {
+        File file = write("d", Collections.<Beer>emptyList());
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.seek(4);
+            raf.writeInt(CatalogSnapshotFormat.VERSION + 1);
+        } finally {
+            raf.close();
+        }
+        CatalogSnapshot.open(file);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsTruncatedFiles() throws Exception {
+        File file = write("d", Collections.singletonList(beer(1, "Pegasus", brewery(1, "Milton"))));
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(raf.length() - 3);
+        } finally {
+            raf.close();
+        }
+        CatalogSnapshot.open(file);
+    }
+}
@@ -0,0 +1,102 @@
+package ralcock.cbf.model.stats;
+
+import org.junit.Test;
+import ralcock.cbf.model.Beer;
+import ralcock.cbf.model.StarRating;
+
+import java.util.Arrays;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+import static ralcock.cbf.model.BeerBuilder.aBeer;
+import static ralcock.cbf.model.BreweryBuilder.aBrewery;
+
+public class StatsAggregatorTest {
+
+    private static Beer beer(final long id, final float abv, final String style, final String category,
+                             final int stars) {
+        Beer beer = aBeer().withFestivalId(String.valueOf(id)).called("Beer " + id).withABV(abv)
+                .withStyle(style).withStatus("Available").withDispenseMethod("cask").withCategory(category)
+                .from(aBrewery().withFestivalId("b").called("Brewery")).build();
+        beer.setId(id);
+        beer.setNumberOfStars(new StarRating(stars));
+        return beer;
+    }
+
+    @Test
+    public void countsStylesAndCategories() {
+        StatsAggregator aggregator = StatsAggregator.forBeers(Arrays.asList(
+                beer(1, 4.2f, "Bitter", "beer", 0),
+                beer(2, 3.8f, "Bitter", "beer", 0),
+                beer(3, 6.0f, "IPA", "beer", 0),
+                beer(4, 5.0f, "", "cider", 0)));
+
+        FestivalStats stats = aggregator.getStats();
+
+        assertThat(stats.getBeerCount(), equalTo(4));
+        assertThat(stats.getStyles().keySet(), contains("Bitter", "IPA"));
+        assertThat(stats.getStyle("Bitter").getBeerCount(), equalTo(2));
+        assertThat(stats.getStyle("Porter"), nullValue());
+        assertThat(stats.getBeersInCategory("beer"), equalTo(3));
+        assertThat(stats.getBeersInCategory("cider"), equalTo(1));
+        assertThat(stats.getBeersInCategory("mead"), equalTo(0));
+    }
+
+    @Test
+    public void bucketsAbvByWholePercent() {
+        assertThat(FestivalStats.abvBucket(0f), equalTo(0));
+        assertThat(FestivalStats.abvBucket(Float.NaN), equalTo(0));
+        assertThat(FestivalStats.abvBucket(3.99f), equalTo(3));
+        assertThat(FestivalStats.abvBucket(4f), equalTo(4));
+        assertThat(FestivalStats.abvBucket(FestivalStats.MAX_ABV_BUCKET), equalTo(FestivalStats.MAX_ABV_BUCKET));
+        assertThat(FestivalStats.abvBucket(18.5f), equalTo(FestivalStats.MAX_ABV_BUCKET));
+
+        FestivalStats stats = StatsAggregator.forBeers(Arrays.asList(
+                beer(1, 4.2f, "Bitter", "beer", 0),
+                beer(2, 4.8f, "Bitter", "beer", 0),
+                beer(3, 15f, "Barley Wine", "beer", 0))).getStats();
+
+        assertThat(stats.getBeersInAbvBucket(4), equalTo(2));
+        assertThat(stats.getBeersInAbvBucket(5), equalTo(0));
+        assertThat(stats.getBeersInAbvBucket(FestivalStats.MAX_ABV_BUCKET), equalTo(1));
+    }
+
+    @Test
+    public void movesChangedBeersBetweenCounts() {
+        StatsAggregator aggregator = StatsAggregator.forBeers(Arrays.asList(
+                beer(1, 4.2f, "Bitter", "beer", 3),
+                beer(2, 3.8f, "Bitter", "beer", 0)));
+        FestivalStats before = aggregator.getStats();
+
+        aggregator.update(beer(2, 3.8f, "Bitter", "beer", 5));
+        aggregator.update(beer(1, 4.2f, "Bitter", "beer", 0));
+        aggregator.update(beer(1, 4.2f, "Bitter", "beer", 4));
+        FestivalStats after = aggregator.getStats();
+
+        assertThat(before.getStyle("Bitter").getAverageRating(), equalTo(3f));
+        assertThat(after.getRatedCount(), equalTo(2));
+        assertThat(after.getStyle("Bitter").getRatedCount(), equalTo(2));
+        assertThat(after.getStyle("Bitter").getAverageRating(), equalTo(4.5f));
+        assertThat(after.getBeerCount(), equalTo(2));
+    }
+
+    @Test
+    public void dropsStylesNoLongerInTheCounts() {
+        StatsAggregator aggregator = StatsAggregator.forBeers(Arrays.asList(beer(1, 4.2f, "Bitter", "beer", 0)));
+
+        aggregator.update(beer(1, 4.2f, "Golden Ale", "cider", 0));
+
+        assertThat(aggregator.getStats().getStyles().keySet(), contains("Golden Ale"));
+        assertThat(aggregator.getStats().getCategories().keySet(), contains("cider"));
+    }
+
+    @Test
+    public void ignoresBeersNotCounted() {
+        StatsAggregator aggregator = StatsAggregator.forBeers(Arrays.asList(beer(1, 4.2f, "Bitter", "beer", 0)));
+        FestivalStats before = aggregator.getStats();
+
+        aggregator.update(beer(2, 4.2f, "Bitter", "beer", 4));
+
+        assertThat(aggregator.getStats(), sameInstance(before));
+    }
+}
@@ -0,0 +1,281 @@
+package ralcock.cbf.model.sync;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.Executor;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.*;
+
+public class SyncSchedulerTest
+{
+    private final Queue<Runnable> fTasks = new ArrayDeque<>();
+    private final List<Boolean> fRuns = new ArrayList<>();
+    private final List<Runnable> fRetries = new ArrayList<>();
+    private final List<Long> fRetryDelays = new ArrayList<>();
+    private long fNow = 1000;
+    private boolean fSucceed = true;
+    private int fIdleCount;
+    private SyncScheduler fScheduler;
+
+    /**
+     * Returns the largest possible jitter, so backoffs are at their full length.
+     */
+    private static final class MaxRandom extends Random {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public double nextDouble() {
+            return 1.0;
+        }
+    }
+
+    private final SyncScheduler.Timer fTimer = new SyncScheduler.Timer() {
+        public void schedule(final Runnable task, final long delayMillis) {
+            fRetries.add(task);
+            fRetryDelays.add(delayMillis);
+        }
+    };
+
+    @Before
+    public void setUp() {
+        fScheduler = new SyncScheduler(
+                new SyncScheduler.Sync() {
+                    public boolean run(final boolean clean) throws Exception {
+                        fRuns.add(clean);
+                        if (!fSucceed) {
+                            throw new Exception("offline");
+                        }
+                        return true;
+                    }
+                },
+                new Executor() {
+                    public void execute(final Runnable task) {
+                        fTasks.add(task);
+                    }
+                },
+                new SyncScheduler.Clock() {
+                    public long currentTimeMillis() {
+                        return fNow;
+                    }
+                },
+                fTimer,
+                new MaxRandom());
+        fScheduler.setListener(new SyncScheduler.Listener() {
+            public void syncIdle() {
+                fIdleCount++;
+            }
+        });
+    }
+
+    private void runNextTask() {
+        fTasks.remove().run();
+    }
+
+    @Test
+    public void runsOneSyncAtATime() {
+        fScheduler.request(false, false);
+        fScheduler.request(false, false);
+        fScheduler.request(false, false);
+
+        assertThat(fTasks.size(), equalTo(1));
+        assertThat(fScheduler.isRunning(), is(true));
+    }
+
+    @Test
+    public void coalescesRequestsMadeWhileRunning() {
+        fScheduler.request(false, false);
+        fScheduler.request(false, false);
+        fScheduler.request(true, false);
+        fScheduler.request(false, false);
+
+        runNextTask();
+        assertThat(fTasks.size(), equalTo(1));
+        runNextTask();
+
+        assertThat(fRuns, contains(false, true));
+        assertThat(fTasks, empty());
+        assertThat(fScheduler.isRunning(), is(false));
+        assertThat(fIdleCount, equalTo(1));
+    }
+
+    @Test
+    public void idleAfterSingleSync() {
+        fScheduler.request(false, false);
+        runNextTask();
+
+        assertThat(fRuns, contains(false));
+        assertThat(fScheduler.isRunning(), is(false));
+        assertThat(fIdleCount, equalTo(1));
+    }
+
+    @Test
+    public void refusesRequestsWhileBackingOff() {
+        fSucceed = false;
+        fScheduler.request(false, false);
+        runNextTask();
+
+        assertThat(fScheduler.isBackingOff(), is(true));
+        assertThat(fScheduler.getRetryAfter(), equalTo(1000 + SyncScheduler.INITIAL_BACKOFF_MILLIS));
+        assertThat(fScheduler.request(false, false), is(false));
+        assertThat(fTasks, empty());
+
+        fNow += SyncScheduler.INITIAL_BACKOFF_MILLIS;
+        assertThat(fScheduler.request(false, false), is(true));
+        assertThat(fTasks.size(), equalTo(1));
+    }
+
+    @Test
+    public void retriesOnceTheBackoffEnds() {
+        fSucceed = false;
+        fScheduler.request(true, false);
+        runNextTask();
+
+        assertThat(fRetryDelays, contains(SyncScheduler.INITIAL_BACKOFF_MILLIS));
+        assertThat(fTasks, empty());
+
+        fSucceed = true;
+        fNow += SyncScheduler.INITIAL_BACKOFF_MILLIS;
+        fRetries.get(0).run();
+        runNextTask();
+
+        assertThat(fRuns, contains(true, true));
+        assertThat(fScheduler.isBackingOff(), is(false));
+        assertThat(fIdleCount, equalTo(2));
+    }
+
+    @Test
+    public void retryIsDroppedIfAnotherSyncRanFirst() {
+        fSucceed = false;
+        fScheduler.request(false, false);
+        runNextTask();
+
+        fSucceed = true;
+        fScheduler.request(false, true);
+        runNextTask();
+        fRetries.get(0).run();
+
+        assertThat(fRuns, contains(false, false));
+        assertThat(fTasks, empty());
+    }
+
+    @Test
+    public void onlyTheLatestFailureIsRetried() {
+        fSucceed = false;
+        fScheduler.request(false, false);
+        runNextTask();
+        fScheduler.request(false, true);
+        runNextTask();
+
+        assertThat(fRetryDelays, contains(SyncScheduler.INITIAL_BACKOFF_MILLIS, 2 * SyncScheduler.INITIAL_BACKOFF_MILLIS));
+        fRetries.get(0).run();
+        assertThat(fTasks, empty());
+        fRetries.get(1).run();
+        assertThat(fTasks.size(), equalTo(1));
+    }
+
+    @Test
+    public void forcedRequestsIgnoreBackoff() {
+        fSucceed = false;
+        fScheduler.request(false, false);
+        runNextTask();
+
+        assertThat(fScheduler.request(true, true), is(true));
+        runNextTask();
+
+        assertThat(fRuns, contains(false, true));
+    }
+
+    @Test
+    public void backoffDoublesUpToMaximum() {
+        fSucceed = false;
+        long expected = SyncScheduler.INITIAL_BACKOFF_MILLIS;
+        for (int i = 0; i < 12; i++) {
+            fScheduler.request(false, true);
+            runNextTask();
+            assertThat(fScheduler.getRetryAfter() - fNow, equalTo(Math.min(expected, SyncScheduler.MAX_BACKOFF_MILLIS)));
+            expected *= 2;
+        }
+    }
+
+    @Test
+    public void backoffIsJittered() {
+        fScheduler = new SyncScheduler(new SyncScheduler.Sync() {
+            public boolean run(final boolean clean) {
+                return false;
+            }
+        }, new Executor() {
+            public void execute(final Runnable task) {
+                task.run();
+            }
+        }, new SyncScheduler.Clock() {
+            public long currentTimeMillis() {
+                return fNow;
+            }
+        }, fTimer, new Random(42));
+
+        fScheduler.request(false, false);
+
+        long backoff = fScheduler.getRetryAfter() - fNow;
+        assertThat(backoff, greaterThanOrEqualTo(SyncScheduler.INITIAL_BACKOFF_MILLIS / 2));
+        assertThat(backoff, lessThanOrEqualTo(SyncScheduler.INITIAL_BACKOFF_MILLIS));
+    }
+
+    @Test
+    public void successResetsBackoff() {
+        fSucceed = false;
+        fScheduler.request(false, false);
+        runNextTask();
+
+        fSucceed = true;
+        fScheduler.request(false, true);
+        runNextTask();
+
+        assertThat(fScheduler.isBackingOff(), is(false));
+        assertThat(fScheduler.request(false, false), is(true));
+    }
+
+    @Test
+    public void pendingRequestIsDroppedWhenSyncFails() {
+        fSucceed = false;
+        fScheduler.request(false, false);
+        fScheduler.request(false, false);
+        runNextTask();
+
+        assertThat(fTasks, empty());
+        assertThat(fScheduler.isRunning(), is(false));
+    }
+
+    @Test
+    public void pendingForcedRequestRunsAfterFailure() {
+        fSucceed = false;
+        fScheduler.request(false, false);
+        fScheduler.request(false, true);
+        runNextTask();
+
+        assertThat(fTasks.size(), equalTo(1));
+    }
+
+    @Test
+    public void falseResultCountsAsFailure() {
+        fScheduler = new SyncScheduler(new SyncScheduler.Sync() {
+            public boolean run(final boolean clean) {
+                return false;
+            }
+        }, new Executor() {
+            public void execute(final Runnable task) {
+                task.run();
+            }
+        }, SyncScheduler.SYSTEM_CLOCK, fTimer, new Random(1));
+
+        fScheduler.request(false, false);
+
+        assertThat(fScheduler.isBackingOff(), is(true));
+    }
+}
@@ -0,0 +1,111 @@
+package ralcock.cbf.tools;
+
+import com.j256.ormlite.dao.DaoManager;
+import com.j256.ormlite.jdbc.JdbcConnectionSource;
+import com.j256.ormlite.misc.TransactionManager;
+import com.j256.ormlite.support.ConnectionSource;
+import ralcock.cbf.model.Beer;
+import ralcock.cbf.model.Brewery;
+import ralcock.cbf.model.JsonBeerList;
+import ralcock.cbf.model.dao.BeersImpl;
+import ralcock.cbf.model.dao.BreweriesImpl;
+import ralcock.cbf.model.dao.CatalogSchema;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.Callable;
+
+/**
+ * Builds the catalog database the app ships as an asset, by running the same ingest the app's
+ * update does against checked-in copies of the festival feed. The result is an ordinary SQLite
+ * file with the app's tables and indexes, analysed so the first queries on the device are
+ * planned with statistics.
+ * <p>
+ * Usage: {@code PrebuiltCatalog <output.db> <festival> <feed.json>...}, the beers being stored
+ * under the festival key the app uses. With no feed files nothing is written, and the app
+ * downloads the catalog on first run as before.
+ */
+public final class PrebuiltCatalog {
+
+    private PrebuiltCatalog() {
+        // Command line tool
+    }
+
+    public static void main(final String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: PrebuiltCatalog <output.db> <festival> <feed.json>...");
+            System.exit(2);
+        }
+        final File output = new File(args[0]);
+        final String festival = args[1];
+        Files.deleteIfExists(output.toPath());
+        if (args.length == 2) {
+            System.out.println("No feed files, not building a prebuilt catalog.");
+            return;
+        }
+
+        final JsonBeerList[] feeds = new JsonBeerList[args.length - 2];
+        final String[] sources = new String[args.length - 2];
+        for (int i = 2; i < args.length; i++) {
+            File feed = new File(args[i]);
+            feeds[i - 2] = new JsonBeerList(read(feed));
+            // Named as the app's update names the source it was downloaded from.
+            sources[i - 2] = feed.getName();
+        }
+
+        output.getParentFile().mkdirs();
+        final File building = new File(output.getPath() + ".tmp");
+        Files.deleteIfExists(building.toPath());
+        ConnectionSource connectionSource = new JdbcConnectionSource("jdbc:sqlite:" + building.getAbsolutePath());
+        try {
+            final int count = build(connectionSource, festival, feeds, sources);
+            System.out.println("Built prebuilt catalog of " + festival + " with " + count + " beers.");
+        } finally {
+            connectionSource.close();
+            DaoManager.clearCache();
+        }
+        if (!building.renameTo(output)) {
+            throw new IOException("Failed to rename " + building + " to " + output);
+        }
+    }
+
+    private static int build(final ConnectionSource connectionSource,
+                             final String festival,
+                             final JsonBeerList[] feeds,
+                             final String[] sources) throws Exception {
+        CatalogSchema.createTables(connectionSource);
+
+        final BreweriesImpl breweries = DaoManager.createDao(connectionSource, Brewery.class);
+        final BeersImpl beers = DaoManager.createDao(connectionSource, Beer.class);
+        beers.setBreweries(breweries);
+        beers.setFestival(festival);
+
+        final int count = TransactionManager.callInTransaction(connectionSource, new Callable<Integer>() {
+            public Integer call() {
+                int count = 0;
+                for (int i = 0; i < feeds.length; i++) {
+                    for (Beer beer : feeds[i]) {
+                        beer.setSource(sources[i]);
+                        beers.updateFromFestivalOrCreate(beer);
+                        count++;
+                    }
+                }
+                return count;
+            }
+        });
+
+        // Android creates this table when it first opens a database; creating it here means the
+        // copied asset never needs writing to before it is used.
+        beers.executeRaw("CREATE TABLE android_metadata (locale TEXT)");
+        beers.executeRaw("INSERT INTO android_metadata VALUES ('en_US')");
+        beers.executeRaw("ANALYZE");
+        beers.executeRaw("VACUUM");
+        return count;
+    }
+
+    private static String read(final File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+}
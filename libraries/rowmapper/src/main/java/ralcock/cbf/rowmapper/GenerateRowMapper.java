@@ -0,0 +1,22 @@
+package ralcock.cbf.rowmapper;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Has {@link RowMapperProcessor} generate a mapper between rows of the annotated ORMLite entity's
+ * table and its objects, named after the entity with {@code RowMapper} appended and put in the
+ * same package. The mapper reads and writes the entity's {@code @DatabaseField}s directly, so
+ * they must not be private.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface GenerateRowMapper {
+    /**
+     * The class whose {@code public static String canonical(String)} the mapper reads the
+     * entity's {@link Pooled} fields through. Needed only if it has any.
+     */
+    Class<?> stringPool() default Void.class;
+}
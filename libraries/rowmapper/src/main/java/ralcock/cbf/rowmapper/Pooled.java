@@ -0,0 +1,16 @@
+package ralcock.cbf.rowmapper;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a {@code String} field whose values repeat across many rows, such as a style or a status.
+ * The generated mapper reads it through the string pool named by {@link GenerateRowMapper#stringPool},
+ * so the rows share one copy of each value.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.FIELD)
+public @interface Pooled {
+}
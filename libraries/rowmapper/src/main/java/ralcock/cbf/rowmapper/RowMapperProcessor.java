@@ -0,0 +1,443 @@
+package ralcock.cbf.rowmapper;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.MirroredTypeException;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates the mappers asked for by {@link GenerateRowMapper}.
+ * <p>
+ * A generated mapper is an ORMLite {@code DatabaseResultsMapper}, which builds an entity from each
+ * row of a query without the reflection ORMLite uses. It finds the entity's columns in the results
+ * once, on the first row, and skips any the query did not select. A foreign field is looked up by
+ * id in a map given to the mapper, so a query's rows share one lookup rather than each refreshing
+ * its foreign object with a query of its own; ids not in the map get an object with just the id,
+ * as ORMLite leaves foreign objects it does not refresh.
+ * <p>
+ * The mapper also turns an entity into the values of its columns, less its generated id, in the
+ * order of its {@code VALUE_COLUMNS}, for inserts and updates to bind.
+ * <p>
+ * Strings of {@link Pooled} fields are read through the entity's string pool, so rows with the
+ * same value share one copy of it.
+ * <p>
+ * Only the column types the catalog uses are supported: primitives, strings and foreign entities
+ * with a {@code long} id. Anything else is a compile error.
+ */
+public final class RowMapperProcessor extends AbstractProcessor {
+
+    private static final String DATABASE_FIELD = "com.j256.ormlite.field.DatabaseField";
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(GenerateRowMapper.class.getCanonicalName());
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment roundEnv) {
+        for (TypeElement type : ElementFilter.typesIn(roundEnv.getElementsAnnotatedWith(GenerateRowMapper.class))) {
+            try {
+                generate(type);
+            } catch (IOException e) {
+                error("Failed to write the row mapper of " + type + ": " + e, type);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * One of an entity's {@code @DatabaseField}s.
+     */
+    private static final class Column {
+        private final String fField;
+        private final String fName;
+        private final TypeMirror fType;
+        private final boolean fId;
+        private final TypeElement fForeign;
+        private final String fForeignId;
+        private final boolean fPooled;
+
+        private Column(final String field, final String name, final TypeMirror type, final boolean id,
+                       final TypeElement foreign, final String foreignId, final boolean pooled) {
+            fField = field;
+            fName = name;
+            fType = type;
+            fId = id;
+            fForeign = foreign;
+            fForeignId = foreignId;
+            fPooled = pooled;
+        }
+    }
+
+    private void generate(final TypeElement type) throws IOException {
+        List<Column> columns = columnsOf(type);
+        if (columns == null || !hasNoArgConstructor(type)) {
+            return;
+        }
+        Column id = null;
+        boolean pooled = false;
+        for (Column column : columns) {
+            if (column.fId) {
+                id = column;
+            }
+            pooled |= column.fPooled;
+        }
+        if (id == null || id.fType.getKind() != TypeKind.LONG) {
+            error(type.getSimpleName() + " needs a long generated id to have a row mapper", type);
+            return;
+        }
+        String stringPool = null;
+        if (pooled) {
+            stringPool = stringPoolOf(type);
+            if (stringPool == null) {
+                return;
+            }
+        }
+
+        String entity = type.getSimpleName().toString();
+        String mapper = entity + "RowMapper";
+        String packageName = ((PackageElement) type.getEnclosingElement()).getQualifiedName().toString();
+        PrintWriter out = new PrintWriter(processingEnv.getFiler()
+                .createSourceFile(packageName + "." + mapper, type).openWriter());
+        try {
+            out.println("package " + packageName + ";");
+            out.println();
+            out.println("import com.j256.ormlite.dao.DatabaseResultsMapper;");
+            out.println("import com.j256.ormlite.support.DatabaseResults;");
+            out.println();
+            out.println("import java.sql.SQLException;");
+            out.println("import java.util.Map;");
+            out.println();
+            out.println("/**");
+            out.println(" * Maps rows of the table of {@link " + entity + "} to and from its objects. Generated by");
+            out.println(" * {@code " + getClass().getName() + "} from its {@code @DatabaseField}s.");
+            out.println(" */");
+            out.println("public final class " + mapper + " implements DatabaseResultsMapper<" + entity + "> {");
+            out.println();
+            out.println("    public static final String ID_COLUMN = " + literal(id.fName) + ";");
+            out.println();
+            out.println("    /**");
+            out.println("     * The columns {@link #values} are in the order of.");
+            out.println("     */");
+            out.print("    public static final String[] VALUE_COLUMNS = {");
+            String separator = "";
+            for (Column column : columns) {
+                if (column != id) {
+                    out.print(separator + literal(column.fName));
+                    separator = ", ";
+                }
+            }
+            out.println("};");
+            out.println();
+            out.print("    private static final String[] COLUMNS = {");
+            separator = "";
+            for (Column column : columns) {
+                out.print(separator + literal(column.fName));
+                separator = ", ";
+            }
+            out.println("};");
+            out.println();
+            List<String> parameters = new ArrayList<>();
+            for (Column column : columns) {
+                if (column.fForeign != null) {
+                    String parameter = lookupName(column);
+                    parameters.add("final Map<Long, " + column.fForeign.getSimpleName() + "> " + parameter);
+                    out.println("    private final Map<Long, " + column.fForeign.getSimpleName() + "> f"
+                            + capitalize(parameter) + ";");
+                }
+            }
+            out.println("    private int[] fIndexes;");
+            out.println();
+            out.println("    public " + mapper + "(" + join(parameters) + ") {");
+            for (Column column : columns) {
+                if (column.fForeign != null) {
+                    String parameter = lookupName(column);
+                    out.println("        f" + capitalize(parameter) + " = " + parameter + ";");
+                }
+            }
+            out.println("    }");
+            out.println();
+            out.println("    public " + entity + " mapRow(final DatabaseResults results) throws SQLException {");
+            out.println("        if (fIndexes == null) {");
+            out.println("            fIndexes = indexesOf(results);");
+            out.println("        }");
+            out.println("        final " + entity + " row = new " + entity + "();");
+            for (int i = 0; i < columns.size(); i++) {
+                writeRead(out, columns.get(i), i, stringPool);
+            }
+            out.println("        return row;");
+            out.println("    }");
+            out.println();
+            out.println("    private static int[] indexesOf(final DatabaseResults results) throws SQLException {");
+            out.println("        final String[] names = results.getColumnNames();");
+            out.println("        final int[] indexes = new int[COLUMNS.length];");
+            out.println("        for (int i = 0; i < COLUMNS.length; i++) {");
+            out.println("            indexes[i] = -1;");
+            out.println("            for (int j = 0; j < names.length; j++) {");
+            out.println("                if (COLUMNS[i].equalsIgnoreCase(names[j])) {");
+            out.println("                    indexes[i] = j;");
+            out.println("                    break;");
+            out.println("                }");
+            out.println("            }");
+            out.println("        }");
+            out.println("        return indexes;");
+            out.println("    }");
+            out.println();
+            out.println("    public static Object[] values(final " + entity + " row) {");
+            out.println("        return new Object[]{");
+            for (Column column : columns) {
+                if (column == id) {
+                    continue;
+                }
+                if (column.fForeign != null) {
+                    out.println("                row." + column.fField + " == null ? null : (Object) row." + column.fField
+                            + "." + column.fForeignId + ",");
+                } else {
+                    out.println("                row." + column.fField + ",");
+                }
+            }
+            out.println("        };");
+            out.println("    }");
+            out.println();
+            out.println("    public static long getId(final " + entity + " row) {");
+            out.println("        return row." + id.fField + ";");
+            out.println("    }");
+            out.println();
+            out.println("    public static void setId(final " + entity + " row, final long id) {");
+            out.println("        row." + id.fField + " = id;");
+            out.println("    }");
+            out.println("}");
+        } finally {
+            out.close();
+        }
+    }
+
+    private void writeRead(final PrintWriter out, final Column column, final int index, final String stringPool) {
+        String at = "fIndexes[" + index + "]";
+        out.println("        if (" + at + " >= 0) {");
+        if (column.fForeign != null) {
+            String foreign = column.fForeign.getSimpleName().toString();
+            out.println("            final long id = results.getLong(" + at + ");");
+            out.println("            if (!results.wasNull(" + at + ")) {");
+            out.println("                " + foreign + " foreign = f" + capitalize(lookupName(column)) + ".get(id);");
+            out.println("                if (foreign == null) {");
+            out.println("                    foreign = new " + foreign + "();");
+            out.println("                    foreign." + column.fForeignId + " = id;");
+            out.println("                }");
+            out.println("                row." + column.fField + " = foreign;");
+            out.println("            }");
+        } else if (column.fPooled) {
+            out.println("            row." + column.fField + " = " + stringPool + ".canonical(results.getString(" + at + "));");
+        } else {
+            out.println("            row." + column.fField + " = results." + getter(column.fType) + "(" + at + ");");
+        }
+        out.println("        }");
+    }
+
+    /**
+     * The entity's {@code @DatabaseField}s, or null, having reported why, if one cannot be mapped.
+     */
+    private List<Column> columnsOf(final TypeElement type) {
+        List<Column> columns = new ArrayList<>();
+        boolean ok = true;
+        for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            Map<String, Object> values = databaseField(field);
+            if (values == null) {
+                continue;
+            }
+            if (field.getModifiers().contains(Modifier.PRIVATE) || field.getModifiers().contains(Modifier.FINAL)
+                    || field.getModifiers().contains(Modifier.STATIC)) {
+                error("A mapped field must not be private, final or static", field);
+                ok = false;
+                continue;
+            }
+            String name = (String) values.get("columnName");
+            if (name == null || name.isEmpty()) {
+                name = field.getSimpleName().toString();
+            }
+            boolean id = Boolean.TRUE.equals(values.get("generatedId"));
+            TypeElement foreign = null;
+            String foreignId = null;
+            if (Boolean.TRUE.equals(values.get("foreign"))) {
+                foreign = (TypeElement) ((DeclaredType) field.asType()).asElement();
+                foreignId = idFieldOf(foreign);
+                if (foreign.getEnclosingElement() != type.getEnclosingElement() || foreignId == null
+                        || !hasNoArgConstructor(foreign)) {
+                    error("A foreign entity must be in the same package and have a long id that is not private", field);
+                    ok = false;
+                    continue;
+                }
+            } else if (getter(field.asType()) == null) {
+                error("Row mappers do not support fields of type " + field.asType(), field);
+                ok = false;
+                continue;
+            }
+            boolean pooled = field.getAnnotation(Pooled.class) != null;
+            if (pooled && !"java.lang.String".equals(field.asType().toString())) {
+                error("Only String fields can be pooled", field);
+                ok = false;
+                continue;
+            }
+            columns.add(new Column(field.getSimpleName().toString(), name, field.asType(), id, foreign, foreignId,
+                    pooled));
+        }
+        return ok ? columns : null;
+    }
+
+    private String idFieldOf(final TypeElement type) {
+        for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            Map<String, Object> values = databaseField(field);
+            if (values != null && field.asType().getKind() == TypeKind.LONG
+                    && !field.getModifiers().contains(Modifier.PRIVATE)
+                    && (Boolean.TRUE.equals(values.get("generatedId")) || Boolean.TRUE.equals(values.get("id")))) {
+                return field.getSimpleName().toString();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The name of the entity's string pool class, or null, having reported why, if it has none
+     * with a {@code public static String canonical(String)}.
+     */
+    private String stringPoolOf(final TypeElement type) {
+        TypeMirror pool = null;
+        try {
+            type.getAnnotation(GenerateRowMapper.class).stringPool();
+        } catch (MirroredTypeException e) {
+            // Classes being compiled can only be seen as mirrors.
+            pool = e.getTypeMirror();
+        }
+        if (pool != null && pool.getKind() == TypeKind.DECLARED) {
+            TypeElement poolType = (TypeElement) ((DeclaredType) pool).asElement();
+            for (ExecutableElement method : ElementFilter.methodsIn(poolType.getEnclosedElements())) {
+                if (method.getSimpleName().contentEquals("canonical")
+                        && method.getModifiers().contains(Modifier.PUBLIC)
+                        && method.getModifiers().contains(Modifier.STATIC)
+                        && method.getParameters().size() == 1
+                        && "java.lang.String".equals(method.getParameters().get(0).asType().toString())
+                        && "java.lang.String".equals(method.getReturnType().toString())) {
+                    return poolType.getQualifiedName().toString();
+                }
+            }
+        }
+        error(type.getSimpleName() + " has pooled fields, so needs a stringPool with a"
+                + " public static String canonical(String)", type);
+        return null;
+    }
+
+    private boolean hasNoArgConstructor(final TypeElement type) {
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+                return true;
+            }
+        }
+        error(type.getSimpleName() + " needs a no-argument constructor that is not private to be mapped", type);
+        return false;
+    }
+
+    /**
+     * The values set on a field's {@code @DatabaseField}, or null if it has none.
+     */
+    private static Map<String, Object> databaseField(final Element field) {
+        for (AnnotationMirror annotation : field.getAnnotationMirrors()) {
+            TypeElement annotationType = (TypeElement) annotation.getAnnotationType().asElement();
+            if (annotationType.getQualifiedName().contentEquals(DATABASE_FIELD)) {
+                Map<String, Object> values = new HashMap<>();
+                for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+                        : annotation.getElementValues().entrySet()) {
+                    values.put(entry.getKey().getSimpleName().toString(), entry.getValue().getValue());
+                }
+                return values;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The {@code DatabaseResults} method reading a column of the type, or null if it has none.
+     */
+    private static String getter(final TypeMirror type) {
+        switch (type.getKind()) {
+            case BOOLEAN:
+                return "getBoolean";
+            case BYTE:
+                return "getByte";
+            case SHORT:
+                return "getShort";
+            case INT:
+                return "getInt";
+            case LONG:
+                return "getLong";
+            case FLOAT:
+                return "getFloat";
+            case DOUBLE:
+                return "getDouble";
+            case DECLARED:
+                return "java.lang.String".equals(type.toString()) ? "getString" : null;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Names the map a foreign field is looked up in after the field, as {@code fBrewery} gives
+     * {@code breweryById}.
+     */
+    private static String lookupName(final Column column) {
+        String name = column.fField;
+        if (name.length() > 1 && name.charAt(0) == 'f' && Character.isUpperCase(name.charAt(1))) {
+            name = name.substring(1);
+        }
+        return Character.toLowerCase(name.charAt(0)) + name.substring(1) + "ById";
+    }
+
+    private static String capitalize(final String name) {
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    private static String join(final List<String> parts) {
+        StringBuilder sb = new StringBuilder();
+        for (String part : parts) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(part);
+        }
+        return sb.toString();
+    }
+
+    private static String literal(final String text) {
+        return "\"" + text.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    private void error(final String message, final Element element) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}